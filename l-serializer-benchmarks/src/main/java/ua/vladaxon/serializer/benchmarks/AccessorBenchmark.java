@@ -0,0 +1,113 @@
+package ua.vladaxon.serializer.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ua.vladaxon.serializer.AccessorType;
+import ua.vladaxon.serializer.LDesirializer;
+import ua.vladaxon.serializer.LSerializer;
+
+/**
+ * Запись и чтение объекта из одних примитивных полей с каждым способом доступа к полям.
+ * Запись идет в один и тот же буфер, чтение - в один и тот же объект, поэтому сериализатор
+ * сам ничего не выделяет, и {@code gc.alloc.rate.norm} профилировщика {@code gc} показывает,
+ * упаковываются ли значения полей.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AccessorBenchmark {
+
+    @Param({ "REFLECTION", "METHOD_HANDLE" })
+    private AccessorType accessorType;
+
+    private LSerializer serializer;
+    private LDesirializer deserializer;
+    private Ticks ticks;
+    private Ticks target;
+    private ByteBuffer buffer;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        serializer = new LSerializer(accessorType);
+        deserializer = new LDesirializer(accessorType);
+        ticks = new Ticks(1);
+        target = new Ticks(0);
+        bytes = serializer.serializeToBytes(ticks);
+        buffer = ByteBuffer.allocate(bytes.length);
+    }
+
+    @Benchmark
+    public ByteBuffer serialize() throws Exception {
+        buffer.clear();
+        serializer.serialize(buffer, ticks);
+        return buffer;
+    }
+
+    @Benchmark
+    public Object deserializeInto() throws Exception {
+        return deserializer.deserializeInto(bytes, target);
+    }
+
+    static class Ticks {
+
+        private long time0;
+        private long time1;
+        private long time2;
+        private long time3;
+        private int volume0;
+        private int volume1;
+        private int volume2;
+        private int volume3;
+        private double price0;
+        private double price1;
+        private double price2;
+        private double price3;
+        private short venue;
+        private byte side;
+        private char currency;
+        private boolean closed;
+        private float spread;
+
+        Ticks(int seed) {
+            time0 = seed * 1000003L;
+            time1 = time0 + 1;
+            time2 = time0 + 2;
+            time3 = time0 + 3;
+            volume0 = seed * 100;
+            volume1 = volume0 + 1;
+            volume2 = volume0 + 2;
+            volume3 = volume0 + 3;
+            price0 = seed + 0.25;
+            price1 = price0 + 0.25;
+            price2 = price0 + 0.5;
+            price3 = price0 + 0.75;
+            venue = (short) seed;
+            side = (byte) (seed & 1);
+            currency = 'U';
+            closed = seed % 2 == 0;
+            spread = 0.125f;
+        }
+
+    }
+
+}
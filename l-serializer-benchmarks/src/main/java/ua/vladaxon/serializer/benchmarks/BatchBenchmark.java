@@ -0,0 +1,114 @@
+package ua.vladaxon.serializer.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ua.vladaxon.serializer.LSerializerFactory;
+
+/**
+ * Параллельная обработка пакета записей: обычная сериализация списка одним вызовом
+ * ({@code threads = 0}) против {@link LSerializerFactory#serializeBatch(java.io.OutputStream, List)}
+ * и {@link LSerializerFactory#deserializeBatch(byte[], Class)} с пулами разного размера.
+ * Ускорение ограничено числом процессоров машины: на одном процессоре разница с обычной
+ * сериализацией показывает только накладные расходы деления на части.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchBenchmark {
+
+    /** Число записей в пакете. */
+    private static final int RECORDS = 500000;
+
+    /** Размер пула потоков или 0 для обычной сериализации одним вызовом. */
+    @Param({ "0", "1", "2", "4" })
+    public int threads;
+
+    private ForkJoinPool pool;
+    private LSerializerFactory factory;
+    private List<Record> records;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        records = new ArrayList<>(RECORDS);
+        for (int i = 0; i < RECORDS; i++) {
+            records.add(new Record(i));
+        }
+        if (threads > 0) {
+            pool = new ForkJoinPool(threads);
+            factory = new LSerializerFactory.Builder().setBatchPool(pool).build();
+        } else {
+            factory = new LSerializerFactory();
+        }
+        bytes = write();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public byte[] write() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes != null ? bytes.length : 1 << 20);
+        if (threads > 0) {
+            factory.serializeBatch(out, records);
+        } else {
+            factory.serialize(out, records);
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Object read() throws Exception {
+        if (threads > 0) {
+            return factory.deserializeBatch(bytes, Record.class);
+        }
+        return factory.deserialize(new ByteArrayInputStream(bytes), List.class);
+    }
+
+    static class Record {
+
+        private int id;
+        private long stamp;
+        private double amount;
+        private String name;
+        private int[] scores;
+
+        Record(int id) {
+            this.id = id;
+            this.stamp = id * 1000L;
+            this.amount = id / 3.0;
+            this.name = "record-" + id;
+            this.scores = new int[] { id, id + 1, id + 2 };
+        }
+
+    }
+
+}
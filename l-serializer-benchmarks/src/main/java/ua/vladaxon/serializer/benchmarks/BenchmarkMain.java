@@ -0,0 +1,72 @@
+package ua.vladaxon.serializer.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Запуск замеров. Выводит размер представления каждого набора данных в каждом формате
+ * и запускает замеры с профилировщиком {@code gc}. Аргументы командной строки передаются JMH,
+ * например {@code java -jar target/benchmarks.jar -p payload=MAPS serialize}. Без указания замеров
+ * запускается {@link SerializationBenchmark}, остальные замеры запускаются по имени, например
+ * {@code java -jar target/benchmarks.jar ListenerOverheadBenchmark}.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public class BenchmarkMain {
+
+    /** Размер стека потока, в котором выводятся размеры: стандартная сериализация рекурсивна. */
+    private static final long SIZES_STACK_SIZE = 64 << 20;
+
+    public static void main(String[] args) throws Exception {
+        printSizes();
+        CommandLineOptions arguments = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(arguments).addProfiler(GCProfiler.class);
+        if (arguments.getIncludes().isEmpty()) {
+            options.include(SerializationBenchmark.class.getSimpleName());
+        }
+        new Runner(options.build()).run();
+    }
+
+    private static void printSizes() throws Exception {
+        final Exception[] error = new Exception[1];
+        Thread thread = new Thread(null, new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    printSizeTable();
+                } catch (Exception e) {
+                    error[0] = e;
+                }
+            }
+
+        }, "sizes", SIZES_STACK_SIZE);
+        thread.start();
+        thread.join();
+        if (error[0] != null) {
+            throw error[0];
+        }
+    }
+
+    private static void printSizeTable() throws Exception {
+        System.out.printf("%-20s", "payload, bytes");
+        for (Format format : Format.values()) {
+            System.out.printf("%14s", format);
+        }
+        System.out.println();
+        for (Payload payload : Payload.values()) {
+            System.out.printf("%-20s", payload);
+            Object value = payload.create();
+            for (Format format : Format.values()) {
+                System.out.printf("%14d", format.newCodec().write(value).length);
+            }
+            System.out.println();
+        }
+        System.out.println();
+    }
+
+}
@@ -0,0 +1,139 @@
+package ua.vladaxon.serializer.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ua.vladaxon.serializer.BlockCompressor;
+import ua.vladaxon.serializer.DeflateCompressor;
+import ua.vladaxon.serializer.FramedInputStream;
+import ua.vladaxon.serializer.LDesirializer;
+import ua.vladaxon.serializer.LSerializer;
+import ua.vladaxon.serializer.LzCompressor;
+
+/**
+ * Сжатие блоками: запись и чтение крупного графа без сжатия, с {@link LzCompressor}
+ * и {@link DeflateCompressor}, а также чтение с параллельной распаковкой блоков.
+ * Без сжатия параллельное чтение совпадает с обычным. Размер данных выводится
+ * по завершении замера.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompressionBenchmark {
+
+    /** Число записей в графе. */
+    private static final int ITEMS = 200000;
+
+    /**
+     * Алгоритмы сжатия.
+     */
+    public enum Compression {
+
+        /** Без сжатия. */
+        NONE {
+            @Override
+            BlockCompressor create() {
+                return null;
+            }
+        },
+        /** {@link LzCompressor}. */
+        LZ {
+            @Override
+            BlockCompressor create() {
+                return new LzCompressor();
+            }
+        },
+        /** {@link DeflateCompressor}. */
+        DEFLATE {
+            @Override
+            BlockCompressor create() {
+                return new DeflateCompressor();
+            }
+        };
+
+        /**
+         * @return алгоритм сжатия или {@code null}
+         */
+        abstract BlockCompressor create();
+
+    }
+
+    @Param
+    public Compression compression;
+
+    private LSerializer serializer;
+    private LDesirializer deserializer;
+    private List<Object> graph;
+    private byte[] bytes;
+    private ExecutorService executor;
+    private int readAhead;
+
+    @Setup
+    public void setUp() throws Exception {
+        serializer = new LSerializer();
+        serializer.setCompression(compression.create());
+        deserializer = new LDesirializer();
+        graph = new ArrayList<>(ITEMS);
+        for (int i = 0; i < ITEMS; i++) {
+            Object[] item = { "item-" + (i % 1000), i, (long) i * 31, i / 7.0 };
+            graph.add(item);
+        }
+        bytes = serializer.serializeToBytes(graph);
+        int threads = Runtime.getRuntime().availableProcessors();
+        executor = Executors.newFixedThreadPool(threads);
+        readAhead = 2 * threads;
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+        System.out.printf("%nsize %d B%n", bytes.length);
+    }
+
+    @Benchmark
+    public int serialize() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+        serializer.serialize(out, graph);
+        return out.size();
+    }
+
+    @Benchmark
+    public Object deserialize() throws Exception {
+        return deserializer.deserialize(new ByteArrayInputStream(bytes), Object.class);
+    }
+
+    @Benchmark
+    public Object deserializeParallel() throws Exception {
+        InputStream in = new ByteArrayInputStream(bytes);
+        if (compression != Compression.NONE) {
+            in = new FramedInputStream(in, executor, readAhead);
+        }
+        return deserializer.deserialize(in, Object.class);
+    }
+
+}
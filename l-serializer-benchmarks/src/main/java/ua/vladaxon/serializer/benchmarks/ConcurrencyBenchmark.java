@@ -0,0 +1,87 @@
+package ua.vladaxon.serializer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ua.vladaxon.serializer.LSerializerFactory;
+
+/**
+ * Пропускная способность {@link LSerializerFactory} при одновременных вызовах: каждый поток
+ * сериализует и десериализует свой граф через общую фабрику. Масштабирование видно
+ * при сравнении запусков с разным числом потоков, например
+ * {@code java -jar target/benchmarks.jar ConcurrencyBenchmark -t 1} и {@code -t 4}.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrencyBenchmark {
+
+    /**
+     * Фабрика, общая для всех потоков замера.
+     */
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        final LSerializerFactory factory = new LSerializerFactory();
+        final AtomicInteger seeds = new AtomicInteger();
+
+    }
+
+    /**
+     * Граф отдельного потока.
+     */
+    @State(Scope.Thread)
+    public static class Graph {
+
+        Node[] nodes;
+
+        @Setup
+        public void setUp(Shared shared) {
+            int seed = shared.seeds.getAndIncrement() * 1000;
+            nodes = new Node[200];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = new Node(seed + i, new Node(seed - i, null));
+            }
+        }
+
+    }
+
+    @Benchmark
+    public Object roundTrip(Shared shared, Graph graph) throws Exception {
+        byte[] bytes = shared.factory.serializeToBytes(graph.nodes);
+        return shared.factory.deserialize(bytes, Node[].class);
+    }
+
+    static class Node {
+
+        private int value;
+        private long stamp;
+        private String label;
+        private Node next;
+
+        Node(int value, Node next) {
+            this.value = value;
+            this.stamp = value * 31L;
+            this.label = "node-" + (value & 15);
+            this.next = next;
+        }
+
+    }
+
+}
@@ -0,0 +1,129 @@
+package ua.vladaxon.serializer.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ua.vladaxon.serializer.DeltaBaseline;
+import ua.vladaxon.serializer.LDesirializer;
+import ua.vladaxon.serializer.LSerializer;
+
+/**
+ * Передача книги заявок, в которой между сообщениями меняется несколько заявок: полная запись
+ * и чтение против записи и применения разности. Изменение книги входит в оба замера и стоит
+ * одинаково. Средний размер сообщения выводится по завершении замера.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DeltaBenchmark {
+
+    /** Число заявок в книге. */
+    private static final int ORDERS = 5000;
+    /** Число заявок, меняющихся между сообщениями. */
+    private static final int CHANGES = 10;
+
+    private LSerializer serializer;
+    private LDesirializer deserializer;
+    private DeltaBaseline sent;
+    private DeltaBaseline received;
+    private Book book;
+    private Random random;
+    private long messages;
+    private long bytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        serializer = new LSerializer();
+        deserializer = new LDesirializer();
+        sent = new DeltaBaseline();
+        received = new DeltaBaseline();
+        book = new Book();
+        random = new Random(1);
+        deserializer.deserializeDelta(serializer.serializeDeltaToBytes(book, sent), Book.class, received);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (messages > 0) {
+            System.out.printf("%nmessage size %d B%n", bytes / messages);
+        }
+    }
+
+    @Benchmark
+    public Object full() throws Exception {
+        change();
+        byte[] message = serializer.serializeToBytes(book);
+        count(message);
+        return deserializer.deserialize(message, Book.class);
+    }
+
+    @Benchmark
+    public Object delta() throws Exception {
+        change();
+        byte[] message = serializer.serializeDeltaToBytes(book, sent);
+        count(message);
+        return deserializer.deserializeDelta(message, Book.class, received);
+    }
+
+    private void change() {
+        for (int i = 0; i < CHANGES; i++) {
+            Order order = book.orders.get(random.nextInt(ORDERS));
+            order.quantity = random.nextInt(1000);
+            order.price += 0.25;
+        }
+    }
+
+    private void count(byte[] message) {
+        messages++;
+        bytes += message.length;
+    }
+
+    static class Book {
+
+        private String symbol = "ABC";
+        private long sequence;
+        private List<Order> orders = new ArrayList<>();
+
+        Book() {
+            for (int i = 0; i < ORDERS; i++) {
+                orders.add(new Order(i, 100 + i * 0.25, i % 100));
+            }
+        }
+
+    }
+
+    static class Order {
+
+        private long id;
+        private double price;
+        private int quantity;
+
+        Order(long id, double price, int quantity) {
+            this.id = id;
+            this.price = price;
+            this.quantity = quantity;
+        }
+
+    }
+
+}
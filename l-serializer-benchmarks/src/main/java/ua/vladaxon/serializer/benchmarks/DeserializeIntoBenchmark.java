@@ -0,0 +1,120 @@
+package ua.vladaxon.serializer.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ua.vladaxon.serializer.BoundedObjectPool;
+import ua.vladaxon.serializer.LDesirializer;
+import ua.vladaxon.serializer.LSerializer;
+
+/**
+ * Чтение потока однотипных сообщений: обычное чтение, чтение в существующий объект и чтение
+ * в существующий объект с пулом вложенных объектов. Сообщения перебираются по кругу, чтобы
+ * значения полей менялись от вызова к вызову. Выделение памяти на сообщение выводит
+ * профилировщик {@code gc}.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DeserializeIntoBenchmark {
+
+    /** Число различных сообщений, степень двойки. */
+    private static final int MESSAGES = 16;
+
+    private LDesirializer deserializer;
+    private LDesirializer pooled;
+    private byte[][] messages;
+    private Quote target;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        LSerializer serializer = new LSerializer();
+        messages = new byte[MESSAGES][];
+        for (int i = 0; i < MESSAGES; i++) {
+            messages[i] = serializer.serializeToBytes(new Quote(i));
+        }
+        deserializer = new LDesirializer();
+        pooled = new LDesirializer();
+        pooled.setObjectPool(new BoundedObjectPool(64));
+        target = new Quote(0);
+    }
+
+    @Benchmark
+    public Object deserialize() throws Exception {
+        return deserializer.deserialize(nextMessage(), Quote.class);
+    }
+
+    @Benchmark
+    public Object deserializeInto() throws Exception {
+        return deserializer.deserializeInto(nextMessage(), target);
+    }
+
+    @Benchmark
+    public Object deserializeIntoPooled() throws Exception {
+        return pooled.deserializeInto(nextMessage(), target);
+    }
+
+    private byte[] nextMessage() {
+        return messages[next++ & (MESSAGES - 1)];
+    }
+
+    static class Quote {
+
+        private long sequence;
+        private int venue;
+        private double[] bids = new double[10];
+        private double[] asks = new double[10];
+        private Level best;
+        private Level auction;
+        private List<Level> levels = new ArrayList<>();
+
+        Quote(int sequence) {
+            this.sequence = sequence;
+            this.venue = sequence % 4;
+            for (int i = 0; i < bids.length; i++) {
+                bids[i] = sequence - i * 0.25;
+                asks[i] = sequence + i * 0.25;
+            }
+            best = new Level(bids[0], 100);
+            if (sequence % 2 == 0) {
+                auction = new Level(sequence, 10);
+            }
+            for (int i = 0; i < 3; i++) {
+                levels.add(new Level(bids[i], i));
+            }
+        }
+
+    }
+
+    static class Level {
+
+        private double price;
+        private long size;
+
+        Level(double price, long size) {
+            this.price = price;
+            this.size = size;
+        }
+
+    }
+
+}
@@ -0,0 +1,95 @@
+package ua.vladaxon.serializer.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import ua.vladaxon.serializer.LDesirializer;
+import ua.vladaxon.serializer.LSerializer;
+
+/**
+ * Сравниваемые способы сериализации.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public enum Format {
+
+    /** {@link LSerializer} и {@link LDesirializer} с настройками по умолчанию. */
+    L_SERIALIZER {
+        @Override
+        Codec newCodec() {
+            return new Codec() {
+
+                private final LSerializer serializer = new LSerializer();
+                private final LDesirializer deserializer = new LDesirializer();
+
+                @Override
+                byte[] write(Object value) throws Exception {
+                    return serializer.serializeToBytes(value);
+                }
+
+                @Override
+                Object read(byte[] bytes) throws Exception {
+                    return deserializer.deserialize(bytes, Object.class);
+                }
+
+            };
+        }
+    },
+    /** Стандартная сериализация через {@link ObjectOutputStream} и {@link ObjectInputStream}. */
+    JDK {
+        @Override
+        Codec newCodec() {
+            return new Codec() {
+
+                @Override
+                byte[] write(Object value) throws Exception {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                        out.writeObject(value);
+                    }
+                    return bytes.toByteArray();
+                }
+
+                @Override
+                Object read(byte[] bytes) throws Exception {
+                    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                        return in.readObject();
+                    }
+                }
+
+            };
+        }
+    };
+
+    /**
+     * Создает экземпляр для одного потока замера.
+     *
+     * @return средство записи и чтения
+     */
+    abstract Codec newCodec();
+
+    /**
+     * Запись и чтение объекта в одном из форматов. Экземпляр не потокобезопасен.
+     */
+    abstract static class Codec {
+
+        /**
+         * @param value объект
+         * @return байтовое представление
+         * @throws Exception при ошибке записи
+         */
+        abstract byte[] write(Object value) throws Exception;
+
+        /**
+         * @param bytes байтовое представление
+         * @return прочитанный объект
+         * @throws Exception при ошибке чтения
+         */
+        abstract Object read(byte[] bytes) throws Exception;
+
+    }
+
+}
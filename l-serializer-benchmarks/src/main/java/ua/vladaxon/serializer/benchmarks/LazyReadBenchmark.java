@@ -0,0 +1,124 @@
+package ua.vladaxon.serializer.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ua.vladaxon.serializer.LDesirializer;
+import ua.vladaxon.serializer.LSerializer;
+
+/**
+ * Частичное чтение: полная десериализация сообщения с большим содержимым против чтения одного
+ * поля заголовка и одной записи содержимого через {@link LDesirializer#deserializeLazy(byte[])}.
+ * Размер сообщения с кадрами содержимого и без них выводится по завершении замера.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LazyReadBenchmark {
+
+    /** Число записей в содержимом сообщения. */
+    private static final int RECORDS = 200000;
+
+    private LDesirializer deserializer;
+    private byte[] plainBytes;
+    private byte[] bytes;
+    private String recordPath;
+
+    @Setup
+    public void setUp() throws Exception {
+        Message message = new Message(RECORDS);
+        plainBytes = new LSerializer().serializeToBytes(message);
+        LSerializer skippable = new LSerializer();
+        skippable.setSkippableObjects(true);
+        bytes = skippable.serializeToBytes(message);
+        deserializer = new LDesirializer();
+        recordPath = "body.records." + RECORDS / 2 + ".name";
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%nsize %d B, with frames %d B%n", plainBytes.length, bytes.length);
+    }
+
+    @Benchmark
+    public Object full() throws Exception {
+        return deserializer.deserialize(bytes, Message.class);
+    }
+
+    @Benchmark
+    public Object headerField() throws Exception {
+        return deserializer.deserializeLazy(bytes).get("header.route");
+    }
+
+    @Benchmark
+    public Object oneRecord() throws Exception {
+        return deserializer.deserializeLazy(bytes).get(recordPath);
+    }
+
+    static class Message {
+
+        private Header header;
+        private Body body;
+
+        Message(int size) {
+            header = new Header();
+            body = new Body(size);
+        }
+
+    }
+
+    static class Header {
+
+        private String route = "orders.eu";
+        private int priority = 3;
+        private long stamp = 1700000000000L;
+
+    }
+
+    static class Body {
+
+        private List<Record> records;
+
+        Body(int size) {
+            records = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                records.add(new Record(i));
+            }
+        }
+
+    }
+
+    static class Record {
+
+        private int id;
+        private String name;
+        private double[] values;
+
+        Record(int id) {
+            this.id = id;
+            this.name = "record-" + id;
+            this.values = new double[] { id, id / 2.0 };
+        }
+
+    }
+
+}
@@ -0,0 +1,140 @@
+package ua.vladaxon.serializer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ua.vladaxon.serializer.LDesirializer;
+import ua.vladaxon.serializer.LSerializer;
+import ua.vladaxon.serializer.SerializationListener;
+import ua.vladaxon.serializer.SerializationMetrics;
+
+/**
+ * Стоимость учета для {@link SerializationListener}: запись и чтение без получателя, с пустым
+ * получателем и со сбором сведений {@link SerializationMetrics}. Плоский объект показывает
+ * затраты на вызов, граф с общими объектами - затраты на каждый объект и ссылку.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ListenerOverheadBenchmark {
+
+    /**
+     * Получатели сведений.
+     */
+    public enum Listener {
+
+        /** Без получателя. */
+        NONE {
+            @Override
+            SerializationListener create() {
+                return null;
+            }
+        },
+        /** Получатель, который ничего не делает. */
+        NO_OP {
+            @Override
+            SerializationListener create() {
+                return new NoOpListener();
+            }
+        },
+        /** Сбор сведений по классам. */
+        METRICS {
+            @Override
+            SerializationListener create() {
+                return new SerializationMetrics();
+            }
+        };
+
+        /**
+         * @return новый получатель или {@code null}
+         */
+        abstract SerializationListener create();
+
+    }
+
+    @Param({ "FLAT_DTO", "SHARED_REFERENCES" })
+    public Payload payload;
+
+    @Param
+    public Listener listener;
+
+    private LSerializer serializer;
+    private LDesirializer deserializer;
+    private Object value;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        SerializationListener instance = listener.create();
+        serializer = new LSerializer();
+        serializer.setListener(instance);
+        deserializer = new LDesirializer();
+        deserializer.setListener(instance);
+        value = payload.create();
+        bytes = serializer.serializeToBytes(value);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return serializer.serializeToBytes(value);
+    }
+
+    @Benchmark
+    public Object deserialize() throws Exception {
+        return deserializer.deserialize(bytes, Object.class);
+    }
+
+    private static class NoOpListener implements SerializationListener {
+
+        @Override
+        public void objectWritten(Class<?> type, long bytes, long nanos) {
+        }
+
+        @Override
+        public void referenceWritten(Class<?> type) {
+        }
+
+        @Override
+        public void classWritten(Class<?> type) {
+        }
+
+        @Override
+        public void serialized(Class<?> rootType, long bytes, long nanos) {
+        }
+
+        @Override
+        public void objectRead(Class<?> type, long bytes, long nanos) {
+        }
+
+        @Override
+        public void referenceRead(Class<?> type) {
+        }
+
+        @Override
+        public void classRead(Class<?> type) {
+        }
+
+        @Override
+        public void deserialized(Class<?> rootType, long bytes, long nanos) {
+        }
+
+    }
+
+}
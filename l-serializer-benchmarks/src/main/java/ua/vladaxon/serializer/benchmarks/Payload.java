@@ -0,0 +1,227 @@
+package ua.vladaxon.serializer.benchmarks;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Наборы данных замеров. Все классы данных реализуют {@link Serializable}, чтобы их можно было
+ * записать стандартной сериализацией.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public enum Payload {
+
+    /** Плоский объект из примитивных полей и нескольких строк. */
+    FLAT_DTO {
+        @Override
+        Object create() {
+            return new Order(1);
+        }
+    },
+    /** Связный список глубиной в тысячу узлов. */
+    LINKED_LIST {
+        @Override
+        Object create() {
+            Node head = null;
+            for (int i = LIST_LENGTH - 1; i >= 0; i--) {
+                head = new Node(i, head);
+            }
+            return head;
+        }
+    },
+    /** Большие массивы примитивов. */
+    PRIMITIVE_ARRAYS {
+        @Override
+        Object create() {
+            return new Series(ARRAY_LENGTH);
+        }
+    },
+    /** Граф с большим числом строк, в том числе не латинских. */
+    STRINGS {
+        @Override
+        Object create() {
+            List<Document> documents = new ArrayList<>();
+            for (int i = 0; i < COLLECTION_SIZE / 10; i++) {
+                documents.add(new Document(i));
+            }
+            return documents;
+        }
+    },
+    /** Отображения со строковыми и числовыми ключами. */
+    MAPS {
+        @Override
+        Object create() {
+            Catalog catalog = new Catalog();
+            for (int i = 0; i < COLLECTION_SIZE; i++) {
+                catalog.prices.put("SKU-" + i, (long) i * 100);
+                catalog.orders.put(i, new Order(i));
+            }
+            return catalog;
+        }
+    },
+    /** Граф с общими объектами и циклическими ссылками. */
+    SHARED_REFERENCES {
+        @Override
+        Object create() {
+            Instrument[] instruments = new Instrument[10];
+            for (int i = 0; i < instruments.length; i++) {
+                instruments[i] = new Instrument("INS" + i);
+            }
+            Book book = new Book();
+            for (int i = 0; i < COLLECTION_SIZE; i++) {
+                Trade trade = new Trade(i, instruments[i % instruments.length], book);
+                book.trades.add(trade);
+            }
+            return book;
+        }
+    };
+
+    /** Длина связного списка. */
+    static final int LIST_LENGTH = 1000;
+    /** Длина массивов примитивов. */
+    static final int ARRAY_LENGTH = 64 * 1024;
+    /** Число записей коллекций. */
+    static final int COLLECTION_SIZE = 1000;
+
+    /**
+     * @return новый экземпляр данных
+     */
+    abstract Object create();
+
+    static class Order implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private long id;
+        private int quantity;
+        private double price;
+        private boolean buy;
+        private char side;
+        private long timestamp;
+        private String account;
+        private String symbol;
+
+        Order(int id) {
+            this.id = id;
+            this.quantity = id % 500 + 1;
+            this.price = 100.25 + id;
+            this.buy = id % 2 == 0;
+            this.side = buy ? 'B' : 'S';
+            this.timestamp = 1700000000000L + id;
+            this.account = "ACC-" + id % 20;
+            this.symbol = "SYM" + id % 50;
+        }
+
+    }
+
+    static class Node implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private int value;
+        private Node next;
+
+        Node(int value, Node next) {
+            this.value = value;
+            this.next = next;
+        }
+
+    }
+
+    static class Series implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private double[] values;
+        private long[] times;
+        private byte[] flags;
+
+        Series(int length) {
+            values = new double[length];
+            times = new long[length];
+            flags = new byte[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = Math.sin(i);
+                times[i] = 1700000000000L + i * 1000L;
+                flags[i] = (byte) i;
+            }
+        }
+
+    }
+
+    static class Document implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String title;
+        private String author;
+        private List<String> tags = new ArrayList<>();
+        private String[] paragraphs;
+
+        Document(int id) {
+            title = "Документ номер " + id;
+            author = "author" + id % 7;
+            tags.add("tag" + id % 3);
+            tags.add("archive");
+            paragraphs = new String[10];
+            for (int i = 0; i < paragraphs.length; i++) {
+                paragraphs[i] = "Paragraph " + i + " of document " + id + ": lorem ipsum dolor sit amet";
+            }
+        }
+
+    }
+
+    static class Catalog implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Map<String, Long> prices = new HashMap<>();
+        private Map<Integer, Order> orders = new TreeMap<>();
+
+    }
+
+    static class Instrument implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String code;
+        private double tickSize = 0.01;
+
+        Instrument(String code) {
+            this.code = code;
+        }
+
+    }
+
+    static class Trade implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private long id;
+        private double price;
+        private Instrument instrument;
+        private Book book;
+
+        Trade(long id, Instrument instrument, Book book) {
+            this.id = id;
+            this.price = 10 + id * 0.5;
+            this.instrument = instrument;
+            this.book = book;
+        }
+
+    }
+
+    static class Book implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private List<Trade> trades = new ArrayList<>();
+
+    }
+
+}
@@ -0,0 +1,122 @@
+package ua.vladaxon.serializer.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ua.vladaxon.serializer.LDesirializer;
+import ua.vladaxon.serializer.LPushDecoder;
+import ua.vladaxon.serializer.LSerializer;
+
+/**
+ * Пошаговое чтение: последовательность сообщений, разбитая на части размером с сегмент TCP,
+ * читается через {@link LPushDecoder} и для сравнения накапливается целиком и читается
+ * из буфера. Наибольшее число байт, сохраненных декодировщиком между частями, выводится
+ * по завершении замера.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PushDecoderBenchmark {
+
+    /** Число сообщений в последовательности. */
+    private static final int MESSAGES = 2000;
+    /** Размер части. */
+    private static final int FRAGMENT_SIZE = 1460;
+
+    private LDesirializer deserializer;
+    private byte[] stream;
+    private List<Quote> received;
+    private int maxPending;
+
+    @Setup
+    public void setUp() throws Exception {
+        LSerializer serializer = new LSerializer();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < MESSAGES; i++) {
+            serializer.serialize(out, new Quote(i));
+        }
+        stream = out.toByteArray();
+        deserializer = new LDesirializer();
+        received = new ArrayList<>(MESSAGES);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%nstream %d B, pending up to %d B%n", stream.length, maxPending);
+    }
+
+    @Benchmark
+    public int push() throws Exception {
+        received.clear();
+        LPushDecoder<Quote> decoder = new LPushDecoder<>(Quote.class);
+        for (int offset = 0; offset < stream.length; offset += FRAGMENT_SIZE) {
+            decoder.feed(ByteBuffer.wrap(stream, offset, Math.min(FRAGMENT_SIZE, stream.length - offset)), received);
+            maxPending = Math.max(maxPending, decoder.getPendingBytes());
+        }
+        return check();
+    }
+
+    @Benchmark
+    public int buffered() throws Exception {
+        received.clear();
+        ByteBuffer buffered = ByteBuffer.allocate(stream.length);
+        for (int offset = 0; offset < stream.length; offset += FRAGMENT_SIZE) {
+            buffered.put(stream, offset, Math.min(FRAGMENT_SIZE, stream.length - offset));
+        }
+        buffered.flip();
+        while (buffered.hasRemaining()) {
+            received.add((Quote) deserializer.deserialize(buffered, Quote.class));
+        }
+        return check();
+    }
+
+    private int check() {
+        if (received.size() != MESSAGES || received.get(MESSAGES - 1).id != MESSAGES - 1) {
+            throw new IllegalStateException("Unexpected result");
+        }
+        return received.size();
+    }
+
+    static class Quote {
+
+        private int id;
+        private String symbol;
+        private double[] bids = new double[16];
+        private double[] asks = new double[16];
+        private List<String> venues = new ArrayList<>();
+
+        Quote(int id) {
+            this.id = id;
+            this.symbol = "SYM" + id % 50;
+            for (int i = 0; i < bids.length; i++) {
+                bids[i] = id - i * 0.01;
+                asks[i] = id + i * 0.01;
+            }
+            venues.add("XNAS");
+            venues.add("XNYS");
+        }
+
+    }
+
+}
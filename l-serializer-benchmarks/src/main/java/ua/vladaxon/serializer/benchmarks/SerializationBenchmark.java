@@ -0,0 +1,60 @@
+package ua.vladaxon.serializer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Пропускная способность записи и чтения каждого набора данных в каждом формате. Частота
+ * выделения памяти измеряется профилировщиком {@code gc}, размер представления выводит
+ * {@link BenchmarkMain}. Стек увеличен для рекурсивной стандартной сериализации связного списка.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xss64m")
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    @Param
+    public Payload payload;
+
+    @Param
+    public Format format;
+
+    private Format.Codec codec;
+    private Object value;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        codec = format.newCodec();
+        value = payload.create();
+        bytes = codec.write(value);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return codec.write(value);
+    }
+
+    @Benchmark
+    public Object deserialize() throws Exception {
+        return codec.read(bytes);
+    }
+
+}
@@ -0,0 +1,145 @@
+package ua.vladaxon.serializer.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ua.vladaxon.serializer.LDesirializer;
+import ua.vladaxon.serializer.LSerializer;
+
+/**
+ * Скорость обхода графа: неглубокий граф из небольших объектов, тот же граф без отслеживания
+ * ссылок и длинный связный список, запись и чтение через поток и через массив байт.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TraversalBenchmark {
+
+    /**
+     * Формы графа.
+     */
+    public enum Shape {
+
+        /** 200 пар объектов с отслеживанием ссылок. */
+        SHALLOW(true) {
+            @Override
+            Object create() {
+                Node[] nodes = new Node[200];
+                for (int i = 0; i < nodes.length; i++) {
+                    nodes[i] = new Node(i, new Node(-i, null));
+                }
+                return nodes;
+            }
+        },
+        /** Тот же граф без отслеживания ссылок. */
+        TREE(false) {
+            @Override
+            Object create() {
+                return SHALLOW.create();
+            }
+        },
+        /** Связный список из 100000 объектов. */
+        DEEP(true) {
+            @Override
+            Object create() {
+                Node head = null;
+                for (int i = 0; i < 100000; i++) {
+                    head = new Node(i, head);
+                }
+                return head;
+            }
+        };
+
+        /** Отслеживаются ли ссылки. */
+        final boolean trackReferences;
+
+        Shape(boolean trackReferences) {
+            this.trackReferences = trackReferences;
+        }
+
+        /**
+         * @return новый граф
+         */
+        abstract Object create();
+
+    }
+
+    @Param
+    public Shape shape;
+
+    private LSerializer serializer;
+    private LDesirializer deserializer;
+    private Object graph;
+    private byte[] bytes;
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setUp() throws Exception {
+        serializer = new LSerializer();
+        serializer.setReferenceTracking(shape.trackReferences);
+        deserializer = new LDesirializer();
+        graph = shape.create();
+        bytes = serializer.serializeToBytes(graph);
+        out = new ByteArrayOutputStream(bytes.length);
+    }
+
+    @Benchmark
+    public int serializeStream() throws Exception {
+        out.reset();
+        serializer.serialize(out, graph);
+        return out.size();
+    }
+
+    @Benchmark
+    public byte[] serializeBytes() throws Exception {
+        return serializer.serializeToBytes(graph);
+    }
+
+    @Benchmark
+    public Object deserializeStream() throws Exception {
+        return deserializer.deserialize(new ByteArrayInputStream(bytes), graph.getClass());
+    }
+
+    @Benchmark
+    public Object deserializeBytes() throws Exception {
+        return deserializer.deserialize(bytes, graph.getClass());
+    }
+
+    static class Node {
+
+        private int value;
+        private long stamp;
+        private double weight;
+        private boolean flag;
+        private Node next;
+
+        Node(int value, Node next) {
+            this.value = value;
+            this.stamp = value * 31L;
+            this.weight = value / 7.0;
+            this.flag = (value & 1) == 0;
+            this.next = next;
+        }
+
+    }
+
+}
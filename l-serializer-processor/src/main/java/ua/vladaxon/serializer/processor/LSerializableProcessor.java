@@ -0,0 +1,351 @@
+package ua.vladaxon.serializer.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Процессор аннотаций, создающий для каждого класса с {@code ua.vladaxon.serializer.LSerializable}
+ * средство доступа к полям - наследника {@code ua.vladaxon.serializer.GeneratedAccessor}
+ * с именем {@code <двоичное имя класса>_LAccessor} в пакете класса. Поля перечисляются
+ * в том же порядке, что и при сборе через рефлексию: сначала поля предков, в каждом классе
+ * в порядке объявления, статические поля исключаются. Примитивные поля записываются
+ * и считываются прямым кодом сериями до ближайшего поля-ссылки.
+ * <p>
+ * Класс, который нельзя обслужить прямым кодом из его пакета, отмечается ошибкой компиляции.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+@SupportedAnnotationTypes(LSerializableProcessor.ANNOTATION)
+public class LSerializableProcessor extends AbstractProcessor {
+
+    /** Имя обрабатываемой аннотации. */
+    static final String ANNOTATION = "ua.vladaxon.serializer.LSerializable";
+    /** Пакет сериализатора. */
+    private static final String CORE_PACKAGE = "ua.vladaxon.serializer";
+    /** Окончание имени создаваемого класса, совпадает с {@code GeneratedAccessor.CLASS_SUFFIX}. */
+    private static final String CLASS_SUFFIX = "_LAccessor";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    error(element, "@LSerializable is only supported on classes");
+                    continue;
+                }
+                TypeElement type = (TypeElement) element;
+                List<VariableElement> fields = collectFields(type);
+                if (fields != null) {
+                    generate(type, fields);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет класс и собирает его поля в порядке записи.
+     *
+     * @param type отмеченный класс
+     * @return поля или {@code null}, если класс отмечен ошибкой
+     */
+    private List<VariableElement> collectFields(TypeElement type) {
+        boolean valid = true;
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(type, "@LSerializable class must not be abstract");
+            valid = false;
+        }
+        if (!isAccessible(type)) {
+            error(type, "@LSerializable class must not be private or nested in a private class");
+            valid = false;
+        }
+        List<TypeElement> hierarchy = new ArrayList<TypeElement>();
+        for (TypeElement clazz = type; clazz != null; clazz = superclass(clazz)) {
+            if (clazz.getQualifiedName().contentEquals("java.lang.Object")) {
+                break;
+            }
+            if (isInner(clazz)) {
+                error(type, "Inner class " + clazz.getQualifiedName() + " has a hidden outer instance field"
+                        + ", make it static");
+                valid = false;
+            }
+            hierarchy.add(clazz);
+        }
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        List<VariableElement> result = new ArrayList<VariableElement>();
+        for (int i = hierarchy.size() - 1; i >= 0; i--) {
+            TypeElement owner = hierarchy.get(i);
+            for (VariableElement field : ElementFilter.fieldsIn(owner.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC)) {
+                    continue;
+                }
+                Element location = owner == type ? field : type;
+                String name = owner.getQualifiedName() + "." + field.getSimpleName();
+                if (modifiers.contains(Modifier.PRIVATE)) {
+                    error(location, "Field " + name + " must not be private");
+                    valid = false;
+                }
+                if (modifiers.contains(Modifier.FINAL)) {
+                    error(location, "Field " + name + " must not be final");
+                    valid = false;
+                }
+                if (owner != type && !processingEnv.getElementUtils().getPackageOf(owner).equals(pkg)) {
+                    error(location, "Field " + name + " must be declared in package " + pkg.getQualifiedName());
+                    valid = false;
+                }
+                if (owner != type && !isAccessible(owner)) {
+                    error(location, "Field " + name + " is declared in a private class");
+                    valid = false;
+                }
+                result.add(field);
+            }
+        }
+        return valid ? result : null;
+    }
+
+    /**
+     * Создает исходный код средства доступа к полям класса.
+     *
+     * @param type отмеченный класс
+     * @param fields поля в порядке записи
+     */
+    private void generate(TypeElement type, List<VariableElement> fields) {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+                + CLASS_SUFFIX;
+        String typeName = type.getQualifiedName().toString();
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(
+                    packageName.isEmpty() ? simpleName : packageName + "." + simpleName, type);
+            try (PrintWriter out = new PrintWriter(file.openWriter())) {
+                if (!packageName.isEmpty()) {
+                    out.println("package " + packageName + ";");
+                    out.println();
+                }
+                out.println("/**");
+                out.println(" * Средство доступа к полям {@link " + typeName + "}, создано процессором аннотаций.");
+                out.println(" */");
+                out.println("@SuppressWarnings({ \"rawtypes\", \"unchecked\", \"fallthrough\" })");
+                out.println("public final class " + simpleName + " extends " + CORE_PACKAGE + ".GeneratedAccessor<"
+                        + typeName + "> {");
+                out.println();
+                writeConstructor(out, simpleName, fields);
+                out.println();
+                writeFieldRuns(out, type, fields, true);
+                out.println();
+                writeFieldRuns(out, type, fields, false);
+                out.println();
+                writeReferences(out, type, fields, true);
+                out.println();
+                writeReferences(out, type, fields, false);
+                out.println();
+                out.println("}");
+            }
+        } catch (IOException e) {
+            error(type, "Cannot write accessor of " + typeName + ": " + e.getMessage());
+        }
+    }
+
+    private void writeConstructor(PrintWriter out, String simpleName, List<VariableElement> fields) {
+        StringBuilder names = new StringBuilder();
+        StringBuilder types = new StringBuilder();
+        for (VariableElement field : fields) {
+            if (names.length() > 0) {
+                names.append(", ");
+                types.append(", ");
+            }
+            names.append('"').append(field.getSimpleName()).append('"');
+            TypeMirror fieldType = field.asType();
+            types.append(fieldType.getKind().isPrimitive() ? fieldType.toString() : "Object").append(".class");
+        }
+        out.println("    public " + simpleName + "() {");
+        out.println("        super(new String[] { " + names + " },");
+        out.println("                new Class<?>[] { " + types + " });");
+        out.println("    }");
+    }
+
+    /**
+     * Создает метод записи или считывания серий примитивных полей: переключатель с проходом
+     * по меткам, в котором поле-ссылка завершает серию.
+     */
+    private void writeFieldRuns(PrintWriter out, TypeElement type, List<VariableElement> fields, boolean write) {
+        out.println("    @Override");
+        if (write) {
+            out.println("    public int writeFields(" + type.getQualifiedName() + " obj, int from, " + CORE_PACKAGE
+                    + ".Encoder out) throws java.io.IOException {");
+        } else {
+            out.println("    public int readFields(" + type.getQualifiedName() + " obj, int from, " + CORE_PACKAGE
+                    + ".Decoder in) throws java.io.IOException {");
+        }
+        out.println("        switch (from) {");
+        for (int i = 0; i < fields.size(); i++) {
+            VariableElement field = fields.get(i);
+            out.println("        case " + i + ":");
+            TypeKind kind = field.asType().getKind();
+            if (!kind.isPrimitive()) {
+                out.println("            return " + i + ";");
+            } else if (write) {
+                out.println("            out." + writeMethod(kind) + "(" + access(type, field) + ");");
+            } else {
+                out.println("            " + access(type, field) + " = in." + readMethod(kind) + "();");
+            }
+        }
+        out.println("        default:");
+        out.println("            return " + fields.size() + ";");
+        out.println("        }");
+        out.println("    }");
+    }
+
+    /**
+     * Создает метод получения или установки значения поля-ссылки по индексу.
+     */
+    private void writeReferences(PrintWriter out, TypeElement type, List<VariableElement> fields, boolean get) {
+        out.println("    @Override");
+        if (get) {
+            out.println("    public Object getObject(" + type.getQualifiedName() + " obj, int field) {");
+        } else {
+            out.println("    public void setObject(" + type.getQualifiedName() + " obj, int field, Object value) {");
+        }
+        out.println("        switch (field) {");
+        for (int i = 0; i < fields.size(); i++) {
+            VariableElement field = fields.get(i);
+            if (field.asType().getKind().isPrimitive()) {
+                continue;
+            }
+            out.println("        case " + i + ":");
+            if (get) {
+                out.println("            return " + access(type, field) + ";");
+            } else {
+                String fieldType = processingEnv.getTypeUtils().erasure(field.asType()).toString();
+                out.println("            " + access(type, field) + " = (" + fieldType + ") value;");
+                out.println("            return;");
+            }
+        }
+        out.println("        default:");
+        out.println("            throw new IllegalArgumentException(\"Not a reference field: \" + field);");
+        out.println("        }");
+        out.println("    }");
+    }
+
+    /**
+     * Выражение доступа к полю. Поля предков читаются через приведение к объявившему их классу,
+     * чтобы не попасть на одноименное поле потомка.
+     */
+    private static String access(TypeElement type, VariableElement field) {
+        TypeElement owner = (TypeElement) field.getEnclosingElement();
+        if (owner == type) {
+            return "obj." + field.getSimpleName();
+        }
+        return "((" + owner.getQualifiedName() + ") obj)." + field.getSimpleName();
+    }
+
+    private static String writeMethod(TypeKind kind) {
+        switch (kind) {
+        case BYTE:
+            return "writeByte";
+        case SHORT:
+            return "writeShort";
+        case INT:
+        case LONG:
+            return "writeNumber";
+        case FLOAT:
+            return "writeFloat";
+        case DOUBLE:
+            return "writeDouble";
+        case BOOLEAN:
+            return "writeBoolean";
+        case CHAR:
+            return "writeChar";
+        default:
+            throw new IllegalArgumentException("Not a primitive type: " + kind);
+        }
+    }
+
+    private static String readMethod(TypeKind kind) {
+        switch (kind) {
+        case BYTE:
+            return "readByte";
+        case SHORT:
+            return "readShort";
+        case INT:
+            return "readNumberInt";
+        case LONG:
+            return "readNumberLong";
+        case FLOAT:
+            return "readFloat";
+        case DOUBLE:
+            return "readDouble";
+        case BOOLEAN:
+            return "readBoolean";
+        case CHAR:
+            return "readChar";
+        default:
+            throw new IllegalArgumentException("Not a primitive type: " + kind);
+        }
+    }
+
+    private TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return (TypeElement) processingEnv.getTypeUtils().asElement(superclass);
+    }
+
+    /**
+     * @return доступен ли класс из своего пакета: ни он, ни объемлющие классы не закрыты
+     */
+    private static boolean isAccessible(TypeElement type) {
+        for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return есть ли у класса скрытое поле со ссылкой на объемлющий объект
+     */
+    private static boolean isInner(TypeElement type) {
+        NestingKind nesting = type.getNestingKind();
+        if (nesting == NestingKind.MEMBER) {
+            return !type.getModifiers().contains(Modifier.STATIC);
+        }
+        return nesting == NestingKind.LOCAL || nesting == NestingKind.ANONYMOUS;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+}
@@ -0,0 +1,24 @@
+package ua.vladaxon.serializer;
+
+/**
+ * Способ доступа к полям сериализуемых объектов.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public enum AccessorType {
+
+    /**
+     * Доступ через {@link java.lang.reflect.Field}. Работает для любых полей. Используется по умолчанию.
+     */
+    REFLECTION,
+    /**
+     * Доступ через типизированные {@link java.lang.invoke.MethodHandle}. Для каждого поля во время
+     * выполнения создается скрытый класс, в котором дескрипторы чтения и записи поля являются
+     * статическими константами, поэтому JIT встраивает обращение к полю, а примитивные значения
+     * передаются без упаковки. Требует Java 16. На более ранних платформах, а также для полей,
+     * дескрипторы которых получить не удается, автоматически используется {@link #REFLECTION}.
+     */
+    METHOD_HANDLE
+
+}
@@ -0,0 +1,61 @@
+package ua.vladaxon.serializer;
+
+import java.io.IOException;
+
+/**
+ * Алгоритм сжатия блоков для {@link FramedOutputStream} и {@link FramedInputStream}.
+ * Каждый блок сжимается независимо от остальных, поэтому блоки можно распаковывать параллельно.
+ * Реализация не должна хранить состояние между вызовами: ее методы могут вызываться
+ * одновременно из нескольких потоков.
+ * <p>
+ * Встроенные реализации - {@link DeflateCompressor} и {@link LzCompressor}.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public interface BlockCompressor {
+
+    /**
+     * Возвращает идентификатор алгоритма, который записывается в заголовок потока
+     * и по которому читающая сторона выбирает алгоритм. Идентификаторы до 16 зарезервированы
+     * за встроенными реализациями.
+     *
+     * @return идентификатор от 0 до 255
+     */
+    int getId();
+
+    /**
+     * Возвращает размер, достаточный для сжатого представления блока любого содержимого.
+     *
+     * @param length длина исходного блока
+     * @return наибольшая длина сжатого блока
+     */
+    int maxCompressedLength(int length);
+
+    /**
+     * Сжимает блок.
+     *
+     * @param src массив с исходным блоком
+     * @param srcOffset начало блока
+     * @param length длина блока
+     * @param dst массив для сжатого блока, вмещающий {@link #maxCompressedLength(int)} байт
+     * @param dstOffset начало сжатого блока
+     * @return длина сжатого блока
+     */
+    int compress(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset);
+
+    /**
+     * Распаковывает блок.
+     *
+     * @param src массив со сжатым блоком
+     * @param srcOffset начало сжатого блока
+     * @param length длина сжатого блока
+     * @param dst массив для исходного блока
+     * @param dstOffset начало исходного блока
+     * @param originalLength длина исходного блока
+     * @throws IOException если сжатый блок поврежден или распаковывается в блок другой длины
+     */
+    void decompress(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset, int originalLength)
+            throws IOException;
+
+}
@@ -0,0 +1,65 @@
+package ua.vladaxon.serializer;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Пул объектов с ограниченным числом свободных объектов каждого класса. Сверх емкости
+ * возвращенные объекты отбрасываются. Экземпляр не потокобезопасен.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public final class BoundedObjectPool implements ObjectPool {
+
+    /** Свободные объекты по классам. */
+    private final Map<Class<?>, ArrayDeque<Object>> idle = new IdentityHashMap<>();
+    /** Наибольшее число хранимых свободных объектов одного класса. */
+    private final int capacity;
+
+    /**
+     * @param capacity наибольшее число хранимых свободных объектов одного класса
+     */
+    public BoundedObjectPool(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    @Override
+    public Object take(Class<?> type) {
+        ArrayDeque<Object> objects = idle.get(type);
+        return objects != null ? objects.pollLast() : null;
+    }
+
+    @Override
+    public void release(Object obj) {
+        ArrayDeque<Object> objects = idle.get(obj.getClass());
+        if (objects == null) {
+            objects = new ArrayDeque<>();
+            idle.put(obj.getClass(), objects);
+        }
+        if (objects.size() < capacity) {
+            objects.addLast(obj);
+        }
+    }
+
+    /**
+     * @param type класс объектов
+     * @return число свободных объектов класса
+     */
+    public int size(Class<?> type) {
+        ArrayDeque<Object> objects = idle.get(type);
+        return objects != null ? objects.size() : 0;
+    }
+
+    /**
+     * Отбрасывает все свободные объекты.
+     */
+    public void clear() {
+        idle.clear();
+    }
+
+}
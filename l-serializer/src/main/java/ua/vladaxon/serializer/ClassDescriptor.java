@@ -0,0 +1,243 @@
+package ua.vladaxon.serializer;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import sun.reflect.ReflectionFactory;
+
+/**
+ * Описание сериализуемого класса. Содержит плоский список полей класса и всех его предков
+ * (поля предков идут первыми), из которого уже исключены статические поля.
+ * <p>
+ * Описания строятся один раз на класс для каждого способа доступа к полям и хранятся в общем
+ * потокобезопасном кэше, поэтому переживают отдельные вызовы сериализатора и десериализатора.
+ * Там же кэшируется конструктор для создания экземпляров при десериализации.
+ * <p>
+ * Для классов, отмеченных {@link LSerializable}, вместо рефлексии используется созданное
+ * при компиляции средство доступа {@link GeneratedAccessor}, если оно найдено по имени.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+final class ClassDescriptor {
+
+    /** Кэши описаний классов, по одному на каждый способ доступа к полям. */
+    private static final Cache[] CACHES;
+
+    static {
+        AccessorType[] types = AccessorType.values();
+        CACHES = new Cache[types.length];
+        for (int i = 0; i < types.length; i++) {
+            CACHES[i] = new Cache(types[i]);
+        }
+    }
+
+    /** Описываемый класс. */
+    private final Class<?> type;
+    /** Сериализуемые поля класса в порядке записи. */
+    private final FieldDescriptor[] fields;
+    /** Созданное при компиляции средство доступа к полям или {@code null}. */
+    private final GeneratedAccessor<Object> generated;
+    /** Наименьший размер записи полей, если int и long записаны четырьмя и восемью байтами. */
+    private final int minFieldBytes;
+    /** Наименьший размер записи полей, если int и long записаны varint-числами. */
+    private final int minVarintFieldBytes;
+    /** Конструктор для десериализации, создается при первом обращении. */
+    private volatile Constructor<?> constructor;
+
+    private ClassDescriptor(Class<?> type, AccessorType accessorType) {
+        this.type = type;
+        this.generated = findGenerated(type);
+        if (generated != null) {
+            this.fields = generatedFields(type, generated, accessorType);
+        } else {
+            this.fields = collectFields(type, accessorType);
+        }
+        int fixed = 0;
+        int varint = 0;
+        for (FieldDescriptor field : fields) {
+            int typeCode = field.getTypeCode();
+            if (typeCode == TypeCode.OBJECT) {
+                fixed++;
+                varint++;
+            } else {
+                fixed += TypeCode.sizeOf(typeCode);
+                varint += typeCode == TypeCode.INT || typeCode == TypeCode.LONG ? 1 : TypeCode.sizeOf(typeCode);
+            }
+        }
+        this.minFieldBytes = fixed;
+        this.minVarintFieldBytes = varint;
+    }
+
+    /**
+     * Возвращает описание класса из кэша, создавая его при первом обращении.
+     *
+     * @param type класс объекта
+     * @param accessorType способ доступа к полям
+     * @return описание класса
+     */
+    static ClassDescriptor forClass(Class<?> type, AccessorType accessorType) {
+        return CACHES[accessorType.ordinal()].get(type);
+    }
+
+    /**
+     * @return описываемый класс
+     */
+    Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return сериализуемые поля класса в порядке записи
+     */
+    FieldDescriptor[] getFields() {
+        return fields;
+    }
+
+    /**
+     * Возвращает наименьший размер записи полей объекта: ссылка занимает не меньше байта.
+     *
+     * @param varintNumbers записаны ли int и long varint-числами
+     * @return нижний предел размера полей в байтах
+     */
+    int minFieldBytes(boolean varintNumbers) {
+        return varintNumbers ? minVarintFieldBytes : minFieldBytes;
+    }
+
+    /**
+     * @return созданное при компиляции средство доступа к полям или {@code null}
+     */
+    GeneratedAccessor<Object> getGenerated() {
+        return generated;
+    }
+
+    /**
+     * Создает новый экземпляр класса без вызова его конструктора. Как и при стандартной
+     * сериализации, вызывается только конструктор без параметров родительского класса.
+     * Классы с созданным средством доступа создаются так же.
+     *
+     * @return новый экземпляр класса
+     * @throws Exception при ошибке создания экземпляра
+     */
+    Object newInstance() throws Exception {
+        Constructor<?> constr = constructor;
+        if (constr == null) {
+            ReflectionFactory rf = ReflectionFactory.getReflectionFactory();
+            Constructor<?> objDef = type.getSuperclass().getDeclaredConstructor();
+            constr = rf.newConstructorForSerialization(type, objDef);
+            constructor = constr;
+        }
+        return constr.newInstance();
+    }
+
+    /**
+     * Собирает нестатические поля класса и его предков, начиная с самого верхнего предка.
+     *
+     * @param type класс для сбора полей
+     * @param accessorType способ доступа к полям
+     * @return описания полей
+     */
+    private static FieldDescriptor[] collectFields(Class<?> type, AccessorType accessorType) {
+        List<Field> declared = declaredFields(type);
+        FieldDescriptor[] result = new FieldDescriptor[declared.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new FieldDescriptor(declared.get(i), accessorType);
+        }
+        return result;
+    }
+
+    /**
+     * Перечисляет нестатические поля класса и его предков в порядке записи.
+     *
+     * @param type класс для сбора полей
+     * @return поля, начиная с полей самого верхнего предка
+     */
+    static List<Field> declaredFields(Class<?> type) {
+        List<Class<?>> hierarchy = new ArrayList<Class<?>>();
+        for (Class<?> clazz = type; clazz != null && !clazz.equals(Object.class); clazz = clazz.getSuperclass()) {
+            hierarchy.add(clazz);
+        }
+        List<Field> result = new ArrayList<Field>();
+        for (int i = hierarchy.size() - 1; i >= 0; i--) {
+            Field[] declared = hierarchy.get(i).getDeclaredFields();
+            for (int j = 0; j < declared.length; j++) {
+                if (!Modifier.isStatic(declared[j].getModifiers())) {
+                    result.add(declared[j]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Описывает поля класса по созданному при компиляции средству доступа.
+     *
+     * @param type класс объектов
+     * @param generated средство доступа к полям
+     * @param accessorType способ доступа к отдельным примитивным полям
+     * @return описания полей
+     */
+    private static FieldDescriptor[] generatedFields(Class<?> type, GeneratedAccessor<Object> generated,
+            AccessorType accessorType) {
+        String[] names = generated.getNames();
+        Class<?>[] types = generated.getTypes();
+        FieldDescriptor[] result = new FieldDescriptor[names.length];
+        for (int i = 0; i < result.length; i++) {
+            FieldAccessor accessor = new GeneratedFieldAccessor(generated, type, i, accessorType);
+            result[i] = new FieldDescriptor(names[i], types[i], accessor);
+        }
+        return result;
+    }
+
+    /**
+     * Находит созданное при компиляции средство доступа к полям класса, отмеченного
+     * {@link LSerializable}. Класс средства ищется по имени загрузчиком класса объектов.
+     *
+     * @param type класс объектов
+     * @return средство доступа или {@code null}, если класс не отмечен или средство не создано
+     */
+    @SuppressWarnings("unchecked")
+    private static GeneratedAccessor<Object> findGenerated(Class<?> type) {
+        if (!type.isAnnotationPresent(LSerializable.class)) {
+            return null;
+        }
+        Class<?> accessorClass;
+        try {
+            accessorClass = Class.forName(type.getName() + GeneratedAccessor.CLASS_SUFFIX, true, type.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            // Процессор аннотаций не запускался, остаемся на рефлексии
+            return null;
+        }
+        if (!GeneratedAccessor.class.isAssignableFrom(accessorClass)) {
+            throw new IllegalStateException(accessorClass.getName() + " is not a generated accessor");
+        }
+        try {
+            return (GeneratedAccessor<Object>) accessorClass.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create generated accessor of " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Кэш описаний классов для одного способа доступа к полям.
+     */
+    private static final class Cache extends ClassValue<ClassDescriptor> {
+
+        /** Способ доступа к полям. */
+        private final AccessorType accessorType;
+
+        Cache(AccessorType accessorType) {
+            this.accessorType = accessorType;
+        }
+
+        @Override
+        protected ClassDescriptor computeValue(Class<?> type) {
+            return new ClassDescriptor(type, accessorType);
+        }
+
+    }
+
+}
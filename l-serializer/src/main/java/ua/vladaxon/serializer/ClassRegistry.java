@@ -0,0 +1,199 @@
+package ua.vladaxon.serializer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Реестр классов с постоянными идентификаторами. Класс из реестра записывается в поток
+ * идентификатором вместо имени, а при чтении берется из реестра без поиска по имени.
+ * Обе стороны должны зарегистрировать используемые классы под одинаковыми идентификаторами,
+ * набор остальных регистраций может различаться.
+ * <p>
+ * Классы вне реестра по умолчанию записываются по имени. В строгом режиме они отклоняются
+ * при записи, а при чтении имя отклоняется до загрузки класса. Исключение составляют массивы
+ * примитивов, которые всегда передаются по имени.
+ * <p>
+ * Для зарегистрированного класса может быть задано пользовательское представление {@link Codec},
+ * которое записывает содержимое объектов вместо обхода полей.
+ * <p>
+ * Реестр неизменяем и может использоваться одновременно несколькими сериализаторами.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public final class ClassRegistry {
+
+    /** Пустой реестр без строгого режима. */
+    static final ClassRegistry EMPTY = new Builder().build();
+
+    /** Идентификаторы зарегистрированных классов. */
+    private final Map<Class<?>, Integer> ids;
+    /** Зарегистрированные классы по идентификаторам. */
+    private final Map<Integer, Class<?>> types;
+    /** Пользовательские представления классов. */
+    private final Map<Class<?>, Codec<?>> codecs;
+    /** Отклонять ли классы вне реестра. */
+    private final boolean strict;
+
+    private ClassRegistry(Builder builder) {
+        this.ids = Collections.unmodifiableMap(new IdentityHashMap<>(builder.ids));
+        this.types = Collections.unmodifiableMap(new HashMap<>(builder.types));
+        this.codecs = Collections.unmodifiableMap(new IdentityHashMap<>(builder.codecs));
+        this.strict = builder.strict;
+    }
+
+    /**
+     * @return {@code true}, если классы вне реестра отклоняются
+     */
+    public boolean isStrict() {
+        return strict;
+    }
+
+    /**
+     * Возвращает идентификатор класса.
+     *
+     * @param type класс
+     * @return идентификатор или {@link IdentityIntMap#ABSENT}, если класс не зарегистрирован
+     */
+    int getId(Class<?> type) {
+        Integer id = ids.get(type);
+        return id != null ? id : IdentityIntMap.ABSENT;
+    }
+
+    /**
+     * Возвращает класс по идентификатору.
+     *
+     * @param id идентификатор из потока
+     * @return класс или {@code null}, если идентификатор не зарегистрирован
+     */
+    Class<?> getType(long id) {
+        return id > Integer.MAX_VALUE ? null : types.get((int) id);
+    }
+
+    /**
+     * Возвращает пользовательское представление класса.
+     *
+     * @param type класс
+     * @return представление или {@code null}, если оно не задано
+     */
+    Codec<?> getCodec(Class<?> type) {
+        return codecs.isEmpty() ? null : codecs.get(type);
+    }
+
+    /**
+     * Проверяет, может ли класс вне реестра передаваться по имени.
+     *
+     * @param type класс
+     * @return {@code true}, если реестр не строгий или класс является массивом примитивов
+     */
+    boolean allowsName(Class<?> type) {
+        if (!strict) {
+            return true;
+        }
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        return type.isPrimitive();
+    }
+
+    /**
+     * Проверяет до загрузки класса, может ли класс с указанным именем быть прочитан по имени.
+     *
+     * @param name имя класса из потока
+     * @return {@code true}, если реестр не строгий или имя является именем массива примитивов
+     */
+    boolean allowsName(String name) {
+        if (!strict) {
+            return true;
+        }
+        int dimensions = 0;
+        while (dimensions < name.length() && name.charAt(dimensions) == '[') {
+            dimensions++;
+        }
+        return dimensions > 0 && name.length() == dimensions + 1 && "ZBCSIJFD".indexOf(name.charAt(dimensions)) >= 0;
+    }
+
+    /**
+     * Настройка {@link ClassRegistry}.
+     */
+    public static final class Builder {
+
+        private final Map<Class<?>, Integer> ids = new IdentityHashMap<>();
+        private final Map<Integer, Class<?>> types = new HashMap<>();
+        private final Map<Class<?>, Codec<?>> codecs = new IdentityHashMap<>();
+        private boolean strict;
+
+        /**
+         * Регистрирует класс с постоянным идентификатором. Небольшие идентификаторы
+         * занимают в потоке меньше места.
+         *
+         * @param type класс; строки, примитивы и типы-значения {@link ValueCodec} записываются встроенными типами и не регистрируются
+         * @param id неотрицательный идентификатор, уникальный в реестре
+         * @return эта настройка
+         */
+        public Builder register(Class<?> type, int id) {
+            if (type == String.class || type.isPrimitive() || ValueCodec.forClass(type) != null) {
+                throw new IllegalArgumentException("Built-in type cannot be registered: " + type.getName());
+            }
+            if (id < 0) {
+                throw new IllegalArgumentException("Negative class id: " + id);
+            }
+            if (ids.containsKey(type)) {
+                throw new IllegalArgumentException("Class is already registered: " + type.getName());
+            }
+            Class<?> registered = types.get(id);
+            if (registered != null) {
+                throw new IllegalArgumentException("Class id " + id + " is already used by " + registered.getName());
+            }
+            ids.put(type, id);
+            types.put(id, type);
+            return this;
+        }
+
+        /**
+         * Регистрирует класс с постоянным идентификатором и пользовательским представлением.
+         *
+         * @param type класс объектов; массивы, перечисления и коллекции со встроенным
+         *            представлением не допускаются
+         * @param id неотрицательный идентификатор, уникальный в реестре
+         * @param codec представление объектов класса
+         * @return эта настройка
+         * @see #register(Class, int)
+         */
+        public <T> Builder register(Class<T> type, int id, Codec<T> codec) {
+            if (codec == null) {
+                throw new NullPointerException("codec");
+            }
+            if (type.isArray() || type.isEnum() || CollectionCodec.forClass(type) != null) {
+                throw new IllegalArgumentException("Codec cannot be set for " + type.getName());
+            }
+            register(type, id);
+            codecs.put(type, codec);
+            return this;
+        }
+
+        /**
+         * Включает строгий режим, в котором классы вне реестра отклоняются. По умолчанию выключен.
+         *
+         * @param strict {@code true} для строгого режима
+         * @return эта настройка
+         */
+        public Builder setStrict(boolean strict) {
+            this.strict = strict;
+            return this;
+        }
+
+        /**
+         * Создает реестр с текущими регистрациями.
+         *
+         * @return новый реестр
+         */
+        public ClassRegistry build() {
+            return new ClassRegistry(this);
+        }
+
+    }
+
+}
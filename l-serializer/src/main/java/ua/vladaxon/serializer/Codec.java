@@ -0,0 +1,42 @@
+package ua.vladaxon.serializer;
+
+import java.io.IOException;
+
+/**
+ * Пользовательское представление объектов класса. Объект записывается типом, как и при
+ * обходе полей, после которого вместо полей следуют значения, записанные представлением
+ * напрямую в кодировщик. Представление регистрируется в {@link ClassRegistry} и применяется
+ * только к объектам именно этого класса, без наследников.
+ * <p>
+ * Представление записывает только примитивные значения и строки: ссылки на другие объекты
+ * графа через него не передаются. Отслеживание ссылок на сами объекты класса производится
+ * как обычно. Обе стороны должны использовать совместимые представления. Признак представления
+ * записывается вместе с классом, и если представление зарегистрировано только на одной стороне,
+ * чтение отклоняется {@link java.io.InvalidClassException}.
+ * Методы представления могут вызываться одновременно из нескольких потоков.
+ *
+ * @param <T> тип объектов
+ * @author Vladislav Babushkin
+ *
+ */
+public interface Codec<T> {
+
+    /**
+     * Записывает содержимое объекта.
+     *
+     * @param value записываемый объект, не {@code null}
+     * @param out кодировщик
+     * @throws IOException при ошибке записи
+     */
+    void write(T value, Encoder out) throws IOException;
+
+    /**
+     * Считывает объект, записанный {@link #write(Object, Encoder)}.
+     *
+     * @param in декодировщик
+     * @return считанный объект
+     * @throws IOException при ошибке чтения
+     */
+    T read(Decoder in) throws IOException;
+
+}
@@ -0,0 +1,738 @@
+package ua.vladaxon.serializer;
+
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Встроенное представление стандартных коллекций. Вместо внутренних полей реализации
+ * коллекция записывается встроенным типом, числом записей и ссылками на элементы
+ * (для отображений - на ключи и значения поочередно). Для {@link LinkedHashMap} число записей
+ * сдвигается на бит влево, а младший бит задает порядок доступа.
+ * <p>
+ * При записи содержимое коллекции копируется в массив, который обходится как массив ссылок.
+ * При чтении элементы считываются в такой же массив, а коллекция, созданная заранее с емкостью
+ * под итоговый размер, заполняется после считывания всех элементов, когда ключи уже полностью
+ * восстановлены. {@link TreeMap}, компаратор которого задается при создании, создается сразу
+ * после считывания компаратора. Неизменяемые коллекции {@code List.of}, {@code Set.of}
+ * и {@code Map.of} создаются только после считывания элементов, поэтому ссылка на такую коллекцию
+ * из ее же элементов, как и ссылка на {@link TreeMap} из его компаратора, отклоняется при чтении.
+ * <p>
+ * Представление применяется только к перечисленным классам, но не к их наследникам,
+ * которые могут содержать дополнительные поля. Не сохраняется коэффициент заполнения хеш-таблиц.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+abstract class CollectionCodec {
+
+    /** Представления по классам коллекций. */
+    private static final Map<Class<?>, CollectionCodec> BY_CLASS = new IdentityHashMap<>();
+    /** Представления по встроенным типам, индекс равен типу. */
+    private static final CollectionCodec[] BY_TAG = new CollectionCodec[WireFormat.FIRST_CLASS_ID];
+
+    /** Представления по классам коллекций с кэшированием поиска. */
+    private static final ClassValue<CollectionCodec> CACHE = new ClassValue<CollectionCodec>() {
+        @Override
+        protected CollectionCodec computeValue(Class<?> type) {
+            return BY_CLASS.get(type);
+        }
+    };
+
+    static {
+        register(ArrayList.class, new ListCodec(WireFormat.TYPE_ARRAY_LIST) {
+            @Override
+            Collection<Object> newCollection(int size) {
+                return new ArrayList<>(size);
+            }
+        });
+        register(LinkedList.class, new ListCodec(WireFormat.TYPE_LINKED_LIST) {
+            @Override
+            Collection<Object> newCollection(int size) {
+                return new LinkedList<>();
+            }
+        });
+        register(ArrayDeque.class, new ListCodec(WireFormat.TYPE_ARRAY_DEQUE) {
+            @Override
+            Collection<Object> newCollection(int size) {
+                return new ArrayDeque<>(size);
+            }
+        });
+        register(HashSet.class, new ListCodec(WireFormat.TYPE_HASH_SET) {
+            @Override
+            Collection<Object> newCollection(int size) {
+                return new HashSet<>(hashCapacity(size));
+            }
+        });
+        register(HashMap.class, new MapCodec(WireFormat.TYPE_HASH_MAP) {
+            @Override
+            Map<Object, Object> newMap(int size) {
+                return new HashMap<>(hashCapacity(size));
+            }
+        });
+        register(LinkedHashMap.class, new LinkedHashMapCodec());
+        register(ConcurrentHashMap.class, new MapCodec(WireFormat.TYPE_CONCURRENT_HASH_MAP) {
+            @Override
+            Map<Object, Object> newMap(int size) {
+                return new ConcurrentHashMap<>(size);
+            }
+        });
+        register(TreeMap.class, new TreeMapCodec());
+        registerImmutable();
+    }
+
+    /** Встроенный тип коллекции. */
+    private final int tag;
+    /** Число элементов массива перед записями коллекции. */
+    private final int prefix;
+    /** Число элементов массива на одну запись коллекции. */
+    private final int entrySize;
+    /** Первый зарегистрированный класс коллекции. */
+    private Class<?> type;
+
+    private CollectionCodec(int tag, int prefix, int entrySize) {
+        this.tag = tag;
+        this.prefix = prefix;
+        this.entrySize = entrySize;
+    }
+
+    /**
+     * Возвращает представление для класса коллекции.
+     *
+     * @param type класс объекта
+     * @return представление или {@code null}, если класс не имеет встроенного представления
+     */
+    static CollectionCodec forClass(Class<?> type) {
+        return CACHE.get(type);
+    }
+
+    /**
+     * Возвращает представление для встроенного типа.
+     *
+     * @param tag встроенный тип из потока
+     * @return представление или {@code null}, если тип не является коллекцией
+     */
+    static CollectionCodec forTag(long tag) {
+        return tag >= 0 && tag < BY_TAG.length ? BY_TAG[(int) tag] : null;
+    }
+
+    /**
+     * @return встроенный тип коллекции
+     */
+    int getTag() {
+        return tag;
+    }
+
+    /**
+     * @return класс коллекции, для неизменяемых коллекций - один из классов реализации
+     */
+    Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return записываются ли элементы коллекции по одному, без начальных элементов
+     */
+    boolean isSequence() {
+        return prefix == 0 && entrySize == 1;
+    }
+
+    /**
+     * @return число начальных элементов массива перед записями коллекции
+     */
+    int getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Возвращает значение, записываемое в поток после типа коллекции: число записей коллекции
+     * и, для некоторых коллекций, ее параметры.
+     *
+     * @param collection коллекция
+     * @param elements массив элементов, полученный из {@link #toElements(Object)}
+     * @return значение для записи varint-числом
+     */
+    long countOf(Object collection, Object[] elements) {
+        return (elements.length - prefix) / entrySize;
+    }
+
+    /**
+     * Возвращает число записей коллекции по значению из потока, см. {@link #countOf(Object, Object[])}.
+     *
+     * @param count значение из потока
+     * @return число записей
+     */
+    int sizeOf(int count) {
+        return count;
+    }
+
+    /**
+     * Возвращает длину массива элементов по значению из потока.
+     *
+     * @param count значение из потока, см. {@link #countOf(Object, Object[])}
+     * @return длина массива
+     * @throws StreamCorruptedException если длина выходит за пределы int
+     */
+    int lengthOf(int count) throws StreamCorruptedException {
+        long length = prefix + (long) sizeOf(count) * entrySize;
+        if (length > Integer.MAX_VALUE) {
+            throw new StreamCorruptedException("Collection size out of range: " + sizeOf(count));
+        }
+        return (int) length;
+    }
+
+    /**
+     * Копирует содержимое коллекции в массив элементов для записи.
+     *
+     * @param collection коллекция
+     * @return массив элементов
+     */
+    abstract Object[] toElements(Object collection);
+
+    /**
+     * Создает пустую коллекцию с емкостью под итоговое число записей.
+     *
+     * @param count значение из потока, см. {@link #countOf(Object, Object[])}
+     * @return коллекция или {@code null}, если коллекция создается позже
+     */
+    abstract Object newInstance(int count);
+
+    /**
+     * Создает коллекцию, которая не создана в {@link #newInstance(int)}, после считывания
+     * начальных элементов массива.
+     *
+     * @param elements массив элементов с уже считанными начальными элементами
+     * @return коллекция или {@code null}, если она создается только в {@link #complete(Object, Object[])}
+     */
+    Object newInstance(Object[] elements) {
+        return null;
+    }
+
+    /**
+     * Заполняет коллекцию считанными элементами.
+     *
+     * @param instance коллекция из {@link #newInstance(int)} или {@link #newInstance(Object[])}
+     * @param elements считанные элементы
+     * @return итоговая коллекция
+     */
+    abstract Object complete(Object instance, Object[] elements);
+
+    /**
+     * Подготавливает существующую коллекцию к повторному заполнению при чтении в существующий
+     * объект: переносит ее прежние элементы в массив, чтобы переиспользовать их на тех же местах,
+     * и очищает коллекцию.
+     *
+     * @param existing коллекция из графа
+     * @param count значение из потока, см. {@link #countOf(Object, Object[])}
+     * @param elements массив для считываемых элементов
+     * @return очищенная коллекция для {@link #complete(Object, Object[])} или {@code null},
+     *         если коллекция другого класса или с другими параметрами или не заполняется повторно
+     */
+    Object recycle(Object existing, int count, Object[] elements) {
+        return null;
+    }
+
+    /**
+     * @return заполняются ли коллекции повторно на месте, см. {@link #update(Object, Object[])}
+     */
+    boolean isUpdatable() {
+        return false;
+    }
+
+    /**
+     * Заменяет содержимое существующей коллекции при применении разности, см. {@link DeltaBaseline}.
+     * Коллекция остается тем же объектом, поэтому ссылки на нее из графа не меняются.
+     *
+     * @param existing коллекция этого представления
+     * @param elements новые элементы
+     */
+    void update(Object existing, Object[] elements) {
+        throw new UnsupportedOperationException(getType().getName() + " cannot be updated in place");
+    }
+
+    /**
+     * Возвращает вид правки, которой разность передает изменения коллекции, см. {@link DeltaBaseline}.
+     * Правка по участкам или записям воспроизводит на стороне чтения тот же порядок элементов,
+     * что и у коллекции стороны записи.
+     *
+     * @param collection коллекция этого представления
+     * @return {@link WireFormat#DELTA_SPLICE} для списков, {@link WireFormat#DELTA_ENTRIES}
+     *         для множеств и отображений или {@link WireFormat#DELTA_WHOLE}, если коллекция
+     *         передается целиком
+     */
+    int deltaEditOf(Object collection) {
+        return WireFormat.DELTA_WHOLE;
+    }
+
+    /**
+     * @param collection коллекция этого представления
+     * @return перечисляются ли записи коллекции в порядке добавления, так что правка по записям
+     *         применима, только если прежние записи не сменили порядок, а новые добавлены в конец
+     */
+    boolean keepsInsertionOrder(Object collection) {
+        return false;
+    }
+
+    /**
+     * @return число элементов массива на одну запись коллекции
+     */
+    int getEntrySize() {
+        return entrySize;
+    }
+
+    /**
+     * Возвращает емкость хеш-таблицы, при которой указанное число записей помещается без увеличения.
+     *
+     * @param size число записей
+     * @return емкость
+     */
+    static int hashCapacity(int size) {
+        return size < 3 ? size + 1 : (int) Math.min(Integer.MAX_VALUE, size / 0.75d + 1);
+    }
+
+    /**
+     * Копирует пары отображения в массив, начиная с указанного индекса. Длина массива
+     * определяется снимком записей, поэтому одновременное изменение {@link ConcurrentHashMap}
+     * не нарушает согласованность длины и содержимого.
+     *
+     * @param map отображение
+     * @param prefix число элементов перед парами
+     * @return массив элементов
+     */
+    static Object[] mapElements(Map<?, ?> map, int prefix) {
+        Object[] entries = map.entrySet().toArray();
+        Object[] elements = new Object[prefix + entries.length * 2];
+        for (int i = 0; i < entries.length; i++) {
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) entries[i];
+            elements[prefix + 2 * i] = entry.getKey();
+            elements[prefix + 2 * i + 1] = entry.getValue();
+        }
+        return elements;
+    }
+
+    private static void register(Class<?> type, CollectionCodec codec) {
+        BY_CLASS.put(type, codec);
+        BY_TAG[codec.tag] = codec;
+        if (codec.type == null) {
+            codec.type = type;
+        }
+    }
+
+    /**
+     * Регистрирует представления неизменяемых коллекций, если они есть в текущей версии Java.
+     * Классы реализаций скрыты, поэтому определяются по результатам фабричных методов.
+     */
+    private static void registerImmutable() {
+        final Method listOf;
+        final Method setOf;
+        final Method mapOfEntries;
+        try {
+            listOf = List.class.getMethod("of", Object[].class);
+            setOf = Set.class.getMethod("of", Object[].class);
+            mapOfEntries = Map.class.getMethod("ofEntries", Map.Entry[].class);
+        } catch (NoSuchMethodException e) {
+            return;
+        }
+        CollectionCodec lists = new ImmutableCodec(WireFormat.TYPE_IMMUTABLE_LIST, 1) {
+            @Override
+            Object complete(Object instance, Object[] elements) {
+                if (containsNull(elements)) {
+                    return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(elements)));
+                }
+                return invoke(listOf, (Object) elements);
+            }
+        };
+        CollectionCodec sets = new ImmutableCodec(WireFormat.TYPE_IMMUTABLE_SET, 1) {
+            @Override
+            Object complete(Object instance, Object[] elements) {
+                return invoke(setOf, (Object) elements);
+            }
+        };
+        CollectionCodec maps = new ImmutableCodec(WireFormat.TYPE_IMMUTABLE_MAP, 2) {
+            @Override
+            Object complete(Object instance, Object[] elements) {
+                Map.Entry<?, ?>[] entries = new Map.Entry<?, ?>[elements.length / 2];
+                for (int i = 0; i < entries.length; i++) {
+                    entries[i] = new AbstractMap.SimpleImmutableEntry<>(elements[2 * i], elements[2 * i + 1]);
+                }
+                return invoke(mapOfEntries, (Object) entries);
+            }
+        };
+        register(invoke(listOf, (Object) new Object[0]).getClass(), lists);
+        register(invoke(listOf, (Object) new Object[] { 1 }).getClass(), lists);
+        register(invoke(listOf, (Object) new Object[] { 1, 2, 3 }).getClass(), lists);
+        register(invoke(setOf, (Object) new Object[] { 1 }).getClass(), sets);
+        register(invoke(setOf, (Object) new Object[] { 1, 2, 3 }).getClass(), sets);
+        register(invoke(mapOfEntries, (Object) new Map.Entry<?, ?>[] { new AbstractMap.SimpleImmutableEntry<>(1, 1) })
+                .getClass(), maps);
+        register(invoke(mapOfEntries, (Object) new Map.Entry<?, ?>[0]).getClass(), maps);
+    }
+
+    private static Object invoke(Method factory, Object argument) {
+        try {
+            return factory.invoke(null, argument);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create immutable collection", e);
+        }
+    }
+
+    private static boolean containsNull(Object[] elements) {
+        for (Object element : elements) {
+            if (element == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Представление коллекций, записываемых поэлементно.
+     */
+    private abstract static class ListCodec extends CollectionCodec {
+
+        ListCodec(int tag) {
+            super(tag, 0, 1);
+        }
+
+        @Override
+        Object[] toElements(Object collection) {
+            return ((Collection<?>) collection).toArray();
+        }
+
+        @Override
+        Object newInstance(int count) {
+            return newCollection(count);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object complete(Object instance, Object[] elements) {
+            Collection<Object> collection = (Collection<Object>) instance;
+            Collections.addAll(collection, elements);
+            return collection;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object recycle(Object existing, int count, Object[] elements) {
+            if (existing.getClass() != getType()) {
+                return null;
+            }
+            Collection<Object> collection = (Collection<Object>) existing;
+            int index = 0;
+            for (Object element : collection) {
+                if (index == elements.length) {
+                    break;
+                }
+                elements[index++] = element;
+            }
+            collection.clear();
+            return collection;
+        }
+
+        @Override
+        boolean isUpdatable() {
+            return true;
+        }
+
+        @Override
+        void update(Object existing, Object[] elements) {
+            ((Collection<?>) existing).clear();
+            complete(existing, elements);
+        }
+
+        /**
+         * {@link ArrayDeque} не поддерживает вставку в середину и передается целиком.
+         */
+        @Override
+        int deltaEditOf(Object collection) {
+            if (collection instanceof List) {
+                return WireFormat.DELTA_SPLICE;
+            }
+            return collection instanceof Set ? WireFormat.DELTA_ENTRIES : WireFormat.DELTA_WHOLE;
+        }
+
+        abstract Collection<Object> newCollection(int size);
+
+    }
+
+    /**
+     * Представление отображений, записываемых парами ключ-значение.
+     */
+    private abstract static class MapCodec extends CollectionCodec {
+
+        MapCodec(int tag) {
+            super(tag, 0, 2);
+        }
+
+        @Override
+        Object[] toElements(Object collection) {
+            return mapElements((Map<?, ?>) collection, 0);
+        }
+
+        @Override
+        Object newInstance(int count) {
+            return newMap(sizeOf(count));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object complete(Object instance, Object[] elements) {
+            Map<Object, Object> map = (Map<Object, Object>) instance;
+            for (int i = 0; i < elements.length; i += 2) {
+                map.put(elements[i], elements[i + 1]);
+            }
+            return map;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object recycle(Object existing, int count, Object[] elements) {
+            if (existing.getClass() != getType()) {
+                return null;
+            }
+            Map<Object, Object> map = (Map<Object, Object>) existing;
+            int index = 0;
+            for (Map.Entry<Object, Object> entry : map.entrySet()) {
+                if (index == elements.length) {
+                    break;
+                }
+                elements[index++] = entry.getKey();
+                elements[index++] = entry.getValue();
+            }
+            map.clear();
+            return map;
+        }
+
+        @Override
+        boolean isUpdatable() {
+            return true;
+        }
+
+        @Override
+        void update(Object existing, Object[] elements) {
+            ((Map<?, ?>) existing).clear();
+            complete(existing, elements);
+        }
+
+        @Override
+        int deltaEditOf(Object collection) {
+            return WireFormat.DELTA_ENTRIES;
+        }
+
+        abstract Map<Object, Object> newMap(int size);
+
+    }
+
+    /**
+     * Представление {@link LinkedHashMap}: к числу записей добавляется порядок доступа, который
+     * задается только при создании. Он читается из закрытого поля отображения, а если поле
+     * недоступно, например, когда пакет {@code java.util} не открыт для рефлексии, определяется
+     * по копии отображения, см. {@link #probeAccessOrder(LinkedHashMap)}, что стоит одного
+     * дополнительного прохода по записям.
+     */
+    private static final class LinkedHashMapCodec extends MapCodec {
+
+        /** Закрытое поле порядка доступа или {@code null}, если оно недоступно. */
+        private static final Field ACCESS_ORDER = accessOrderField();
+
+        LinkedHashMapCodec() {
+            super(WireFormat.TYPE_LINKED_HASH_MAP);
+        }
+
+        @Override
+        long countOf(Object collection, Object[] elements) {
+            return super.countOf(collection, elements) << 1 | (accessOrder(collection) ? 1 : 0);
+        }
+
+        @Override
+        int sizeOf(int count) {
+            return count >>> 1;
+        }
+
+        @Override
+        Map<Object, Object> newMap(int size) {
+            return new LinkedHashMap<>(hashCapacity(size));
+        }
+
+        @Override
+        Object newInstance(int count) {
+            return new LinkedHashMap<>(hashCapacity(sizeOf(count)), 0.75f, (count & 1) != 0);
+        }
+
+        @Override
+        Object recycle(Object existing, int count, Object[] elements) {
+            if (existing.getClass() != LinkedHashMap.class || accessOrder(existing) != ((count & 1) != 0)) {
+                return null;
+            }
+            return super.recycle(existing, count, elements);
+        }
+
+        /**
+         * Порядок доступа меняется при чтении записей, которое в разность не попадает, поэтому
+         * такое отображение передается целиком.
+         */
+        @Override
+        int deltaEditOf(Object collection) {
+            return accessOrder(collection) ? WireFormat.DELTA_WHOLE : WireFormat.DELTA_ENTRIES;
+        }
+
+        @Override
+        boolean keepsInsertionOrder(Object collection) {
+            return true;
+        }
+
+        private static Field accessOrderField() {
+            try {
+                Field field = LinkedHashMap.class.getDeclaredField("accessOrder");
+                field.setAccessible(true);
+                return field;
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // Поле скрыто или закрыто модулем java.base, порядок определяется по копии
+                return null;
+            }
+        }
+
+        private static boolean accessOrder(Object map) {
+            if (ACCESS_ORDER != null) {
+                try {
+                    return ACCESS_ORDER.getBoolean(map);
+                } catch (IllegalAccessException e) {
+                    // Не ожидается для открытого поля, определяем порядок по копии
+                }
+            }
+            return probeAccessOrder((LinkedHashMap<?, ?>) map);
+        }
+
+        /**
+         * Определяет порядок доступа по поверхностной копии отображения, которая сохраняет его
+         * режим: в очищенную копию добавляются два ключа, и после чтения первого из них
+         * при порядке доступа первым при обходе оказывается второй. Само отображение не меняется.
+         *
+         * @param map отображение
+         * @return задан ли порядок доступа
+         */
+        @SuppressWarnings("unchecked")
+        private static boolean probeAccessOrder(LinkedHashMap<?, ?> map) {
+            LinkedHashMap<Object, Object> copy = (LinkedHashMap<Object, Object>) map.clone();
+            copy.clear();
+            Object first = new Object();
+            Object second = new Object();
+            copy.put(first, first);
+            copy.put(second, second);
+            copy.get(first);
+            return copy.keySet().iterator().next() == second;
+        }
+
+    }
+
+    /**
+     * Представление {@link TreeMap}: компаратор записывается первым элементом, до пар. Компаратор
+     * задается только при создании, поэтому отображение создается после считывания компаратора.
+     */
+    private static final class TreeMapCodec extends CollectionCodec {
+
+        TreeMapCodec() {
+            super(WireFormat.TYPE_TREE_MAP, 1, 2);
+        }
+
+        @Override
+        Object[] toElements(Object collection) {
+            TreeMap<?, ?> map = (TreeMap<?, ?>) collection;
+            Object[] elements = mapElements(map, 1);
+            elements[0] = map.comparator();
+            return elements;
+        }
+
+        @Override
+        Object newInstance(int count) {
+            return null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object newInstance(Object[] elements) {
+            return new TreeMap<>((Comparator<Object>) elements[0]);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object complete(Object instance, Object[] elements) {
+            TreeMap<Object, Object> map = (TreeMap<Object, Object>) instance;
+            if (map == null) {
+                map = (TreeMap<Object, Object>) newInstance(elements);
+            }
+            for (int i = 1; i < elements.length; i += 2) {
+                map.put(elements[i], elements[i + 1]);
+            }
+            return map;
+        }
+
+        @Override
+        boolean isUpdatable() {
+            return true;
+        }
+
+        /**
+         * Компаратор задается при создании и у того же отображения не меняется, поэтому
+         * заменяются только пары.
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        void update(Object existing, Object[] elements) {
+            TreeMap<Object, Object> map = (TreeMap<Object, Object>) existing;
+            map.clear();
+            for (int i = 1; i < elements.length; i += 2) {
+                map.put(elements[i], elements[i + 1]);
+            }
+        }
+
+        @Override
+        int deltaEditOf(Object collection) {
+            return WireFormat.DELTA_ENTRIES;
+        }
+
+    }
+
+    /**
+     * Представление неизменяемых коллекций, которые создаются после считывания элементов.
+     */
+    private abstract static class ImmutableCodec extends CollectionCodec {
+
+        ImmutableCodec(int tag, int entrySize) {
+            super(tag, 0, entrySize);
+        }
+
+        @Override
+        Object[] toElements(Object collection) {
+            if (collection instanceof Map) {
+                return mapElements((Map<?, ?>) collection, 0);
+            }
+            return ((Collection<?>) collection).toArray();
+        }
+
+        @Override
+        Object newInstance(int count) {
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,874 @@
+package ua.vladaxon.serializer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Буферизованное чтение примитивных значений в формате потока. Значения считываются напрямую
+ * из массива байт, который по исчерпании пополняется из источника:
+ * <ul>
+ * <li>массив байт и {@link ByteBuffer} с доступным массивом читаются на месте, без копирования;</li>
+ * <li>прямой {@link ByteBuffer} копируется в собственный массив блоками;</li>
+ * <li>{@link InputStream} читается в собственный массив блоками, если поддерживает
+ * {@link InputStream#mark(int)}, иначе - ровно столько байт, сколько требуется, но не меньше
+ * переданного в {@link #prefetch(int)} нижнего предела размера читаемого содержимого.</li>
+ * </ul>
+ * После чтения {@link #finish()} возвращает источнику байты, считанные в массив сверх
+ * прочитанного значения, поэтому из одного потока или буфера можно читать несколько значений подряд.
+ * Многобайтные значения читаются в порядке big-endian, как в {@link java.io.DataInputStream}.
+ * Массив переиспользуется между вызовами.
+ * <p>
+ * В режиме пошагового чтения, см. {@link #beginPush()}, данные поступают частями через
+ * {@link #feed(ByteBuffer)}. Часть с доступным массивом читается на месте. Когда данные части
+ * заканчиваются, чтение прерывается исключением {@link #underflow()}, а байты после последней
+ * контрольной точки {@link #checkpoint()} переносятся в собственный массив и считываются
+ * повторно вместе со следующей частью.
+ * <p>
+ * Открытые методы чтения значений доступны пользовательским представлениям {@link Codec}.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public final class Decoder {
+
+    /** Размер собственного массива по умолчанию. */
+    private static final int DEFAULT_SIZE = TypeCode.BLOCK_SIZE;
+    /** Размер собственного массива, сверх которого он не сохраняется между вызовами. */
+    private static final int MAX_RETAINED_SIZE = 1 << 20;
+
+    /** Собственный массив декодировщика. */
+    private byte[] ownBuffer = new byte[DEFAULT_SIZE];
+    /** Массив, из которого производится чтение: собственный или массив источника. */
+    private byte[] buffer = ownBuffer;
+    /** Позиция чтения в массиве. */
+    private int position;
+    /** Граница считанных данных в массиве. */
+    private int limit;
+    /** Поток-источник. */
+    private InputStream stream;
+    /** Читается ли поток блоками с последующим возвратом лишних байт через {@link InputStream#reset()}. */
+    private boolean readAhead;
+    /** Принадлежит ли поток декодировщику целиком, без возврата лишних байт. */
+    private boolean exclusive;
+    /** Число байт, считанных из потока после последней отметки. */
+    private int markedBytes;
+    /** Буфер-источник. */
+    private ByteBuffer source;
+    /** Читается ли массив источника напрямую. */
+    private boolean sourceArray;
+    /** Представление массива для блочного чтения массивов примитивов, создается при первой необходимости. */
+    private ByteBuffer view;
+    /** Считывать ли int и long в {@link #readNumberInt()} и {@link #readNumberLong()} varint-числами. */
+    private boolean varintNumbers;
+    /** Буфер для декодирования строк, увеличивается по мере необходимости. */
+    private byte[] stringBuffer = new byte[256];
+    /** Представление декодировщика в виде потока. */
+    private final InputStream inputView = new InputView();
+    /** Поступают ли данные частями. */
+    private boolean push;
+    /** Позиция контрольной точки, байты после которой сохраняются до конца шага чтения. */
+    private int mark;
+    /** Исключение нехватки данных при пошаговом чтении, создается один раз. */
+    private EOFException underflow;
+    /** Число байт, считанных с начала чтения, за вычетом текущей позиции в массиве. */
+    private long consumed;
+
+    Decoder() {
+    }
+
+    /**
+     * Начинает чтение из части массива.
+     *
+     * @param bytes массив байт
+     * @param offset начало данных
+     * @param length длина данных
+     */
+    void begin(byte[] bytes, int offset, int length) {
+        reset();
+        sourceArray = true;
+        setBuffer(bytes);
+        position = offset;
+        limit = offset + length;
+        consumed = -offset;
+    }
+
+    /**
+     * Начинает чтение из потока.
+     *
+     * @param in поток-источник
+     */
+    void begin(InputStream in) {
+        reset();
+        stream = in;
+        readAhead = in.markSupported();
+    }
+
+    /**
+     * Начинает чтение из потока, который считывается до конца только этим декодировщиком.
+     * Поток читается блоками, а байты, считанные сверх прочитанных данных, в него не возвращаются.
+     *
+     * @param in поток-источник
+     */
+    void beginExclusive(InputStream in) {
+        reset();
+        stream = in;
+        readAhead = true;
+        exclusive = true;
+    }
+
+    /**
+     * Начинает чтение из буфера, начиная с его текущей позиции.
+     *
+     * @param in буфер-источник
+     */
+    void begin(ByteBuffer in) {
+        reset();
+        source = in;
+        if (in.hasArray()) {
+            sourceArray = true;
+            setBuffer(in.array());
+            position = in.arrayOffset() + in.position();
+            limit = in.arrayOffset() + in.limit();
+            consumed = -position;
+        }
+    }
+
+    /**
+     * Начинает пошаговое чтение данных, поступающих частями.
+     */
+    void beginPush() {
+        reset();
+        push = true;
+        if (underflow == null) {
+            underflow = new EOFException("Input fragment is exhausted");
+        }
+    }
+
+    /**
+     * Передает очередную часть данных при пошаговом чтении. Если от предыдущей части не осталось
+     * байт, часть с доступным массивом читается на месте, иначе ее байты дописываются к
+     * оставшимся по мере чтения. Часть используется до вызова {@link #suspend()}.
+     *
+     * @param fragment часть данных, читаемая с текущей позиции
+     */
+    void feed(ByteBuffer fragment) {
+        source = fragment;
+        if (limit == position && fragment.hasArray()) {
+            sourceArray = true;
+            setBuffer(fragment.array());
+            position = fragment.arrayOffset() + fragment.position();
+            limit = fragment.arrayOffset() + fragment.limit();
+        } else {
+            sourceArray = false;
+        }
+        mark = position;
+    }
+
+    /**
+     * Отмечает начало шага пошагового чтения. Если оставшиеся от предыдущей части байты
+     * прочитаны, чтение переходит на массив текущей части.
+     */
+    void checkpoint() {
+        if (position == limit && source != null && !sourceArray && source.hasArray()) {
+            sourceArray = true;
+            setBuffer(source.array());
+            position = source.arrayOffset() + source.position();
+            limit = source.arrayOffset() + source.limit();
+        }
+        mark = position;
+    }
+
+    /**
+     * Прерывает шаг пошагового чтения: возвращает позицию к контрольной точке и переносит байты
+     * после нее, включая непрочитанный остаток части, в собственный массив. Часть после этого
+     * считается прочитанной целиком.
+     */
+    void suspend() {
+        int carried = limit - mark;
+        int rest = source != null && !sourceArray ? source.remaining() : 0;
+        int total = carried + rest;
+        byte[] target = ownBuffer;
+        if (total > target.length) {
+            target = new byte[Math.max(total, target.length * 2)];
+        }
+        System.arraycopy(buffer, mark, target, 0, carried);
+        if (source != null) {
+            source.get(target, carried, rest);
+            source.position(source.limit());
+        }
+        ownBuffer = target;
+        setBuffer(target);
+        position = 0;
+        limit = total;
+        mark = 0;
+        source = null;
+        sourceArray = false;
+    }
+
+    /**
+     * @return число байт, перенесенных из предыдущих частей и ожидающих продолжения данных
+     */
+    int pending() {
+        return limit - position;
+    }
+
+    /**
+     * При пошаговом чтении проверяет, что в данных части достаточно байт для значения известной
+     * длины, чтобы не создавать и не заполнять заново значение, чтение которого будет прервано.
+     *
+     * @param count число байт значения
+     * @throws EOFException если данных части не хватает
+     */
+    void expect(long count) throws EOFException {
+        if (push && limit - position + (source != null && !sourceArray ? source.remaining() : 0) < count) {
+            throw underflow;
+        }
+    }
+
+    /**
+     * @return исключение, которым прерывается чтение при нехватке данных в режиме пошагового чтения
+     */
+    EOFException underflow() {
+        return underflow;
+    }
+
+    /**
+     * Возвращает источнику байты, считанные сверх прочитанных данных.
+     *
+     * @throws IOException при ошибке возврата байт в поток
+     */
+    void finish() throws IOException {
+        int unread = limit - position;
+        if (source != null) {
+            if (sourceArray) {
+                source.position(position - source.arrayOffset());
+            } else {
+                source.position(source.position() - unread);
+            }
+        } else if (stream != null && unread > 0 && !exclusive) {
+            stream.reset();
+            skipFully(stream, markedBytes - unread);
+        }
+        position = limit;
+    }
+
+    /**
+     * Отсоединяет источник, чтобы не удерживать ссылку на него.
+     */
+    void detach() {
+        reset();
+    }
+
+    /**
+     * @param varintNumbers считывать ли int и long varint-числами
+     */
+    void setVarintNumbers(boolean varintNumbers) {
+        this.varintNumbers = varintNumbers;
+    }
+
+    /**
+     * @return считываются ли int и long varint-числами
+     */
+    boolean isVarintNumbers() {
+        return varintNumbers;
+    }
+
+    /**
+     * Заранее считывает одним обращением к потоку без поддержки {@link InputStream#mark(int)}
+     * байты, которые заведомо принадлежат читаемому значению, чтобы не обращаться к потоку
+     * за каждым полем. Для остальных источников ничего не делает: они и так читаются блоками.
+     * Нехватка данных обнаруживается при последующем чтении.
+     *
+     * @param count нижний предел числа байт, оставшихся до конца читаемого значения
+     * @throws IOException при ошибке чтения
+     */
+    void prefetch(int count) throws IOException {
+        if (stream != null && !readAhead && limit - position < count) {
+            fill(Math.min(count, buffer.length));
+        }
+    }
+
+    /**
+     * Возвращает байт по смещению от текущей позиции без его считывания.
+     *
+     * @param offset смещение от текущей позиции
+     * @return байт без знака или -1, если данные закончились раньше
+     * @throws IOException при ошибке чтения
+     */
+    int peek(int offset) throws IOException {
+        if (limit - position <= offset && !fill(offset + 1)) {
+            return -1;
+        }
+        return buffer[position + offset] & 0xFF;
+    }
+
+    /**
+     * Возвращает представление декодировщика в виде потока. Байты из потока считываются
+     * с текущей позиции декодировщика.
+     *
+     * @return поток оставшихся данных
+     */
+    InputStream asInputStream() {
+        return inputView;
+    }
+
+    /**
+     * Возвращает позицию чтения при чтении из массива.
+     *
+     * @return смещение следующего байта в массиве
+     */
+    int position() {
+        return position;
+    }
+
+    /**
+     * Возвращает число байт, считанных с начала чтения. При пошаговом чтении не определено.
+     *
+     * @return число считанных байт
+     */
+    long count() {
+        return consumed + position;
+    }
+
+    /**
+     * Пропускает указанное число байт.
+     *
+     * @param count число байт
+     * @throws IOException при ошибке чтения или преждевременном окончании данных
+     */
+    void skipBytes(long count) throws IOException {
+        while (count > 0) {
+            if (position == limit) {
+                require(1);
+            }
+            int skipped = (int) Math.min(count, limit - position);
+            position += skipped;
+            count -= skipped;
+        }
+    }
+
+    /**
+     * Считывает байт.
+     *
+     * @return байт
+     * @throws IOException при ошибке чтения или преждевременном окончании данных
+     */
+    public byte readByte() throws IOException {
+        if (position == limit) {
+            require(1);
+        }
+        return buffer[position++];
+    }
+
+    /**
+     * Считывает байт без знака.
+     *
+     * @return байт без знака
+     * @throws IOException при ошибке чтения или преждевременном окончании данных
+     */
+    public int readUnsignedByte() throws IOException {
+        return readByte() & 0xFF;
+    }
+
+    /**
+     * Считывает логическое значение из одного байта.
+     *
+     * @return значение
+     * @throws IOException при ошибке чтения или преждевременном окончании данных
+     */
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    /**
+     * Считывает short из двух байт.
+     *
+     * @return значение
+     * @throws IOException при ошибке чтения или преждевременном окончании данных
+     */
+    public short readShort() throws IOException {
+        if (limit - position < 2) {
+            require(2);
+        }
+        byte[] b = buffer;
+        int p = position;
+        position = p + 2;
+        return (short) (b[p] << 8 | b[p + 1] & 0xFF);
+    }
+
+    /**
+     * Считывает символ из двух байт.
+     *
+     * @return символ
+     * @throws IOException при ошибке чтения или преждевременном окончании данных
+     */
+    public char readChar() throws IOException {
+        return (char) readShort();
+    }
+
+    /**
+     * Считывает int из четырех байт.
+     *
+     * @return значение
+     * @throws IOException при ошибке чтения или преждевременном окончании данных
+     */
+    public int readInt() throws IOException {
+        if (limit - position < 4) {
+            require(4);
+        }
+        byte[] b = buffer;
+        int p = position;
+        position = p + 4;
+        return b[p] << 24 | (b[p + 1] & 0xFF) << 16 | (b[p + 2] & 0xFF) << 8 | b[p + 3] & 0xFF;
+    }
+
+    /**
+     * Считывает long из восьми байт.
+     *
+     * @return значение
+     * @throws IOException при ошибке чтения или преждевременном окончании данных
+     */
+    public long readLong() throws IOException {
+        if (limit - position < 8) {
+            require(8);
+        }
+        byte[] b = buffer;
+        int p = position;
+        position = p + 8;
+        return (long) b[p] << 56 | (b[p + 1] & 0xFFL) << 48 | (b[p + 2] & 0xFFL) << 40 | (b[p + 3] & 0xFFL) << 32
+                | (b[p + 4] & 0xFFL) << 24 | (b[p + 5] & 0xFFL) << 16 | (b[p + 6] & 0xFFL) << 8 | b[p + 7] & 0xFFL;
+    }
+
+    /**
+     * Считывает float из четырех байт.
+     *
+     * @return значение
+     * @throws IOException при ошибке чтения или преждевременном окончании данных
+     */
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    /**
+     * Считывает double из восьми байт.
+     *
+     * @return значение
+     * @throws IOException при ошибке чтения или преждевременном окончании данных
+     */
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    /**
+     * Считывает значение поля int: четыре байта или zigzag varint-число.
+     *
+     * @return значение
+     * @throws IOException при ошибке чтения
+     */
+    public int readNumberInt() throws IOException {
+        if (varintNumbers) {
+            long value = readVarint();
+            return (int) ((value >>> 1) ^ -(value & 1));
+        }
+        return readInt();
+    }
+
+    /**
+     * Считывает значение поля long: восемь байт или zigzag varint-число.
+     *
+     * @return значение
+     * @throws IOException при ошибке чтения
+     */
+    public long readNumberLong() throws IOException {
+        if (varintNumbers) {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+        return readLong();
+    }
+
+    /**
+     * Считывает беззнаковое число в формате LEB128, см. {@link Encoder#writeVarint(long)}.
+     *
+     * @return считанное число
+     * @throws IOException при ошибке чтения или слишком длинном числе
+     */
+    public long readVarint() throws IOException {
+        if (limit - position >= 10) {
+            byte[] b = buffer;
+            int p = position;
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte next = b[p++];
+                result |= (long) (next & 0x7F) << shift;
+                if (next >= 0) {
+                    position = p;
+                    return result;
+                }
+            }
+        } else {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte next = readByte();
+                result |= (long) (next & 0x7F) << shift;
+                if (next >= 0) {
+                    return result;
+                }
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    /**
+     * Считывает неотрицательное varint-число, помещающееся в int, например длину массива.
+     *
+     * @return считанное число
+     * @throws IOException при ошибке чтения или выходе значения за пределы int
+     */
+    public int readLength() throws IOException {
+        long value = readVarint();
+        if (value > Integer.MAX_VALUE) {
+            throw new StreamCorruptedException("Length out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Считывает байты в массив.
+     *
+     * @param bytes массив для заполнения
+     * @param offset начало заполняемой части
+     * @param length число байт
+     * @throws IOException при ошибке чтения или преждевременном окончании данных
+     */
+    public void readBytes(byte[] bytes, int offset, int length) throws IOException {
+        int count = Math.min(length, limit - position);
+        System.arraycopy(buffer, position, bytes, offset, count);
+        position += count;
+        offset += count;
+        length -= count;
+        if (length == 0) {
+            return;
+        }
+        if (stream != null && length >= buffer.length) {
+            while (length > 0) {
+                int n = stream.read(bytes, offset, length);
+                if (n < 0) {
+                    throw new EOFException();
+                }
+                consumed += n;
+                offset += n;
+                length -= n;
+            }
+        } else if (source != null && !sourceArray && !push && length >= buffer.length) {
+            if (source.remaining() < length) {
+                throw new EOFException();
+            }
+            source.get(bytes, offset, length);
+            consumed += length;
+        } else {
+            while (length > 0) {
+                require(Math.min(length, buffer.length));
+                count = Math.min(length, limit - position);
+                System.arraycopy(buffer, position, bytes, offset, count);
+                position += count;
+                offset += count;
+                length -= count;
+            }
+        }
+    }
+
+    /**
+     * Считывает массив примитивов, кроме byte, блоками через представление {@link ByteBuffer}.
+     *
+     * @param typeCode код типа элементов массива
+     * @param array массив для заполнения
+     * @param length длина массива
+     * @throws IOException при ошибке чтения или преждевременном окончании данных
+     */
+    void readPrimitiveArray(int typeCode, Object array, int length) throws IOException {
+        int elementSize = TypeCode.sizeOf(typeCode);
+        int offset = 0;
+        while (offset < length) {
+            int count = Math.min(length - offset, (limit - position) / elementSize);
+            if (count == 0) {
+                require(elementSize);
+                continue;
+            }
+            ByteBuffer view = this.view;
+            if (view == null || view.array() != buffer) {
+                view = ByteBuffer.wrap(buffer);
+                this.view = view;
+            }
+            view.clear().position(position);
+            switch (typeCode) {
+            case TypeCode.SHORT:
+                view.asShortBuffer().get((short[]) array, offset, count);
+                break;
+            case TypeCode.INT:
+                view.asIntBuffer().get((int[]) array, offset, count);
+                break;
+            case TypeCode.LONG:
+                view.asLongBuffer().get((long[]) array, offset, count);
+                break;
+            case TypeCode.FLOAT:
+                view.asFloatBuffer().get((float[]) array, offset, count);
+                break;
+            case TypeCode.DOUBLE:
+                view.asDoubleBuffer().get((double[]) array, offset, count);
+                break;
+            case TypeCode.CHAR:
+                view.asCharBuffer().get((char[]) array, offset, count);
+                break;
+            default:
+                boolean[] booleans = (boolean[]) array;
+                for (int i = 0; i < count; i++) {
+                    booleans[offset + i] = buffer[position + i] != 0;
+                }
+            }
+            position += count * elementSize;
+            offset += count;
+        }
+    }
+
+    /**
+     * Считывает строку, записанную {@link Encoder#writeString(String)}. Если байты строки уже
+     * находятся в массиве, строка декодируется прямо из него.
+     *
+     * @return считанная строка
+     * @throws IOException при ошибке чтения
+     */
+    public String readString() throws IOException {
+        return readString(readVarint());
+    }
+
+    /**
+     * Считывает строку после заголовка.
+     *
+     * @param header заголовок строки: длина и кодировка
+     * @return считанная строка
+     * @throws IOException при ошибке чтения
+     */
+    private String readString(long header) throws IOException {
+        long length = header >>> 2;
+        if (length > Integer.MAX_VALUE) {
+            throw new StreamCorruptedException("String length out of range: " + length);
+        }
+        int size = (int) length;
+        if (push) {
+            expect((header & 3) == WireFormat.STRING_UTF16 ? length * 2 : length);
+        }
+        switch ((int) header & 3) {
+        case WireFormat.STRING_LATIN1:
+            return decode(size, StandardCharsets.ISO_8859_1);
+        case WireFormat.STRING_UTF8:
+            return decode(size, StandardCharsets.UTF_8);
+        case WireFormat.STRING_UTF16:
+            char[] chars = new char[size];
+            readPrimitiveArray(TypeCode.CHAR, chars, size);
+            return new String(chars);
+        default:
+            throw new StreamCorruptedException("Unknown string encoding: " + (header & 3));
+        }
+    }
+
+    /**
+     * Считывает строку, записанную {@link Encoder#writeString(String)}, через кэш строк. Если байты
+     * строки находятся в массиве и такая строка уже считывалась, возвращается строка из кэша
+     * без декодирования.
+     *
+     * @param cache кэш строк
+     * @return считанная строка
+     * @throws IOException при ошибке чтения
+     */
+    String readString(NameCache cache) throws IOException {
+        long header = readVarint();
+        int encoding = (int) header & 3;
+        long length = header >>> 2;
+        if (encoding != WireFormat.STRING_LATIN1 && encoding != WireFormat.STRING_UTF8 || length > limit - position) {
+            return readString(header);
+        }
+        int size = (int) length;
+        String value = cache.get(buffer, position, size, encoding);
+        if (value == null) {
+            value = new String(buffer, position, size,
+                    encoding == WireFormat.STRING_LATIN1 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+            cache.put(buffer, position, size, encoding, value);
+        }
+        position += size;
+        return value;
+    }
+
+    /**
+     * Декодирует байты строки в указанной кодировке.
+     *
+     * @param size число байт
+     * @param charset кодировка
+     * @return строка
+     * @throws IOException при ошибке чтения
+     */
+    private String decode(int size, Charset charset) throws IOException {
+        if (limit - position >= size) {
+            String value = new String(buffer, position, size, charset);
+            position += size;
+            return value;
+        }
+        if (stringBuffer.length < size) {
+            stringBuffer = new byte[Math.max(size, stringBuffer.length * 2)];
+        }
+        readBytes(stringBuffer, 0, size);
+        return new String(stringBuffer, 0, size, charset);
+    }
+
+    /**
+     * Гарантирует наличие указанного числа байт в массиве.
+     *
+     * @param required требуемое число байт
+     * @throws IOException при ошибке чтения или преждевременном окончании данных
+     */
+    private void require(int required) throws IOException {
+        if (limit - position < required && !fill(required)) {
+            throw push ? underflow : new EOFException();
+        }
+    }
+
+    /**
+     * Пополняет собственный массив из источника. Непрочитанные байты переносятся в начало массива,
+     * при пошаговом чтении - вместе с байтами текущего шага после контрольной точки.
+     *
+     * @param required требуемое число непрочитанных байт
+     * @return {@code true}, если требуемое число байт доступно
+     * @throws IOException при ошибке чтения
+     */
+    private boolean fill(int required) throws IOException {
+        if (sourceArray || stream == null && source == null) {
+            return limit - position >= required;
+        }
+        int start = push ? mark : position;
+        int offset = position - start;
+        int remaining = limit - start;
+        if (offset + required > buffer.length || remaining == buffer.length) {
+            ownBuffer = new byte[Math.max(offset + required, buffer.length * 2)];
+        }
+        System.arraycopy(buffer, start, ownBuffer, 0, remaining);
+        consumed += start;
+        setBuffer(ownBuffer);
+        position = offset;
+        limit = remaining;
+        mark = 0;
+        if (source != null) {
+            int count = Math.min(buffer.length - limit, source.remaining());
+            source.get(buffer, limit, count);
+            limit += count;
+            return limit - position >= required;
+        }
+        if (readAhead && !exclusive) {
+            stream.mark(buffer.length - limit);
+            markedBytes = 0;
+        }
+        while (limit < required) {
+            int count = stream.read(buffer, limit, readAhead ? buffer.length - limit : required - limit);
+            if (count < 0) {
+                return false;
+            }
+            limit += count;
+            markedBytes += count;
+        }
+        return true;
+    }
+
+    /**
+     * Пропускает указанное число байт потока.
+     *
+     * @param in поток
+     * @param count число байт
+     * @throws IOException при ошибке чтения
+     */
+    private static void skipFully(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    /**
+     * Подготавливает собственный массив к новому чтению и отсоединяет источник.
+     */
+    private void reset() {
+        if (ownBuffer.length > MAX_RETAINED_SIZE) {
+            ownBuffer = new byte[DEFAULT_SIZE];
+        }
+        setBuffer(ownBuffer);
+        position = 0;
+        limit = 0;
+        stream = null;
+        readAhead = false;
+        exclusive = false;
+        markedBytes = 0;
+        source = null;
+        sourceArray = false;
+        push = false;
+        mark = 0;
+        consumed = 0;
+    }
+
+    private void setBuffer(byte[] array) {
+        buffer = array;
+    }
+
+    /**
+     * Поток, читающий данные декодировщика с его текущей позиции.
+     */
+    private final class InputView extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            if (position == limit && !fill(1)) {
+                return -1;
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (position == limit) {
+                if (stream != null && !readAhead) {
+                    int count = stream.read(bytes, offset, length);
+                    if (count > 0) {
+                        consumed += count;
+                    }
+                    return count;
+                }
+                if (!fill(1)) {
+                    return -1;
+                }
+            }
+            int count = Math.min(length, limit - position);
+            System.arraycopy(buffer, position, bytes, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+
+    }
+
+}
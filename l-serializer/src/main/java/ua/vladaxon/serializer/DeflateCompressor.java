@@ -0,0 +1,111 @@
+package ua.vladaxon.serializer;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатие блоков алгоритмом DEFLATE средствами {@link Deflater} и {@link Inflater}. Сжимает
+ * сильнее {@link LzCompressor}, но заметно медленнее; подходит для передачи по медленным каналам
+ * и долговременного хранения.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public final class DeflateCompressor implements BlockCompressor {
+
+    /** Идентификатор алгоритма в заголовке потока. */
+    public static final int ID = 1;
+
+    /** Уровень сжатия. */
+    private final int level;
+
+    /**
+     * Создает алгоритм с уровнем сжатия по умолчанию.
+     */
+    public DeflateCompressor() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Создает алгоритм с указанным уровнем сжатия. Уровень влияет только на запись.
+     *
+     * @param level уровень от {@link Deflater#BEST_SPEED} до {@link Deflater#BEST_COMPRESSION}
+     *            или {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public DeflateCompressor(int level) {
+        if ((level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        this.level = level;
+    }
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        return length + (length >>> 12) + (length >>> 14) + 64;
+    }
+
+    @Override
+    public int compress(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(src, srcOffset, length);
+            deflater.finish();
+            int position = dstOffset;
+            int end = dstOffset + maxCompressedLength(length);
+            while (!deflater.finished()) {
+                if (position == end) {
+                    throw new IllegalStateException("Compressed block exceeds its bound");
+                }
+                position += deflater.deflate(dst, position, end - position);
+            }
+            return position - dstOffset;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset, int originalLength)
+            throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(src, srcOffset, length);
+            int count = 0;
+            byte[] probe = null;
+            while (!inflater.finished()) {
+                int inflated;
+                if (count < originalLength) {
+                    inflated = inflater.inflate(dst, dstOffset + count, originalLength - count);
+                } else {
+                    if (probe == null) {
+                        probe = new byte[1];
+                    }
+                    inflated = inflater.inflate(probe);
+                    if (inflated != 0) {
+                        throw new StreamCorruptedException("Deflate block is longer than expected");
+                    }
+                }
+                if (inflated == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new StreamCorruptedException("Truncated deflate block");
+                }
+                count += inflated;
+            }
+            if (count != originalLength || inflater.getRemaining() != 0) {
+                throw new StreamCorruptedException("Corrupted deflate block");
+            }
+        } catch (DataFormatException e) {
+            throw new StreamCorruptedException("Corrupted deflate block: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+}
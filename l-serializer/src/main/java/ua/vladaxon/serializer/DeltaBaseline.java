@@ -0,0 +1,1222 @@
+package ua.vladaxon.serializer;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * База разностной записи графа: снимок последнего переданного графа на стороне записи или копия
+ * графа на стороне чтения, см. {@link LSerializer#serializeDelta(java.io.OutputStream, Object, DeltaBaseline)}
+ * и {@link LDesirializer#deserializeDelta(java.io.InputStream, Class, DeltaBaseline)}.
+ * <p>
+ * Первая запись с пустой базой передает граф целиком. Каждая следующая сравнивает текущий граф
+ * со снимком и передает только измененные примитивные поля и элементы массивов, переназначенные
+ * ссылки, содержимое измененных коллекций и новые объекты. Сторона чтения применяет разность
+ * к своей копии на месте, объекты копии сохраняют идентичность. Объекты текущего графа
+ * сопоставляются с объектами снимка по ссылке, а объекты классов с ключом, см.
+ * {@link #setKey(Class, DeltaKey)}, еще и по ключу. Объекты, недостижимые из корня, удаляются
+ * из базы на обеих сторонах.
+ * <p>
+ * Объем разности пропорционален изменениям, а время записи - размеру графа: чтобы найти
+ * изменения, граф обходится целиком без кодирования, и значения сравниваются со снимком,
+ * поэтому снимок хранит копию примитивных полей и ссылок каждого объекта. Строки, значения
+ * встроенных типов и элементы перечислений сравниваются по {@code equals} и передаются целиком.
+ * Измененные объект с пользовательским представлением {@link Codec} и неизменяемая коллекция
+ * передаются заново как новые объекты, а ссылки на них - как измененные.
+ * <p>
+ * Список передается участками вставленных и удаленных элементов. Наименьшая правка ищется
+ * не далее 32 вставок и удалений, при большем числе передается участок
+ * от первого до последнего изменения, а список той же длины - измененными элементами.
+ * Множество и отображение передаются удаленными ключами и добавленными или измененными
+ * записями. Содержимое передается целиком для {@link java.util.ArrayDeque}, отображения
+ * {@link java.util.LinkedHashMap} в порядке доступа или с переставленными записями, коллекции
+ * с ключами-объектами, которых нет в базе стороны чтения, и коллекции без прежних элементов.
+ * <p>
+ * База принадлежит одной стороне одного потока разностей и применяется к сообщениям по порядку.
+ * Разность применима только к базе, к которой применены все предыдущие разности потока,
+ * несовпадение числа объектов обнаруживается при чтении. После ошибки записи или чтения база
+ * расходится с другой стороной, и ее нужно очистить на обеих сторонах через {@link #clear()}.
+ * Экземпляр не потокобезопасен.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public final class DeltaBaseline {
+
+    /** Вид объекта: значение, которое сравнивается по {@code equals} и не входит в базу. */
+    static final int VALUE = -1;
+    /** Вид узла: объект с полями. */
+    static final int FIELDS = 0;
+    /** Вид узла: массив ссылок. */
+    static final int OBJECT_ARRAY = 1;
+    /** Вид узла: массив примитивов. */
+    static final int PRIMITIVE_ARRAY = 2;
+    /** Вид узла: коллекция, содержимое которой заменяется на месте. */
+    static final int COLLECTION = 3;
+    /** Вид узла: неизменяемая коллекция, при изменении передается заново. */
+    static final int FIXED_COLLECTION = 4;
+    /** Вид узла: объект с пользовательским представлением, при изменении передается заново. */
+    static final int CUSTOM = 5;
+
+    /** База еще не использовалась. */
+    private static final int UNUSED = 0;
+    /** База стороны записи. */
+    private static final int WRITER = 1;
+    /** База стороны чтения. */
+    private static final int READER = 2;
+    /** Наибольшее число вставок и удалений, которое ищется при сравнении списков. */
+    private static final int MAX_LIST_EDITS = 32;
+    /** Отметка ссылки снимка на объект, которого нет в базе, не равна никакому значению. */
+    private static final Object UNKNOWN = new Object();
+
+    /** Сторона потока, которой принадлежит база. */
+    private int role;
+    /** Прерван ли последний вызов ошибкой. */
+    private boolean broken;
+    /** Число объектов в базе. */
+    private int size;
+    /** Ключи сопоставления по классам. */
+    private final Map<Class<?>, DeltaKey<Object>> keys = new IdentityHashMap<Class<?>, DeltaKey<Object>>();
+
+    /** Запись: узлы базы по идентификаторам. */
+    private Node[] nodes = new Node[64];
+    /** Запись: узлы по объектам графа. */
+    private final Map<Object, Node> byObject = new IdentityHashMap<Object, Node>();
+    /** Запись: узлы по классам и ключам. */
+    private final Map<Class<?>, Map<Object, Node>> byKey = new IdentityHashMap<Class<?>, Map<Object, Node>>();
+    /** Запись: номер текущей записи. */
+    private int epoch;
+    /** Запись: способ доступа к полям. */
+    private AccessorType accessorType;
+    /** Запись: реестр классов сериализатора. */
+    private ClassRegistry registry;
+    /** Запись: узлы, достигнутые из корня, в порядке обхода. */
+    private Node[] reached = new Node[64];
+    /** Запись: число достигнутых узлов. */
+    private int reachedCount;
+    /** Запись: узлы с изменениями. */
+    private Node[] changed = new Node[16];
+    /** Запись: число узлов с изменениями. */
+    private int changedCount;
+    /** Запись: индексы измененных полей или элементов последнего сравненного узла. */
+    private int[] slots = new int[16];
+    /** Запись: границы путей поиска правки списка по числу правок, см. {@link #shortestEdit}. */
+    private int[] paths;
+    /** Запись: отметки текущих элементов списка для поиска правки. */
+    private Object[] tokens = new Object[16];
+    /** Запись: вид правки последней сравненной коллекции. */
+    private int edit;
+    /** Запись: элементы последней сравненной коллекции. */
+    private Object[] edited;
+    /** Запись: ключи записей, удаленных из последней сравненной коллекции. */
+    private Object[] removedKeys = new Object[16];
+    /** Запись: число удаленных записей. */
+    private int removedCount;
+    /** Запись: индексы записей снимка коллекции по ключам для сравнения по записям. */
+    private final Map<Object, Integer> entryIndex = new HashMap<Object, Integer>();
+    /** Запись: новые объекты, достигнутые из корня. */
+    private final Map<Object, Boolean> fresh = new IdentityHashMap<Object, Boolean>();
+    /** Запись: объекты, получившие идентификаторы в сообщении, по порядку. */
+    private Object[] added = new Object[64];
+    /** Запись: число объектов, получивших идентификаторы. */
+    private int addedCount;
+    /** Запись: стек обхода. */
+    private Object[] stack = new Object[64];
+    /** Запись: кодировщик для сравнения объектов с пользовательским представлением. */
+    private Encoder scratch;
+
+    /** Чтение: объекты базы по идентификаторам. */
+    private Object[] objects = new Object[64];
+    /** Чтение: отметки объектов, удаляемых из базы. */
+    private boolean[] released = new boolean[64];
+
+    /**
+     * Задает ключ сопоставления для объектов класса. Объект, которого нет в снимке, сопоставляется
+     * с объектом снимка того же класса с равным ключом, если тот еще не сопоставлен. Ключ
+     * применяется только к объектам ровно этого класса и не должен меняться, пока объект в графе.
+     * Задается на стороне записи.
+     *
+     * @param type класс объектов
+     * @param key ключ или {@code null}, чтобы сопоставлять объекты класса только по ссылке
+     * @param <T> класс объектов
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void setKey(Class<T> type, DeltaKey<? super T> key) {
+        if (key != null) {
+            keys.put(type, (DeltaKey<Object>) key);
+        } else {
+            keys.remove(type);
+            byKey.remove(type);
+        }
+    }
+
+    /**
+     * @return число объектов в базе
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Очищает базу. Следующая запись передает граф целиком, поэтому база другой стороны
+     * должна быть очищена тоже. Ключи сопоставления сохраняются.
+     */
+    public void clear() {
+        Arrays.fill(nodes, 0, size, null);
+        Arrays.fill(objects, 0, size, null);
+        Arrays.fill(reached, 0, reachedCount, null);
+        Arrays.fill(changed, 0, changedCount, null);
+        Arrays.fill(added, 0, addedCount, null);
+        Arrays.fill(removedKeys, 0, removedCount, null);
+        byObject.clear();
+        byKey.clear();
+        fresh.clear();
+        edited = null;
+        removedCount = 0;
+        size = 0;
+        reachedCount = 0;
+        changedCount = 0;
+        addedCount = 0;
+        role = UNUSED;
+        broken = false;
+    }
+
+    /**
+     * Определяет вид объекта класса так же, как сериализатор выбирает его представление.
+     *
+     * @param type класс объекта
+     * @param registry реестр классов
+     * @return вид узла или {@link #VALUE}
+     */
+    static int kindOf(Class<?> type, ClassRegistry registry) {
+        if (type == String.class || ValueCodec.forClass(type) != null) {
+            return VALUE;
+        }
+        CollectionCodec codec = CollectionCodec.forClass(type);
+        if (codec != null) {
+            return codec.isUpdatable() ? COLLECTION : FIXED_COLLECTION;
+        }
+        if (registry.getCodec(type) != null) {
+            return CUSTOM;
+        }
+        if (type.isArray()) {
+            return type.getComponentType().isPrimitive() ? PRIMITIVE_ARRAY : OBJECT_ARRAY;
+        }
+        return type.isEnum() ? VALUE : FIELDS;
+    }
+
+    /**
+     * Начинает вызов одной из сторон.
+     *
+     * @param side сторона потока
+     */
+    private void begin(int side) {
+        if (role != UNUSED && role != side) {
+            throw new IllegalStateException("Delta baseline is already used for " + (role == WRITER ? "writing" : "reading"));
+        }
+        if (broken) {
+            throw new IllegalStateException("Delta baseline is out of sync after a failed call, clear it on both sides");
+        }
+        role = side;
+        broken = true;
+    }
+
+    // Сторона записи
+
+    /**
+     * Обходит текущий граф: сопоставляет его объекты с узлами базы и отмечает достигнутые узлы.
+     * Измененные объекты с пользовательским представлением и неизменяемые коллекции
+     * отсоединяются от своих узлов и будут записаны как новые объекты.
+     *
+     * @param root корневой объект
+     * @param accessorType способ доступа к полям
+     * @param registry реестр классов сериализатора
+     * @throws Exception при ошибке доступа к полям или кодирования
+     */
+    void beginWrite(Object root, AccessorType accessorType, ClassRegistry registry) throws Exception {
+        begin(WRITER);
+        this.accessorType = accessorType;
+        this.registry = registry;
+        epoch++;
+        int depth = 0;
+        if (root != null) {
+            stack[depth++] = root;
+        }
+        while (depth > 0) {
+            Object obj = stack[--depth];
+            stack[depth] = null;
+            Class<?> type = obj.getClass();
+            int kind = kindOf(type, registry);
+            if (kind == VALUE) {
+                continue;
+            }
+            Node node = match(obj, type);
+            if (node != null) {
+                if (node.epoch == epoch) {
+                    continue;
+                }
+                node.epoch = epoch;
+                if (reachedCount == reached.length) {
+                    reached = Arrays.copyOf(reached, reachedCount * 2);
+                }
+                reached[reachedCount++] = node;
+            } else if (fresh.put(obj, Boolean.TRUE) != null) {
+                continue;
+            }
+            depth = pushChildren(obj, type, kind, depth);
+        }
+        detachChanged();
+    }
+
+    /**
+     * Находит узел объекта по ссылке или по ключу. Узел, найденный по ключу, переходит к объекту.
+     *
+     * @param obj объект графа
+     * @param type класс объекта
+     * @return узел или {@code null} для нового объекта
+     */
+    private Node match(Object obj, Class<?> type) {
+        Node node = byObject.get(obj);
+        if (node != null || keys.isEmpty()) {
+            return node;
+        }
+        DeltaKey<Object> key = keys.get(type);
+        Map<Object, Node> known = byKey.get(type);
+        if (key == null || known == null) {
+            return null;
+        }
+        Object value = key.keyOf(obj);
+        node = value != null ? known.get(value) : null;
+        if (node == null || node.epoch == epoch || node.replaced) {
+            return null;
+        }
+        byObject.remove(node.obj);
+        node.obj = obj;
+        byObject.put(obj, node);
+        return node;
+    }
+
+    /**
+     * Помещает в стек обхода объекты, на которые ссылается объект.
+     *
+     * @return новая глубина стека
+     */
+    private int pushChildren(Object obj, Class<?> type, int kind, int depth) throws Exception {
+        switch (kind) {
+        case FIELDS:
+            FieldDescriptor[] fields = ClassDescriptor.forClass(type, accessorType).getFields();
+            for (int i = fields.length - 1; i >= 0; i--) {
+                if (fields[i].getTypeCode() == TypeCode.OBJECT) {
+                    depth = push(fields[i].getAccessor().getObject(obj), depth);
+                }
+            }
+            return depth;
+        case OBJECT_ARRAY:
+            return pushAll((Object[]) obj, depth);
+        case COLLECTION:
+        case FIXED_COLLECTION:
+            return pushAll(CollectionCodec.forClass(type).toElements(obj), depth);
+        default:
+            return depth;
+        }
+    }
+
+    private int pushAll(Object[] elements, int depth) {
+        for (int i = elements.length - 1; i >= 0; i--) {
+            depth = push(elements[i], depth);
+        }
+        return depth;
+    }
+
+    private int push(Object obj, int depth) {
+        if (obj == null) {
+            return depth;
+        }
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth] = obj;
+        return depth + 1;
+    }
+
+    /**
+     * Отсоединяет от узлов измененные объекты, которые нельзя изменить на месте. Отсоединение
+     * неизменяемой коллекции меняет ссылки в содержащих ее неизменяемых коллекциях, поэтому
+     * проверка повторяется, пока отсоединяются узлы.
+     */
+    private void detachChanged() throws Exception {
+        boolean detached = true;
+        while (detached) {
+            detached = false;
+            for (int i = 0; i < reachedCount; i++) {
+                Node node = reached[i];
+                if (node.replaced) {
+                    continue;
+                }
+                boolean differs;
+                if (node.kind == CUSTOM) {
+                    differs = !Arrays.equals((byte[]) node.copy, encode(node));
+                } else if (node.kind == FIXED_COLLECTION) {
+                    differs = !sameRefs(node.refs, node.codec.toElements(node.obj));
+                } else {
+                    continue;
+                }
+                if (differs) {
+                    byObject.remove(node.obj);
+                    node.replaced = true;
+                    detached = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Заносит объекты базы в таблицу идентификаторов сериализатора, чтобы ссылки на них
+     * записывались идентификаторами базы. Отсоединенные объекты не заносятся.
+     *
+     * @param heap таблица идентификаторов
+     */
+    void seed(IdentityIntMap heap) {
+        for (int i = 0; i < size; i++) {
+            Node node = nodes[i];
+            if (!node.replaced) {
+                heap.putIfAbsent(node.obj, i);
+            }
+        }
+    }
+
+    /**
+     * @return число узлов, достигнутых из корня
+     */
+    int reachedCount() {
+        return reachedCount;
+    }
+
+    /**
+     * @param index порядковый номер достигнутого узла
+     * @return узел
+     */
+    Node reached(int index) {
+        return reached[index];
+    }
+
+    /**
+     * Сравнивает объект узла со снимком. Индексы измененных полей или элементов доступны
+     * через {@link #changedSlot(int)} до следующего сравнения. Для коллекции правка доступна
+     * через {@link #collectionEdit()}: для {@link WireFormat#DELTA_SPLICE} индексы задают участки
+     * тройками - начало участка в текущих элементах, число удаляемых и вставляемых элементов,
+     * для {@link WireFormat#DELTA_ENTRIES} - начало каждой добавляемой или измененной записи
+     * в текущих элементах после удаленных ключей {@link #removedKey(int)}.
+     *
+     * @param node достигнутый узел
+     * @return число измененных полей или элементов; для коллекции число участков, число удаленных
+     *         и измененных записей или 1, если содержимое передается целиком
+     * @throws Exception при ошибке доступа к полям
+     */
+    int diff(Node node) throws Exception {
+        edited = null;
+        Arrays.fill(removedKeys, 0, removedCount, null);
+        removedCount = 0;
+        if (node.replaced) {
+            return 0;
+        }
+        Object obj = node.obj;
+        int count = 0;
+        switch (node.kind) {
+        case FIELDS:
+            FieldDescriptor[] fields = node.fields;
+            for (int i = 0; i < fields.length; i++) {
+                FieldDescriptor field = fields[i];
+                boolean same;
+                if (field.getTypeCode() == TypeCode.OBJECT) {
+                    same = sameRef(node.refs[i], field.getAccessor().getObject(obj));
+                } else {
+                    same = node.values[i] == fieldBits(field, obj);
+                }
+                if (!same) {
+                    count = addSlot(count, i);
+                }
+            }
+            break;
+        case OBJECT_ARRAY:
+            Object[] elements = (Object[]) obj;
+            for (int i = 0; i < elements.length; i++) {
+                if (!sameRef(node.refs[i], elements[i])) {
+                    count = addSlot(count, i);
+                }
+            }
+            break;
+        case PRIMITIVE_ARRAY:
+            for (int i = 0, length = Array.getLength(obj); i < length; i++) {
+                if (elementBits(node.typeCode, obj, i) != elementBits(node.typeCode, node.copy, i)) {
+                    count = addSlot(count, i);
+                }
+            }
+            break;
+        case COLLECTION:
+            Object[] current = node.codec.toElements(obj);
+            if (!sameRefs(node.refs, current)) {
+                edited = current;
+                count = diffCollection(node, current);
+            }
+            break;
+        default:
+            break;
+        }
+        if (count > 0) {
+            if (changedCount == changed.length) {
+                changed = Arrays.copyOf(changed, changedCount * 2);
+            }
+            changed[changedCount++] = node;
+        }
+        return count;
+    }
+
+    /**
+     * Выбирает правку измененной коллекции. Содержимое передается целиком, если коллекция
+     * не поддерживает правку, если в ней не осталось ни одной прежней записи или если правка
+     * не воспроизведет ее порядок.
+     *
+     * @param node узел коллекции
+     * @param current текущие элементы
+     * @return число изменений, см. {@link #diff(Node)}
+     */
+    private int diffCollection(Node node, Object[] current) {
+        CollectionCodec codec = node.codec;
+        Object[] old = node.refs;
+        int prefix = codec.getPrefix();
+        edit = codec.deltaEditOf(node.obj);
+        if (edit != WireFormat.DELTA_WHOLE && old != null && sameRefs(old, current, prefix)) {
+            int count = edit == WireFormat.DELTA_SPLICE ? diffList(old, current) : diffEntries(node, current);
+            if (count > 0) {
+                return count;
+            }
+        }
+        edit = WireFormat.DELTA_WHOLE;
+        Arrays.fill(removedKeys, 0, removedCount, null);
+        removedCount = 0;
+        return 1;
+    }
+
+    /**
+     * Находит участки списка, которыми текущие элементы отличаются от снимка: общие начало
+     * и конец отбрасываются, а в остатке ищется наименьшая правка из вставок и удалений.
+     * Если правка длиннее {@link #MAX_LIST_EDITS}, остаток при той же длине сравнивается
+     * поэлементно и иначе заменяется одним участком.
+     *
+     * @param old снимок ссылок
+     * @param current текущие элементы
+     * @return число участков или 0, если прежних элементов не осталось
+     */
+    private int diffList(Object[] old, Object[] current) {
+        int oldLength = old.length;
+        int length = current.length;
+        int start = 0;
+        while (start < oldLength && start < length && sameRef(old[start], current[start])) {
+            start++;
+        }
+        int end = 0;
+        while (end < oldLength - start && end < length - start
+                && sameRef(old[oldLength - 1 - end], current[length - 1 - end])) {
+            end++;
+        }
+        int removed = oldLength - start - end;
+        int inserted = length - start - end;
+        int hunks = shortestEdit(old, current, start, removed, inserted);
+        if (hunks < 0) {
+            if (removed != inserted) {
+                return length > inserted ? addHunk(0, start, removed, inserted) : 0;
+            }
+            hunks = 0;
+            for (int i = start; i < length - end; i++) {
+                if (sameRef(old[i], current[i])) {
+                    continue;
+                }
+                int last = (hunks - 1) * 3;
+                if (hunks > 0 && slots[last] + slots[last + 2] == i) {
+                    slots[last + 1]++;
+                    slots[last + 2]++;
+                } else {
+                    hunks = addHunk(hunks, i, 1, 1);
+                }
+            }
+        }
+        int kept = length;
+        for (int i = 0; i < hunks; i++) {
+            kept -= slots[i * 3 + 2];
+        }
+        return kept > 0 ? hunks : 0;
+    }
+
+    /**
+     * Ищет наименьшую правку отрезков списков жадным алгоритмом Майерса за время
+     * O((N + M) * D), где D - число вставок и удалений, не больше {@link #MAX_LIST_EDITS}.
+     *
+     * @param old снимок ссылок
+     * @param current текущие элементы
+     * @param from начало отрезков
+     * @param n длина отрезка снимка
+     * @param m длина отрезка текущих элементов
+     * @return число участков или -1, если правка длиннее предела
+     */
+    private int shortestEdit(Object[] old, Object[] current, int from, int n, int m) {
+        int limit = Math.min(n + m, MAX_LIST_EDITS);
+        int width = 2 * MAX_LIST_EDITS + 1;
+        if (paths == null) {
+            paths = new int[(MAX_LIST_EDITS + 1) * width];
+        }
+        if (tokens.length < m) {
+            tokens = new Object[Math.max(tokens.length * 2, m)];
+        }
+        for (int i = 0; i < m; i++) {
+            tokens[i] = keyToken(current[from + i]);
+        }
+        try {
+            for (int d = 0; d <= limit; d++) {
+                int row = d * width + MAX_LIST_EDITS;
+                int prev = row - width;
+                for (int k = -d; k <= d; k += 2) {
+                    int x;
+                    if (d == 0) {
+                        x = 0;
+                    } else if (k == -d || k != d && paths[prev + k - 1] < paths[prev + k + 1]) {
+                        x = paths[prev + k + 1];
+                    } else {
+                        x = paths[prev + k - 1] + 1;
+                    }
+                    int y = x - k;
+                    while (x < n && y < m && sameToken(old[from + x], tokens[y])) {
+                        x++;
+                        y++;
+                    }
+                    paths[row + k] = x;
+                    if (x >= n && y >= m) {
+                        return editHunks(from, d, n, m);
+                    }
+                }
+            }
+            return -1;
+        } finally {
+            Arrays.fill(tokens, 0, m, null);
+        }
+    }
+
+    /**
+     * Восстанавливает участки найденной правки от конца к началу, соседние вставки и удаления
+     * объединяются в один участок.
+     */
+    private int editHunks(int from, int edits, int n, int m) {
+        int width = 2 * MAX_LIST_EDITS + 1;
+        int hunks = 0;
+        int x = n;
+        int y = m;
+        for (int d = edits; d > 0; d--) {
+            int prev = (d - 1) * width + MAX_LIST_EDITS;
+            int k = x - y;
+            boolean insert = k == -d || k != d && paths[prev + k - 1] < paths[prev + k + 1];
+            int prevX = paths[prev + (insert ? k + 1 : k - 1)];
+            int prevY = prevX - (insert ? k + 1 : k - 1);
+            int last = (hunks - 1) * 3;
+            if (hunks > 0 && (insert ? prevX == x && prevY + 1 == y : prevX + 1 == x && prevY == y)) {
+                slots[last] = from + prevY;
+            } else {
+                hunks = addHunk(hunks, from + prevY, 0, 0);
+                last = (hunks - 1) * 3;
+            }
+            slots[last + (insert ? 2 : 1)]++;
+            x = prevX;
+            y = prevY;
+        }
+        for (int i = 0, j = hunks - 1; i < j; i++, j--) {
+            for (int field = 0; field < 3; field++) {
+                int slot = slots[i * 3 + field];
+                slots[i * 3 + field] = slots[j * 3 + field];
+                slots[j * 3 + field] = slot;
+            }
+        }
+        return hunks;
+    }
+
+    /**
+     * @param token отметка снимка
+     * @param current отметка текущего элемента, см. {@link #keyToken(Object)}
+     * @return ссылаются ли отметки на один объект или равное значение
+     */
+    private static boolean sameToken(Object token, Object current) {
+        if (token == current) {
+            return token != UNKNOWN;
+        }
+        return token != null && current != null && token != UNKNOWN && !(token instanceof Node)
+                && token.getClass() == current.getClass() && token.equals(current);
+    }
+
+    private int addHunk(int hunks, int start, int removed, int inserted) {
+        int index = hunks * 3;
+        if (index + 3 > slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(slots.length * 2, index + 3));
+        }
+        slots[index] = start;
+        slots[index + 1] = removed;
+        slots[index + 2] = inserted;
+        return hunks + 1;
+    }
+
+    /**
+     * Сравнивает записи множества или отображения со снимком по ключам: ключи объектов базы
+     * сопоставляются по узлу, значения встроенных типов - по {@code equals}.
+     *
+     * @param node узел коллекции
+     * @param current текущие элементы
+     * @return число удаленных и измененных записей или 0, если правка по записям неприменима
+     */
+    private int diffEntries(Node node, Object[] current) {
+        CollectionCodec codec = node.codec;
+        Object[] old = node.refs;
+        int prefix = codec.getPrefix();
+        int entrySize = codec.getEntrySize();
+        entryIndex.clear();
+        try {
+            for (int i = prefix; i < old.length; i += entrySize) {
+                Object key = old[i];
+                if (key == UNKNOWN || key instanceof Node && ((Node) key).replaced) {
+                    // Ключ нельзя передать ссылкой на объект базы стороны чтения
+                    return 0;
+                }
+                entryIndex.put(key, i);
+            }
+            boolean ordered = codec.keepsInsertionOrder(node.obj);
+            boolean added = false;
+            int lastIndex = -1;
+            int count = 0;
+            for (int i = prefix; i < current.length; i += entrySize) {
+                Integer index = entryIndex.remove(keyToken(current[i]));
+                if (index == null) {
+                    added = true;
+                    count = addSlot(count, i);
+                    continue;
+                }
+                if (ordered && (added || index < lastIndex)) {
+                    return 0;
+                }
+                lastIndex = index;
+                if (entrySize > 1 && !sameRef(old[index + 1], current[i + 1])) {
+                    count = addSlot(count, i);
+                }
+            }
+            if (count == (current.length - prefix) / entrySize) {
+                return 0;
+            }
+            for (Object key : entryIndex.keySet()) {
+                if (removedCount == removedKeys.length) {
+                    removedKeys = Arrays.copyOf(removedKeys, removedCount * 2);
+                }
+                removedKeys[removedCount++] = key instanceof Node ? ((Node) key).obj : key;
+            }
+            return removedCount + count;
+        } finally {
+            entryIndex.clear();
+        }
+    }
+
+    /**
+     * @param value ключ из текущих элементов
+     * @return узел объекта, само значение для значений встроенных типов или {@link #UNKNOWN}
+     *         для нового объекта
+     */
+    private Object keyToken(Object value) {
+        if (value == null) {
+            return null;
+        }
+        Node node = byObject.get(value);
+        if (node != null) {
+            return node;
+        }
+        return kindOf(value.getClass(), registry) == VALUE ? value : UNKNOWN;
+    }
+
+    /**
+     * @param index порядковый номер изменения последнего сравненного узла
+     * @return индекс измененного поля или элемента, по возрастанию
+     */
+    int changedSlot(int index) {
+        return slots[index];
+    }
+
+    /**
+     * @return вид правки последней сравненной коллекции, см. {@link #diff(Node)}
+     */
+    int collectionEdit() {
+        return edit;
+    }
+
+    /**
+     * @return текущие элементы последней сравненной коллекции
+     */
+    Object[] editedElements() {
+        return edited;
+    }
+
+    /**
+     * @return число записей, удаленных из последней сравненной коллекции
+     */
+    int removedCount() {
+        return removedCount;
+    }
+
+    /**
+     * @param index порядковый номер удаленной записи
+     * @return ключ удаленной записи: объект базы или значение встроенного типа
+     */
+    Object removedKey(int index) {
+        return removedKeys[index];
+    }
+
+    private int addSlot(int count, int slot) {
+        if (count == slots.length) {
+            slots = Arrays.copyOf(slots, count * 2);
+        }
+        slots[count] = slot;
+        return count + 1;
+    }
+
+    /**
+     * Запоминает объект, получивший идентификатор при записи сообщения.
+     *
+     * @param obj объект
+     */
+    void added(Object obj) {
+        if (addedCount == added.length) {
+            added = Arrays.copyOf(added, addedCount * 2);
+        }
+        added[addedCount++] = obj;
+    }
+
+    /**
+     * Записывает идентификаторы объектов, удаляемых из базы: недостижимых из корня
+     * и отсоединенных. Записываются число и возрастающие идентификаторы разностями.
+     *
+     * @param out кодировщик
+     * @throws IOException при ошибке записи
+     */
+    void writeReleased(Encoder out) throws IOException {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (isReleased(nodes[i])) {
+                count++;
+            }
+        }
+        out.writeVarint(count);
+        int last = -1;
+        for (int i = 0; i < size && count > 0; i++) {
+            if (isReleased(nodes[i])) {
+                out.writeVarint(i - last - 1);
+                last = i;
+                count--;
+            }
+        }
+    }
+
+    private boolean isReleased(Node node) {
+        return node.epoch != epoch || node.replaced;
+    }
+
+    /**
+     * Завершает запись сообщения: удаляет из базы освобожденные узлы, добавляет узлы новых
+     * объектов и обновляет снимки новых и измененных объектов. Идентификаторы назначаются
+     * заново подряд: сначала оставшимся узлам в прежнем порядке, затем новым в порядке записи.
+     *
+     * @throws Exception при ошибке доступа к полям или кодирования
+     */
+    void commitWrite() throws Exception {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            Node node = nodes[i];
+            if (isReleased(node)) {
+                release(node);
+            } else {
+                node.id = count;
+                nodes[count++] = node;
+            }
+        }
+        Arrays.fill(nodes, count, size, null);
+        size = count;
+        int firstNew = count;
+        for (int i = 0; i < addedCount; i++) {
+            Object obj = added[i];
+            added[i] = null;
+            Class<?> type = obj.getClass();
+            int kind = kindOf(type, registry);
+            if (kind != VALUE) {
+                Node node = new Node(obj, type, kind, accessorType, registry);
+                node.id = size;
+                node.epoch = epoch;
+                if (size == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, size * 2);
+                }
+                nodes[size++] = node;
+                byObject.put(obj, node);
+            }
+        }
+        addedCount = 0;
+        for (int i = firstNew; i < size; i++) {
+            snapshot(nodes[i]);
+            indexKey(nodes[i]);
+        }
+        for (int i = 0; i < changedCount; i++) {
+            snapshot(changed[i]);
+            indexKey(changed[i]);
+            changed[i] = null;
+        }
+        changedCount = 0;
+        Arrays.fill(reached, 0, reachedCount, null);
+        reachedCount = 0;
+        Arrays.fill(removedKeys, 0, removedCount, null);
+        removedCount = 0;
+        edited = null;
+        fresh.clear();
+        broken = false;
+    }
+
+    /**
+     * Удаляет узел из индексов по объекту и ключу.
+     */
+    private void release(Node node) {
+        if (byObject.get(node.obj) == node) {
+            byObject.remove(node.obj);
+        }
+        if (node.key != null) {
+            Map<Object, Node> known = byKey.get(node.obj.getClass());
+            if (known != null && known.get(node.key) == node) {
+                known.remove(node.key);
+            }
+        }
+    }
+
+    /**
+     * Заносит узел в индекс по ключу, если для его класса задан ключ.
+     */
+    private void indexKey(Node node) {
+        Class<?> type = node.obj.getClass();
+        DeltaKey<Object> key = keys.isEmpty() ? null : keys.get(type);
+        if (key == null) {
+            return;
+        }
+        Object value = key.keyOf(node.obj);
+        Map<Object, Node> known = byKey.get(type);
+        if (known == null) {
+            known = new HashMap<Object, Node>();
+            byKey.put(type, known);
+        }
+        if (node.key != null && !node.key.equals(value) && known.get(node.key) == node) {
+            known.remove(node.key);
+        }
+        node.key = value;
+        if (value != null) {
+            known.put(value, node);
+        }
+    }
+
+    /**
+     * Запоминает текущее содержимое объекта узла.
+     */
+    private void snapshot(Node node) throws Exception {
+        Object obj = node.obj;
+        switch (node.kind) {
+        case FIELDS:
+            FieldDescriptor[] fields = node.fields;
+            for (int i = 0; i < fields.length; i++) {
+                FieldDescriptor field = fields[i];
+                if (field.getTypeCode() == TypeCode.OBJECT) {
+                    node.refs[i] = token(field.getAccessor().getObject(obj));
+                } else {
+                    node.values[i] = fieldBits(field, obj);
+                }
+            }
+            break;
+        case OBJECT_ARRAY:
+            Object[] elements = (Object[]) obj;
+            for (int i = 0; i < elements.length; i++) {
+                node.refs[i] = token(elements[i]);
+            }
+            break;
+        case PRIMITIVE_ARRAY:
+            System.arraycopy(obj, 0, node.copy, 0, Array.getLength(obj));
+            break;
+        case COLLECTION:
+        case FIXED_COLLECTION:
+            Object[] current = node.codec.toElements(obj);
+            if (node.refs == null || node.refs.length != current.length) {
+                node.refs = new Object[current.length];
+            }
+            for (int i = 0; i < current.length; i++) {
+                node.refs[i] = token(current[i]);
+            }
+            break;
+        case CUSTOM:
+            node.copy = encode(node);
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * @param value значение ссылки
+     * @return узел объекта, само значение для значений встроенных типов или {@code null}
+     */
+    private Object token(Object value) {
+        if (value == null) {
+            return null;
+        }
+        Node node = byObject.get(value);
+        if (node != null) {
+            return node;
+        }
+        return kindOf(value.getClass(), registry) == VALUE ? value : UNKNOWN;
+    }
+
+    /**
+     * @param token ссылка из снимка
+     * @param value текущее значение ссылки
+     * @return ссылается ли значение на тот же узел или на равное значение
+     */
+    private boolean sameRef(Object token, Object value) {
+        if (value == null || token == null) {
+            return value == token;
+        }
+        Node node = byObject.get(value);
+        if (node != null) {
+            return node == token;
+        }
+        if (token instanceof Node || token == UNKNOWN || token.getClass() != value.getClass()) {
+            return false;
+        }
+        return kindOf(value.getClass(), registry) == VALUE && token.equals(value);
+    }
+
+    private boolean sameRefs(Object[] tokens, Object[] values) {
+        return tokens != null && tokens.length == values.length && sameRefs(tokens, values, values.length);
+    }
+
+    /**
+     * @return совпадают ли первые {@code count} ссылок
+     */
+    private boolean sameRefs(Object[] tokens, Object[] values, int count) {
+        if (tokens.length < count || values.length < count) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (!sameRef(tokens[i], values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Кодирует содержимое объекта с пользовательским представлением для сравнения.
+     */
+    private byte[] encode(Node node) throws IOException {
+        if (scratch == null) {
+            scratch = new Encoder();
+        }
+        scratch.begin();
+        node.custom.write(node.obj, scratch);
+        return scratch.toByteArray();
+    }
+
+    /**
+     * @return значение примитивного поля в виде битов
+     */
+    private static long fieldBits(FieldDescriptor field, Object obj) throws Exception {
+        FieldAccessor accessor = field.getAccessor();
+        switch (field.getTypeCode()) {
+        case TypeCode.BYTE:
+            return accessor.getByte(obj);
+        case TypeCode.SHORT:
+            return accessor.getShort(obj);
+        case TypeCode.INT:
+            return accessor.getInt(obj);
+        case TypeCode.LONG:
+            return accessor.getLong(obj);
+        case TypeCode.FLOAT:
+            return Float.floatToRawIntBits(accessor.getFloat(obj));
+        case TypeCode.DOUBLE:
+            return Double.doubleToRawLongBits(accessor.getDouble(obj));
+        case TypeCode.BOOLEAN:
+            return accessor.getBoolean(obj) ? 1 : 0;
+        case TypeCode.CHAR:
+            return accessor.getChar(obj);
+        default:
+            throw new IllegalArgumentException("Not a primitive field: " + field.getName());
+        }
+    }
+
+    /**
+     * @return элемент массива примитивов в виде битов
+     */
+    private static long elementBits(int typeCode, Object array, int index) {
+        switch (typeCode) {
+        case TypeCode.BYTE:
+            return ((byte[]) array)[index];
+        case TypeCode.SHORT:
+            return ((short[]) array)[index];
+        case TypeCode.INT:
+            return ((int[]) array)[index];
+        case TypeCode.LONG:
+            return ((long[]) array)[index];
+        case TypeCode.FLOAT:
+            return Float.floatToRawIntBits(((float[]) array)[index]);
+        case TypeCode.DOUBLE:
+            return Double.doubleToRawLongBits(((double[]) array)[index]);
+        case TypeCode.BOOLEAN:
+            return ((boolean[]) array)[index] ? 1 : 0;
+        case TypeCode.CHAR:
+            return ((char[]) array)[index];
+        default:
+            throw new IllegalArgumentException("Not a primitive type code: " + typeCode);
+        }
+    }
+
+    // Сторона чтения
+
+    /**
+     * Начинает применение разности.
+     *
+     * @param count число объектов базы, на которой построена разность
+     * @throws StreamCorruptedException если оно не совпадает с числом объектов этой базы
+     */
+    void beginRead(int count) throws StreamCorruptedException {
+        begin(READER);
+        if (count != size) {
+            throw new StreamCorruptedException("Delta is based on " + count + " objects, baseline has " + size);
+        }
+    }
+
+    /**
+     * Копирует объекты базы в начало кучи десериализатора, так что ссылки на них
+     * считываются по идентификаторам базы.
+     *
+     * @param heap куча десериализатора
+     * @return куча с объектами базы, возможно новый массив
+     */
+    Object[] seedHeap(Object[] heap) {
+        Object[] result = heap.length > size ? heap : new Object[size * 2];
+        System.arraycopy(objects, 0, result, 0, size);
+        return result;
+    }
+
+    /**
+     * Считывает идентификаторы объектов, удаляемых из базы.
+     *
+     * @param in декодировщик
+     * @throws IOException при ошибке считывания
+     */
+    void readReleased(Decoder in) throws IOException {
+        if (released.length < size) {
+            released = new boolean[objects.length];
+        }
+        long count = in.readVarint();
+        if (count > size) {
+            throw new StreamCorruptedException("Released object count out of range: " + count);
+        }
+        long id = -1;
+        for (long i = 0; i < count; i++) {
+            id += in.readVarint() + 1;
+            if (id < 0 || id >= size) {
+                throw new StreamCorruptedException("Unknown released object: " + id);
+            }
+            released[(int) id] = true;
+        }
+    }
+
+    /**
+     * Завершает применение разности: удаляет из базы освобожденные объекты и добавляет новые
+     * объекты сообщения в том же порядке, что и сторона записи.
+     *
+     * @param heap куча десериализатора
+     * @param end число объектов в куче
+     * @param registry реестр классов десериализатора
+     */
+    void commitRead(Object[] heap, int end, ClassRegistry registry) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (released[i]) {
+                released[i] = false;
+            } else {
+                objects[count++] = heap[i];
+            }
+        }
+        for (int i = size; i < end; i++) {
+            Object obj = heap[i];
+            if (obj != null && kindOf(obj.getClass(), registry) != VALUE) {
+                if (count == objects.length) {
+                    objects = Arrays.copyOf(objects, count * 2);
+                }
+                objects[count++] = obj;
+            }
+        }
+        if (count < size) {
+            Arrays.fill(objects, count, size, null);
+        }
+        size = count;
+        broken = false;
+    }
+
+    /**
+     * Узел базы стороны записи: объект графа, его идентификатор и снимок содержимого.
+     */
+    static final class Node {
+
+        /** Вид узла. */
+        final int kind;
+        /** Поля объекта для {@link DeltaBaseline#FIELDS}. */
+        final FieldDescriptor[] fields;
+        /** Представление коллекции. */
+        final CollectionCodec codec;
+        /** Пользовательское представление для {@link DeltaBaseline#CUSTOM}. */
+        final Codec<Object> custom;
+        /** Код типа элементов для {@link DeltaBaseline#PRIMITIVE_ARRAY}. */
+        final int typeCode;
+        /** Объект графа. */
+        Object obj;
+        /** Идентификатор в базе. */
+        int id;
+        /** Номер записи, в которой объект последний раз достигнут из корня. */
+        int epoch;
+        /** Отсоединен ли объект от узла, так что он записывается как новый. */
+        boolean replaced;
+        /** Ключ объекта или {@code null}. */
+        Object key;
+        /** Снимок примитивных полей в виде битов. */
+        long[] values;
+        /** Снимок ссылок: узлы, значения встроенных типов или {@code null}. */
+        Object[] refs;
+        /** Снимок массива примитивов или закодированное пользовательским представлением содержимое. */
+        Object copy;
+
+        @SuppressWarnings("unchecked")
+        Node(Object obj, Class<?> type, int kind, AccessorType accessorType, ClassRegistry registry) {
+            this.obj = obj;
+            this.kind = kind;
+            this.fields = kind == FIELDS ? ClassDescriptor.forClass(type, accessorType).getFields() : null;
+            this.codec = kind == COLLECTION || kind == FIXED_COLLECTION ? CollectionCodec.forClass(type) : null;
+            this.custom = kind == CUSTOM ? (Codec<Object>) registry.getCodec(type) : null;
+            this.typeCode = kind == PRIMITIVE_ARRAY ? TypeCode.of(type.getComponentType()) : TypeCode.OBJECT;
+            if (kind == FIELDS) {
+                values = new long[fields.length];
+                refs = new Object[fields.length];
+            } else if (kind == OBJECT_ARRAY) {
+                refs = new Object[((Object[]) obj).length];
+            } else if (kind == PRIMITIVE_ARRAY) {
+                copy = Array.newInstance(type.getComponentType(), Array.getLength(obj));
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,22 @@
+package ua.vladaxon.serializer;
+
+/**
+ * Ключ, по которому объект текущего графа сопоставляется с объектом базы разностной записи,
+ * если это другой экземпляр, см. {@link DeltaBaseline#setKey(Class, DeltaKey)}. Например,
+ * граф, заново собранный из базы данных, сопоставляется с прошлым снимком по первичным ключам.
+ *
+ * @param <T> класс объектов
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public interface DeltaKey<T> {
+
+    /**
+     * @param obj объект графа
+     * @return ключ объекта с корректными {@code equals} и {@code hashCode} или {@code null},
+     *         если объект сопоставляется только по ссылке
+     */
+    Object keyOf(T obj);
+
+}
@@ -0,0 +1,599 @@
+package ua.vladaxon.serializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Буферизованная запись примитивных значений в формате потока. Значения записываются напрямую
+ * в массив байт, который по заполнении сбрасывается в приемник:
+ * <ul>
+ * <li>без приемника массив увеличивается, результат забирается через {@link #toByteArray()};</li>
+ * <li>{@link OutputStream} получает содержимое массива блоками;</li>
+ * <li>{@link ByteBuffer} с доступным массивом заполняется напрямую, без промежуточного копирования;</li>
+ * <li>прямой или доступный только через методы {@link ByteBuffer} получает содержимое массива блоками.</li>
+ * </ul>
+ * Многобайтные значения записываются в порядке big-endian, как в {@link java.io.DataOutputStream}.
+ * Массив переиспользуется между вызовами.
+ * <p>
+ * Открытые методы записи значений доступны пользовательским представлениям {@link Codec}.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public final class Encoder {
+
+    /** Размер собственного массива по умолчанию. */
+    private static final int DEFAULT_SIZE = TypeCode.BLOCK_SIZE;
+    /** Размер собственного массива, сверх которого он не сохраняется между вызовами. */
+    private static final int MAX_RETAINED_SIZE = 1 << 20;
+
+    /** Собственный массив кодировщика. */
+    private byte[] ownBuffer = new byte[DEFAULT_SIZE];
+    /** Массив, в который производится запись: собственный или массив буфера-приемника. */
+    private byte[] buffer = ownBuffer;
+    /** Позиция записи в массиве. */
+    private int position;
+    /** Граница записи в массиве. */
+    private int limit = buffer.length;
+    /** Поток-приемник. */
+    private OutputStream stream;
+    /** Буфер-приемник. */
+    private ByteBuffer target;
+    /** Записывается ли массив буфера-приемника напрямую. */
+    private boolean targetArray;
+    /** Представление массива для блочной записи массивов примитивов. */
+    private ByteBuffer view = ByteBuffer.wrap(buffer);
+    /** Записывать ли int и long zigzag varint-числами в {@link #writeNumber(int)}. */
+    private boolean varintNumbers;
+    /** Буфер для кодирования строк, увеличивается по мере необходимости. */
+    private byte[] stringBuffer = new byte[256];
+    /** Число байт, переданных приемнику с начала записи. */
+    private long flushed;
+    /** Начальная позиция записи в массиве буфера-приемника. */
+    private int origin;
+
+    Encoder() {
+    }
+
+    /**
+     * Начинает запись в собственный увеличиваемый массив.
+     */
+    void begin() {
+        reset();
+    }
+
+    /**
+     * Начинает запись в поток.
+     *
+     * @param out поток-приемник
+     */
+    void begin(OutputStream out) {
+        reset();
+        stream = out;
+    }
+
+    /**
+     * Начинает запись в буфер, начиная с его текущей позиции.
+     *
+     * @param out буфер-приемник
+     */
+    void begin(ByteBuffer out) {
+        reset();
+        target = out;
+        if (out.hasArray()) {
+            targetArray = true;
+            setBuffer(out.array());
+            position = out.arrayOffset() + out.position();
+            limit = out.arrayOffset() + out.limit();
+            origin = position;
+        }
+    }
+
+    /**
+     * Сбрасывает оставшиеся данные в приемник.
+     *
+     * @throws IOException при ошибке записи в поток
+     */
+    void finish() throws IOException {
+        if (targetArray) {
+            target.position(position - target.arrayOffset());
+        } else if (stream != null || target != null) {
+            flush();
+        }
+    }
+
+    /**
+     * Отсоединяет приемник, чтобы не удерживать ссылку на него. Записанные в собственный
+     * массив данные остаются доступны через {@link #toByteArray()}.
+     */
+    void detach() {
+        if (targetArray) {
+            setBuffer(ownBuffer);
+            position = 0;
+            limit = buffer.length;
+        }
+        stream = null;
+        target = null;
+        targetArray = false;
+    }
+
+    /**
+     * Возвращает записанные данные после записи в собственный массив.
+     *
+     * @return копия записанных байт
+     */
+    byte[] toByteArray() {
+        byte[] result = Arrays.copyOf(buffer, position);
+        reset();
+        return result;
+    }
+
+    /**
+     * Возвращает число байт, записанных в собственный массив.
+     *
+     * @return позиция записи
+     */
+    int position() {
+        return position;
+    }
+
+    /**
+     * Возвращает число байт, записанных с начала записи, включая переданные приемнику.
+     *
+     * @return число записанных байт
+     */
+    long count() {
+        return flushed + position - origin;
+    }
+
+    /**
+     * Перезаписывает ранее записанные в собственный массив четыре байта.
+     *
+     * @param at позиция значения
+     * @param value значение
+     */
+    void patchInt(int at, int value) {
+        buffer[at] = (byte) (value >>> 24);
+        buffer[at + 1] = (byte) (value >>> 16);
+        buffer[at + 2] = (byte) (value >>> 8);
+        buffer[at + 3] = (byte) value;
+    }
+
+    /**
+     * Передает записанные в собственный массив данные другому кодировщику и начинает
+     * запись заново.
+     *
+     * @param out кодировщик-получатель
+     * @throws IOException при ошибке записи
+     */
+    void writeTo(Encoder out) throws IOException {
+        out.writeBytes(buffer, 0, position);
+        reset();
+    }
+
+    /**
+     * @param varintNumbers записывать ли int и long в {@link #writeNumber(int)} varint-числами
+     */
+    void setVarintNumbers(boolean varintNumbers) {
+        this.varintNumbers = varintNumbers;
+    }
+
+    /**
+     * Записывает младший байт значения.
+     *
+     * @param value значение
+     * @throws IOException при ошибке записи
+     */
+    public void writeByte(int value) throws IOException {
+        if (position == limit) {
+            makeRoom(1);
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Записывает логическое значение одним байтом.
+     *
+     * @param value значение
+     * @throws IOException при ошибке записи
+     */
+    public void writeBoolean(boolean value) throws IOException {
+        writeByte(value ? 1 : 0);
+    }
+
+    /**
+     * Записывает младшие два байта значения.
+     *
+     * @param value значение
+     * @throws IOException при ошибке записи
+     */
+    public void writeShort(int value) throws IOException {
+        if (limit - position < 2) {
+            makeRoom(2);
+        }
+        byte[] b = buffer;
+        int p = position;
+        b[p] = (byte) (value >>> 8);
+        b[p + 1] = (byte) value;
+        position = p + 2;
+    }
+
+    /**
+     * Записывает символ двумя байтами.
+     *
+     * @param value значение
+     * @throws IOException при ошибке записи
+     */
+    public void writeChar(int value) throws IOException {
+        writeShort(value);
+    }
+
+    /**
+     * Записывает int четырьмя байтами.
+     *
+     * @param value значение
+     * @throws IOException при ошибке записи
+     */
+    public void writeInt(int value) throws IOException {
+        if (limit - position < 4) {
+            makeRoom(4);
+        }
+        byte[] b = buffer;
+        int p = position;
+        b[p] = (byte) (value >>> 24);
+        b[p + 1] = (byte) (value >>> 16);
+        b[p + 2] = (byte) (value >>> 8);
+        b[p + 3] = (byte) value;
+        position = p + 4;
+    }
+
+    /**
+     * Записывает long восемью байтами.
+     *
+     * @param value значение
+     * @throws IOException при ошибке записи
+     */
+    public void writeLong(long value) throws IOException {
+        if (limit - position < 8) {
+            makeRoom(8);
+        }
+        byte[] b = buffer;
+        int p = position;
+        b[p] = (byte) (value >>> 56);
+        b[p + 1] = (byte) (value >>> 48);
+        b[p + 2] = (byte) (value >>> 40);
+        b[p + 3] = (byte) (value >>> 32);
+        b[p + 4] = (byte) (value >>> 24);
+        b[p + 5] = (byte) (value >>> 16);
+        b[p + 6] = (byte) (value >>> 8);
+        b[p + 7] = (byte) value;
+        position = p + 8;
+    }
+
+    /**
+     * Записывает float четырьмя байтами.
+     *
+     * @param value значение
+     * @throws IOException при ошибке записи
+     */
+    public void writeFloat(float value) throws IOException {
+        writeInt(Float.floatToIntBits(value));
+    }
+
+    /**
+     * Записывает double восемью байтами.
+     *
+     * @param value значение
+     * @throws IOException при ошибке записи
+     */
+    public void writeDouble(double value) throws IOException {
+        writeLong(Double.doubleToLongBits(value));
+    }
+
+    /**
+     * Записывает значение поля int: четырьмя байтами или zigzag varint-числом.
+     *
+     * @param value значение
+     * @throws IOException при ошибке записи
+     */
+    public void writeNumber(int value) throws IOException {
+        if (varintNumbers) {
+            writeVarint(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+        } else {
+            writeInt(value);
+        }
+    }
+
+    /**
+     * Записывает значение поля long: восемью байтами или zigzag varint-числом.
+     *
+     * @param value значение
+     * @throws IOException при ошибке записи
+     */
+    public void writeNumber(long value) throws IOException {
+        if (varintNumbers) {
+            writeVarint((value << 1) ^ (value >> 63));
+        } else {
+            writeLong(value);
+        }
+    }
+
+    /**
+     * Записывает беззнаковое число в формате LEB128: по семь бит на байт, младшие группы первыми,
+     * старший бит байта означает продолжение.
+     *
+     * @param value число, рассматриваемое как беззнаковое
+     * @throws IOException при ошибке записи
+     */
+    public void writeVarint(long value) throws IOException {
+        if (limit - position < 10) {
+            int size = varintSize(value);
+            if (limit - position < size) {
+                makeRoom(size);
+            }
+        }
+        byte[] b = buffer;
+        int p = position;
+        while ((value & ~0x7FL) != 0) {
+            b[p++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        b[p++] = (byte) value;
+        position = p;
+    }
+
+    /**
+     * Возвращает число байт varint-записи числа. Используется, когда до конца массива осталось
+     * меньше места, чем занимает самое длинное число, например при записи в буфер точного размера.
+     *
+     * @param value число, рассматриваемое как беззнаковое
+     * @return число байт от 1 до 10
+     */
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Записывает байты из массива.
+     *
+     * @param bytes массив байт
+     * @param offset начало записываемой части
+     * @param length число байт
+     * @throws IOException при ошибке записи
+     */
+    public void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        if (stream != null && length >= buffer.length) {
+            flush();
+            stream.write(bytes, offset, length);
+            flushed += length;
+            return;
+        }
+        while (length > 0) {
+            if (position == limit) {
+                makeRoom(length);
+            }
+            int count = Math.min(length, limit - position);
+            System.arraycopy(bytes, offset, buffer, position, count);
+            position += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Записывает массив примитивов, кроме byte, блоками через представление {@link ByteBuffer}.
+     *
+     * @param typeCode код типа элементов массива
+     * @param array массив примитивов
+     * @param length длина массива
+     * @throws IOException при ошибке записи
+     */
+    void writePrimitiveArray(int typeCode, Object array, int length) throws IOException {
+        int elementSize = TypeCode.sizeOf(typeCode);
+        int offset = 0;
+        while (offset < length) {
+            int count = Math.min(length - offset, (limit - position) / elementSize);
+            if (count == 0) {
+                makeRoom((length - offset) * elementSize);
+                continue;
+            }
+            view.clear().position(position);
+            switch (typeCode) {
+            case TypeCode.SHORT:
+                view.asShortBuffer().put((short[]) array, offset, count);
+                break;
+            case TypeCode.INT:
+                view.asIntBuffer().put((int[]) array, offset, count);
+                break;
+            case TypeCode.LONG:
+                view.asLongBuffer().put((long[]) array, offset, count);
+                break;
+            case TypeCode.FLOAT:
+                view.asFloatBuffer().put((float[]) array, offset, count);
+                break;
+            case TypeCode.DOUBLE:
+                view.asDoubleBuffer().put((double[]) array, offset, count);
+                break;
+            case TypeCode.CHAR:
+                view.asCharBuffer().put((char[]) array, offset, count);
+                break;
+            default:
+                boolean[] booleans = (boolean[]) array;
+                for (int i = 0; i < count; i++) {
+                    buffer[position + i] = booleans[offset + i] ? (byte) 1 : (byte) 0;
+                }
+            }
+            position += count * elementSize;
+            offset += count;
+        }
+    }
+
+    /**
+     * Записывает строку. Строки из символов ISO-8859-1 записываются по байту на символ,
+     * остальные - в UTF-8. Символы копируются в буфер целиком, без промежуточных объектов.
+     *
+     * @param value записываемая строка
+     * @throws IOException при ошибке записи
+     */
+    @SuppressWarnings("deprecation")
+    public void writeString(String value) throws IOException {
+        int length = value.length();
+        if (isLatin1(value, length)) {
+            writeVarint((long) length << 2 | WireFormat.STRING_LATIN1);
+            if (limit - position >= length) {
+                value.getBytes(0, length, buffer, position);
+                position += length;
+            } else {
+                byte[] bytes = stringBuffer(length);
+                value.getBytes(0, length, bytes, 0);
+                writeBytes(bytes, 0, length);
+            }
+            return;
+        }
+        int encoded = encodeUtf8(value, length);
+        if (encoded >= 0) {
+            writeVarint((long) encoded << 2 | WireFormat.STRING_UTF8);
+            writeBytes(stringBuffer, 0, encoded);
+        } else {
+            writeVarint((long) length << 2 | WireFormat.STRING_UTF16);
+            for (int i = 0; i < length; i++) {
+                writeChar(value.charAt(i));
+            }
+        }
+    }
+
+    /**
+     * Проверяет, что все символы строки входят в ISO-8859-1.
+     *
+     * @param value проверяемая строка
+     * @param length длина строки
+     * @return {@code true}, если строку можно записать по байту на символ
+     */
+    private static boolean isLatin1(String value, int length) {
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Кодирует строку в UTF-8 в буфер строк.
+     *
+     * @param value кодируемая строка
+     * @param length длина строки
+     * @return число байт в буфере или -1, если строка содержит непарные суррогаты
+     */
+    private int encodeUtf8(String value, int length) {
+        byte[] bytes = stringBuffer(length * 3);
+        int pos = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[pos++] = (byte) (0xC0 | c >> 6);
+                bytes[pos++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                if (!Character.isHighSurrogate(c) || i + 1 == length || !Character.isLowSurrogate(value.charAt(i + 1))) {
+                    return -1;
+                }
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                bytes[pos++] = (byte) (0xF0 | codePoint >> 18);
+                bytes[pos++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                bytes[pos++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                bytes[pos++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                bytes[pos++] = (byte) (0xE0 | c >> 12);
+                bytes[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[pos++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Возвращает буфер строк не меньше указанного размера.
+     *
+     * @param size требуемый размер
+     * @return буфер строк
+     */
+    private byte[] stringBuffer(int size) {
+        if (stringBuffer.length < size) {
+            stringBuffer = new byte[Math.max(size, stringBuffer.length * 2)];
+        }
+        return stringBuffer;
+    }
+
+    /**
+     * Освобождает место в массиве: сбрасывает данные в приемник или увеличивает массив.
+     *
+     * @param required требуемое число свободных байт; при записи в приемник массив просто
+     *            освобождается, крупные значения записываются по частям
+     * @throws IOException при ошибке записи в поток
+     */
+    private void makeRoom(int required) throws IOException {
+        if (targetArray) {
+            throw new BufferOverflowException();
+        }
+        if (stream != null || target != null) {
+            flush();
+            return;
+        }
+        int size = Math.max(buffer.length * 2, position + required);
+        ownBuffer = Arrays.copyOf(buffer, size);
+        setBuffer(ownBuffer);
+        limit = size;
+    }
+
+    /**
+     * Сбрасывает содержимое собственного массива в поток или буфер-приемник.
+     *
+     * @throws IOException при ошибке записи в поток
+     */
+    private void flush() throws IOException {
+        if (position > 0) {
+            if (stream != null) {
+                stream.write(buffer, 0, position);
+            } else {
+                target.put(buffer, 0, position);
+            }
+            flushed += position;
+            position = 0;
+        }
+    }
+
+    /**
+     * Подготавливает собственный массив к новой записи.
+     */
+    private void reset() {
+        if (ownBuffer.length > MAX_RETAINED_SIZE) {
+            ownBuffer = new byte[DEFAULT_SIZE];
+        }
+        setBuffer(ownBuffer);
+        position = 0;
+        limit = buffer.length;
+        stream = null;
+        target = null;
+        targetArray = false;
+        flushed = 0;
+        origin = 0;
+    }
+
+    private void setBuffer(byte[] array) {
+        if (buffer != array) {
+            buffer = array;
+            view = ByteBuffer.wrap(array);
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package ua.vladaxon.serializer;
+
+import java.lang.reflect.Field;
+
+/**
+ * Типизированный доступ к значению поля объекта. Для каждого типа поля вызываются только методы
+ * соответствующего типа, поэтому примитивные значения не упаковываются.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+abstract class FieldAccessor {
+
+    /**
+     * Создает средство доступа к полю.
+     *
+     * @param field поле, уже открытое для доступа
+     * @param type требуемый способ доступа
+     * @return средство доступа к полю
+     */
+    static FieldAccessor create(Field field, AccessorType type) {
+        if (type == AccessorType.METHOD_HANDLE) {
+            FieldAccessor accessor = MethodHandleAccessors.create(field);
+            if (accessor != null) {
+                return accessor;
+            }
+            // Скрытые классы или дескрипторы поля недоступны, остаемся на рефлексии
+        }
+        return new ReflectiveFieldAccessor(field);
+    }
+
+    abstract byte getByte(Object obj) throws Exception;
+
+    abstract short getShort(Object obj) throws Exception;
+
+    abstract int getInt(Object obj) throws Exception;
+
+    abstract long getLong(Object obj) throws Exception;
+
+    abstract float getFloat(Object obj) throws Exception;
+
+    abstract double getDouble(Object obj) throws Exception;
+
+    abstract boolean getBoolean(Object obj) throws Exception;
+
+    abstract char getChar(Object obj) throws Exception;
+
+    abstract Object getObject(Object obj) throws Exception;
+
+    abstract void setByte(Object obj, byte value) throws Exception;
+
+    abstract void setShort(Object obj, short value) throws Exception;
+
+    abstract void setInt(Object obj, int value) throws Exception;
+
+    abstract void setLong(Object obj, long value) throws Exception;
+
+    abstract void setFloat(Object obj, float value) throws Exception;
+
+    abstract void setDouble(Object obj, double value) throws Exception;
+
+    abstract void setBoolean(Object obj, boolean value) throws Exception;
+
+    abstract void setChar(Object obj, char value) throws Exception;
+
+    abstract void setObject(Object obj, Object value) throws Exception;
+
+}
@@ -0,0 +1,67 @@
+package ua.vladaxon.serializer;
+
+import java.lang.reflect.Field;
+
+/**
+ * Описание сериализуемого поля: имя поля, код его типа и средство доступа к значению.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+final class FieldDescriptor {
+
+    /** Имя поля. */
+    private final String name;
+    /** Код типа поля. */
+    private final int typeCode;
+    /** Средство доступа к значению поля. */
+    private final FieldAccessor accessor;
+
+    /**
+     * Создает описание поля.
+     *
+     * @param field нестатическое поле класса
+     * @param accessorType способ доступа к значению поля
+     */
+    FieldDescriptor(Field field, AccessorType accessorType) {
+        field.setAccessible(true);
+        this.name = field.getName();
+        this.typeCode = TypeCode.of(field.getType());
+        this.accessor = FieldAccessor.create(field, accessorType);
+    }
+
+    /**
+     * Создает описание поля с готовым средством доступа.
+     *
+     * @param name имя поля
+     * @param type тип поля
+     * @param accessor средство доступа к значению поля
+     */
+    FieldDescriptor(String name, Class<?> type, FieldAccessor accessor) {
+        this.name = name;
+        this.typeCode = TypeCode.of(type);
+        this.accessor = accessor;
+    }
+
+    /**
+     * @return имя поля
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return код типа поля, см. {@link TypeCode}
+     */
+    int getTypeCode() {
+        return typeCode;
+    }
+
+    /**
+     * @return средство доступа к значению поля
+     */
+    FieldAccessor getAccessor() {
+        return accessor;
+    }
+
+}
@@ -0,0 +1,326 @@
+package ua.vladaxon.serializer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+
+/**
+ * Чтение потока блоков, записанного {@link FramedOutputStream}. Блоки считываются из исходного
+ * потока по мере чтения, поэтому в памяти находится не более одного блока, а при параллельной
+ * распаковке - не более заданного числа блоков. Из исходного потока считываются ровно байты
+ * потока блоков до завершающего блока включительно, после чего чтение возвращает конец данных.
+ * <p>
+ * Алгоритм сжатия выбирается по идентификатору из заголовка среди встроенных
+ * {@link DeflateCompressor} и {@link LzCompressor} и переданных в конструктор.
+ * Контрольная сумма каждого блока проверяется после распаковки.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public class FramedInputStream extends InputStream {
+
+    /** Исходный поток. */
+    private final InputStream in;
+    /** Дополнительные алгоритмы сжатия. */
+    private final BlockCompressor[] compressors;
+    /** Исполнитель параллельной распаковки или {@code null}. */
+    private final Executor executor;
+    /** Наибольшее число блоков, распаковываемых одновременно. */
+    private final int readAhead;
+    /** Блоки, переданные на распаковку, в порядке следования. */
+    private final ArrayDeque<FutureTask<byte[]>> pending = new ArrayDeque<>();
+    /** Алгоритм сжатия потока. */
+    private BlockCompressor compressor;
+    /** Размер блока из заголовка. */
+    private int frameSize;
+    /** Наибольшая длина сохраненного блока. */
+    private int maxStoredLength;
+    /** Считан ли заголовок потока. */
+    private boolean started;
+    /** Считан ли завершающий блок. */
+    private boolean endOfFrames;
+    /** Текущий распакованный блок. */
+    private byte[] current;
+    /** Позиция чтения в текущем блоке. */
+    private int position;
+    /** Длина текущего блока. */
+    private int limit;
+    /** Буфер сохраненного блока при последовательном чтении. */
+    private byte[] storedBuffer;
+    /** Буфер распакованного блока при последовательном чтении. */
+    private byte[] rawBuffer;
+    /** Контрольная сумма при последовательном чтении. */
+    private final CRC32 checksum = new CRC32();
+
+    /**
+     * Создает поток с последовательной распаковкой блоков.
+     *
+     * @param in исходный поток
+     * @param compressors алгоритмы сжатия помимо встроенных
+     */
+    public FramedInputStream(InputStream in, BlockCompressor... compressors) {
+        this(in, null, 1, compressors);
+    }
+
+    /**
+     * Создает поток с параллельной распаковкой блоков. Сжатые блоки считываются заранее
+     * и распаковываются исполнителем, а читающий поток получает их в исходном порядке.
+     *
+     * @param in исходный поток
+     * @param executor исполнитель распаковки или {@code null} для последовательной распаковки
+     * @param readAhead наибольшее число блоков, считанных заранее
+     * @param compressors алгоритмы сжатия помимо встроенных
+     */
+    public FramedInputStream(InputStream in, Executor executor, int readAhead, BlockCompressor... compressors) {
+        if (in == null) {
+            throw new NullPointerException();
+        }
+        if (readAhead <= 0) {
+            throw new IllegalArgumentException("Read-ahead must be positive: " + readAhead);
+        }
+        this.in = in;
+        this.executor = executor;
+        this.readAhead = readAhead;
+        this.compressors = compressors.clone();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == limit && !nextFrame()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || length > bytes.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (length == 0) {
+            return 0;
+        }
+        if (position == limit && !nextFrame()) {
+            return -1;
+        }
+        int count = Math.min(length, limit - position);
+        System.arraycopy(current, position, bytes, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    /**
+     * Отменяет незавершенную распаковку и закрывает исходный поток.
+     */
+    @Override
+    public void close() throws IOException {
+        for (FutureTask<byte[]> task : pending) {
+            task.cancel(false);
+        }
+        pending.clear();
+        current = null;
+        position = limit = 0;
+        in.close();
+    }
+
+    /**
+     * Переходит к следующему блоку.
+     *
+     * @return {@code false}, если блоки закончились
+     */
+    private boolean nextFrame() throws IOException {
+        if (!started) {
+            readHeader();
+        }
+        if (executor == null) {
+            if (endOfFrames) {
+                return false;
+            }
+            int rawLength = readVarint();
+            if (rawLength == 0) {
+                endOfFrames = true;
+                return false;
+            }
+            int storedLength = readVarint();
+            int crc = readInt();
+            checkLengths(rawLength, storedLength);
+            if (storedBuffer == null) {
+                storedBuffer = new byte[maxStoredLength];
+                rawBuffer = new byte[frameSize];
+            }
+            readFully(storedBuffer, storedLength);
+            current = decode(storedBuffer, storedLength, rawBuffer, rawLength, crc, checksum);
+            position = 0;
+            limit = rawLength;
+            return true;
+        }
+        while (!endOfFrames && pending.size() < readAhead) {
+            submitFrame();
+        }
+        FutureTask<byte[]> task = pending.poll();
+        if (task == null) {
+            return false;
+        }
+        try {
+            current = task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a frame");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Frame decompression failed", cause);
+        }
+        position = 0;
+        limit = current.length;
+        if (!endOfFrames) {
+            submitFrame();
+        }
+        return true;
+    }
+
+    /**
+     * Считывает сжатый блок и передает его на распаковку.
+     */
+    private void submitFrame() throws IOException {
+        final int rawLength = readVarint();
+        if (rawLength == 0) {
+            endOfFrames = true;
+            return;
+        }
+        final int storedLength = readVarint();
+        final int crc = readInt();
+        checkLengths(rawLength, storedLength);
+        final byte[] stored = new byte[storedLength];
+        readFully(stored, storedLength);
+        FutureTask<byte[]> task = new FutureTask<>(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                return decode(stored, storedLength, new byte[rawLength], rawLength, crc, new CRC32());
+            }
+        });
+        pending.add(task);
+        executor.execute(task);
+    }
+
+    /**
+     * Распаковывает блок и проверяет его контрольную сумму.
+     *
+     * @return массив с распакованным блоком
+     */
+    private byte[] decode(byte[] stored, int storedLength, byte[] raw, int rawLength, int crc, CRC32 checksum)
+            throws IOException {
+        byte[] result;
+        if (storedLength == rawLength) {
+            result = stored;
+        } else {
+            compressor.decompress(stored, 0, storedLength, raw, 0, rawLength);
+            result = raw;
+        }
+        checksum.reset();
+        checksum.update(result, 0, rawLength);
+        if ((int) checksum.getValue() != crc) {
+            throw new StreamCorruptedException("Frame checksum mismatch");
+        }
+        return result;
+    }
+
+    /**
+     * Считывает заголовок потока и выбирает алгоритм сжатия.
+     */
+    private void readHeader() throws IOException {
+        if (readByte() != WireFormat.FRAMED_MAGIC_0 || readByte() != WireFormat.FRAMED_MAGIC_1) {
+            throw new StreamCorruptedException("Not a framed stream");
+        }
+        int version = readByte();
+        if (version != WireFormat.FRAMED_VERSION) {
+            throw new StreamCorruptedException("Unsupported framed stream version: " + version);
+        }
+        int id = readByte();
+        compressor = findCompressor(id);
+        if (compressor == null) {
+            throw new StreamCorruptedException("Unknown compressor id: " + id);
+        }
+        frameSize = readVarint();
+        if (frameSize <= 0) {
+            throw new StreamCorruptedException("Invalid frame size: " + frameSize);
+        }
+        maxStoredLength = Math.max(frameSize, compressor.maxCompressedLength(frameSize));
+        started = true;
+    }
+
+    private BlockCompressor findCompressor(int id) {
+        for (BlockCompressor candidate : compressors) {
+            if (candidate.getId() == id) {
+                return candidate;
+            }
+        }
+        if (id == DeflateCompressor.ID) {
+            return new DeflateCompressor();
+        }
+        if (id == LzCompressor.ID) {
+            return new LzCompressor();
+        }
+        return null;
+    }
+
+    private void checkLengths(int rawLength, int storedLength) throws StreamCorruptedException {
+        if (rawLength > frameSize || storedLength <= 0 || storedLength > maxStoredLength) {
+            throw new StreamCorruptedException("Invalid frame lengths: " + rawLength + "/" + storedLength);
+        }
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Unexpected end of framed stream");
+        }
+        return b;
+    }
+
+    private int readInt() throws IOException {
+        return readByte() << 24 | readByte() << 16 | readByte() << 8 | readByte();
+    }
+
+    private int readVarint() throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readByte();
+            result |= (b & 0x7F) << shift;
+            if (b < 0x80) {
+                if (result < 0) {
+                    break;
+                }
+                return result;
+            }
+        }
+        throw new StreamCorruptedException("Malformed frame length");
+    }
+
+    private void readFully(byte[] bytes, int length) throws IOException {
+        int count = 0;
+        while (count < length) {
+            int read = in.read(bytes, count, length - count);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of framed stream");
+            }
+            count += read;
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+package ua.vladaxon.serializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Поток, который делит записываемые данные на блоки фиксированного размера и сжимает каждый
+ * блок независимо. Читается {@link FramedInputStream}, в том числе с параллельной распаковкой,
+ * а также напрямую {@link LDesirializer}, который распознает такой поток по заголовку.
+ * <p>
+ * Поток начинается с заголовка: два байта сигнатуры, версия формата, идентификатор алгоритма
+ * сжатия и varint-размер блока. Каждый блок записывается varint-длиной исходных данных,
+ * varint-длиной сохраненных данных, контрольной суммой CRC32 исходных данных (четыре байта)
+ * и сохраненными данными. Если сжатие не уменьшает блок, он сохраняется без сжатия, и обе длины
+ * совпадают. Поток завершается блоком нулевой длины, после которого в исходном потоке могут
+ * следовать другие данные.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public class FramedOutputStream extends OutputStream {
+
+    /** Размер блока по умолчанию. */
+    public static final int DEFAULT_FRAME_SIZE = 64 * 1024;
+    /** Наибольший размер заголовка блока: две varint-длины и контрольная сумма. */
+    private static final int FRAME_HEADER_SIZE = 5 + 5 + 4;
+
+    /** Поток-приемник. */
+    private final OutputStream out;
+    /** Алгоритм сжатия. */
+    private final BlockCompressor compressor;
+    /** Накапливаемый блок. */
+    private final byte[] frame;
+    /** Число байт в накапливаемом блоке. */
+    private int count;
+    /** Буфер для заголовка и сжатого блока. */
+    private final byte[] compressed;
+    /** Заголовок блока. */
+    private final byte[] frameHeader = new byte[FRAME_HEADER_SIZE];
+    /** Контрольная сумма блока. */
+    private final CRC32 checksum = new CRC32();
+    /** Записан ли заголовок потока. */
+    private boolean started;
+    /** Записан ли завершающий блок. */
+    private boolean finished;
+
+    /**
+     * Создает поток с размером блока {@link #DEFAULT_FRAME_SIZE}.
+     *
+     * @param out поток-приемник
+     * @param compressor алгоритм сжатия
+     */
+    public FramedOutputStream(OutputStream out, BlockCompressor compressor) {
+        this(out, compressor, DEFAULT_FRAME_SIZE);
+    }
+
+    /**
+     * Создает поток с указанным размером блока. Больший блок сжимается лучше, меньший
+     * быстрее передается и требует меньше памяти при чтении.
+     *
+     * @param out поток-приемник
+     * @param compressor алгоритм сжатия
+     * @param frameSize размер блока
+     */
+    public FramedOutputStream(OutputStream out, BlockCompressor compressor, int frameSize) {
+        if (out == null || compressor == null) {
+            throw new NullPointerException();
+        }
+        if (frameSize <= 0) {
+            throw new IllegalArgumentException("Frame size must be positive: " + frameSize);
+        }
+        if (compressor.getId() < 0 || compressor.getId() > 0xFF) {
+            throw new IllegalArgumentException("Compressor id out of range: " + compressor.getId());
+        }
+        this.out = out;
+        this.compressor = compressor;
+        this.frame = new byte[frameSize];
+        this.compressed = new byte[FRAME_HEADER_SIZE + Math.max(frameSize, compressor.maxCompressedLength(frameSize))];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == frame.length) {
+            writeFrame();
+        }
+        frame[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || length > bytes.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (length > 0) {
+            if (count == frame.length) {
+                writeFrame();
+            }
+            int chunk = Math.min(length, frame.length - count);
+            System.arraycopy(bytes, offset, frame, count, chunk);
+            count += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Записывает накопленный неполный блок и сбрасывает поток-приемник. Частый вызов
+     * ухудшает сжатие.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (count > 0) {
+            writeFrame();
+        }
+        out.flush();
+    }
+
+    /**
+     * Записывает накопленный блок и завершающий блок, не закрывая поток-приемник.
+     * После этого запись в поток невозможна.
+     *
+     * @throws IOException при ошибке записи
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (count > 0 || !started) {
+            writeFrame();
+        }
+        out.write(0);
+        out.flush();
+        finished = true;
+    }
+
+    /**
+     * Завершает поток, см. {@link #finish()}, и закрывает поток-приемник.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Сжимает и записывает накопленный блок. Перед первым блоком записывается заголовок потока.
+     */
+    private void writeFrame() throws IOException {
+        if (finished) {
+            throw new IOException("Stream is finished");
+        }
+        if (!started) {
+            byte[] header = new byte[9];
+            header[0] = (byte) WireFormat.FRAMED_MAGIC_0;
+            header[1] = (byte) WireFormat.FRAMED_MAGIC_1;
+            header[2] = (byte) WireFormat.FRAMED_VERSION;
+            header[3] = (byte) compressor.getId();
+            out.write(header, 0, putVarint(header, 4, frame.length));
+            started = true;
+        }
+        if (count == 0) {
+            return;
+        }
+        checksum.reset();
+        checksum.update(frame, 0, count);
+        int storedLength = compressor.compress(frame, 0, count, compressed, FRAME_HEADER_SIZE);
+        boolean stored = storedLength >= count;
+        if (stored) {
+            storedLength = count;
+        }
+        byte[] header = frameHeader;
+        int headerLength = putVarint(header, 0, count);
+        headerLength = putVarint(header, headerLength, storedLength);
+        int crc = (int) checksum.getValue();
+        header[headerLength++] = (byte) (crc >>> 24);
+        header[headerLength++] = (byte) (crc >>> 16);
+        header[headerLength++] = (byte) (crc >>> 8);
+        header[headerLength++] = (byte) crc;
+        if (stored) {
+            out.write(header, 0, headerLength);
+            out.write(frame, 0, count);
+        } else {
+            int start = FRAME_HEADER_SIZE - headerLength;
+            System.arraycopy(header, 0, compressed, start, headerLength);
+            out.write(compressed, start, headerLength + storedLength);
+        }
+        count = 0;
+    }
+
+    private static int putVarint(byte[] bytes, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+}
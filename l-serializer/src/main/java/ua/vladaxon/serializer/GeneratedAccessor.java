@@ -0,0 +1,91 @@
+package ua.vladaxon.serializer;
+
+import java.io.IOException;
+
+/**
+ * Средство доступа к полям класса, отмеченного {@link LSerializable}, созданное при компиляции.
+ * Поля перечисляются в порядке записи: сначала поля предков, в каждом классе в порядке
+ * объявления. Примитивные поля записываются и считываются сериями - от указанного поля
+ * до ближайшего поля-ссылки, которое сериализатор обрабатывает сам.
+ * <p>
+ * Класс не предназначен для реализации вручную, его наследников создает процессор аннотаций.
+ * Экземпляр не хранит состояния и используется всеми потоками.
+ *
+ * @param <T> класс объектов
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public abstract class GeneratedAccessor<T> {
+
+    /** Окончание имени созданного класса, которое добавляется к двоичному имени класса объектов. */
+    public static final String CLASS_SUFFIX = "_LAccessor";
+
+    /** Имена полей в порядке записи. */
+    private final String[] names;
+    /** Типы полей в порядке записи. */
+    private final Class<?>[] types;
+
+    /**
+     * @param names имена полей в порядке записи
+     * @param types типы полей в порядке записи
+     */
+    protected GeneratedAccessor(String[] names, Class<?>[] types) {
+        if (names.length != types.length) {
+            throw new IllegalArgumentException("Field names and types differ in length");
+        }
+        this.names = names;
+        this.types = types;
+    }
+
+    /**
+     * @return имена полей в порядке записи
+     */
+    final String[] getNames() {
+        return names;
+    }
+
+    /**
+     * @return типы полей в порядке записи
+     */
+    final Class<?>[] getTypes() {
+        return types;
+    }
+
+    /**
+     * Записывает значения примитивных полей начиная с указанного до ближайшего поля-ссылки.
+     *
+     * @param obj объект
+     * @param from индекс первого поля
+     * @param out кодировщик
+     * @return индекс первого поля-ссылки не меньше {@code from} или число полей
+     * @throws IOException при ошибке записи
+     */
+    public abstract int writeFields(T obj, int from, Encoder out) throws IOException;
+
+    /**
+     * Считывает значения примитивных полей начиная с указанного до ближайшего поля-ссылки.
+     *
+     * @param obj объект
+     * @param from индекс первого поля
+     * @param in декодировщик
+     * @return индекс первого поля-ссылки не меньше {@code from} или число полей
+     * @throws IOException при ошибке считывания
+     */
+    public abstract int readFields(T obj, int from, Decoder in) throws IOException;
+
+    /**
+     * @param obj объект
+     * @param field индекс поля-ссылки
+     * @return значение поля
+     */
+    public abstract Object getObject(T obj, int field);
+
+    /**
+     * @param obj объект
+     * @param field индекс поля-ссылки
+     * @param value новое значение поля
+     */
+    public abstract void setObject(T obj, int field, Object value);
+
+}
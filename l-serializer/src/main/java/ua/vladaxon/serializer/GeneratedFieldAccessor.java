@@ -0,0 +1,142 @@
+package ua.vladaxon.serializer;
+
+import java.lang.reflect.Field;
+
+/**
+ * Доступ к полю класса через созданное при компиляции средство {@link GeneratedAccessor}.
+ * Ссылки читаются и записываются им напрямую. Отдельные примитивные поля нужны только
+ * при просмотре и чтении исходного формата, для них при первом обращении создается
+ * обычное средство доступа через рефлексию.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+final class GeneratedFieldAccessor extends FieldAccessor {
+
+    /** Созданное средство доступа к полям класса. */
+    private final GeneratedAccessor<Object> generated;
+    /** Класс объектов. */
+    private final Class<?> type;
+    /** Индекс поля в порядке записи. */
+    private final int index;
+    /** Способ доступа к примитивному полю. */
+    private final AccessorType accessorType;
+    /** Доступ к примитивному полю, создается при первом обращении. */
+    private volatile FieldAccessor primitive;
+
+    GeneratedFieldAccessor(GeneratedAccessor<Object> generated, Class<?> type, int index, AccessorType accessorType) {
+        this.generated = generated;
+        this.type = type;
+        this.index = index;
+        this.accessorType = accessorType;
+    }
+
+    /**
+     * @return доступ к примитивному полю через рефлексию
+     */
+    private FieldAccessor primitive() {
+        FieldAccessor accessor = primitive;
+        if (accessor == null) {
+            Field field = ClassDescriptor.declaredFields(type).get(index);
+            if (!field.getName().equals(generated.getNames()[index])) {
+                throw new IllegalStateException("Generated accessor of " + type.getName()
+                        + " does not match its fields, recompile the class");
+            }
+            field.setAccessible(true);
+            accessor = FieldAccessor.create(field, accessorType);
+            primitive = accessor;
+        }
+        return accessor;
+    }
+
+    @Override
+    byte getByte(Object obj) throws Exception {
+        return primitive().getByte(obj);
+    }
+
+    @Override
+    short getShort(Object obj) throws Exception {
+        return primitive().getShort(obj);
+    }
+
+    @Override
+    int getInt(Object obj) throws Exception {
+        return primitive().getInt(obj);
+    }
+
+    @Override
+    long getLong(Object obj) throws Exception {
+        return primitive().getLong(obj);
+    }
+
+    @Override
+    float getFloat(Object obj) throws Exception {
+        return primitive().getFloat(obj);
+    }
+
+    @Override
+    double getDouble(Object obj) throws Exception {
+        return primitive().getDouble(obj);
+    }
+
+    @Override
+    boolean getBoolean(Object obj) throws Exception {
+        return primitive().getBoolean(obj);
+    }
+
+    @Override
+    char getChar(Object obj) throws Exception {
+        return primitive().getChar(obj);
+    }
+
+    @Override
+    Object getObject(Object obj) throws Exception {
+        return generated.getObject(obj, index);
+    }
+
+    @Override
+    void setByte(Object obj, byte value) throws Exception {
+        primitive().setByte(obj, value);
+    }
+
+    @Override
+    void setShort(Object obj, short value) throws Exception {
+        primitive().setShort(obj, value);
+    }
+
+    @Override
+    void setInt(Object obj, int value) throws Exception {
+        primitive().setInt(obj, value);
+    }
+
+    @Override
+    void setLong(Object obj, long value) throws Exception {
+        primitive().setLong(obj, value);
+    }
+
+    @Override
+    void setFloat(Object obj, float value) throws Exception {
+        primitive().setFloat(obj, value);
+    }
+
+    @Override
+    void setDouble(Object obj, double value) throws Exception {
+        primitive().setDouble(obj, value);
+    }
+
+    @Override
+    void setBoolean(Object obj, boolean value) throws Exception {
+        primitive().setBoolean(obj, value);
+    }
+
+    @Override
+    void setChar(Object obj, char value) throws Exception {
+        primitive().setChar(obj, value);
+    }
+
+    @Override
+    void setObject(Object obj, Object value) throws Exception {
+        generated.setObject(obj, index, value);
+    }
+
+}
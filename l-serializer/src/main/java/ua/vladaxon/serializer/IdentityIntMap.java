@@ -0,0 +1,130 @@
+package ua.vladaxon.serializer;
+
+import java.util.Arrays;
+
+/**
+ * Отображение объектов на неотрицательные целые числа по ссылочному равенству.
+ * Использует открытую адресацию с линейным пробированием, значения хранятся без упаковки.
+ * Таблица не уменьшается при очистке, поэтому повторное заполнение после {@link #clear()}
+ * не выделяет память.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+final class IdentityIntMap {
+
+    /** Значение, означающее отсутствие ключа. */
+    static final int ABSENT = -1;
+
+    /** Ключи таблицы, {@code null} означает свободную ячейку. */
+    private Object[] keys;
+    /** Значения, соответствующие ключам. */
+    private int[] values;
+    /** Число занятых ячеек. */
+    private int size;
+    /** Число занятых ячеек, при превышении которого таблица увеличивается. */
+    private int threshold;
+
+    /**
+     * Создает отображение.
+     *
+     * @param capacity начальная емкость, степень двойки
+     */
+    IdentityIntMap(int capacity) {
+        allocate(capacity);
+    }
+
+    /**
+     * Возвращает значение для ключа или добавляет ключ с указанным значением, если его нет.
+     * Выполняет один поиск по таблице.
+     *
+     * @param key ключ, не {@code null}
+     * @param value значение для нового ключа, неотрицательное
+     * @return значение уже присутствующего ключа или {@link #ABSENT}, если ключ добавлен
+     */
+    int putIfAbsent(Object key, int value) {
+        Object[] k = keys;
+        int mask = k.length - 1;
+        int index = hash(key) & mask;
+        Object current;
+        while ((current = k[index]) != null) {
+            if (current == key) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        k[index] = key;
+        values[index] = value;
+        if (++size > threshold) {
+            resize(k.length << 1);
+        }
+        return ABSENT;
+    }
+
+    /**
+     * Возвращает значение для ключа.
+     *
+     * @param key ключ, не {@code null}
+     * @return значение или {@link #ABSENT}, если ключа нет
+     */
+    int get(Object key) {
+        Object[] k = keys;
+        int mask = k.length - 1;
+        int index = hash(key) & mask;
+        Object current;
+        while ((current = k[index]) != null) {
+            if (current == key) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return ABSENT;
+    }
+
+    /**
+     * @return число ключей
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Удаляет все ключи, сохраняя емкость таблицы.
+     */
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, null);
+            size = 0;
+        }
+    }
+
+    private static int hash(Object key) {
+        int h = System.identityHashCode(key) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new int[capacity];
+        threshold = capacity >> 1;
+    }
+
+    private void resize(int capacity) {
+        Object[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            Object key = oldKeys[i];
+            if (key != null) {
+                int index = hash(key) & mask;
+                while (keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+}
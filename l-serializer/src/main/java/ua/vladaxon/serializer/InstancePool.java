@@ -0,0 +1,66 @@
+package ua.vladaxon.serializer;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Неблокирующий пул переиспользуемых экземпляров. Экземпляр выдается одному потоку
+ * и возвращается в пул после использования, поэтому пул не зависит от числа и вида потоков
+ * и не удерживает экземпляры завершившихся потоков. При отсутствии свободного экземпляра
+ * создается новый, сверх емкости возвращенные экземпляры отбрасываются.
+ *
+ * @param <T> тип экземпляров
+ * @author Vladislav Babushkin
+ *
+ */
+abstract class InstancePool<T> {
+
+    /** Свободные экземпляры. */
+    private final ConcurrentLinkedQueue<T> idle = new ConcurrentLinkedQueue<>();
+    /** Приблизительное число свободных экземпляров. */
+    private final AtomicInteger idleCount = new AtomicInteger();
+    /** Наибольшее число хранимых свободных экземпляров. */
+    private final int capacity;
+
+    /**
+     * @param capacity наибольшее число хранимых свободных экземпляров
+     */
+    InstancePool(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Выдает свободный экземпляр или создает новый.
+     *
+     * @return экземпляр для исключительного использования до {@link #release(Object)}
+     */
+    T acquire() {
+        T instance = idle.poll();
+        if (instance == null) {
+            return create();
+        }
+        idleCount.decrementAndGet();
+        return instance;
+    }
+
+    /**
+     * Возвращает экземпляр в пул.
+     *
+     * @param instance экземпляр, полученный из {@link #acquire()}
+     */
+    void release(T instance) {
+        if (idleCount.incrementAndGet() <= capacity) {
+            idle.offer(instance);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Создает новый экземпляр.
+     *
+     * @return новый экземпляр
+     */
+    protected abstract T create();
+
+}
@@ -0,0 +1,107 @@
+package ua.vladaxon.serializer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * События JDK Flight Recorder для вызовов сериализации и десериализации. События создаются,
+ * только если JFR доступен и событие включено в записи, поэтому без записи вызов стоит одной
+ * проверки. На платформах без JFR класс событий не загружается: к нему обращаются только после
+ * проверки {@link #AVAILABLE}, а события передаются как {@link Object}.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+final class JfrEvents {
+
+    /** Доступен ли JFR. */
+    static final boolean AVAILABLE = isAvailable();
+
+    private JfrEvents() {
+    }
+
+    /**
+     * Начинает событие вызова сериализации.
+     *
+     * @return событие или {@code null}, если оно не записывается
+     */
+    static Object beginSerialize() {
+        SerializeEvent event = new SerializeEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Начинает событие вызова десериализации.
+     *
+     * @return событие или {@code null}, если оно не записывается
+     */
+    static Object beginDeserialize() {
+        DeserializeEvent event = new DeserializeEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Завершает и записывает событие.
+     *
+     * @param event событие, начатое {@link #beginSerialize()} или {@link #beginDeserialize()}
+     * @param rootType класс корневого объекта или {@code null}
+     * @param bytes число байт вызова
+     */
+    static void commit(Object event, Class<?> rootType, long bytes) {
+        CallEvent callEvent = (CallEvent) event;
+        callEvent.end();
+        if (callEvent.shouldCommit()) {
+            callEvent.rootType = rootType;
+            callEvent.bytes = bytes;
+            callEvent.commit();
+        }
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    @Category("LSerializer")
+    @StackTrace(false)
+    abstract static class CallEvent extends Event {
+
+        @Label("Root Type")
+        Class<?> rootType;
+
+        @Label("Bytes")
+        @DataAmount(DataAmount.BYTES)
+        long bytes;
+
+    }
+
+    @Name("ua.vladaxon.serializer.Serialize")
+    @Label("Serialize")
+    @Description("Serialization of an object graph")
+    static final class SerializeEvent extends CallEvent {
+    }
+
+    @Name("ua.vladaxon.serializer.Deserialize")
+    @Label("Deserialize")
+    @Description("Deserialization of an object graph")
+    static final class DeserializeEvent extends CallEvent {
+    }
+
+}
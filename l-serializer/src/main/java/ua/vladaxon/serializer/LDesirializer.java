@@ -0,0 +1,1940 @@
+package ua.vladaxon.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Десериализатор объектов. Производит создание объекта из входящего потока.
+ * <p>
+ * Формат потока определяется по заголовку, см. {@link WireFormat}. Потоки без заголовка,
+ * записанные предыдущими версиями сериализатора, читаются в исходном формате.
+ * <p>
+ * Граф объектов восстанавливается без рекурсии: созданные объекты, содержимое которых еще
+ * не считано, хранятся в явном стеке, поэтому глубина графа ограничена только размером кучи.
+ * <p>
+ * Экземпляр хранит состояние вызова и не может использоваться несколькими потоками одновременно.
+ * Для общего использования предназначена {@link LSerializerFactory}.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public class LDesirializer {
+
+    /** Начальный размер стека обхода. */
+    private static final int INITIAL_STACK_SIZE = 64;
+    /** Наибольшее число запоминаемых классов, найденных по имени. */
+    private static final int MAX_NAMED_CLASSES = 512;
+
+    /** Куча десериализируемых объектов, индекс в массиве равен идентификатору объекта. */
+    private Object[] heap = new Object[1024];
+    /** Кэш классов, индекс в массиве равен идентификатору класса. */
+    private Class<?>[] classHeap = new Class<?>[64];
+    /** Отслеживаются ли ссылки на объекты классов из кэша, индекс равен идентификатору класса. */
+    private boolean[] classTracked = new boolean[64];
+    /** Пользовательские представления классов из кэша классов. */
+    private Codec<?>[] classCodecs = new Codec<?>[64];
+    /** Число классов в кэше. */
+    private int classCount;
+    /** Общая таблица строк сеанса, индекс в массиве равен идентификатору строки. */
+    private String[] sharedStringTable = new String[64];
+    /** Число строк в общей таблице строк сеанса. */
+    private int sharedStringCount;
+    /** Считываются ли строки через общую таблицу строк сеанса. */
+    private boolean sharedStrings;
+    /** Декодировщик, переиспользуемый между вызовами. */
+    private final Decoder decoder = new Decoder();
+    /** Способ доступа к полям объектов. */
+    private final AccessorType accessorType;
+    /** Счетчик идентификаторов объектов. */
+    private int objIdentifier;
+    /** Отслеживаются ли в потоке повторные ссылки на объекты. */
+    private boolean trackReferences;
+    /** Предваряется ли содержимое объектов кадром. */
+    private boolean skippable;
+    /** Граф частичного чтения, если десериализатор считывает его часть, иначе {@code null}. */
+    private LazyGraph lazy;
+    /** Реестр классов с постоянными идентификаторами. */
+    private ClassRegistry classRegistry = ClassRegistry.EMPTY;
+    /** Средство чтения потоков в исходном формате, создается при первой необходимости. */
+    private LegacyFormatReader legacyReader;
+    /** Дополнительный алгоритм сжатия блоков. */
+    private BlockCompressor compressor;
+    /** Декодировщик распакованных данных, создается при первом чтении сжатого потока. */
+    private Decoder framedDecoder;
+    /** Стек обхода: объекты и массивы, содержимое которых считывается. */
+    private Object[] stackObjects = new Object[INITIAL_STACK_SIZE];
+    /** Стек обхода: поля объектов или {@code null} для массивов ссылок. */
+    private FieldDescriptor[][] stackFields = new FieldDescriptor[INITIAL_STACK_SIZE][];
+    /** Стек обхода: созданное при компиляции средство доступа к полям объекта или {@code null}. */
+    private GeneratedAccessor<?>[] stackGenerated = new GeneratedAccessor<?>[INITIAL_STACK_SIZE];
+    /** Стек обхода: индекс следующего поля или элемента массива. */
+    private int[] stackIndex = new int[INITIAL_STACK_SIZE];
+    /** Стек обхода: представление коллекции, элементы которой считываются в массив, или {@code null}. */
+    private CollectionCodec[] stackCodecs = new CollectionCodec[INITIAL_STACK_SIZE];
+    /** Стек обхода: коллекция, заполняемая после считывания элементов. */
+    private Object[] stackTargets = new Object[INITIAL_STACK_SIZE];
+    /** Стек обхода: идентификатор коллекции в куче или -1, если ссылки на нее не отслеживаются. */
+    private int[] stackSlots = new int[INITIAL_STACK_SIZE];
+    /** Корневой объект считываемого графа. */
+    private Object root;
+    /** Текущая глубина стека обхода. */
+    private int depth;
+    /** Считываются ли данные пошагово, с контрольной точкой перед каждым полем и элементом. */
+    private boolean incremental;
+    /** Считаны ли при пошаговом чтении заголовок и корневая ссылка текущего объекта. */
+    private boolean pushStarted;
+    /** Контрольная точка: глубина стека обхода. */
+    private int markDepth;
+    /** Контрольная точка: счетчик идентификаторов объектов. */
+    private int markID;
+    /** Контрольная точка: число классов в кэше. */
+    private int markClasses;
+    /** Учет объектов для получателя сведений или {@code null}, если получатель не задан. */
+    private ObjectMeter meter;
+    /** Пул объектов или {@code null}. */
+    private ObjectPool objectPool;
+    /** Объект, в который считывается корневой объект, или {@code null}. */
+    private Object intoTarget;
+    /** Объекты графа, уже переиспользованные вызовом чтения в существующий объект. */
+    private IdentityIntMap claimed;
+    /** Объекты, вытесненные из графа при чтении в существующий объект, для возврата в пул. */
+    private Object[] displaced;
+    /** Число вытесненных объектов. */
+    private int displacedCount;
+    /** Стек обхода: переиспользуется ли объект, так что его прежние ссылки можно переиспользовать. */
+    private boolean[] stackInPlace = new boolean[INITIAL_STACK_SIZE];
+    /** Кэш имен классов и элементов перечислений, создается при первой необходимости. */
+    private NameCache names;
+    /** Классы, найденные по имени. */
+    private final Map<String, Class<?>> namedClasses = new HashMap<String, Class<?>>();
+
+    /**
+     * Создает десериализатор с доступом к полям через {@link AccessorType#REFLECTION}.
+     */
+    public LDesirializer() {
+        this(AccessorType.REFLECTION);
+    }
+
+    /**
+     * Создает десериализатор с указанным способом доступа к полям.
+     *
+     * @param accessorType способ доступа к полям объектов
+     */
+    public LDesirializer(AccessorType accessorType) {
+        this.accessorType = accessorType;
+    }
+
+    /**
+     * Создает десериализатор части графа частичного чтения. Куча объектов и кэш классов
+     * общие с графом.
+     *
+     * @param graph граф частичного чтения
+     */
+    LDesirializer(LazyGraph graph) {
+        this(graph.accessorType);
+        lazy = graph;
+        heap = graph.heap;
+        classHeap = graph.classHeap;
+        classTracked = graph.classTracked;
+        classCodecs = graph.classCodecs;
+        classCount = graph.classHeap.length;
+        trackReferences = graph.trackReferences;
+        skippable = true;
+    }
+
+    /**
+     * Задает получателя сведений о считывании объектов, см. {@link SerializationListener}.
+     * По умолчанию сведения не собираются.
+     *
+     * @param listener получатель сведений или {@code null}, чтобы не собирать сведения
+     */
+    public void setListener(SerializationListener listener) {
+        meter = listener != null ? new ObjectMeter(listener, true) : null;
+    }
+
+    /**
+     * Задает пул, из которого берутся объекты с полями вместо создания новых, см. {@link ObjectPool}.
+     * По умолчанию объекты создаются заново.
+     *
+     * @param objectPool пул объектов или {@code null}
+     */
+    public void setObjectPool(ObjectPool objectPool) {
+        this.objectPool = objectPool;
+    }
+
+    /**
+     * Задает реестр классов, см. {@link ClassRegistry}. Реестр должен содержать те же
+     * идентификаторы, что и реестр сериализатора. Потоки исходного формата не содержат
+     * идентификаторов и со строгим реестром отклоняются.
+     *
+     * @param classRegistry реестр классов
+     */
+    public void setClassRegistry(ClassRegistry classRegistry) {
+        if (classRegistry == null) {
+            throw new IllegalArgumentException("Class registry is null");
+        }
+        this.classRegistry = classRegistry;
+    }
+
+    /**
+     * Задает алгоритм сжатия, который распознается помимо встроенных {@link DeflateCompressor}
+     * и {@link LzCompressor}. Сжатые данные, записанные {@link FramedOutputStream}, распознаются
+     * по заголовку и распаковываются по мере чтения. Для параллельной распаковки поток можно
+     * передать через {@link FramedInputStream} с исполнителем.
+     *
+     * @param compressor алгоритм сжатия или {@code null}
+     */
+    public void setCompression(BlockCompressor compressor) {
+        this.compressor = compressor;
+    }
+
+    /**
+     * Производит десериализацию объекта из потока. Поток, поддерживающий {@link InputStream#mark(int)},
+     * например {@link java.io.BufferedInputStream}, читается блоками, а байты, считанные сверх
+     * объекта, возвращаются в поток. Остальные потоки читаются ровно по мере необходимости.
+     * В обоих случаях после возврата из метода поток указывает на конец объекта.
+     *
+     * @param in входящий поток для получения данных
+     * @param rootClass класс требуемого объекта
+     * @return десериализованный объект
+     * @throws Exception при ошибке считывания
+     */
+    public Object deserialize(InputStream in, Class<?> rootClass) throws Exception {
+        decoder.begin(in);
+        return read(rootClass);
+    }
+
+    /**
+     * Производит десериализацию объекта из буфера, начиная с его текущей позиции. После чтения
+     * позиция буфера указывает на конец объекта.
+     *
+     * @param in буфер с данными
+     * @param rootClass класс требуемого объекта
+     * @return десериализованный объект
+     * @throws Exception при ошибке считывания
+     */
+    public Object deserialize(ByteBuffer in, Class<?> rootClass) throws Exception {
+        decoder.begin(in);
+        return read(rootClass);
+    }
+
+    /**
+     * Производит десериализацию объекта из массива байт.
+     *
+     * @param bytes байтовое представление объекта
+     * @param rootClass класс требуемого объекта
+     * @return десериализованный объект
+     * @throws Exception при ошибке считывания
+     */
+    public Object deserialize(byte[] bytes, Class<?> rootClass) throws Exception {
+        decoder.begin(bytes, 0, bytes.length);
+        return read(rootClass);
+    }
+
+    /**
+     * Считывает объект из потока в существующий объект того же класса, см. {@link #deserialize(InputStream, Class)}.
+     * Поля объекта перезаписываются на месте. Вложенные объекты, массивы и изменяемые коллекции
+     * со встроенным представлением переиспользуются, если в данных на их месте записан новый
+     * объект того же класса, а для массивов - той же длины. Объект графа, на который ссылались
+     * из нескольких мест, переиспользуется только в одном из них. Остальные вложенные объекты
+     * создаются заново или берутся из пула, см. {@link #setObjectPool(ObjectPool)}, а вытесненные
+     * объекты возвращаются в пул. Вытесненными считаются объекты, замененные в полях и элементах,
+     * элементы, не вошедшие в переиспользованную коллекцию, и элементы замененных массивов
+     * и коллекций. Поля вытесненных объектов не обходятся.
+     * <p>
+     * При ошибке считывания объект может остаться заполненным частично.
+     *
+     * @param in входящий поток для получения данных
+     * @param target объект, в который считываются данные
+     * @param <T> тип объекта
+     * @return {@code target}
+     * @throws InvalidObjectException если в потоке записан объект другого класса
+     * @throws Exception при ошибке считывания
+     */
+    public <T> T deserializeInto(InputStream in, T target) throws Exception {
+        checkTarget(target);
+        decoder.begin(in);
+        return readInto(target);
+    }
+
+    /**
+     * Считывает объект из буфера в существующий объект того же класса,
+     * см. {@link #deserializeInto(InputStream, Object)}.
+     *
+     * @param in буфер с данными
+     * @param target объект, в который считываются данные
+     * @param <T> тип объекта
+     * @return {@code target}
+     * @throws Exception при ошибке считывания
+     */
+    public <T> T deserializeInto(ByteBuffer in, T target) throws Exception {
+        checkTarget(target);
+        decoder.begin(in);
+        return readInto(target);
+    }
+
+    /**
+     * Считывает объект из массива байт в существующий объект того же класса,
+     * см. {@link #deserializeInto(InputStream, Object)}.
+     *
+     * @param bytes байтовое представление объекта
+     * @param target объект, в который считываются данные
+     * @param <T> тип объекта
+     * @return {@code target}
+     * @throws Exception при ошибке считывания
+     */
+    public <T> T deserializeInto(byte[] bytes, T target) throws Exception {
+        checkTarget(target);
+        decoder.begin(bytes, 0, bytes.length);
+        return readInto(target);
+    }
+
+    private static void checkTarget(Object target) {
+        if (target == null) {
+            throw new IllegalArgumentException("Target object is null");
+        }
+    }
+
+    /**
+     * Считывает объект в существующий объект через подготовленный декодировщик.
+     *
+     * @param target объект, в который считываются данные
+     * @return {@code target}
+     * @throws Exception при ошибке считывания
+     */
+    private <T> T readInto(T target) throws Exception {
+        if (claimed == null) {
+            claimed = new IdentityIntMap(64);
+            displaced = new Object[64];
+        }
+        intoTarget = target;
+        try {
+            read(target.getClass());
+            return target;
+        } finally {
+            intoTarget = null;
+            claimed.clear();
+            Arrays.fill(displaced, 0, displacedCount, null);
+            displacedCount = 0;
+        }
+    }
+
+    /**
+     * Применяет разность графа из потока к копии графа в базе стороны чтения и возвращает
+     * корневой объект, см. {@link LSerializer#serializeDelta(java.io.OutputStream, Object, DeltaBaseline)}.
+     * Измененные объекты базы обновляются на месте, новые объекты создаются, а объекты,
+     * недостижимые из корня, удаляются из базы. Первая разность потока, записанная в пустую
+     * базу, содержит граф целиком. Разности одного потока применяются по порядку.
+     * <p>
+     * При ошибке считывания граф может остаться измененным частично, а база - рассогласованной,
+     * см. {@link DeltaBaseline#clear()}.
+     *
+     * @param in входящий поток для получения данных
+     * @param rootClass класс требуемого объекта
+     * @param baseline база стороны чтения
+     * @return корневой объект
+     * @throws StreamCorruptedException если поток не является разностью или разность построена
+     *         на базе с другим числом объектов
+     * @throws Exception при ошибке считывания
+     */
+    public Object deserializeDelta(InputStream in, Class<?> rootClass, DeltaBaseline baseline) throws Exception {
+        decoder.begin(in);
+        return readDelta(rootClass, baseline);
+    }
+
+    /**
+     * Применяет разность графа из буфера к базе стороны чтения,
+     * см. {@link #deserializeDelta(InputStream, Class, DeltaBaseline)}.
+     *
+     * @param in буфер с данными
+     * @param rootClass класс требуемого объекта
+     * @param baseline база стороны чтения
+     * @return корневой объект
+     * @throws Exception при ошибке считывания
+     */
+    public Object deserializeDelta(ByteBuffer in, Class<?> rootClass, DeltaBaseline baseline) throws Exception {
+        decoder.begin(in);
+        return readDelta(rootClass, baseline);
+    }
+
+    /**
+     * Применяет разность графа из массива байт к базе стороны чтения,
+     * см. {@link #deserializeDelta(InputStream, Class, DeltaBaseline)}.
+     *
+     * @param bytes байтовое представление разности
+     * @param rootClass класс требуемого объекта
+     * @param baseline база стороны чтения
+     * @return корневой объект
+     * @throws Exception при ошибке считывания
+     */
+    public Object deserializeDelta(byte[] bytes, Class<?> rootClass, DeltaBaseline baseline) throws Exception {
+        decoder.begin(bytes, 0, bytes.length);
+        return readDelta(rootClass, baseline);
+    }
+
+    /**
+     * Считывает разность графа через подготовленный декодировщик. Объекты базы занимают
+     * первые идентификаторы кучи, поэтому ссылки на них считываются как обычные ссылки
+     * на уже считанные объекты.
+     *
+     * @param rootClass класс требуемого объекта
+     * @param baseline база стороны чтения
+     * @return корневой объект
+     * @throws Exception при ошибке считывания
+     */
+    private Object readDelta(Class<?> rootClass, DeltaBaseline baseline) throws Exception {
+        Decoder in = decoder;
+        Object event = JfrEvents.AVAILABLE ? JfrEvents.beginDeserialize() : null;
+        long started = meter != null ? System.nanoTime() : 0;
+        try {
+            resetClasses();
+            if (in.peek(0) != WireFormat.MAGIC_0 || in.peek(1) != WireFormat.MAGIC_1
+                    || (readHeader(in) & (WireFormat.FLAG_DELTA | WireFormat.FLAG_SESSION
+                            | WireFormat.FLAG_SKIPPABLE_OBJECTS)) != WireFormat.FLAG_DELTA) {
+                throw new StreamCorruptedException("Not a delta stream");
+            }
+            baseline.beginRead(in.readLength());
+            Arrays.fill(heap, 0, objIdentifier, null);
+            heap = baseline.seedHeap(heap);
+            objIdentifier = baseline.size();
+            Object value;
+            try {
+                if (meter != null) {
+                    meter.start(in.count());
+                }
+                long reference;
+                while ((reference = in.readVarint()) != 0) {
+                    if (reference > baseline.size()) {
+                        throw new StreamCorruptedException("Unknown delta object: " + (reference - 1));
+                    }
+                    readChanges(in, heap[(int) reference - 1]);
+                }
+                value = readDeltaValue(in);
+                baseline.readReleased(in);
+                baseline.commitRead(heap, objIdentifier, classRegistry);
+            } finally {
+                root = null;
+                clearStack();
+            }
+            completeCall(value, in.count(), started, event);
+            in.finish();
+            return rootClass.cast(value);
+        } finally {
+            in.detach();
+        }
+    }
+
+    /**
+     * Применяет изменения объекта базы, см. {@link WireFormat#FLAG_DELTA}.
+     *
+     * @param in декодировщик
+     * @param obj объект базы
+     * @throws Exception при ошибке считывания
+     */
+    private void readChanges(Decoder in, Object obj) throws Exception {
+        Class<?> type = obj.getClass();
+        CollectionCodec codec = CollectionCodec.forClass(type);
+        if (codec != null) {
+            if (!codec.isUpdatable()) {
+                throw new InvalidObjectException(type.getName() + " cannot be updated in place");
+            }
+            int edit = in.readLength();
+            if (edit == WireFormat.DELTA_SPLICE && obj instanceof List) {
+                @SuppressWarnings("unchecked")
+                List<Object> list = (List<Object>) obj;
+                readSplices(in, list);
+            } else if (edit == WireFormat.DELTA_ENTRIES && (obj instanceof Map || obj instanceof Set)) {
+                readEntries(in, obj);
+            } else if (edit == WireFormat.DELTA_WHOLE) {
+                Object[] elements = new Object[codec.lengthOf(in.readLength())];
+                for (int i = 0; i < elements.length; i++) {
+                    elements[i] = readDeltaValue(in);
+                }
+                codec.update(obj, elements);
+            } else {
+                throw new StreamCorruptedException("Delta edit " + edit + " does not apply to " + type.getName());
+            }
+            return;
+        }
+        if (type.isEnum() || classRegistry.getCodec(type) != null) {
+            throw new InvalidObjectException(type.getName() + " cannot be updated in place");
+        }
+        int changes = in.readLength();
+        FieldDescriptor[] fields = null;
+        int typeCode = TypeCode.OBJECT;
+        int length;
+        if (type.isArray()) {
+            typeCode = TypeCode.of(type.getComponentType());
+            length = Array.getLength(obj);
+        } else {
+            fields = ClassDescriptor.forClass(type, accessorType).getFields();
+            length = fields.length;
+        }
+        long index = -1;
+        for (int i = 0; i < changes; i++) {
+            index += in.readVarint() + 1;
+            if (index < 0 || index >= length) {
+                throw new StreamCorruptedException("Delta index out of range: " + index);
+            }
+            int slot = (int) index;
+            if (fields != null) {
+                FieldDescriptor fieldDesc = fields[slot];
+                if (fieldDesc.getTypeCode() == TypeCode.OBJECT) {
+                    fieldDesc.getAccessor().setObject(obj, readDeltaValue(in));
+                } else {
+                    readField(in, fieldDesc, obj);
+                }
+            } else if (typeCode == TypeCode.OBJECT) {
+                ((Object[]) obj)[slot] = readDeltaValue(in);
+            } else {
+                readArrayElement(in, typeCode, obj, slot);
+            }
+        }
+    }
+
+    /**
+     * Применяет участки правки списка, см. {@link WireFormat#DELTA_SPLICE}.
+     *
+     * @param in декодировщик
+     * @param list список базы
+     * @throws Exception при ошибке считывания
+     */
+    private void readSplices(Decoder in, List<Object> list) throws Exception {
+        int hunks = in.readLength();
+        long position = 0;
+        for (int i = 0; i < hunks; i++) {
+            position += in.readLength();
+            int removed = in.readLength();
+            int inserted = in.readLength();
+            if (position + removed > list.size()) {
+                throw new StreamCorruptedException("Delta splice out of range: " + position + "+" + removed
+                        + " of " + list.size());
+            }
+            int start = (int) position;
+            list.subList(start, start + removed).clear();
+            Object[] elements = new Object[inserted];
+            for (int j = 0; j < inserted; j++) {
+                elements[j] = readDeltaValue(in);
+            }
+            list.addAll(start, Arrays.asList(elements));
+            position += inserted;
+        }
+    }
+
+    /**
+     * Применяет правку множества или отображения по записям, см. {@link WireFormat#DELTA_ENTRIES}.
+     *
+     * @param in декодировщик
+     * @param collection множество или отображение базы
+     * @throws Exception при ошибке считывания
+     */
+    @SuppressWarnings("unchecked")
+    private void readEntries(Decoder in, Object collection) throws Exception {
+        Map<Object, Object> map = collection instanceof Map ? (Map<Object, Object>) collection : null;
+        Set<Object> set = map == null ? (Set<Object>) collection : null;
+        int removed = in.readLength();
+        for (int i = 0; i < removed; i++) {
+            Object key = readDeltaValue(in);
+            boolean found;
+            if (map != null) {
+                found = map.containsKey(key);
+                map.remove(key);
+            } else {
+                found = set.remove(key);
+            }
+            if (!found) {
+                throw new StreamCorruptedException("Delta removes a missing entry of " + collection.getClass().getName());
+            }
+        }
+        int put = in.readLength();
+        for (int i = 0; i < put; i++) {
+            Object key = readDeltaValue(in);
+            if (map != null) {
+                map.put(key, readDeltaValue(in));
+            } else {
+                set.add(key);
+            }
+        }
+    }
+
+    /**
+     * Считывает ссылку разности вместе с содержимым новых объектов.
+     *
+     * @param in декодировщик
+     * @return объект по ссылке или {@code null}
+     * @throws Exception при ошибке считывания
+     */
+    private Object readDeltaValue(Decoder in) throws Exception {
+        root = readReference(in);
+        readGraph(in);
+        Object value = root;
+        root = null;
+        return value;
+    }
+
+    /**
+     * Считывает элемент массива примитивов, записанный так же, как поле того же типа.
+     *
+     * @param in декодировщик
+     * @param typeCode код типа элементов
+     * @param array массив
+     * @param index индекс элемента
+     * @throws Exception при ошибке считывания
+     */
+    private static void readArrayElement(Decoder in, int typeCode, Object array, int index) throws Exception {
+        switch (typeCode) {
+        case TypeCode.BYTE:
+            ((byte[]) array)[index] = in.readByte();
+            break;
+        case TypeCode.SHORT:
+            ((short[]) array)[index] = in.readShort();
+            break;
+        case TypeCode.INT:
+            ((int[]) array)[index] = in.readNumberInt();
+            break;
+        case TypeCode.LONG:
+            ((long[]) array)[index] = in.readNumberLong();
+            break;
+        case TypeCode.FLOAT:
+            ((float[]) array)[index] = in.readFloat();
+            break;
+        case TypeCode.DOUBLE:
+            ((double[]) array)[index] = in.readDouble();
+            break;
+        case TypeCode.BOOLEAN:
+            ((boolean[]) array)[index] = in.readBoolean();
+            break;
+        case TypeCode.CHAR:
+            ((char[]) array)[index] = in.readChar();
+            break;
+        default:
+            throw new IllegalArgumentException("Not a primitive type code: " + typeCode);
+        }
+    }
+
+    /**
+     * Начинает частичное чтение объекта, записанного с кадрами содержимого, см.
+     * {@link LSerializer#setSkippableObjects(boolean)}. Возвращает описатель корневого объекта,
+     * поля и элементы которого считываются по мере обращения, а содержимое, не нужное для
+     * ответа, пропускается без разбора, см. {@link LazyObject}. Сжатые данные распаковываются
+     * целиком. Описатель использует массив, пока существует, поэтому массив нельзя изменять.
+     * Сам десериализатор после возврата из метода свободен для других вызовов.
+     *
+     * @param bytes байтовое представление объекта
+     * @return описатель корневого объекта или {@code null}, если записан {@code null}
+     * @throws Exception при ошибке считывания или если данные записаны без кадров содержимого
+     */
+    public LazyObject deserializeLazy(byte[] bytes) throws Exception {
+        if (bytes.length > 1 && bytes[0] == WireFormat.FRAMED_MAGIC_0 && bytes[1] == WireFormat.FRAMED_MAGIC_1) {
+            bytes = inflate(bytes);
+        }
+        Decoder in = decoder;
+        in.begin(bytes, 0, bytes.length);
+        try {
+            resetClasses();
+            int flags = in.peek(0) == WireFormat.MAGIC_0 && in.peek(1) == WireFormat.MAGIC_1 ? readHeader(in) : 0;
+            if ((flags & (WireFormat.FLAG_SKIPPABLE_OBJECTS | WireFormat.FLAG_SESSION)) != WireFormat.FLAG_SKIPPABLE_OBJECTS) {
+                throw new StreamCorruptedException("Object is not written with skippable objects");
+            }
+            int objectCount = readClassTable(in);
+            if (objectCount > bytes.length) {
+                throw new StreamCorruptedException("Object count out of range: " + objectCount);
+            }
+            LazyGraph graph = new LazyGraph(bytes, in.position(), objectCount, accessorType,
+                    Arrays.copyOf(classHeap, classCount), Arrays.copyOf(classTracked, classCount),
+                    Arrays.copyOf(classCodecs, classCount), (flags & WireFormat.FLAG_VARINT_NUMBERS) != 0,
+                    trackReferences);
+            return graph.getRoot();
+        } finally {
+            in.detach();
+            resetClasses();
+        }
+    }
+
+    /**
+     * Распаковывает поток сжатых блоков целиком.
+     *
+     * @param bytes сжатые данные
+     * @return распакованные данные
+     * @throws IOException при ошибке распаковки
+     */
+    private byte[] inflate(byte[] bytes) throws IOException {
+        InputStream source = new ByteArrayInputStream(bytes);
+        InputStream framed = compressor != null ? new FramedInputStream(source, compressor)
+                : new FramedInputStream(source);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 2);
+        byte[] chunk = new byte[8192];
+        int count;
+        while ((count = framed.read(chunk)) > 0) {
+            out.write(chunk, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Считывает часть графа частичного чтения, начиная со ссылки на ее корневой объект.
+     *
+     * @param offset смещение ссылки в массиве графа
+     * @param firstID счетчик идентификаторов объектов перед ссылкой
+     * @return считанный объект
+     * @throws Exception при ошибке считывания
+     */
+    Object readLazy(int offset, int firstID) throws Exception {
+        Decoder in = decoder;
+        in.begin(lazy.bytes, offset, lazy.bytes.length - offset);
+        in.setVarintNumbers(lazy.varintNumbers);
+        objIdentifier = firstID;
+        try {
+            root = readReference(in);
+            readGraph(in);
+            return root;
+        } finally {
+            root = null;
+            clearStack();
+            in.detach();
+        }
+    }
+
+    /**
+     * Считывает заголовок и граф объекта через подготовленный декодировщик.
+     *
+     * @param rootClass класс требуемого объекта
+     * @return десериализованный объект
+     * @throws Exception при ошибке считывания
+     */
+    private Object read(Class<?> rootClass) throws Exception {
+        Decoder in = decoder;
+        Object event = JfrEvents.AVAILABLE ? JfrEvents.beginDeserialize() : null;
+        long started = meter != null ? System.nanoTime() : 0;
+        try {
+            Object root;
+            if (isFramed(in)) {
+                root = readFramed(in, rootClass, started, event);
+                in.finish();
+                return root;
+            }
+            if (!hasHeader(in)) {
+                if (intoTarget != null) {
+                    throw new InvalidObjectException("Legacy format cannot be read into an existing object");
+                }
+                if (classRegistry.isStrict()) {
+                    throw new StreamCorruptedException("Legacy format is not accepted with a strict class registry");
+                }
+                if (legacyReader == null) {
+                    legacyReader = new LegacyFormatReader(accessorType);
+                }
+                root = legacyReader.read(new DataInputStream(in.asInputStream()), rootClass);
+            } else {
+                root = readCurrentFormat(in, rootClass);
+            }
+            completeCall(root, in.count(), started, event);
+            in.finish();
+            return root;
+        } finally {
+            in.detach();
+        }
+    }
+
+    /**
+     * Проверяет, начинается ли поток с заголовка текущего формата: сигнатуры, поддерживаемой
+     * версии и допустимого сочетания флагов. Поток исходного формата начинается сразу с полей
+     * корневого объекта, и одной сигнатуры недостаточно, чтобы отличить их, см. {@link WireFormat}.
+     *
+     * @param in декодировщик
+     * @return {@code true} для потока текущего формата
+     * @throws IOException при ошибке считывания
+     */
+    private static boolean hasHeader(Decoder in) throws IOException {
+        return in.peek(0) == WireFormat.MAGIC_0 && in.peek(1) == WireFormat.MAGIC_1
+                && in.peek(2) == WireFormat.VERSION && WireFormat.isValidFlags(in.peek(3));
+    }
+
+    /**
+     * Проверяет, начинается ли поток с заголовка потока сжатых блоков: сигнатуры, версии
+     * и известного алгоритма сжатия.
+     *
+     * @param in декодировщик
+     * @return {@code true} для потока сжатых блоков
+     * @throws IOException при ошибке считывания
+     */
+    private boolean isFramed(Decoder in) throws IOException {
+        if (in.peek(0) != WireFormat.FRAMED_MAGIC_0 || in.peek(1) != WireFormat.FRAMED_MAGIC_1
+                || in.peek(2) != WireFormat.FRAMED_VERSION) {
+            return false;
+        }
+        int id = in.peek(3);
+        return id == DeflateCompressor.ID || id == LzCompressor.ID || compressor != null && compressor.getId() == id;
+    }
+
+    /**
+     * Считывает объект из потока сжатых блоков. Блоки распаковываются по мере чтения, после
+     * объекта поток блоков должен завершаться. О завершении вызова сообщается с числом
+     * распакованных байт, как и при записи.
+     *
+     * @param in декодировщик сжатых данных
+     * @param rootClass класс требуемого объекта
+     * @param started время начала вызова, если задан получатель сведений
+     * @param event событие JFR или {@code null}
+     * @return десериализованный объект
+     * @throws Exception при ошибке считывания
+     */
+    private Object readFramed(Decoder in, Class<?> rootClass, long started, Object event) throws Exception {
+        FramedInputStream framed = compressor != null ? new FramedInputStream(in.asInputStream(), compressor)
+                : new FramedInputStream(in.asInputStream());
+        if (framedDecoder == null) {
+            framedDecoder = new Decoder();
+        }
+        Decoder inner = framedDecoder;
+        inner.beginExclusive(framed);
+        try {
+            if (inner.peek(0) != WireFormat.MAGIC_0 || inner.peek(1) != WireFormat.MAGIC_1) {
+                throw new StreamCorruptedException("Framed stream does not contain a serialized object");
+            }
+            Object root = readCurrentFormat(inner, rootClass);
+            if (inner.peek(0) != -1) {
+                throw new StreamCorruptedException("Unexpected data after object in framed stream");
+            }
+            completeCall(root, inner.count(), started, event);
+            return root;
+        } finally {
+            inner.detach();
+        }
+    }
+
+    /**
+     * Считывает объект в текущем формате.
+     *
+     * @param in декодировщик
+     * @param rootClass класс требуемого объекта
+     * @return десериализованный объект
+     * @throws Exception при ошибке считывания
+     */
+    private Object readCurrentFormat(Decoder in, Class<?> rootClass) throws Exception {
+        resetClasses();
+        int flags = readHeader(in);
+        if ((flags & WireFormat.FLAG_SESSION) != 0) {
+            throw new StreamCorruptedException("Session stream must be read with " + LObjectReader.class.getSimpleName());
+        }
+        if ((flags & WireFormat.FLAG_DELTA) != 0) {
+            throw new StreamCorruptedException("Delta stream must be read with a delta baseline");
+        }
+        if ((flags & WireFormat.FLAG_SKIPPABLE_OBJECTS) != 0) {
+            readClassTable(in);
+        }
+        long position = in.count();
+        return readMessage(in, position, in.readVarint(), rootClass);
+    }
+
+    /**
+     * Начинает сеанс чтения нескольких объектов из потока, см. {@link LObjectReader}.
+     * Считывает заголовок сеанса. Поток принадлежит сеансу до его закрытия, поэтому читается
+     * блоками независимо от поддержки {@link InputStream#mark(int)}.
+     *
+     * @param stream входящий поток
+     * @throws Exception при ошибке считывания или если поток не является потоком сеанса
+     */
+    void openSession(InputStream stream) throws Exception {
+        Decoder in = decoder;
+        in.beginExclusive(stream);
+        resetClasses();
+        if (in.peek(0) != WireFormat.MAGIC_0 || in.peek(1) != WireFormat.MAGIC_1
+                || (readHeader(in) & (WireFormat.FLAG_SESSION | WireFormat.FLAG_DELTA)) != WireFormat.FLAG_SESSION) {
+            in.detach();
+            throw new StreamCorruptedException("Not a session stream");
+        }
+    }
+
+    /**
+     * Считывает очередной объект сеанса.
+     *
+     * @param rootClass класс требуемого объекта
+     * @return десериализованный объект
+     * @throws Exception при ошибке считывания
+     */
+    Object readSessionObject(Class<?> rootClass) throws Exception {
+        Decoder in = decoder;
+        Object event = JfrEvents.AVAILABLE ? JfrEvents.beginDeserialize() : null;
+        long started = meter != null ? System.nanoTime() : 0;
+        long position = in.count();
+        long start = position;
+        long reference = in.readVarint();
+        while (reference == WireFormat.SESSION_RESET << 1) {
+            resetClasses();
+            start = in.count();
+            reference = in.readVarint();
+        }
+        Object value = readMessage(in, start, reference, rootClass);
+        completeCall(value, in.count() - position, started, event);
+        return value;
+    }
+
+    /**
+     * Сообщает о завершении вызова десериализации получателю сведений и в JFR.
+     *
+     * @param value десериализованный объект
+     * @param bytes число считанных байт
+     * @param started время начала вызова, если задан получатель сведений
+     * @param event событие JFR или {@code null}
+     */
+    private void completeCall(Object value, long bytes, long started, Object event) {
+        if (meter == null && event == null) {
+            return;
+        }
+        Class<?> rootType = value != null ? value.getClass() : null;
+        if (meter != null) {
+            meter.getListener().deserialized(rootType, bytes, System.nanoTime() - started);
+        }
+        if (event != null) {
+            JfrEvents.commit(event, rootType, bytes);
+        }
+    }
+
+    /**
+     * Завершает сеанс чтения: возвращает в поток байты, считанные сверх последнего объекта,
+     * и отсоединяет его.
+     *
+     * @throws IOException при ошибке возврата байт в поток
+     */
+    void closeSession() throws IOException {
+        try {
+            decoder.finish();
+        } finally {
+            decoder.detach();
+            sharedStrings = false;
+            resetClasses();
+        }
+    }
+
+    /**
+     * Считывает заголовок потока после проверенной сигнатуры и применяет флаги формата.
+     *
+     * @param in декодировщик
+     * @return флаги потока
+     * @throws Exception при ошибке считывания или неподдерживаемой версии формата
+     */
+    private int readHeader(Decoder in) throws Exception {
+        in.readByte();
+        in.readByte();
+        int version = in.readUnsignedByte();
+        if (version != WireFormat.VERSION) {
+            throw new StreamCorruptedException("Unsupported format version: " + version);
+        }
+        int flags = in.readUnsignedByte();
+        in.setVarintNumbers((flags & WireFormat.FLAG_VARINT_NUMBERS) != 0);
+        trackReferences = (flags & WireFormat.FLAG_NO_REFERENCES) == 0;
+        sharedStrings = (flags & WireFormat.FLAG_SHARED_STRINGS) != 0;
+        skippable = (flags & WireFormat.FLAG_SKIPPABLE_OBJECTS) != 0;
+        return flags;
+    }
+
+    /**
+     * Считывает число объектов и таблицу классов потока с кадрами содержимого.
+     *
+     * @param in декодировщик
+     * @return число объектов графа, получивших идентификаторы
+     * @throws Exception при ошибке считывания классов
+     */
+    private int readClassTable(Decoder in) throws Exception {
+        int objectCount = in.readLength();
+        int classes = in.readLength();
+        for (int i = 0; i < classes; i++) {
+            long reference = in.readVarint();
+            long typeID = reference >>> 1;
+            if ((reference & 1) != 0 || typeID != WireFormat.CLASS_NEW && typeID != WireFormat.CLASS_NEW_UNTRACKED
+                    && typeID != WireFormat.TYPE_REGISTERED && typeID != WireFormat.TYPE_REGISTERED_UNTRACKED) {
+                throw new StreamCorruptedException("Invalid class table entry: " + reference);
+            }
+            readClass(in, typeID);
+        }
+        return objectCount;
+    }
+
+    /**
+     * Очищает таблицы классов и строк, общие для всех объектов потока.
+     */
+    private void resetClasses() {
+        Arrays.fill(classHeap, 0, classCount, null);
+        Arrays.fill(classCodecs, 0, classCount, null);
+        classCount = 0;
+        Arrays.fill(sharedStringTable, 0, sharedStringCount, null);
+        sharedStringCount = 0;
+    }
+
+    /**
+     * Начинает пошаговое чтение объектов, поступающих частями, см. {@link LPushDecoder}.
+     * Сведения о считывании не собираются: отмененные шаги учитывались бы повторно.
+     */
+    void openPush() {
+        meter = null;
+        decoder.beginPush();
+        incremental = true;
+        pushStarted = false;
+    }
+
+    /**
+     * Передает очередную часть данных пошагового чтения.
+     *
+     * @param fragment часть данных
+     */
+    void feedPush(ByteBuffer fragment) {
+        decoder.feed(fragment);
+    }
+
+    /**
+     * Продолжает пошаговое чтение с места остановки. Если данных части не хватает для завершения
+     * объекта, прерванный шаг отменяется, байты после его начала сохраняются до следующей части,
+     * а метод возвращает признак ожидания.
+     *
+     * @param pending значение, возвращаемое при нехватке данных
+     * @return считанный объект или {@code pending}
+     * @throws Exception при ошибке считывания
+     */
+    Object readPushed(Object pending) throws Exception {
+        Decoder in = decoder;
+        try {
+            if (!pushStarted) {
+                readPushedRoot(in);
+                pushStarted = true;
+            }
+            readGraph(in);
+            pushStarted = false;
+            Object value = root;
+            root = null;
+            return value;
+        } catch (EOFException e) {
+            if (e != in.underflow()) {
+                throw e;
+            }
+            Arrays.fill(stackObjects, markDepth, depth, null);
+            Arrays.fill(stackFields, markDepth, depth, null);
+            Arrays.fill(stackGenerated, markDepth, depth, null);
+            Arrays.fill(stackCodecs, markDepth, depth, null);
+            Arrays.fill(stackTargets, markDepth, depth, null);
+            depth = markDepth;
+            objIdentifier = markID;
+            classCount = markClasses;
+            in.suspend();
+            return pending;
+        }
+    }
+
+    /**
+     * @return число байт, ожидающих продолжения данных при пошаговом чтении
+     */
+    int pushPending() {
+        return decoder.pending();
+    }
+
+    /**
+     * Завершает пошаговое чтение и освобождает считанные объекты и данные.
+     */
+    void closePush() {
+        decoder.detach();
+        incremental = false;
+        pushStarted = false;
+        root = null;
+        clearStack();
+        Arrays.fill(heap, 0, objIdentifier, null);
+        objIdentifier = 0;
+        resetClasses();
+    }
+
+    /**
+     * Считывает заголовок очередного объекта при пошаговом чтении и ссылку на корневой объект.
+     * Считывание выполняется одним шагом и при нехватке данных повторяется целиком.
+     *
+     * @param in декодировщик
+     * @throws Exception при ошибке считывания или неподдерживаемом формате
+     */
+    private void readPushedRoot(Decoder in) throws Exception {
+        Arrays.fill(heap, 0, objIdentifier, null);
+        objIdentifier = 0;
+        resetClasses();
+        checkpoint(in, -1, 0);
+        if (in.peek(1) < 0) {
+            throw in.underflow();
+        }
+        if (in.peek(0) == WireFormat.FRAMED_MAGIC_0 && in.peek(1) == WireFormat.FRAMED_MAGIC_1) {
+            throw new StreamCorruptedException("Compressed stream cannot be read incrementally");
+        }
+        if (in.peek(0) != WireFormat.MAGIC_0 || in.peek(1) != WireFormat.MAGIC_1) {
+            throw new StreamCorruptedException("Stream without format header cannot be read incrementally");
+        }
+        int flags = readHeader(in);
+        if ((flags & WireFormat.FLAG_SESSION) != 0) {
+            throw new StreamCorruptedException("Session stream must be read with " + LObjectReader.class.getSimpleName());
+        }
+        if ((flags & WireFormat.FLAG_DELTA) != 0) {
+            throw new StreamCorruptedException("Delta stream must be read with a delta baseline");
+        }
+        if ((flags & WireFormat.FLAG_SKIPPABLE_OBJECTS) != 0) {
+            readClassTable(in);
+        }
+        root = readReference(in);
+    }
+
+    /**
+     * Запоминает состояние перед шагом пошагового чтения, чтобы отменить шаг при нехватке данных.
+     *
+     * @param in декодировщик
+     * @param top индекс кадра в стеке обхода, содержимое которого считывается, или -1
+     * @param index индекс поля или элемента, считываемого шагом
+     */
+    private void checkpoint(Decoder in, int top, int index) {
+        if (top >= 0) {
+            stackIndex[top] = index;
+        }
+        markDepth = top + 1;
+        markID = objIdentifier;
+        markClasses = classCount;
+        in.checkpoint();
+    }
+
+    /**
+     * Считывает граф объекта. Идентификаторы объектов назначаются заново для каждого графа.
+     *
+     * @param in декодировщик
+     * @param start позиция декодировщика перед ссылкой на корневой объект, с нее ведется
+     *            учет байт корневого объекта
+     * @param reference уже считанное значение ссылки на корневой объект
+     * @param rootClass класс требуемого объекта
+     * @return десериализованный объект
+     * @throws Exception при ошибке считывания
+     */
+    private Object readMessage(Decoder in, long start, long reference, Class<?> rootClass) throws Exception {
+        Arrays.fill(heap, 0, objIdentifier, null);
+        objIdentifier = 0;
+        try {
+            Object target = intoTarget;
+            if (meter != null) {
+                meter.start(start);
+                root = readMeteredReference(in, reference, target);
+            } else {
+                root = readReference(in, reference, target);
+            }
+            if (target != null && root != target) {
+                throw new InvalidObjectException("Stream object of " + (root == null ? "null" : root.getClass().getName())
+                        + " cannot be read into " + target.getClass().getName());
+            }
+            readGraph(in);
+            if (displacedCount > 0) {
+                releaseDisplaced();
+            }
+            return rootClass.cast(root);
+        } finally {
+            root = null;
+            clearStack();
+        }
+    }
+
+    /**
+     * Считывает содержимое объектов из стека обхода, пока стек не опустеет. Поля объекта
+     * считываются по порядку до первой ссылки на новый объект, после чего обход переходит
+     * к этому объекту и возвращается к следующему полю, когда тот будет считан полностью.
+     *
+     * @param in декодировщик
+     * @throws Exception при ошибке считывания
+     */
+    private void readGraph(Decoder in) throws Exception {
+        while (depth > 0) {
+            int top = depth - 1;
+            Object obj = stackObjects[top];
+            FieldDescriptor[] fields = stackFields[top];
+            int index = stackIndex[top];
+            boolean pushed = false;
+            @SuppressWarnings("unchecked")
+            GeneratedAccessor<Object> generated = (GeneratedAccessor<Object>) stackGenerated[top];
+            if (generated != null) {
+                while (index < fields.length && !pushed) {
+                    if (incremental) {
+                        checkpoint(in, top, index);
+                    }
+                    index = generated.readFields(obj, index, in);
+                    if (index < fields.length) {
+                        Object existing = stackInPlace[top] ? generated.getObject(obj, index) : null;
+                        generated.setObject(obj, index++, readReference(in, existing));
+                        pushed = depth > top + 1;
+                    }
+                }
+            } else if (fields != null) {
+                while (index < fields.length && !pushed) {
+                    if (incremental) {
+                        checkpoint(in, top, index);
+                    }
+                    FieldDescriptor fieldDesc = fields[index++];
+                    if (fieldDesc.getTypeCode() == TypeCode.OBJECT) {
+                        FieldAccessor accessor = fieldDesc.getAccessor();
+                        Object existing = stackInPlace[top] ? accessor.getObject(obj) : null;
+                        accessor.setObject(obj, readReference(in, existing));
+                        pushed = depth > top + 1;
+                    } else {
+                        readField(in, fieldDesc, obj);
+                    }
+                }
+            } else {
+                Object[] elements = (Object[]) obj;
+                int created = stackCodecs[top] != null && stackTargets[top] == null ? stackCodecs[top].getPrefix() : -1;
+                while (index < elements.length && !pushed) {
+                    if (index == created) {
+                        createCollection(top);
+                    }
+                    if (incremental) {
+                        checkpoint(in, top, index);
+                    }
+                    elements[index] = readReference(in, elements[index]);
+                    index++;
+                    pushed = depth > top + 1;
+                }
+            }
+            if (pushed) {
+                stackIndex[top] = index;
+            } else {
+                depth = top;
+                if (meter != null) {
+                    Class<?> type = stackCodecs[top] != null ? stackCodecs[top].getType() : obj.getClass();
+                    meter.close(top, type, in.count());
+                }
+                if (stackCodecs[top] != null) {
+                    completeCollection(top);
+                }
+                stackObjects[top] = null;
+                stackFields[top] = null;
+                stackGenerated[top] = null;
+            }
+        }
+    }
+
+    /**
+     * Заполняет коллекцию считанными элементами после считывания всех элементов. Если коллекция
+     * создается только сейчас, ссылка на нее записывается в кучу и в поле или элемент родителя,
+     * которые до этого содержали {@code null}.
+     *
+     * @param top индекс кадра коллекции в стеке обхода
+     * @throws Exception при ошибке записи в поле родителя
+     */
+    private void completeCollection(int top) throws Exception {
+        Object target = stackTargets[top];
+        Object collection = stackCodecs[top].complete(target, (Object[]) stackObjects[top]);
+        stackCodecs[top] = null;
+        stackTargets[top] = null;
+        if (collection != target) {
+            attachCollection(top, collection);
+        }
+    }
+
+    /**
+     * Создает коллекцию, которая не была создана до считывания элементов, как только считаны
+     * начальные элементы массива, например компаратор {@link java.util.TreeMap}, чтобы ссылки
+     * на нее из следующих элементов восстанавливались.
+     *
+     * @param top индекс кадра коллекции в стеке обхода
+     * @throws Exception при ошибке записи в поле родителя
+     */
+    private void createCollection(int top) throws Exception {
+        Object collection = stackCodecs[top].newInstance((Object[]) stackObjects[top]);
+        if (collection != null) {
+            stackTargets[top] = collection;
+            attachCollection(top, collection);
+        }
+    }
+
+    /**
+     * Проверяет, относится ли идентификатор к коллекции, которая создается только после
+     * считывания ее элементов и элементы которой еще считываются.
+     *
+     * @param objID идентификатор объекта
+     * @return {@code true}, если ссылку на коллекцию нельзя восстановить
+     */
+    private boolean isPendingCollection(int objID) {
+        for (int i = 0; i < depth; i++) {
+            if (stackCodecs[i] != null && stackTargets[i] == null && stackSlots[i] == objID) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Записывает ссылку на коллекцию, созданную после считывания ссылки на нее, в кучу и в поле
+     * или элемент родителя, которые до этого содержали {@code null}.
+     *
+     * @param top индекс кадра коллекции в стеке обхода
+     * @param collection созданная коллекция
+     * @throws Exception при ошибке записи в поле родителя
+     */
+    private void attachCollection(int top, Object collection) throws Exception {
+        if (stackSlots[top] >= 0) {
+            heap[stackSlots[top]] = collection;
+        }
+        if (top == 0) {
+            root = collection;
+            return;
+        }
+        Object parent = stackObjects[top - 1];
+        FieldDescriptor[] parentFields = stackFields[top - 1];
+        int parentIndex = stackIndex[top - 1] - 1;
+        if (parentFields != null) {
+            parentFields[parentIndex].getAccessor().setObject(parent, collection);
+        } else {
+            ((Object[]) parent)[parentIndex] = collection;
+        }
+    }
+
+    /**
+     * Помещает в стек обхода объект или массив ссылок, содержимое которого нужно считать.
+     * Кадр содержимого при полном чтении не нужен и пропускается.
+     *
+     * @param in декодировщик
+     * @param obj объект или массив ссылок
+     * @param fields поля объекта или {@code null} для массива
+     * @param minBytes нижний предел размера содержимого, считываемый заранее, см. {@link Decoder#prefetch(int)}
+     * @throws IOException при ошибке считывания кадра
+     */
+    private void push(Decoder in, Object obj, FieldDescriptor[] fields, int minBytes) throws IOException {
+        if (skippable) {
+            in.prefetch(WireFormat.OBJECT_FRAME_SIZE + minBytes);
+            in.skipBytes(WireFormat.OBJECT_FRAME_SIZE);
+        } else {
+            in.prefetch(minBytes);
+        }
+        if (depth == stackObjects.length) {
+            int size = depth * 2;
+            stackObjects = Arrays.copyOf(stackObjects, size);
+            stackFields = Arrays.copyOf(stackFields, size);
+            stackGenerated = Arrays.copyOf(stackGenerated, size);
+            stackIndex = Arrays.copyOf(stackIndex, size);
+            stackCodecs = Arrays.copyOf(stackCodecs, size);
+            stackTargets = Arrays.copyOf(stackTargets, size);
+            stackSlots = Arrays.copyOf(stackSlots, size);
+            stackInPlace = Arrays.copyOf(stackInPlace, size);
+        }
+        stackObjects[depth] = obj;
+        stackFields[depth] = fields;
+        stackGenerated[depth] = null;
+        stackIndex[depth] = 0;
+        stackInPlace[depth] = false;
+        depth++;
+    }
+
+    /**
+     * Очищает стек обхода, чтобы не удерживать ссылки на считанные объекты.
+     */
+    private void clearStack() {
+        Arrays.fill(stackObjects, 0, depth, null);
+        Arrays.fill(stackFields, 0, depth, null);
+        Arrays.fill(stackGenerated, 0, depth, null);
+        Arrays.fill(stackCodecs, 0, depth, null);
+        Arrays.fill(stackTargets, 0, depth, null);
+        depth = 0;
+    }
+
+    /**
+     * Считывает коллекцию со встроенным представлением. Коллекция создается с емкостью
+     * под итоговый размер, а массив для ее элементов помещается в стек обхода. Коллекция
+     * заполняется, когда все элементы будут считаны.
+     *
+     * @param in декодировщик
+     * @param codec представление коллекции
+     * @param existing объект на месте коллекции при чтении в существующий объект или {@code null}
+     * @return коллекция или {@code null}, если она будет создана после считывания элементов
+     * @throws Exception при ошибке считывания
+     */
+    private Object readCollection(Decoder in, CollectionCodec codec, Object existing) throws Exception {
+        int count = in.readLength();
+        int length = codec.lengthOf(count);
+        if (trackReferences) {
+            Object known = reuse(in, length > 0);
+            if (known != null) {
+                return known;
+            }
+        }
+        Object[] elements = new Object[length];
+        Object collection = null;
+        if (existing != null && claim(existing)) {
+            if (objectPool != null) {
+                // Прежние элементы, которые окажутся на своих местах, будут переиспользованы
+                // и не попадут в пул
+                displaceElements(existing);
+            }
+            collection = codec.recycle(existing, count, elements);
+        }
+        if (collection == null) {
+            collection = codec.newInstance(count);
+        }
+        int slot = -1;
+        if (trackReferences) {
+            slot = objIdentifier;
+            register(collection);
+        }
+        if (elements.length == 0) {
+            collection = codec.complete(collection, elements);
+            if (slot >= 0) {
+                heap[slot] = collection;
+            }
+            return collection;
+        }
+        push(in, elements, null, elements.length);
+        stackCodecs[depth - 1] = codec;
+        stackTargets[depth - 1] = collection;
+        stackSlots[depth - 1] = slot;
+        return collection;
+    }
+
+    /**
+     * Создает объект и помещает его в стек обхода для считывания полей.
+     *
+     * @param in декодировщик
+     * @param objClass класс объекта
+     * @param tracked отслеживаются ли ссылки на объект
+     * @param existing объект на месте ссылки при чтении в существующий объект или {@code null}
+     * @return созданный объект, поля которого будут считаны позже
+     * @throws Exception при ошибке создания объекта
+     */
+    private Object readObject(Decoder in, Class<?> objClass, boolean tracked, Object existing) throws Exception {
+        ClassDescriptor descriptor = ClassDescriptor.forClass(objClass, accessorType);
+        FieldDescriptor[] fields = descriptor.getFields();
+        if (tracked) {
+            Object known = reuse(in, fields.length > 0);
+            if (known != null) {
+                return known;
+            }
+        }
+        boolean inPlace = existing != null && existing.getClass() == objClass && claim(existing);
+        Object objInstance = inPlace ? existing : null;
+        if (objInstance == null && objectPool != null) {
+            objInstance = objectPool.take(objClass);
+            if (objInstance != null && objInstance.getClass() != objClass) {
+                throw new IllegalStateException("Object pool returned " + objInstance.getClass().getName()
+                        + " instead of " + objClass.getName());
+            }
+        }
+        if (objInstance == null) {
+            objInstance = descriptor.newInstance();
+        }
+        if (tracked) {
+            register(objInstance);
+        }
+        if (fields.length > 0) {
+            push(in, objInstance, fields, descriptor.minFieldBytes(in.isVarintNumbers()));
+            stackGenerated[depth - 1] = descriptor.getGenerated();
+            stackInPlace[depth - 1] = inPlace;
+        }
+        return objInstance;
+    }
+
+    /**
+     * Производит считывание примитивного поля объекта.
+     *
+     * @param in декодировщик
+     * @param fieldDesc описание считываемого поля
+     * @param parent родительский объект, содержащий поле
+     * @throws Exception при ошибке считывания
+     */
+    private void readField(Decoder in, FieldDescriptor fieldDesc, Object parent) throws Exception {
+        FieldAccessor accessor = fieldDesc.getAccessor();
+        switch (fieldDesc.getTypeCode()) {
+        case TypeCode.BYTE:
+            accessor.setByte(parent, in.readByte());
+            break;
+        case TypeCode.SHORT:
+            accessor.setShort(parent, in.readShort());
+            break;
+        case TypeCode.INT:
+            accessor.setInt(parent, in.readNumberInt());
+            break;
+        case TypeCode.LONG:
+            accessor.setLong(parent, in.readNumberLong());
+            break;
+        case TypeCode.FLOAT:
+            accessor.setFloat(parent, in.readFloat());
+            break;
+        case TypeCode.DOUBLE:
+            accessor.setDouble(parent, in.readDouble());
+            break;
+        case TypeCode.BOOLEAN:
+            accessor.setBoolean(parent, in.readBoolean());
+            break;
+        case TypeCode.CHAR:
+            accessor.setChar(parent, in.readChar());
+            break;
+        default:
+            throw new IllegalArgumentException("Not a primitive field: " + fieldDesc.getName());
+        }
+    }
+
+    /**
+     * Производит считывание ссылки на объект. Для объекта, встреченного впервые, создается экземпляр,
+     * а объект с полями или массив ссылок помещается в стек обхода для считывания содержимого.
+     * Для уже считанного объекта возвращается экземпляр из кучи.
+     *
+     * @param in декодировщик
+     * @return объект по ссылке или {@code null}
+     * @throws Exception при ошибке считывания
+     */
+    private Object readReference(Decoder in) throws Exception {
+        return readReference(in, (Object) null);
+    }
+
+    /**
+     * Производит считывание ссылки на объект на место существующего объекта, который
+     * переиспользуется, если в данных записан новый объект того же класса.
+     *
+     * @param in декодировщик
+     * @param existing объект на месте ссылки при чтении в существующий объект или {@code null}
+     * @return объект по ссылке или {@code null}
+     * @throws Exception при ошибке считывания
+     */
+    private Object readReference(Decoder in, Object existing) throws Exception {
+        if (meter != null) {
+            meter.charge(depth - 1, in.count());
+            return readMeteredReference(in, in.readVarint(), existing);
+        }
+        return readReference(in, in.readVarint(), existing);
+    }
+
+    /**
+     * Производит считывание ссылки на объект с учетом байт и времени для получателя сведений.
+     * Считывание самой ссылки относится к объекту по ссылке, если он новый, или к объекту,
+     * на котором находится обход.
+     *
+     * @param in декодировщик
+     * @param reference значение ссылки
+     * @param existing объект на месте ссылки при чтении в существующий объект или {@code null}
+     * @return объект по ссылке или {@code null}
+     * @throws Exception при ошибке считывания
+     */
+    private Object readMeteredReference(Decoder in, long reference, Object existing) throws Exception {
+        int frame = depth;
+        Object value = readReference(in, reference, existing);
+        if (depth > frame) {
+            meter.open(frame, in.count());
+        } else if (value == null || meter.takeReference()) {
+            meter.charge(frame - 1, in.count());
+        } else {
+            meter.inline(value.getClass(), in.count());
+        }
+        return value;
+    }
+
+    /**
+     * Производит считывание ссылки на объект по уже считанному значению ссылки. Существующий
+     * объект, вместо которого считан другой, вытесняется из графа.
+     *
+     * @param in декодировщик
+     * @param reference значение ссылки
+     * @param existing объект на месте ссылки при чтении в существующий объект или {@code null}
+     * @return объект по ссылке или {@code null}
+     * @throws Exception при ошибке считывания
+     */
+    private Object readReference(Decoder in, long reference, Object existing) throws Exception {
+        if (existing == null) {
+            return readReferenceValue(in, reference, null);
+        }
+        Object value = readReferenceValue(in, reference, existing);
+        if (value != existing && objectPool != null) {
+            displace(existing);
+        }
+        return value;
+    }
+
+    /**
+     * Производит считывание ссылки на объект по уже считанному значению ссылки,
+     * см. {@link #readReference(Decoder, long, Object)}.
+     *
+     * @param in декодировщик
+     * @param reference значение ссылки
+     * @param existing объект на месте ссылки при чтении в существующий объект или {@code null}
+     * @return объект по ссылке или {@code null}
+     * @throws Exception при ошибке считывания
+     */
+    private Object readReferenceValue(Decoder in, long reference, Object existing) throws Exception {
+        if (reference == WireFormat.NULL) {
+            return null;
+        }
+        if ((reference & 1) != 0) {
+            long objID = reference >>> 1;
+            if (objID >= objIdentifier) {
+                throw new StreamCorruptedException("Unknown object reference: " + objID);
+            }
+            Object value = heap[(int) objID];
+            if (value == null && lazy != null) {
+                value = lazy.resolve((int) objID);
+            }
+            if (value == null && isPendingCollection((int) objID)) {
+                throw new InvalidObjectException("Collection " + objID + " is referenced from its own elements before it is created");
+            }
+            if (meter != null && value != null) {
+                meter.reference(value.getClass());
+            }
+            return value;
+        }
+        long typeID = reference >>> 1;
+        if (typeID == WireFormat.TYPE_STRING) {
+            String value = in.readString();
+            if (trackReferences) {
+                return registerValue(value);
+            }
+            return value;
+        }
+        if (sharedStrings && (typeID == WireFormat.TYPE_SHARED_STRING || typeID == WireFormat.TYPE_SHARED_STRING_REF)) {
+            return readSharedString(in, typeID);
+        }
+        ValueCodec valueCodec = ValueCodec.forTag(typeID);
+        if (valueCodec != null) {
+            return valueCodec.read(in);
+        }
+        CollectionCodec collectionCodec = CollectionCodec.forTag(typeID);
+        if (collectionCodec != null) {
+            return readCollection(in, collectionCodec, existing);
+        }
+        int classID = readClass(in, typeID);
+        Class<?> objType = classHeap[classID];
+        boolean tracked = trackReferences && classTracked[classID];
+        Codec<?> codec = classCodecs[classID];
+        if (codec != null) {
+            if (skippable) {
+                in.skipBytes(WireFormat.OBJECT_FRAME_SIZE);
+            }
+            Object value = codec.read(in);
+            if (!objType.isInstance(value)) {
+                throw new InvalidObjectException("Codec of " + objType.getName() + " returned "
+                        + (value == null ? "null" : value.getClass().getName()));
+            }
+            if (tracked) {
+                return registerValue(value);
+            }
+            return value;
+        } else if (objType.isArray()) {
+            return readArray(in, objType.getComponentType(), tracked, existing);
+        } else if (objType.isEnum()) {
+            Object enumObj = readEnum(in, objType);
+            if (tracked) {
+                return registerValue(enumObj);
+            }
+            return enumObj;
+        } else {
+            return readObject(in, objType, tracked, existing);
+        }
+    }
+
+    /**
+     * Считывает строку общей таблицы строк сеанса: новую строку, которая добавляется в таблицу,
+     * или идентификатор ранее считанной строки.
+     *
+     * @param in декодировщик
+     * @param typeID тип из значения ссылки
+     * @return считанная строка
+     * @throws Exception при ошибке считывания
+     */
+    private String readSharedString(Decoder in, long typeID) throws Exception {
+        if (typeID == WireFormat.TYPE_SHARED_STRING_REF) {
+            long stringID = in.readVarint();
+            if (stringID >= sharedStringCount) {
+                throw new StreamCorruptedException("Unknown shared string reference: " + stringID);
+            }
+            return sharedStringTable[(int) stringID];
+        }
+        String value = in.readString();
+        if (sharedStringCount == sharedStringTable.length) {
+            sharedStringTable = Arrays.copyOf(sharedStringTable, sharedStringCount * 2);
+        }
+        sharedStringTable[sharedStringCount++] = value;
+        return value;
+    }
+
+    /**
+     * Отмечает существующий объект как переиспользованный вызовом чтения в существующий объект.
+     *
+     * @param existing объект графа
+     * @return {@code true}, если объект еще не переиспользован в этом вызове
+     */
+    private boolean claim(Object existing) {
+        return claimed.putIfAbsent(existing, 0) == IdentityIntMap.ABSENT;
+    }
+
+    /**
+     * Запоминает объект, вытесненный из графа, для возврата в пул после чтения.
+     *
+     * @param existing вытесненный объект
+     */
+    private void displace(Object existing) {
+        if (displacedCount == displaced.length) {
+            displaced = Arrays.copyOf(displaced, displacedCount * 2);
+        }
+        displaced[displacedCount++] = existing;
+    }
+
+    /**
+     * Запоминает элементы массива ссылок или коллекции со встроенным представлением как вытесненные.
+     *
+     * @param container массив, коллекция или другой объект, который не содержит элементов
+     */
+    private void displaceElements(Object container) {
+        Object[] elements;
+        if (container instanceof Object[]) {
+            elements = (Object[]) container;
+        } else {
+            CollectionCodec codec = CollectionCodec.forClass(container.getClass());
+            if (codec == null) {
+                return;
+            }
+            elements = codec.toElements(container);
+        }
+        for (Object element : elements) {
+            if (element != null) {
+                displace(element);
+            }
+        }
+    }
+
+    /**
+     * Возвращает в пул вытесненные объекты с полями, которые не переиспользованы в другом месте
+     * графа. Объект, вытесненный из нескольких мест, возвращается один раз. Элементы вытесненных
+     * массивов и коллекций также считаются вытесненными.
+     */
+    private void releaseDisplaced() {
+        for (int i = 0; i < displacedCount; i++) {
+            Object obj = displaced[i];
+            displaced[i] = null;
+            if (claim(obj)) {
+                if (isPoolable(obj.getClass())) {
+                    objectPool.release(obj);
+                } else {
+                    displaceElements(obj);
+                }
+            }
+        }
+        displacedCount = 0;
+    }
+
+    /**
+     * @param type класс объекта
+     * @return считывается ли объект класса по полям, так что его можно взять из пула
+     */
+    private boolean isPoolable(Class<?> type) {
+        return !type.isArray() && !type.isEnum() && type != String.class && ValueCodec.forClass(type) == null
+                && CollectionCodec.forClass(type) == null && classRegistry.getCodec(type) == null;
+    }
+
+    /**
+     * Помещает объект в кучу считанных объектов до считывания его содержимого, чтобы на него
+     * можно было сослаться из вложенных объектов.
+     *
+     * @param obj считываемый объект
+     */
+    private void register(Object obj) throws StreamCorruptedException {
+        if (objIdentifier == heap.length) {
+            if (lazy != null) {
+                throw new StreamCorruptedException("Object count exceeds the header value");
+            }
+            heap = Arrays.copyOf(heap, objIdentifier * 2);
+        }
+        heap[objIdentifier++] = obj;
+    }
+
+    /**
+     * Помещает в кучу объект, содержимое которого уже считано. При частичном чтении возвращает
+     * вместо него объект, созданный ранее с тем же идентификатором.
+     *
+     * @param obj считанный объект
+     * @return объект из кучи
+     * @throws StreamCorruptedException если число объектов превышает указанное в заголовке
+     */
+    private Object registerValue(Object obj) throws StreamCorruptedException {
+        if (lazy != null && objIdentifier < heap.length && heap[objIdentifier] != null) {
+            return heap[objIdentifier++];
+        }
+        register(obj);
+        return obj;
+    }
+
+    /**
+     * При частичном чтении возвращает объект с очередным идентификатором, если он уже создан
+     * при чтении другой части графа, и пропускает его содержимое. Так объект, на который
+     * ссылаются из разных частей графа, создается один раз.
+     *
+     * @param in декодировщик
+     * @param framed предваряется ли содержимое объекта кадром
+     * @return созданный ранее объект или {@code null}
+     * @throws IOException при ошибке считывания кадра
+     */
+    private Object reuse(Decoder in, boolean framed) throws IOException {
+        if (lazy == null || objIdentifier >= heap.length || heap[objIdentifier] == null) {
+            return null;
+        }
+        Object known = heap[objIdentifier++];
+        if (framed) {
+            int length = in.readInt();
+            int count = in.readInt();
+            if (length < 0 || count < 0 || count > heap.length - objIdentifier) {
+                throw new StreamCorruptedException("Invalid object frame: " + length + "/" + count);
+            }
+            in.skipBytes(length);
+            objIdentifier += count;
+        }
+        return known;
+    }
+
+    /**
+     * Производит считывание массива из потока. Массив ссылок помещается в стек обхода.
+     *
+     * @param in декодировщик
+     * @param compType тип элементов массива
+     * @param tracked отслеживаются ли ссылки на массив
+     * @param existing объект на месте ссылки при чтении в существующий объект или {@code null}
+     * @return считанный массив
+     * @throws Exception при ошибке считывания
+     */
+    private Object readArray(Decoder in, Class<?> compType, boolean tracked, Object existing) throws Exception {
+        int length = in.readLength();
+        int typeCode = TypeCode.of(compType);
+        if (incremental && typeCode != TypeCode.OBJECT) {
+            in.expect((long) length * TypeCode.sizeOf(typeCode));
+        }
+        if (tracked) {
+            Object known = reuse(in, typeCode == TypeCode.OBJECT && length > 0);
+            if (known != null) {
+                if (typeCode != TypeCode.OBJECT) {
+                    in.skipBytes((long) length * TypeCode.sizeOf(typeCode));
+                }
+                return known;
+            }
+        }
+        Object array;
+        if (existing != null && existing.getClass().getComponentType() == compType
+                && Array.getLength(existing) == length && claim(existing)) {
+            array = existing;
+        } else {
+            array = Array.newInstance(compType, length);
+        }
+        if (tracked) {
+            register(array);
+        }
+        if (typeCode == TypeCode.OBJECT) {
+            if (length > 0) {
+                push(in, array, null, length);
+            }
+        } else if (typeCode == TypeCode.BYTE) {
+            in.readBytes((byte[]) array, 0, length);
+        } else {
+            in.readPrimitiveArray(typeCode, array, length);
+        }
+        return array;
+    }
+
+    /**
+     * Производит считывание экземпляра перечисления.
+     *
+     * @param in декодировщик
+     * @param enumClass класс перечисления
+     * @return считанный объект перечисления
+     * @throws Exception при ошибке считывания
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Object readEnum(Decoder in, Class<?> enumClass) throws Exception {
+        return Enum.valueOf((Class<Enum>) enumClass, in.readString(names()));
+    }
+
+    /**
+     * Производит считывание типа нового объекта.
+     *
+     * @param in декодировщик
+     * @param typeID тип объекта из значения ссылки
+     * @return идентификатор класса в кэше классов
+     * @throws Exception при ошибке считывания класса
+     */
+    private int readClass(Decoder in, long typeID) throws Exception {
+        if (typeID == WireFormat.CLASS_NEW || typeID == WireFormat.CLASS_NEW_UNTRACKED) {
+            String name = in.readString(names());
+            if (!classRegistry.allowsName(name)) {
+                throw new InvalidClassException(name, "class is not registered");
+            }
+            return addClass(forName(name), typeID == WireFormat.CLASS_NEW);
+        }
+        if (typeID == WireFormat.TYPE_REGISTERED || typeID == WireFormat.TYPE_REGISTERED_UNTRACKED) {
+            long entry = in.readVarint();
+            long registeredID = entry >>> 1;
+            Class<?> registered = classRegistry.getType(registeredID);
+            if (registered == null) {
+                throw new InvalidClassException("Unknown registered class id: " + registeredID);
+            }
+            boolean codec = classRegistry.getCodec(registered) != null;
+            if (codec != ((entry & 1) != 0)) {
+                throw new InvalidClassException(registered.getName(), codec ? "codec is registered only for reading"
+                        : "written by a codec that is not registered for reading");
+            }
+            return addClass(registered, typeID == WireFormat.TYPE_REGISTERED);
+        }
+        long classID = typeID - WireFormat.FIRST_CLASS_ID;
+        if (classID < 0 || classID >= classCount) {
+            throw new StreamCorruptedException("Unknown class reference: " + typeID);
+        }
+        return (int) classID;
+    }
+
+    /**
+     * @return кэш имен классов и элементов перечислений
+     */
+    private NameCache names() {
+        if (names == null) {
+            names = new NameCache();
+        }
+        return names;
+    }
+
+    /**
+     * Находит класс по имени. Найденные классы запоминаются, чтобы не искать класс заново
+     * в каждом графе, число запоминаемых классов ограничено.
+     *
+     * @param name имя класса
+     * @return класс
+     * @throws ClassNotFoundException если класс не найден
+     */
+    private Class<?> forName(String name) throws ClassNotFoundException {
+        Class<?> type = namedClasses.get(name);
+        if (type == null) {
+            type = Class.forName(name);
+            if (namedClasses.size() < MAX_NAMED_CLASSES) {
+                namedClasses.put(name, type);
+            }
+        }
+        return type;
+    }
+
+    /**
+     * Добавляет класс в кэш классов.
+     *
+     * @param newClass класс
+     * @param tracked отслеживаются ли ссылки на объекты класса
+     * @return идентификатор класса в кэше классов
+     */
+    private int addClass(Class<?> newClass, boolean tracked) {
+        if (classCount == classHeap.length) {
+            classHeap = Arrays.copyOf(classHeap, classCount * 2);
+            classTracked = Arrays.copyOf(classTracked, classCount * 2);
+            classCodecs = Arrays.copyOf(classCodecs, classCount * 2);
+        }
+        classHeap[classCount] = newClass;
+        classTracked[classCount] = tracked;
+        classCodecs[classCount] = classRegistry.getCodec(newClass);
+        if (meter != null) {
+            meter.classEntry(newClass);
+        }
+        return classCount++;
+    }
+
+}
@@ -0,0 +1,85 @@
+package ua.vladaxon.serializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Сеанс чтения последовательности объектов, записанных {@link LObjectWriter}. Таблицы классов
+ * и строк сеанса пополняются по мере чтения и сохраняются между объектами.
+ * <p>
+ * Поток принадлежит сеансу и закрывается вместе с ним. Он читается блоками с опережением,
+ * поэтому читать из него в обход сеанса нельзя.
+ * <p>
+ * Сеанс не потокобезопасен.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public class LObjectReader implements AutoCloseable {
+
+    /** Поток сеанса. */
+    private final InputStream in;
+    /** Десериализатор, принадлежащий сеансу. */
+    private final LDesirializer deserializer;
+    /** Закрыт ли сеанс. */
+    private boolean closed;
+
+    /**
+     * Начинает сеанс с настройками по умолчанию.
+     *
+     * @param in входящий поток
+     * @throws Exception при ошибке считывания заголовка сеанса
+     */
+    public LObjectReader(InputStream in) throws Exception {
+        this(in, new LSerializerFactory());
+    }
+
+    /**
+     * Начинает сеанс и считывает его заголовок. Формат объектов определяется заголовком,
+     * из настроек фабрики используются способ доступа к полям и реестр классов.
+     *
+     * @param in входящий поток
+     * @param factory фабрика, настройки которой применяются к сеансу
+     * @throws Exception при ошибке считывания заголовка или если поток не является потоком сеанса
+     */
+    public LObjectReader(InputStream in, LSerializerFactory factory) throws Exception {
+        this.in = in;
+        this.deserializer = factory.newDeserializer();
+        deserializer.openSession(in);
+    }
+
+    /**
+     * Считывает очередной объект.
+     *
+     * @param rootClass класс требуемого объекта
+     * @param <T> тип требуемого объекта
+     * @return десериализованный объект
+     * @throws java.io.EOFException если поток закончился
+     * @throws Exception при ошибке считывания
+     */
+    public <T> T readObject(Class<T> rootClass) throws Exception {
+        if (closed) {
+            throw new IllegalStateException("Session is closed");
+        }
+        return rootClass.cast(deserializer.readSessionObject(rootClass));
+    }
+
+    /**
+     * Завершает сеанс и закрывает поток.
+     *
+     * @throws IOException при ошибке закрытия потока
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            deserializer.closeSession();
+        } finally {
+            in.close();
+        }
+    }
+
+}
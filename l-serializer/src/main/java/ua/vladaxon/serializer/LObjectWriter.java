@@ -0,0 +1,125 @@
+package ua.vladaxon.serializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Сеанс записи последовательности объектов в один поток, например в долгоживущее сетевое
+ * соединение. Читается {@link LObjectReader}.
+ * <p>
+ * В отличие от {@link LSerializer#serialize(OutputStream, Object)}, классы, записанные в сеансе
+ * однажды, в следующих объектах передаются только идентификатором, а не именем, и читающая
+ * сторона не ищет их повторно. Общая таблица строк дополнительно передает повторяющиеся
+ * в разных объектах строки идентификаторами. Ссылки между разными объектами сеанса не сохраняются:
+ * каждый объект записывается как отдельный граф.
+ * <p>
+ * Таблицы сеанса растут с каждым новым классом и строкой. Для долгих сеансов с большим числом
+ * различных строк их можно очищать через {@link #reset()}.
+ * <p>
+ * Сеанс не потокобезопасен. После ошибки записи поток сеанса считается поврежденным,
+ * и дальнейшая запись невозможна.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public class LObjectWriter implements AutoCloseable {
+
+    /** Поток сеанса. */
+    private final OutputStream out;
+    /** Сериализатор, принадлежащий сеансу. */
+    private final LSerializer serializer;
+    /** Прервана ли запись ошибкой. */
+    private boolean broken;
+    /** Закрыт ли сеанс. */
+    private boolean closed;
+
+    /**
+     * Начинает сеанс с настройками по умолчанию и без общей таблицы строк.
+     *
+     * @param out поток для записи данных
+     * @throws Exception при ошибке записи заголовка сеанса
+     */
+    public LObjectWriter(OutputStream out) throws Exception {
+        this(out, new LSerializerFactory(), false);
+    }
+
+    /**
+     * Начинает сеанс и записывает его заголовок.
+     *
+     * @param out поток для записи данных
+     * @param factory фабрика, настройки которой применяются к сеансу
+     * @param sharedStrings передавать ли строки, повторяющиеся в разных объектах, идентификаторами.
+     *            Равные строки при чтении становятся одним экземпляром
+     * @throws Exception при ошибке записи заголовка сеанса
+     */
+    public LObjectWriter(OutputStream out, LSerializerFactory factory, boolean sharedStrings) throws Exception {
+        this.out = out;
+        this.serializer = factory.newSerializer();
+        serializer.openSession(out, sharedStrings);
+    }
+
+    /**
+     * Записывает очередной объект. Данные объекта передаются в поток целиком до возврата
+     * из метода, но сам поток не сбрасывается, см. {@link #flush()}.
+     *
+     * @param obj сериализуемый объект
+     * @throws Exception при ошибке записи объекта
+     */
+    public void writeObject(Object obj) throws Exception {
+        ensureWritable();
+        broken = true;
+        serializer.writeSessionObject(obj);
+        broken = false;
+    }
+
+    /**
+     * Очищает таблицы классов и строк сеанса на обеих сторонах. Следующие объекты снова
+     * передают имена классов и строки целиком.
+     *
+     * @throws Exception при ошибке записи
+     */
+    public void reset() throws Exception {
+        ensureWritable();
+        broken = true;
+        serializer.resetSession();
+        broken = false;
+    }
+
+    /**
+     * Сбрасывает поток сеанса.
+     *
+     * @throws Exception при ошибке записи
+     */
+    public void flush() throws Exception {
+        ensureWritable();
+        out.flush();
+    }
+
+    /**
+     * Завершает сеанс и закрывает поток.
+     *
+     * @throws IOException при ошибке записи или закрытия потока
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            serializer.closeSession();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void ensureWritable() {
+        if (closed) {
+            throw new IllegalStateException("Session is closed");
+        }
+        if (broken) {
+            throw new IllegalStateException("Session is broken by a previous write error");
+        }
+    }
+
+}
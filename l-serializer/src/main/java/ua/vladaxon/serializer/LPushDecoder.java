@@ -0,0 +1,131 @@
+package ua.vladaxon.serializer;
+
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+/**
+ * Пошаговое чтение последовательности объектов, поступающих частями произвольного размера,
+ * например из {@link java.nio.channels.SocketChannel} в цикле обработки событий. Каждый объект
+ * записан отдельным вызовом {@link LSerializer} в текущем формате, объекты следуют друг за другом
+ * без разделителей.
+ * <p>
+ * Части передаются в {@link #feed(ByteBuffer, Collection)} по мере поступления. Обход графа
+ * продолжается с места остановки: когда данные части заканчиваются, обход приостанавливается
+ * перед прерванным полем или элементом, а завершенные объекты возвращаются сразу. Часть
+ * с доступным массивом читается на месте, между вызовами сохраняются только байты прерванного
+ * поля или элемента, поэтому объем сохраняемых данных ограничен размером наибольшей строки,
+ * массива примитивов или объекта с пользовательским представлением, а не размером сообщения.
+ * Верхняя граница задается {@link #setMaxPendingBytes(int)}.
+ * <p>
+ * Потоки сеанса, сжатые потоки и потоки исходного формата пошагово не читаются. Экземпляр
+ * не потокобезопасен и после ошибки чтения непригоден для дальнейшего использования.
+ *
+ * @author Vladislav Babushkin
+ *
+ * @param <T> тип считываемых объектов
+ */
+public class LPushDecoder<T> {
+
+    /** Граница сохраняемых между частями байт по умолчанию. */
+    private static final int DEFAULT_MAX_PENDING_BYTES = 16 << 20;
+    /** Признак нехватки данных для завершения объекта. */
+    private static final Object PENDING = new Object();
+
+    /** Класс считываемых объектов. */
+    private final Class<T> rootClass;
+    /** Десериализатор, принадлежащий экземпляру. */
+    private final LDesirializer deserializer;
+    /** Граница сохраняемых между частями байт. */
+    private int maxPendingBytes = DEFAULT_MAX_PENDING_BYTES;
+    /** Произошла ли ошибка чтения или закрыт ли экземпляр. */
+    private boolean closed;
+
+    /**
+     * Создает экземпляр с настройками по умолчанию.
+     *
+     * @param rootClass класс считываемых объектов
+     */
+    public LPushDecoder(Class<T> rootClass) {
+        this(rootClass, new LSerializerFactory());
+    }
+
+    /**
+     * Создает экземпляр. Формат объектов определяется их заголовками, из настроек фабрики
+     * используются способ доступа к полям и реестр классов.
+     *
+     * @param rootClass класс считываемых объектов
+     * @param factory фабрика, настройки которой применяются к чтению
+     */
+    public LPushDecoder(Class<T> rootClass, LSerializerFactory factory) {
+        this.rootClass = rootClass;
+        this.deserializer = factory.newDeserializer();
+        deserializer.openPush();
+    }
+
+    /**
+     * Задает наибольшее число байт незавершенного поля или элемента, сохраняемых между частями.
+     * При превышении чтение завершается ошибкой.
+     *
+     * @param maxPendingBytes число байт
+     */
+    public void setMaxPendingBytes(int maxPendingBytes) {
+        if (maxPendingBytes <= 0) {
+            throw new IllegalArgumentException("Max pending bytes must be positive: " + maxPendingBytes);
+        }
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    /**
+     * Считывает часть данных и добавляет завершенные объекты в коллекцию. После возврата
+     * часть прочитана целиком: ее позиция равна границе, а байты незавершенного объекта
+     * сохранены экземпляром. Содержимое части после возврата можно изменять.
+     *
+     * @param fragment часть данных, читаемая с текущей позиции
+     * @param out коллекция для завершенных объектов, может получить {@code null}, если он был записан
+     * @return число завершенных объектов
+     * @throws Exception при ошибке считывания, после чего экземпляр закрывается
+     */
+    public int feed(ByteBuffer fragment, Collection<? super T> out) throws Exception {
+        if (closed) {
+            throw new IllegalStateException("Decoder is closed");
+        }
+        boolean completed = false;
+        try {
+            deserializer.feedPush(fragment);
+            int count = 0;
+            Object value;
+            while ((value = deserializer.readPushed(PENDING)) != PENDING) {
+                out.add(rootClass.cast(value));
+                count++;
+            }
+            if (deserializer.pushPending() > maxPendingBytes) {
+                throw new StreamCorruptedException("Incomplete object part exceeds " + maxPendingBytes + " bytes");
+            }
+            completed = true;
+            return count;
+        } finally {
+            if (!completed) {
+                close();
+            }
+        }
+    }
+
+    /**
+     * @return число байт незавершенного объекта, сохраненных до поступления следующей части
+     */
+    public int getPendingBytes() {
+        return closed ? 0 : deserializer.pushPending();
+    }
+
+    /**
+     * Закрывает экземпляр и освобождает сохраненные байты и незавершенные объекты.
+     */
+    public void close() {
+        if (!closed) {
+            closed = true;
+            deserializer.closePush();
+        }
+    }
+
+}
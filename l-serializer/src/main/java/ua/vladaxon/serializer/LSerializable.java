@@ -0,0 +1,33 @@
+package ua.vladaxon.serializer;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Отмечает класс, для которого при компиляции создается средство доступа к полям
+ * {@link GeneratedAccessor}. Средство создает процессор аннотаций из модуля
+ * {@code l-serializer-processor}: класс с именем {@code <двоичное имя класса>_LAccessor}
+ * в том же пакете. Сериализатор и десериализатор находят его по имени, без просмотра
+ * classpath и без рефлексии над полями, и записывают поля прямым кодом в том же формате,
+ * что и через рефлексию. Если созданного класса нет, используется рефлексия. Экземпляры
+ * при десериализации, как и без средства доступа, создаются без вызова конструктора класса.
+ * <p>
+ * Требования к классу, которые проверяет процессор:
+ * <ul>
+ * <li>класс верхнего уровня или статический вложенный, не закрытый и не абстрактный;</li>
+ * <li>нестатические поля класса и его предков не закрыты и не финальные, а предки с полями
+ * находятся в том же пакете.</li>
+ * </ul>
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface LSerializable {
+
+}
@@ -0,0 +1,1218 @@
+package ua.vladaxon.serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Сериализатор объектов. Производит преобразования объекта в байтовое представление.
+ * <p>
+ * Граф объектов обходится в глубину без рекурсии: объекты, содержимое которых еще не записано,
+ * хранятся в явном стеке, поэтому глубина графа ограничена только размером кучи.
+ * <p>
+ * Экземпляр хранит состояние вызова и не может использоваться несколькими потоками одновременно.
+ * Для общего использования предназначена {@link LSerializerFactory}.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public class LSerializer {
+
+    /** Начальный размер стека обхода. */
+    private static final int INITIAL_STACK_SIZE = 64;
+
+    /** Счетчик идентификаторов объектов. */
+    private int objIdentifier;
+    /** Идентификатор сериализуемого класса. */
+    private int classIdentifier;
+    /** Куча сериализируемых объектов. */
+    private final IdentityIntMap heap = new IdentityIntMap(1024);
+    /** Кэш классов. */
+    private final IdentityIntMap classHeap = new IdentityIntMap(64);
+    /** Пользовательские представления классов по идентификаторам классов в потоке. */
+    private Codec<?>[] classCodecs = new Codec<?>[64];
+    /** Записываются ли строки через общую таблицу строк сеанса. */
+    private boolean sharedStrings;
+    /** Общая таблица строк сеанса: строка и ее идентификатор. */
+    private final Map<String, Integer> sharedStringIds = new HashMap<String, Integer>();
+    /** Кодировщик, переиспользуемый между вызовами. */
+    private final Encoder encoder = new Encoder();
+    /** Способ доступа к полям объектов. */
+    private final AccessorType accessorType;
+    /** Записывать ли поля int и long zigzag varint-числами. */
+    private boolean varintNumbers;
+    /** Отслеживать ли повторные ссылки на объекты. */
+    private boolean trackReferences = true;
+    /** Классы, ссылки на объекты которых не отслеживаются. */
+    private final Map<Class<?>, Boolean> untrackedClasses = new IdentityHashMap<Class<?>, Boolean>();
+    /** Реестр классов с постоянными идентификаторами. */
+    private ClassRegistry classRegistry = ClassRegistry.EMPTY;
+    /** Алгоритм сжатия блоков или {@code null}, если данные не сжимаются. */
+    private BlockCompressor compressor;
+    /** Проверять ли отсутствие циклов у объектов без отслеживания ссылок. */
+    private boolean cycleCheck;
+    /** Записывать ли содержимое объектов с кадрами для пропуска при чтении. */
+    private boolean skippableObjects;
+    /** Кодировщик графа с кадрами, создается при первой необходимости. */
+    private Encoder bodyEncoder;
+    /** Записываются ли сейчас кадры содержимого объектов. */
+    private boolean frameObjects;
+    /** Классы графа с кадрами по идентификаторам классов в потоке, записываются таблицей. */
+    private Class<?>[] tableClasses = new Class<?>[64];
+    /** Отслеживаются ли ссылки на объекты классов таблицы. */
+    private boolean[] tableTracked = new boolean[64];
+    /** Объекты в стеке обхода, заполняется только при проверке циклов. */
+    private final Map<Object, Boolean> onStack = new IdentityHashMap<Object, Boolean>();
+    /** Стек обхода: объекты и массивы, содержимое которых записывается. */
+    private Object[] stackObjects = new Object[INITIAL_STACK_SIZE];
+    /** Стек обхода: поля объектов или {@code null} для массивов ссылок. */
+    private FieldDescriptor[][] stackFields = new FieldDescriptor[INITIAL_STACK_SIZE][];
+    /** Стек обхода: созданное при компиляции средство доступа к полям объекта или {@code null}. */
+    private GeneratedAccessor<?>[] stackGenerated = new GeneratedAccessor<?>[INITIAL_STACK_SIZE];
+    /** Стек обхода: индекс следующего поля или элемента массива. */
+    private int[] stackIndex = new int[INITIAL_STACK_SIZE];
+    /** Стек обхода: объекты графа, которым принадлежит содержимое, для проверки циклов. */
+    private Object[] stackOwners = new Object[INITIAL_STACK_SIZE];
+    /** Стек обхода: позиция кадра содержимого в кодировщике графа. */
+    private int[] stackFrames = new int[INITIAL_STACK_SIZE];
+    /** Стек обхода: счетчик идентификаторов объектов в начале кадра. */
+    private int[] stackFrameIds = new int[INITIAL_STACK_SIZE];
+    /** Текущая глубина стека обхода. */
+    private int depth;
+    /** Учет объектов для получателя сведений или {@code null}, если получатель не задан. */
+    private ObjectMeter meter;
+    /** База записываемой разности или {@code null} вне разностной записи. */
+    private DeltaBaseline delta;
+
+    /**
+     * Создает сериализатор с доступом к полям через {@link AccessorType#REFLECTION}.
+     */
+    public LSerializer() {
+        this(AccessorType.REFLECTION);
+    }
+
+    /**
+     * Создает сериализатор с указанным способом доступа к полям.
+     *
+     * @param accessorType способ доступа к полям объектов
+     */
+    public LSerializer(AccessorType accessorType) {
+        this.accessorType = accessorType;
+    }
+
+    /**
+     * Включает запись полей int и long zigzag varint-числами. Это сокращает поток, если значения
+     * полей в основном невелики по модулю, но замедляет запись и чтение. По умолчанию выключено.
+     *
+     * @param varintNumbers {@code true} для записи полей varint-числами
+     */
+    public void setVarintNumbers(boolean varintNumbers) {
+        this.varintNumbers = varintNumbers;
+    }
+
+    /**
+     * Включает или выключает отслеживание повторных ссылок для всего графа. Без отслеживания
+     * сериализатор не ведет таблицу записанных объектов: каждый объект записывается целиком
+     * при каждой встрече, а после десериализации общие объекты оказываются продублированы.
+     * Подходит для графов-деревьев без общих объектов. Граф с циклом без отслеживания ссылок
+     * записать нельзя, см. {@link #setCycleCheck(boolean)}. По умолчанию включено.
+     *
+     * @param trackReferences {@code false} для записи графа как дерева
+     */
+    public void setReferenceTracking(boolean trackReferences) {
+        this.trackReferences = trackReferences;
+    }
+
+    /**
+     * Включает или выключает отслеживание повторных ссылок на объекты указанного класса.
+     * Действует, пока отслеживание включено для всего графа. Настройка передается в потоке
+     * вместе с именем класса, поэтому десериализатору ее задавать не нужно. Строки и коллекции
+     * со встроенным представлением, см. {@link CollectionCodec}, всегда следуют общей настройке,
+     * а ссылки на типы-значения, см. {@link ValueCodec}, не отслеживаются никогда.
+     *
+     * @param type класс объектов
+     * @param trackReferences {@code false}, чтобы записывать объекты класса без отслеживания ссылок
+     */
+    public void setReferenceTracking(Class<?> type, boolean trackReferences) {
+        checkTrackingConfigurable(type);
+        if (trackReferences) {
+            untrackedClasses.remove(type);
+        } else {
+            untrackedClasses.put(type, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Проверяет, что для класса можно задать отслеживание ссылок отдельно от общей настройки.
+     *
+     * @param type класс объектов
+     * @throws IllegalArgumentException если класс записывается встроенным типом
+     */
+    static void checkTrackingConfigurable(Class<?> type) {
+        if (type == String.class || CollectionCodec.forClass(type) != null) {
+            throw new IllegalArgumentException(type.getName() + " reference tracking follows the global setting");
+        }
+        if (ValueCodec.forClass(type) != null) {
+            throw new IllegalArgumentException(type.getName() + " is written as a value without reference tracking");
+        }
+    }
+
+    /**
+     * Включает проверку циклов для объектов, ссылки на которые не отслеживаются. Без проверки
+     * такой цикл приводит к бесконечной записи. Проверка замедляет запись и предназначена
+     * для отладки. По умолчанию выключена.
+     *
+     * @param cycleCheck {@code true} для проверки циклов
+     */
+    public void setCycleCheck(boolean cycleCheck) {
+        this.cycleCheck = cycleCheck;
+    }
+
+    /**
+     * Задает реестр классов, см. {@link ClassRegistry}. Десериализатор должен использовать
+     * реестр с теми же идентификаторами.
+     *
+     * @param classRegistry реестр классов
+     */
+    public void setClassRegistry(ClassRegistry classRegistry) {
+        if (classRegistry == null) {
+            throw new IllegalArgumentException("Class registry is null");
+        }
+        this.classRegistry = classRegistry;
+    }
+
+    /**
+     * Включает сжатие записываемых данных блоками, см. {@link FramedOutputStream}. Десериализатор
+     * распознает сжатые данные по заголовку. Сжатие применяется к отдельным вызовам сериализации,
+     * но не к сеансам {@link LObjectWriter}, поток которых можно обернуть в {@link FramedOutputStream}
+     * самостоятельно. По умолчанию данные не сжимаются.
+     *
+     * @param compressor алгоритм сжатия или {@code null}, чтобы не сжимать данные
+     */
+    public void setCompression(BlockCompressor compressor) {
+        this.compressor = compressor;
+    }
+
+    /**
+     * Включает запись содержимого объектов с кадрами, которые позволяют читать граф частично,
+     * см. {@link LDesirializer#deserializeLazy(byte[])}. Каждый объект с полями, непустой массив
+     * ссылок и непустая коллекция получают по восемь байт кадра, а граф перед передачей
+     * в приемник целиком собирается в памяти. Обычное чтение таких данных не меняется.
+     * Не действует на сеансы {@link LObjectWriter}. По умолчанию выключено.
+     *
+     * @param skippableObjects {@code true} для записи кадров содержимого объектов
+     */
+    public void setSkippableObjects(boolean skippableObjects) {
+        this.skippableObjects = skippableObjects;
+    }
+
+    /**
+     * Задает получателя сведений о записи объектов, см. {@link SerializationListener}.
+     * По умолчанию сведения не собираются.
+     *
+     * @param listener получатель сведений или {@code null}, чтобы не собирать сведения
+     */
+    public void setListener(SerializationListener listener) {
+        meter = listener != null ? new ObjectMeter(listener, false) : null;
+    }
+
+    /**
+     * Производит сериализацию объекта в поток. Данные записываются в поток блоками
+     * и полностью передаются ему до возврата из метода.
+     *
+     * @param out поток для записи данных
+     * @param obj сериализуемый объект
+     * @throws Exception при ошибке записи объекта
+     */
+    public void serialize(OutputStream out, Object obj) throws Exception {
+        if (compressor != null) {
+            writeCompressed(out, obj);
+            return;
+        }
+        encoder.begin(out);
+        write(obj);
+    }
+
+    /**
+     * Производит сериализацию объекта в буфер, начиная с его текущей позиции. После записи
+     * позиция буфера указывает на конец записанных данных. Если в буфере не хватает места,
+     * выбрасывается {@link BufferOverflowException}, а позиция буфера возвращается к началу
+     * записи. Содержимое буфера после этой позиции при этом может быть изменено.
+     *
+     * @param out буфер для записи данных
+     * @param obj сериализуемый объект
+     * @throws Exception при ошибке записи объекта
+     */
+    public void serialize(ByteBuffer out, Object obj) throws Exception {
+        int start = out.position();
+        try {
+            if (compressor != null) {
+                writeCompressed(new BufferOutput(out), obj);
+                return;
+            }
+            encoder.begin(out);
+            write(obj);
+        } catch (BufferOverflowException e) {
+            out.position(start);
+            throw e;
+        }
+    }
+
+    /**
+     * Производит сериализацию объекта в массив байт.
+     *
+     * @param obj сериализуемый объект
+     * @return байтовое представление объекта
+     * @throws Exception при ошибке записи объекта
+     */
+    public byte[] serializeToBytes(Object obj) throws Exception {
+        if (compressor != null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writeCompressed(out, obj);
+            return out.toByteArray();
+        }
+        encoder.begin();
+        write(obj);
+        return encoder.toByteArray();
+    }
+
+    /**
+     * Записывает заголовок и граф объекта через подготовленный кодировщик.
+     *
+     * @param obj сериализуемый объект
+     * @throws Exception при ошибке записи объекта
+     */
+    private void write(Object obj) throws Exception {
+        resetClasses();
+        Encoder out = encoder;
+        Object event = JfrEvents.AVAILABLE ? JfrEvents.beginSerialize() : null;
+        long started = meter != null ? System.nanoTime() : 0;
+        try {
+            if (skippableObjects) {
+                writeSkippable(obj, out);
+            } else {
+                writeHeader(out, 0);
+                writeMessage(obj, out);
+            }
+            out.finish();
+            completeCall(obj, out.count(), started, event);
+        } finally {
+            out.detach();
+        }
+    }
+
+    /**
+     * Записывает граф объекта с кадрами содержимого. Граф собирается отдельным кодировщиком,
+     * чтобы дописать длины кадров после записи содержимого, а затем передается в приемник
+     * после заголовка, числа объектов и таблицы классов.
+     *
+     * @param obj сериализуемый объект
+     * @param out кодировщик приемника
+     * @throws Exception при ошибке записи объекта
+     */
+    private void writeSkippable(Object obj, Encoder out) throws Exception {
+        if (bodyEncoder == null) {
+            bodyEncoder = new Encoder();
+        }
+        Encoder body = bodyEncoder;
+        body.begin();
+        body.setVarintNumbers(varintNumbers);
+        frameObjects = true;
+        try {
+            writeMessage(obj, body);
+        } finally {
+            frameObjects = false;
+        }
+        writeHeader(out, WireFormat.FLAG_SKIPPABLE_OBJECTS);
+        out.writeVarint(objIdentifier);
+        out.writeVarint(classIdentifier);
+        for (int i = 0; i < classIdentifier; i++) {
+            writeClassEntry(tableClasses[i], tableTracked[i], out);
+        }
+        body.writeTo(out);
+    }
+
+    /**
+     * Записывает заголовок и граф объекта через поток сжатых блоков.
+     *
+     * @param out поток-приемник сжатых блоков
+     * @param obj сериализуемый объект
+     * @throws Exception при ошибке записи объекта
+     */
+    private void writeCompressed(OutputStream out, Object obj) throws Exception {
+        FramedOutputStream framed = new FramedOutputStream(out, compressor);
+        encoder.begin(framed);
+        write(obj);
+        framed.finish();
+    }
+
+    /**
+     * Производит разностную сериализацию объекта в поток относительно базы, см. {@link DeltaBaseline}.
+     * Записываются только изменения графа с прошлой записи в эту базу, после чего база
+     * обновляется до текущего графа. Первая запись в пустую базу передает граф целиком.
+     * Читается через {@link LDesirializer#deserializeDelta(java.io.InputStream, Class, DeltaBaseline)}
+     * с базой стороны чтения. Сжатие и кадры содержимого к разностям не применяются.
+     * <p>
+     * Размер разности растет с числом изменений, а коллекции передаются по участкам и записям,
+     * кроме случаев, описанных в {@link DeltaBaseline}. Время записи растет с размером графа,
+     * поскольку для поиска изменений граф обходится и сравнивается со снимком целиком.
+     *
+     * @param out поток для записи данных
+     * @param obj сериализуемый объект
+     * @param baseline база стороны записи
+     * @throws Exception при ошибке записи объекта
+     */
+    public void serializeDelta(OutputStream out, Object obj, DeltaBaseline baseline) throws Exception {
+        encoder.begin(out);
+        writeDelta(obj, baseline);
+    }
+
+    /**
+     * Производит разностную сериализацию объекта в буфер, начиная с его текущей позиции,
+     * см. {@link #serializeDelta(OutputStream, Object, DeltaBaseline)}.
+     *
+     * @param out буфер для записи данных
+     * @param obj сериализуемый объект
+     * @param baseline база стороны записи
+     * @throws Exception при ошибке записи объекта
+     */
+    public void serializeDelta(ByteBuffer out, Object obj, DeltaBaseline baseline) throws Exception {
+        encoder.begin(out);
+        writeDelta(obj, baseline);
+    }
+
+    /**
+     * Производит разностную сериализацию объекта в массив байт,
+     * см. {@link #serializeDelta(OutputStream, Object, DeltaBaseline)}.
+     *
+     * @param obj сериализуемый объект
+     * @param baseline база стороны записи
+     * @return байтовое представление изменений
+     * @throws Exception при ошибке записи объекта
+     */
+    public byte[] serializeDeltaToBytes(Object obj, DeltaBaseline baseline) throws Exception {
+        encoder.begin();
+        writeDelta(obj, baseline);
+        return encoder.toByteArray();
+    }
+
+    /**
+     * Записывает разность графа через подготовленный кодировщик: число объектов базы, записи
+     * измененных объектов базы, корень и идентификаторы объектов, удаляемых из базы.
+     * Ссылки на объекты базы записываются ее идентификаторами, новые объекты получают
+     * идентификаторы после них.
+     *
+     * @param obj сериализуемый объект
+     * @param baseline база стороны записи
+     * @throws Exception при ошибке записи объекта
+     */
+    private void writeDelta(Object obj, DeltaBaseline baseline) throws Exception {
+        Encoder out = encoder;
+        try {
+            if (!trackReferences) {
+                throw new IllegalStateException("Delta encoding requires reference tracking");
+            }
+            resetClasses();
+            Object event = JfrEvents.AVAILABLE ? JfrEvents.beginSerialize() : null;
+            long started = meter != null ? System.nanoTime() : 0;
+            baseline.beginWrite(obj, accessorType, classRegistry);
+            writeHeader(out, WireFormat.FLAG_DELTA);
+            out.writeVarint(baseline.size());
+            heap.clear();
+            baseline.seed(heap);
+            objIdentifier = baseline.size();
+            delta = baseline;
+            if (meter != null) {
+                meter.start(out.count());
+            }
+            try {
+                for (int i = 0, count = baseline.reachedCount(); i < count; i++) {
+                    DeltaBaseline.Node node = baseline.reached(i);
+                    int changes = baseline.diff(node);
+                    if (changes > 0) {
+                        writeChanges(node, changes, baseline, out);
+                    }
+                }
+                out.writeVarint(0);
+                writeReference(obj, out);
+                writeGraph(out);
+            } finally {
+                delta = null;
+                clearStack();
+            }
+            baseline.writeReleased(out);
+            out.finish();
+            baseline.commitWrite();
+            completeCall(obj, out.count(), started, event);
+        } finally {
+            out.detach();
+        }
+    }
+
+    /**
+     * Записывает изменения объекта базы: идентификатор, увеличенный на единицу, и для коллекции
+     * правку ее содержимого, а для остальных объектов число измененных полей или элементов и каждое
+     * из них разностью индекса с предыдущим и новым значением.
+     *
+     * @param node узел базы
+     * @param changes число изменений
+     * @param baseline база стороны записи
+     * @param out кодировщик
+     * @throws Exception при ошибке записи данных
+     */
+    private void writeChanges(DeltaBaseline.Node node, int changes, DeltaBaseline baseline, Encoder out) throws Exception {
+        Object obj = node.obj;
+        out.writeVarint(node.id + 1L);
+        if (node.kind == DeltaBaseline.COLLECTION) {
+            writeCollectionChanges(node, changes, baseline, out);
+            return;
+        }
+        out.writeVarint(changes);
+        int last = -1;
+        for (int i = 0; i < changes; i++) {
+            int slot = baseline.changedSlot(i);
+            out.writeVarint(slot - last - 1);
+            last = slot;
+            if (node.kind == DeltaBaseline.FIELDS) {
+                FieldDescriptor fieldDesc = node.fields[slot];
+                if (fieldDesc.getTypeCode() != TypeCode.OBJECT) {
+                    writeField(fieldDesc, obj, out);
+                    continue;
+                }
+                writeReference(fieldDesc.getAccessor().getObject(obj), out);
+            } else if (node.kind == DeltaBaseline.OBJECT_ARRAY) {
+                writeReference(((Object[]) obj)[slot], out);
+            } else {
+                writeArrayElement(node.typeCode, obj, slot, out);
+                continue;
+            }
+            writeGraph(out);
+        }
+    }
+
+    /**
+     * Записывает правку коллекции, выбранную базой, см. {@link WireFormat#FLAG_DELTA}.
+     *
+     * @param node узел коллекции
+     * @param changes число изменений, см. {@link DeltaBaseline#diff(DeltaBaseline.Node)}
+     * @param baseline база стороны записи
+     * @param out кодировщик
+     * @throws Exception при ошибке записи данных
+     */
+    private void writeCollectionChanges(DeltaBaseline.Node node, int changes, DeltaBaseline baseline, Encoder out)
+            throws Exception {
+        Object[] elements = baseline.editedElements();
+        int edit = baseline.collectionEdit();
+        out.writeVarint(edit);
+        if (edit == WireFormat.DELTA_SPLICE) {
+            out.writeVarint(changes);
+            int position = 0;
+            for (int i = 0; i < changes; i++) {
+                int start = baseline.changedSlot(i * 3);
+                int inserted = baseline.changedSlot(i * 3 + 2);
+                out.writeVarint(start - position);
+                out.writeVarint(baseline.changedSlot(i * 3 + 1));
+                out.writeVarint(inserted);
+                position = start + inserted;
+                writeElements(elements, start, inserted, out);
+            }
+        } else if (edit == WireFormat.DELTA_ENTRIES) {
+            int removed = baseline.removedCount();
+            out.writeVarint(removed);
+            for (int i = 0; i < removed; i++) {
+                writeReference(baseline.removedKey(i), out);
+                writeGraph(out);
+            }
+            out.writeVarint(changes - removed);
+            int entrySize = node.codec.getEntrySize();
+            for (int i = 0; i < changes - removed; i++) {
+                writeElements(elements, baseline.changedSlot(i), entrySize, out);
+            }
+        } else {
+            out.writeVarint(node.codec.countOf(node.obj, elements));
+            writeElements(elements, 0, elements.length, out);
+        }
+    }
+
+    private void writeElements(Object[] elements, int from, int count, Encoder out) throws Exception {
+        for (int i = from; i < from + count; i++) {
+            writeReference(elements[i], out);
+            writeGraph(out);
+        }
+    }
+
+    /**
+     * Записывает элемент массива примитивов так же, как поле того же типа.
+     *
+     * @param typeCode код типа элементов
+     * @param array массив
+     * @param index индекс элемента
+     * @param out кодировщик
+     * @throws Exception при ошибке записи данных
+     */
+    private void writeArrayElement(int typeCode, Object array, int index, Encoder out) throws Exception {
+        switch (typeCode) {
+        case TypeCode.BYTE:
+            out.writeByte(((byte[]) array)[index]);
+            break;
+        case TypeCode.SHORT:
+            out.writeShort(((short[]) array)[index]);
+            break;
+        case TypeCode.INT:
+            out.writeNumber(((int[]) array)[index]);
+            break;
+        case TypeCode.LONG:
+            out.writeNumber(((long[]) array)[index]);
+            break;
+        case TypeCode.FLOAT:
+            out.writeFloat(((float[]) array)[index]);
+            break;
+        case TypeCode.DOUBLE:
+            out.writeDouble(((double[]) array)[index]);
+            break;
+        case TypeCode.BOOLEAN:
+            out.writeBoolean(((boolean[]) array)[index]);
+            break;
+        case TypeCode.CHAR:
+            out.writeChar(((char[]) array)[index]);
+            break;
+        default:
+            throw new IllegalArgumentException("Not a primitive type code: " + typeCode);
+        }
+    }
+
+    /**
+     * Начинает сеанс записи нескольких объектов в поток, см. {@link LObjectWriter}.
+     * Записывает заголовок сеанса.
+     *
+     * @param stream поток для записи данных
+     * @param sharedStrings сохранять ли строки в общей для сеанса таблице
+     * @throws Exception при ошибке записи
+     */
+    void openSession(OutputStream stream, boolean sharedStrings) throws Exception {
+        resetClasses();
+        this.sharedStrings = sharedStrings;
+        encoder.begin(stream);
+        int flags = WireFormat.FLAG_SESSION;
+        if (sharedStrings) {
+            flags |= WireFormat.FLAG_SHARED_STRINGS;
+        }
+        writeHeader(encoder, flags);
+    }
+
+    /**
+     * Записывает очередной объект сеанса. Классы и строки, записанные ранее в сеансе,
+     * передаются только идентификаторами. Данные объекта передаются в поток целиком.
+     *
+     * @param obj сериализуемый объект
+     * @throws Exception при ошибке записи объекта
+     */
+    void writeSessionObject(Object obj) throws Exception {
+        Object event = JfrEvents.AVAILABLE ? JfrEvents.beginSerialize() : null;
+        long started = meter != null ? System.nanoTime() : 0;
+        long position = encoder.count();
+        writeMessage(obj, encoder);
+        encoder.finish();
+        completeCall(obj, encoder.count() - position, started, event);
+    }
+
+    /**
+     * Сообщает о завершении вызова сериализации получателю сведений и в JFR.
+     *
+     * @param obj сериализованный объект
+     * @param bytes число записанных байт
+     * @param started время начала вызова, если задан получатель сведений
+     * @param event событие JFR или {@code null}
+     */
+    private void completeCall(Object obj, long bytes, long started, Object event) {
+        if (meter == null && event == null) {
+            return;
+        }
+        Class<?> rootType = obj != null ? obj.getClass() : null;
+        if (meter != null) {
+            meter.getListener().serialized(rootType, bytes, System.nanoTime() - started);
+        }
+        if (event != null) {
+            JfrEvents.commit(event, rootType, bytes);
+        }
+    }
+
+    /**
+     * Записывает в сеанс отметку сброса и очищает таблицы классов и строк сеанса.
+     *
+     * @throws Exception при ошибке записи
+     */
+    void resetSession() throws Exception {
+        encoder.writeVarint(WireFormat.SESSION_RESET << 1);
+        encoder.finish();
+        resetClasses();
+    }
+
+    /**
+     * Завершает сеанс записи: передает оставшиеся данные в поток и отсоединяет его.
+     *
+     * @throws IOException при ошибке записи
+     */
+    void closeSession() throws IOException {
+        try {
+            encoder.finish();
+        } finally {
+            encoder.detach();
+            sharedStrings = false;
+            resetClasses();
+        }
+    }
+
+    /**
+     * Очищает таблицы классов и строк, общие для всех объектов потока.
+     */
+    private void resetClasses() {
+        Arrays.fill(classCodecs, 0, classIdentifier, null);
+        Arrays.fill(tableClasses, 0, classIdentifier, null);
+        classIdentifier = 0;
+        classHeap.clear();
+        if (!sharedStringIds.isEmpty()) {
+            sharedStringIds.clear();
+        }
+    }
+
+    /**
+     * Записывает заголовок потока.
+     *
+     * @param out кодировщик
+     * @param extraFlags флаги, дополняющие флаги настроек сериализатора
+     * @throws Exception при ошибке записи
+     */
+    private void writeHeader(Encoder out, int extraFlags) throws Exception {
+        out.setVarintNumbers(varintNumbers);
+        out.writeByte(WireFormat.MAGIC_0);
+        out.writeByte(WireFormat.MAGIC_1);
+        out.writeByte(WireFormat.VERSION);
+        int flags = extraFlags;
+        if (varintNumbers) {
+            flags |= WireFormat.FLAG_VARINT_NUMBERS;
+        }
+        if (!trackReferences) {
+            flags |= WireFormat.FLAG_NO_REFERENCES;
+        }
+        out.writeByte(flags);
+    }
+
+    /**
+     * Записывает граф объекта. Идентификаторы объектов назначаются заново для каждого графа.
+     *
+     * @param obj сериализуемый объект
+     * @param out кодировщик
+     * @throws Exception при ошибке записи объекта
+     */
+    private void writeMessage(Object obj, Encoder out) throws Exception {
+        heap.clear();
+        objIdentifier = 0;
+        if (meter != null) {
+            meter.start(out.count());
+        }
+        try {
+            writeReference(obj, out);
+            writeGraph(out);
+        } finally {
+            clearStack();
+        }
+    }
+
+    /**
+     * Записывает содержимое объектов из стека обхода, пока стек не опустеет. Поля объекта
+     * записываются по порядку до первой ссылки на новый объект, после чего обход переходит
+     * к этому объекту и возвращается к следующему полю, когда тот будет записан полностью.
+     *
+     * @param out кодировщик
+     * @throws Exception при ошибке записи данных
+     */
+    private void writeGraph(Encoder out) throws Exception {
+        while (depth > 0) {
+            int top = depth - 1;
+            Object obj = stackObjects[top];
+            FieldDescriptor[] fields = stackFields[top];
+            int index = stackIndex[top];
+            boolean pushed = false;
+            @SuppressWarnings("unchecked")
+            GeneratedAccessor<Object> generated = (GeneratedAccessor<Object>) stackGenerated[top];
+            if (generated != null) {
+                while (index < fields.length && !pushed) {
+                    index = generated.writeFields(obj, index, out);
+                    if (index < fields.length) {
+                        writeReference(generated.getObject(obj, index++), out);
+                        pushed = depth > top + 1;
+                    }
+                }
+            } else if (fields != null) {
+                while (index < fields.length && !pushed) {
+                    FieldDescriptor fieldDesc = fields[index++];
+                    if (fieldDesc.getTypeCode() == TypeCode.OBJECT) {
+                        writeReference(fieldDesc.getAccessor().getObject(obj), out);
+                        pushed = depth > top + 1;
+                    } else {
+                        writeField(fieldDesc, obj, out);
+                    }
+                }
+            } else {
+                Object[] elements = (Object[]) obj;
+                while (index < elements.length && !pushed) {
+                    writeReference(elements[index++], out);
+                    pushed = depth > top + 1;
+                }
+            }
+            if (pushed) {
+                stackIndex[top] = index;
+            } else {
+                depth = top;
+                if (meter != null) {
+                    meter.close(top, stackOwners[top].getClass(), out.count());
+                }
+                if (frameObjects) {
+                    closeFrame(stackFrames[top], stackFrameIds[top]);
+                }
+                if (cycleCheck) {
+                    onStack.remove(stackOwners[top]);
+                }
+                stackObjects[top] = null;
+                stackFields[top] = null;
+                stackGenerated[top] = null;
+                stackOwners[top] = null;
+            }
+        }
+    }
+
+    /**
+     * Помещает в стек обхода объект или массив ссылок, содержимое которого нужно записать.
+     *
+     * @param obj объект или массив ссылок
+     * @param fields поля объекта или {@code null} для массива
+     */
+    private void push(Object obj, FieldDescriptor[] fields) throws Exception {
+        push(obj, fields, obj);
+    }
+
+    /**
+     * Помещает в стек обхода объект или массив ссылок, содержимое которого нужно записать.
+     *
+     * @param obj объект или массив ссылок
+     * @param fields поля объекта или {@code null} для массива
+     * @param owner объект графа, которому принадлежит содержимое: сам объект или коллекция,
+     *            элементы которой скопированы в массив
+     */
+    private void push(Object obj, FieldDescriptor[] fields, Object owner) throws Exception {
+        if (cycleCheck && onStack.put(owner, Boolean.TRUE) != null) {
+            throw new IllegalStateException("Cycle detected at " + owner.getClass().getName()
+                    + " while its references are not tracked");
+        }
+        if (depth == stackObjects.length) {
+            int size = depth * 2;
+            stackObjects = Arrays.copyOf(stackObjects, size);
+            stackFields = Arrays.copyOf(stackFields, size);
+            stackGenerated = Arrays.copyOf(stackGenerated, size);
+            stackIndex = Arrays.copyOf(stackIndex, size);
+            stackOwners = Arrays.copyOf(stackOwners, size);
+            stackFrames = Arrays.copyOf(stackFrames, size);
+            stackFrameIds = Arrays.copyOf(stackFrameIds, size);
+        }
+        if (frameObjects) {
+            stackFrames[depth] = openFrame();
+            stackFrameIds[depth] = objIdentifier;
+        }
+        stackObjects[depth] = obj;
+        stackFields[depth] = fields;
+        stackGenerated[depth] = null;
+        stackIndex[depth] = 0;
+        stackOwners[depth] = owner;
+        depth++;
+    }
+
+    /**
+     * Резервирует место под кадр содержимого объекта в кодировщике графа.
+     *
+     * @return позиция кадра
+     * @throws Exception при ошибке записи
+     */
+    private int openFrame() throws Exception {
+        int frame = bodyEncoder.position();
+        bodyEncoder.writeLong(0);
+        return frame;
+    }
+
+    /**
+     * Дописывает в кадр длину записанного содержимого и число назначенных в нем идентификаторов.
+     *
+     * @param frame позиция кадра
+     * @param firstID счетчик идентификаторов объектов в начале кадра
+     */
+    private void closeFrame(int frame, int firstID) {
+        Encoder body = bodyEncoder;
+        body.patchInt(frame, body.position() - frame - WireFormat.OBJECT_FRAME_SIZE);
+        body.patchInt(frame + 4, objIdentifier - firstID);
+    }
+
+    /**
+     * Очищает стек обхода, чтобы не удерживать ссылки на записанные объекты.
+     */
+    private void clearStack() {
+        Arrays.fill(stackObjects, 0, depth, null);
+        Arrays.fill(stackFields, 0, depth, null);
+        Arrays.fill(stackGenerated, 0, depth, null);
+        Arrays.fill(stackOwners, 0, depth, null);
+        depth = 0;
+        onStack.clear();
+    }
+
+    /**
+     * Производит запись значения примитивного поля объекта.
+     *
+     * @param fieldDesc описание записываемого поля
+     * @param obj объект, содержащий поле
+     * @param out кодировщик
+     * @throws Exception при ошибке записи данных
+     */
+    private void writeField(FieldDescriptor fieldDesc, Object obj, Encoder out) throws Exception {
+        FieldAccessor accessor = fieldDesc.getAccessor();
+        switch (fieldDesc.getTypeCode()) {
+        case TypeCode.BYTE:
+            out.writeByte(accessor.getByte(obj));
+            break;
+        case TypeCode.SHORT:
+            out.writeShort(accessor.getShort(obj));
+            break;
+        case TypeCode.INT:
+            out.writeNumber(accessor.getInt(obj));
+            break;
+        case TypeCode.LONG:
+            out.writeNumber(accessor.getLong(obj));
+            break;
+        case TypeCode.FLOAT:
+            out.writeFloat(accessor.getFloat(obj));
+            break;
+        case TypeCode.DOUBLE:
+            out.writeDouble(accessor.getDouble(obj));
+            break;
+        case TypeCode.BOOLEAN:
+            out.writeBoolean(accessor.getBoolean(obj));
+            break;
+        case TypeCode.CHAR:
+            out.writeChar(accessor.getChar(obj));
+            break;
+        default:
+            throw new IllegalArgumentException("Not a primitive field: " + fieldDesc.getName());
+        }
+    }
+
+    /**
+     * Записывает ссылку на объект. Для объекта, встреченного впервые, записывается тип, а объект
+     * с полями или массив ссылок помещается в стек обхода для записи содержимого. Для уже
+     * записанного объекта записывается только его идентификатор.
+     *
+     * @param obj объект по ссылке, может быть {@code null}
+     * @param out кодировщик
+     * @throws Exception при ошибке записи данных
+     */
+    private void writeReference(Object obj, Encoder out) throws Exception {
+        if (meter != null) {
+            writeMeteredReference(obj, out);
+        } else {
+            writeReferenceValue(obj, out);
+        }
+    }
+
+    /**
+     * Записывает ссылку на объект с учетом байт и времени для получателя сведений. Запись
+     * до ссылки относится к объекту, на котором находится обход, а запись самой ссылки -
+     * к объекту по ссылке, если он новый, или снова к текущему объекту.
+     *
+     * @param obj объект по ссылке, может быть {@code null}
+     * @param out кодировщик
+     * @throws Exception при ошибке записи данных
+     */
+    private void writeMeteredReference(Object obj, Encoder out) throws Exception {
+        int frame = depth;
+        meter.charge(frame - 1, out.count());
+        writeReferenceValue(obj, out);
+        if (depth > frame) {
+            meter.open(frame, out.count());
+        } else if (obj == null || meter.takeReference()) {
+            meter.charge(frame - 1, out.count());
+        } else {
+            meter.inline(obj.getClass(), out.count());
+        }
+    }
+
+    /**
+     * Записывает ссылку на объект без учета для получателя сведений, см. {@link #writeReference(Object, Encoder)}.
+     *
+     * @param obj объект по ссылке, может быть {@code null}
+     * @param out кодировщик
+     * @throws Exception при ошибке записи данных
+     */
+    private void writeReferenceValue(Object obj, Encoder out) throws Exception {
+        if (obj == null) {
+            out.writeVarint(WireFormat.NULL);
+            return;
+        }
+        Class<?> objectType = obj.getClass();
+        if (sharedStrings && objectType == String.class) {
+            writeSharedString((String) obj, out);
+            return;
+        }
+        ValueCodec valueCodec = ValueCodec.forClass(objectType);
+        if (valueCodec != null) {
+            out.writeVarint(valueCodec.getTag() << 1);
+            valueCodec.write(obj, out);
+            return;
+        }
+        boolean tracked = trackReferences
+                && (delta != null || untrackedClasses.isEmpty() || !untrackedClasses.containsKey(objectType));
+        if (tracked) {
+            int knownID = heap.putIfAbsent(obj, objIdentifier);
+            if (knownID != IdentityIntMap.ABSENT) {
+                out.writeVarint((long) knownID << 1 | 1);
+                if (meter != null) {
+                    meter.reference(objectType);
+                }
+                return;
+            }
+            if (delta != null) {
+                delta.added(obj);
+            }
+            nextObjectID();
+        }
+        if (objectType == String.class) {
+            out.writeVarint(WireFormat.TYPE_STRING << 1);
+            out.writeString((String) obj);
+            return;
+        }
+        CollectionCodec collectionCodec = CollectionCodec.forClass(objectType);
+        if (collectionCodec != null) {
+            writeCollection(collectionCodec, obj, out);
+            return;
+        }
+        int classID = writeClassName(objectType, tracked, out);
+        Codec<?> codec = classCodecs[classID];
+        if (codec != null) {
+            writeWithCodec(codec, obj, out);
+        } else if (objectType.isArray()) {
+            writeArray(objectType.getComponentType(), obj, out);
+        } else if (objectType.isEnum()) {
+            writeEnum(obj, out);
+        } else {
+            ClassDescriptor descriptor = ClassDescriptor.forClass(objectType, accessorType);
+            FieldDescriptor[] fields = descriptor.getFields();
+            if (fields.length > 0) {
+                push(obj, fields);
+                stackGenerated[depth - 1] = descriptor.getGenerated();
+            }
+        }
+    }
+
+    /**
+     * Записывает строку через общую таблицу строк сеанса. Строка, равная ранее записанной,
+     * передается только идентификатором.
+     *
+     * @param value записываемая строка
+     * @param out кодировщик
+     * @throws Exception при ошибке записи данных
+     */
+    private void writeSharedString(String value, Encoder out) throws Exception {
+        Integer knownID = sharedStringIds.get(value);
+        if (knownID != null) {
+            out.writeVarint(WireFormat.TYPE_SHARED_STRING_REF << 1);
+            out.writeVarint(knownID);
+        } else {
+            sharedStringIds.put(value, sharedStringIds.size());
+            out.writeVarint(WireFormat.TYPE_SHARED_STRING << 1);
+            out.writeString(value);
+        }
+    }
+
+    /**
+     * Записывает коллекцию со встроенным представлением: тип, число записей и элементы.
+     * Элементы копируются в массив, который помещается в стек обхода как массив ссылок.
+     *
+     * @param codec представление коллекции
+     * @param collection коллекция
+     * @param out кодировщик
+     * @throws Exception при ошибке записи данных
+     */
+    private void writeCollection(CollectionCodec codec, Object collection, Encoder out) throws Exception {
+        Object[] elements = codec.toElements(collection);
+        out.writeVarint(codec.getTag() << 1);
+        out.writeVarint(codec.countOf(collection, elements));
+        if (elements.length > 0) {
+            push(elements, null, collection);
+        }
+    }
+
+    /**
+     * Записывает массив элементов. Массив ссылок помещается в стек обхода.
+     *
+     * @param arrType тип элементов массива
+     * @param array массив элементов
+     * @param out кодировщик
+     * @throws Exception при ошибке записи данных
+     */
+    private void writeArray(Class<?> arrType, Object array, Encoder out) throws Exception {
+        int length = Array.getLength(array);
+        out.writeVarint(length);
+        int typeCode = TypeCode.of(arrType);
+        if (typeCode == TypeCode.OBJECT) {
+            if (length > 0) {
+                push(array, null);
+            }
+        } else if (typeCode == TypeCode.BYTE) {
+            out.writeBytes((byte[]) array, 0, length);
+        } else {
+            out.writePrimitiveArray(typeCode, array, length);
+        }
+    }
+
+    /**
+     * Записывает содержимое объекта пользовательским представлением.
+     *
+     * @param codec представление класса объекта
+     * @param obj записываемый объект
+     * @param out кодировщик
+     * @throws Exception при ошибке записи данных
+     */
+    @SuppressWarnings("unchecked")
+    private void writeWithCodec(Codec<?> codec, Object obj, Encoder out) throws Exception {
+        if (frameObjects) {
+            int frame = openFrame();
+            ((Codec<Object>) codec).write(obj, out);
+            closeFrame(frame, objIdentifier);
+        } else {
+            ((Codec<Object>) codec).write(obj, out);
+        }
+    }
+
+    /**
+     * Записывает элемент перечисления.
+     *
+     * @param obj записываемый элемент
+     * @param out кодировщик
+     * @throws Exception при ошибке записи
+     */
+    private void writeEnum(Object obj, Encoder out) throws Exception {
+        out.writeString(((Enum<?>) obj).name());
+    }
+
+    /**
+     * Возвращает следующий идентификатор объекта.
+     *
+     * @return идентификатор объекта
+     */
+    private int nextObjectID() {
+        return objIdentifier++;
+    }
+
+    /**
+     * Возвращает идентификатор класса для сериализации.
+     *
+     * @return идентификатор класса
+     */
+    private int nextClassID() {
+        return classIdentifier++;
+    }
+
+    /**
+     * Записывает тип нового объекта. Класс, встреченный впервые, записывается идентификатором
+     * из реестра классов или по имени, для уже записанного класса записывается только его
+     * идентификатор в потоке. При записи кадров классы записываются таблицей после графа,
+     * а в самом графе только идентификаторами.
+     *
+     * @param clazz класс для записи
+     * @param tracked отслеживаются ли ссылки на объекты класса
+     * @param out кодировщик
+     * @return идентификатор класса в потоке
+     * @throws Exception при ошибке записи данных
+     */
+    private int writeClassName(Class<?> clazz, boolean tracked, Encoder out) throws Exception {
+        int classID = classHeap.putIfAbsent(clazz, classIdentifier);
+        if (classID != IdentityIntMap.ABSENT) {
+            out.writeVarint((long) (WireFormat.FIRST_CLASS_ID + classID) << 1);
+        } else {
+            classID = nextClassID();
+            if (classID == classCodecs.length) {
+                classCodecs = Arrays.copyOf(classCodecs, classID * 2);
+            }
+            classCodecs[classID] = classRegistry.getCodec(clazz);
+            if (meter != null) {
+                meter.classEntry(clazz);
+            }
+            boolean trackedClass = tracked || !trackReferences;
+            if (frameObjects) {
+                if (classID == tableClasses.length) {
+                    tableClasses = Arrays.copyOf(tableClasses, classID * 2);
+                    tableTracked = Arrays.copyOf(tableTracked, classID * 2);
+                }
+                tableClasses[classID] = clazz;
+                tableTracked[classID] = trackedClass;
+                out.writeVarint((long) (WireFormat.FIRST_CLASS_ID + classID) << 1);
+            } else {
+                writeClassEntry(clazz, trackedClass, out);
+            }
+        }
+        return classID;
+    }
+
+    /**
+     * Записывает класс, встреченный впервые: идентификатор из реестра классов с признаком
+     * пользовательского представления или имя.
+     *
+     * @param clazz класс для записи
+     * @param trackedClass отслеживаются ли ссылки на объекты класса
+     * @param out кодировщик
+     * @throws Exception при ошибке записи данных
+     */
+    private void writeClassEntry(Class<?> clazz, boolean trackedClass, Encoder out) throws Exception {
+        int registeredID = classRegistry.getId(clazz);
+        if (registeredID != IdentityIntMap.ABSENT) {
+            int tag = trackedClass ? WireFormat.TYPE_REGISTERED : WireFormat.TYPE_REGISTERED_UNTRACKED;
+            out.writeVarint(tag << 1);
+            out.writeVarint((long) registeredID << 1 | (classRegistry.getCodec(clazz) != null ? 1 : 0));
+        } else {
+            if (!classRegistry.allowsName(clazz)) {
+                throw new IllegalArgumentException("Class is not registered: " + clazz.getName());
+            }
+            int tag = trackedClass ? WireFormat.CLASS_NEW : WireFormat.CLASS_NEW_UNTRACKED;
+            out.writeVarint(tag << 1);
+            out.writeString(clazz.getName());
+        }
+    }
+
+    /**
+     * Поток, записывающий данные в буфер. При нехватке места выбрасывается
+     * {@link BufferOverflowException}.
+     */
+    private static final class BufferOutput extends OutputStream {
+
+        private final ByteBuffer target;
+
+        BufferOutput(ByteBuffer target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) {
+            target.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            target.put(bytes, offset, length);
+        }
+
+    }
+
+}
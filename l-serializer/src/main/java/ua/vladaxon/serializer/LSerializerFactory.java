@@ -0,0 +1,826 @@
+package ua.vladaxon.serializer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Потокобезопасная точка входа для сериализации и десериализации. Неизменяемая настройка
+ * задается через {@link Builder} и применяется ко всем вызовам.
+ * <p>
+ * {@link LSerializer} и {@link LDesirializer} хранят состояние вызова в полях и не могут
+ * использоваться несколькими потоками одновременно. Фабрика держит пулы их экземпляров и на время
+ * каждого вызова выдает потоку свободный экземпляр вместе с его буферами и таблицами ссылок,
+ * уже увеличенными предыдущими вызовами. Пул не привязан к потокам и не использует блокировок,
+ * поэтому подходит как для пула платформенных потоков, так и для большого числа виртуальных.
+ * Описания классов кэшируются глобально и общие для всех экземпляров.
+ * <p>
+ * Большие пакеты независимых записей сериализуются параллельно, см.
+ * {@link #serializeBatch(OutputStream, List)}.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public final class LSerializerFactory {
+
+    /** Начальный размер массива части пакета при чтении из потока. */
+    private static final int CHUNK_READ_SIZE = 64 * 1024;
+
+    /** Способ доступа к полям объектов. */
+    private final AccessorType accessorType;
+    /** Записывать ли поля int и long zigzag varint-числами. */
+    private final boolean varintNumbers;
+    /** Отслеживать ли повторные ссылки на объекты. */
+    private final boolean trackReferences;
+    /** Классы, ссылки на объекты которых не отслеживаются. */
+    private final Map<Class<?>, Boolean> untrackedClasses;
+    /** Проверять ли отсутствие циклов у объектов без отслеживания ссылок. */
+    private final boolean cycleCheck;
+    /** Алгоритм сжатия блоков. */
+    private final BlockCompressor compressor;
+    /** Записывать ли содержимое объектов с кадрами. */
+    private final boolean skippableObjects;
+    /** Реестр классов. */
+    private final ClassRegistry classRegistry;
+    /** Получатель сведений о записи и чтении или {@code null}. */
+    private final SerializationListener listener;
+    /** Пул потоков для пакетов записей или {@code null} для общего пула. */
+    private final ForkJoinPool batchPool;
+    /** Число записей в части пакета. */
+    private final int batchChunkSize;
+    /** Пул сериализаторов. */
+    private final InstancePool<LSerializer> serializers;
+    /** Пул десериализаторов. */
+    private final InstancePool<LDesirializer> deserializers;
+
+    private LSerializerFactory(Builder builder) {
+        this.accessorType = builder.accessorType;
+        this.varintNumbers = builder.varintNumbers;
+        this.trackReferences = builder.trackReferences;
+        this.untrackedClasses = Collections.unmodifiableMap(new IdentityHashMap<>(builder.untrackedClasses));
+        this.cycleCheck = builder.cycleCheck;
+        this.compressor = builder.compressor;
+        this.skippableObjects = builder.skippableObjects;
+        this.classRegistry = builder.classRegistry;
+        this.listener = builder.listener;
+        this.batchPool = builder.batchPool;
+        this.batchChunkSize = builder.batchChunkSize;
+        this.serializers = new InstancePool<LSerializer>(builder.poolCapacity) {
+            @Override
+            protected LSerializer create() {
+                return newSerializer();
+            }
+        };
+        this.deserializers = new InstancePool<LDesirializer>(builder.poolCapacity) {
+            @Override
+            protected LDesirializer create() {
+                return newDeserializer();
+            }
+        };
+    }
+
+    /**
+     * Создает фабрику с настройками по умолчанию.
+     */
+    public LSerializerFactory() {
+        this(new Builder());
+    }
+
+    /**
+     * Производит сериализацию объекта в поток, см. {@link LSerializer#serialize(OutputStream, Object)}.
+     *
+     * @param out поток для записи данных
+     * @param obj сериализуемый объект
+     * @throws Exception при ошибке записи объекта
+     */
+    public void serialize(OutputStream out, Object obj) throws Exception {
+        LSerializer serializer = serializers.acquire();
+        try {
+            serializer.serialize(out, obj);
+        } finally {
+            serializers.release(serializer);
+        }
+    }
+
+    /**
+     * Производит сериализацию объекта в буфер, см. {@link LSerializer#serialize(ByteBuffer, Object)}.
+     *
+     * @param out буфер для записи данных
+     * @param obj сериализуемый объект
+     * @throws Exception при ошибке записи объекта
+     */
+    public void serialize(ByteBuffer out, Object obj) throws Exception {
+        LSerializer serializer = serializers.acquire();
+        try {
+            serializer.serialize(out, obj);
+        } finally {
+            serializers.release(serializer);
+        }
+    }
+
+    /**
+     * Производит сериализацию объекта в массив байт.
+     *
+     * @param obj сериализуемый объект
+     * @return байтовое представление объекта
+     * @throws Exception при ошибке записи объекта
+     */
+    public byte[] serializeToBytes(Object obj) throws Exception {
+        LSerializer serializer = serializers.acquire();
+        try {
+            return serializer.serializeToBytes(obj);
+        } finally {
+            serializers.release(serializer);
+        }
+    }
+
+    /**
+     * Производит десериализацию объекта из потока, см. {@link LDesirializer#deserialize(InputStream, Class)}.
+     *
+     * @param in входящий поток для получения данных
+     * @param rootClass класс требуемого объекта
+     * @param <T> тип требуемого объекта
+     * @return десериализованный объект
+     * @throws Exception при ошибке считывания
+     */
+    public <T> T deserialize(InputStream in, Class<T> rootClass) throws Exception {
+        LDesirializer deserializer = deserializers.acquire();
+        try {
+            return rootClass.cast(deserializer.deserialize(in, rootClass));
+        } finally {
+            deserializers.release(deserializer);
+        }
+    }
+
+    /**
+     * Производит десериализацию объекта из буфера, см. {@link LDesirializer#deserialize(ByteBuffer, Class)}.
+     *
+     * @param in буфер с данными
+     * @param rootClass класс требуемого объекта
+     * @param <T> тип требуемого объекта
+     * @return десериализованный объект
+     * @throws Exception при ошибке считывания
+     */
+    public <T> T deserialize(ByteBuffer in, Class<T> rootClass) throws Exception {
+        LDesirializer deserializer = deserializers.acquire();
+        try {
+            return rootClass.cast(deserializer.deserialize(in, rootClass));
+        } finally {
+            deserializers.release(deserializer);
+        }
+    }
+
+    /**
+     * Производит десериализацию объекта из массива байт.
+     *
+     * @param bytes байтовое представление объекта
+     * @param rootClass класс требуемого объекта
+     * @param <T> тип требуемого объекта
+     * @return десериализованный объект
+     * @throws Exception при ошибке считывания
+     */
+    public <T> T deserialize(byte[] bytes, Class<T> rootClass) throws Exception {
+        LDesirializer deserializer = deserializers.acquire();
+        try {
+            return rootClass.cast(deserializer.deserialize(bytes, rootClass));
+        } finally {
+            deserializers.release(deserializer);
+        }
+    }
+
+    /**
+     * Считывает объект из потока в существующий объект, см. {@link LDesirializer#deserializeInto(InputStream, Object)}.
+     * Пул объектов фабрикой не используется.
+     *
+     * @param in входящий поток для получения данных
+     * @param target объект, в который считываются данные
+     * @param <T> тип объекта
+     * @return {@code target}
+     * @throws Exception при ошибке считывания
+     */
+    public <T> T deserializeInto(InputStream in, T target) throws Exception {
+        LDesirializer deserializer = deserializers.acquire();
+        try {
+            return deserializer.deserializeInto(in, target);
+        } finally {
+            deserializers.release(deserializer);
+        }
+    }
+
+    /**
+     * Считывает объект из буфера в существующий объект, см. {@link LDesirializer#deserializeInto(ByteBuffer, Object)}.
+     *
+     * @param in буфер с данными
+     * @param target объект, в который считываются данные
+     * @param <T> тип объекта
+     * @return {@code target}
+     * @throws Exception при ошибке считывания
+     */
+    public <T> T deserializeInto(ByteBuffer in, T target) throws Exception {
+        LDesirializer deserializer = deserializers.acquire();
+        try {
+            return deserializer.deserializeInto(in, target);
+        } finally {
+            deserializers.release(deserializer);
+        }
+    }
+
+    /**
+     * Считывает объект из массива байт в существующий объект, см. {@link LDesirializer#deserializeInto(byte[], Object)}.
+     *
+     * @param bytes байтовое представление объекта
+     * @param target объект, в который считываются данные
+     * @param <T> тип объекта
+     * @return {@code target}
+     * @throws Exception при ошибке считывания
+     */
+    public <T> T deserializeInto(byte[] bytes, T target) throws Exception {
+        LDesirializer deserializer = deserializers.acquire();
+        try {
+            return deserializer.deserializeInto(bytes, target);
+        } finally {
+            deserializers.release(deserializer);
+        }
+    }
+
+    /**
+     * Производит разностную сериализацию объекта в поток, см.
+     * {@link LSerializer#serializeDelta(OutputStream, Object, DeltaBaseline)}. База принадлежит
+     * вызывающему и не должна использоваться несколькими потоками одновременно.
+     *
+     * @param out поток для записи данных
+     * @param obj сериализуемый объект
+     * @param baseline база стороны записи
+     * @throws Exception при ошибке записи объекта
+     */
+    public void serializeDelta(OutputStream out, Object obj, DeltaBaseline baseline) throws Exception {
+        LSerializer serializer = serializers.acquire();
+        try {
+            serializer.serializeDelta(out, obj, baseline);
+        } finally {
+            serializers.release(serializer);
+        }
+    }
+
+    /**
+     * Производит разностную сериализацию объекта в массив байт, см.
+     * {@link LSerializer#serializeDeltaToBytes(Object, DeltaBaseline)}.
+     *
+     * @param obj сериализуемый объект
+     * @param baseline база стороны записи
+     * @return байтовое представление изменений
+     * @throws Exception при ошибке записи объекта
+     */
+    public byte[] serializeDeltaToBytes(Object obj, DeltaBaseline baseline) throws Exception {
+        LSerializer serializer = serializers.acquire();
+        try {
+            return serializer.serializeDeltaToBytes(obj, baseline);
+        } finally {
+            serializers.release(serializer);
+        }
+    }
+
+    /**
+     * Применяет разность графа из потока к базе стороны чтения, см.
+     * {@link LDesirializer#deserializeDelta(InputStream, Class, DeltaBaseline)}.
+     *
+     * @param in входящий поток для получения данных
+     * @param rootClass класс требуемого объекта
+     * @param baseline база стороны чтения
+     * @param <T> тип требуемого объекта
+     * @return корневой объект
+     * @throws Exception при ошибке считывания
+     */
+    public <T> T deserializeDelta(InputStream in, Class<T> rootClass, DeltaBaseline baseline) throws Exception {
+        LDesirializer deserializer = deserializers.acquire();
+        try {
+            return rootClass.cast(deserializer.deserializeDelta(in, rootClass, baseline));
+        } finally {
+            deserializers.release(deserializer);
+        }
+    }
+
+    /**
+     * Применяет разность графа из массива байт к базе стороны чтения, см.
+     * {@link LDesirializer#deserializeDelta(byte[], Class, DeltaBaseline)}.
+     *
+     * @param bytes байтовое представление разности
+     * @param rootClass класс требуемого объекта
+     * @param baseline база стороны чтения
+     * @param <T> тип требуемого объекта
+     * @return корневой объект
+     * @throws Exception при ошибке считывания
+     */
+    public <T> T deserializeDelta(byte[] bytes, Class<T> rootClass, DeltaBaseline baseline) throws Exception {
+        LDesirializer deserializer = deserializers.acquire();
+        try {
+            return rootClass.cast(deserializer.deserializeDelta(bytes, rootClass, baseline));
+        } finally {
+            deserializers.release(deserializer);
+        }
+    }
+
+    /**
+     * Начинает частичное чтение объекта из массива байт, см. {@link LDesirializer#deserializeLazy(byte[])}.
+     * Десериализатор нужен только для разбора заголовка и сразу возвращается в пул.
+     *
+     * @param bytes байтовое представление объекта, записанное с кадрами содержимого
+     * @return описатель корневого объекта или {@code null}
+     * @throws Exception при ошибке считывания
+     */
+    public LazyObject deserializeLazy(byte[] bytes) throws Exception {
+        LDesirializer deserializer = deserializers.acquire();
+        try {
+            return deserializer.deserializeLazy(bytes);
+        } finally {
+            deserializers.release(deserializer);
+        }
+    }
+
+    /**
+     * Производит параллельную сериализацию пакета независимых записей. Пакет делится на части
+     * по {@link Builder#setBatchChunkSize(int)} записей, каждая часть записывается в пуле потоков
+     * отдельным сериализатором со своими таблицами ссылок и классов. Объекты, общие для записей
+     * разных частей, записываются в каждой части заново.
+     * <p>
+     * Пакет начинается с заголовка и оглавления: двух байт сигнатуры, версии формата, varint-числа
+     * частей и для каждой части varint-числа записей и varint-длины в байтах. Далее следуют части,
+     * каждая из которых - самостоятельный объект в текущем формате с массивом записей части.
+     * Пакет читается {@link #deserializeBatch(InputStream, Class)}.
+     *
+     * @param out поток для записи данных
+     * @param records записи пакета
+     * @throws Exception при ошибке записи
+     */
+    public void serializeBatch(OutputStream out, List<?> records) throws Exception {
+        List<BatchTask<byte[]>> tasks = new ArrayList<>();
+        ForkJoinPool pool = batchPool();
+        for (int from = 0; from < records.size(); from += batchChunkSize) {
+            final Object[] chunk = records.subList(from, Math.min(records.size(), from + batchChunkSize)).toArray();
+            tasks.add(submit(pool, new BatchTask<byte[]>() {
+                @Override
+                byte[] call() throws Exception {
+                    return serializeToBytes(chunk);
+                }
+            }));
+        }
+        byte[][] chunks = new byte[tasks.size()][];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = await(tasks, i);
+        }
+        Encoder encoder = new Encoder();
+        encoder.begin(out);
+        try {
+            encoder.writeByte(WireFormat.BATCH_MAGIC_0);
+            encoder.writeByte(WireFormat.BATCH_MAGIC_1);
+            encoder.writeByte(WireFormat.BATCH_VERSION);
+            encoder.writeVarint(chunks.length);
+            for (int i = 0; i < chunks.length; i++) {
+                encoder.writeVarint(Math.min(batchChunkSize, records.size() - i * batchChunkSize));
+                encoder.writeVarint(chunks[i].length);
+            }
+            for (byte[] chunk : chunks) {
+                encoder.writeBytes(chunk, 0, chunk.length);
+            }
+            encoder.finish();
+        } finally {
+            encoder.detach();
+        }
+    }
+
+    /**
+     * Производит параллельную десериализацию пакета записей, записанного
+     * {@link #serializeBatch(OutputStream, List)}. Части пакета считываются из потока
+     * последовательно, распаковываются в пуле потоков параллельно и собираются в исходном порядке.
+     * Память под часть выделяется по мере поступления ее данных, а не по длине из оглавления.
+     * После возврата из метода поток указывает на конец пакета.
+     *
+     * @param in входящий поток для получения данных
+     * @param recordClass класс записей
+     * @param <T> тип записей
+     * @return записи пакета
+     * @throws Exception при ошибке считывания
+     */
+    public <T> List<T> deserializeBatch(InputStream in, Class<T> recordClass) throws Exception {
+        Decoder decoder = new Decoder();
+        decoder.begin(in);
+        try {
+            int[][] index = readBatchIndex(decoder);
+            List<BatchTask<Object[]>> tasks = new ArrayList<>(index.length);
+            ForkJoinPool pool = batchPool();
+            for (int[] entry : index) {
+                byte[] chunk = readChunk(decoder, entry[1]);
+                tasks.add(submit(pool, newChunkTask(ByteBuffer.wrap(chunk), entry[0])));
+            }
+            decoder.finish();
+            return collectBatch(tasks, index, recordClass);
+        } finally {
+            decoder.detach();
+        }
+    }
+
+    /**
+     * Производит параллельную десериализацию пакета записей из массива байт, см.
+     * {@link #deserializeBatch(InputStream, Class)}. Части пакета читаются прямо из массива.
+     *
+     * @param bytes байтовое представление пакета
+     * @param recordClass класс записей
+     * @param <T> тип записей
+     * @return записи пакета
+     * @throws Exception при ошибке считывания
+     */
+    public <T> List<T> deserializeBatch(byte[] bytes, Class<T> recordClass) throws Exception {
+        ByteBuffer source = ByteBuffer.wrap(bytes);
+        Decoder decoder = new Decoder();
+        decoder.begin(source);
+        int[][] index;
+        try {
+            index = readBatchIndex(decoder);
+            decoder.finish();
+        } finally {
+            decoder.detach();
+        }
+        List<BatchTask<Object[]>> tasks = new ArrayList<>(index.length);
+        ForkJoinPool pool = batchPool();
+        for (int[] entry : index) {
+            if (entry[1] > source.remaining()) {
+                throw new StreamCorruptedException("Batch chunk exceeds the data: " + entry[1]);
+            }
+            ByteBuffer chunk = source.slice();
+            chunk.limit(entry[1]);
+            source.position(source.position() + entry[1]);
+            tasks.add(submit(pool, newChunkTask(chunk, entry[0])));
+        }
+        return collectBatch(tasks, index, recordClass);
+    }
+
+    /**
+     * Считывает заголовок и оглавление пакета.
+     *
+     * @param in декодировщик
+     * @return для каждой части число записей и длина в байтах
+     * @throws Exception при ошибке считывания
+     */
+    private static int[][] readBatchIndex(Decoder in) throws Exception {
+        if (in.readUnsignedByte() != WireFormat.BATCH_MAGIC_0 || in.readUnsignedByte() != WireFormat.BATCH_MAGIC_1) {
+            throw new StreamCorruptedException("Not a batch stream");
+        }
+        int version = in.readUnsignedByte();
+        if (version != WireFormat.BATCH_VERSION) {
+            throw new StreamCorruptedException("Unsupported batch format version: " + version);
+        }
+        int count = in.readLength();
+        List<int[]> index = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            index.add(new int[] { in.readLength(), in.readLength() });
+        }
+        return index.toArray(new int[count][]);
+    }
+
+    /**
+     * Считывает часть пакета из потока. Массив увеличивается вдвое по мере считывания, поэтому
+     * длина из поврежденного оглавления не приводит к выделению памяти сверх пришедших данных.
+     *
+     * @param in декодировщик
+     * @param length длина части из оглавления
+     * @return байты части
+     * @throws IOException при ошибке чтения или если данные заканчиваются раньше части
+     */
+    private static byte[] readChunk(Decoder in, int length) throws IOException {
+        byte[] chunk = new byte[Math.min(length, CHUNK_READ_SIZE)];
+        int read = 0;
+        while (true) {
+            try {
+                in.readBytes(chunk, read, chunk.length - read);
+            } catch (EOFException e) {
+                throw new StreamCorruptedException("Batch chunk exceeds the data: " + length);
+            }
+            read = chunk.length;
+            if (read == length) {
+                return chunk;
+            }
+            chunk = Arrays.copyOf(chunk, (int) Math.min(length, read * 2L));
+        }
+    }
+
+    private BatchTask<Object[]> newChunkTask(final ByteBuffer chunk, final int size) {
+        return new BatchTask<Object[]>() {
+            @Override
+            Object[] call() throws Exception {
+                Object[] records = deserialize(chunk, Object[].class);
+                if (records == null || records.length != size || chunk.hasRemaining()) {
+                    throw new StreamCorruptedException("Batch chunk does not match the index");
+                }
+                return records;
+            }
+        };
+    }
+
+    private static <T> List<T> collectBatch(List<BatchTask<Object[]>> tasks, int[][] index, Class<T> recordClass)
+            throws Exception {
+        long total = 0;
+        for (int[] entry : index) {
+            total += entry[0];
+        }
+        List<T> result = new ArrayList<>((int) Math.min(total, Integer.MAX_VALUE));
+        for (int i = 0; i < tasks.size(); i++) {
+            for (Object record : await(tasks, i)) {
+                result.add(recordClass.cast(record));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Передает задачу пакета в пул. Из потока того же пула задача помещается в его очередь.
+     */
+    private static <V> BatchTask<V> submit(ForkJoinPool pool, BatchTask<V> task) {
+        pool.execute(task);
+        return task;
+    }
+
+    /**
+     * Ожидает завершения задачи пакета через {@link ForkJoinTask#join()}: поток пула, который
+     * вызвал пакетную обработку, в ожидании сам выполняет задачи, а не блокируется, поэтому
+     * вызов из задачи того же пула не приводит к взаимной блокировке. При ошибке отменяет
+     * оставшиеся задачи и выбрасывает исходное исключение задачи.
+     */
+    private static <V> V await(List<BatchTask<V>> tasks, int i) throws Exception {
+        BatchTask<V> task = tasks.get(i);
+        V result;
+        try {
+            result = task.join();
+        } catch (RuntimeException | Error e) {
+            cancel(tasks, i + 1);
+            throw e;
+        }
+        if (task.failure != null) {
+            cancel(tasks, i + 1);
+            throw task.failure;
+        }
+        return result;
+    }
+
+    private static void cancel(List<? extends ForkJoinTask<?>> tasks, int from) {
+        for (int j = from; j < tasks.size(); j++) {
+            tasks.get(j).cancel(false);
+        }
+    }
+
+    private ForkJoinPool batchPool() {
+        return batchPool != null ? batchPool : SharedBatchPool.INSTANCE;
+    }
+
+    /**
+     * Задача пакета. Исключение задачи сохраняется и выбрасывается ожидающему потоку
+     * без обертки, см. {@link LSerializerFactory#await(List, int)}.
+     *
+     * @param <V> тип результата
+     */
+    private abstract static class BatchTask<V> extends RecursiveTask<V> {
+
+        private static final long serialVersionUID = 1L;
+
+        /** Исключение задачи или {@code null}. */
+        private Exception failure;
+
+        @Override
+        protected final V compute() {
+            try {
+                return call();
+            } catch (Exception e) {
+                failure = e;
+                return null;
+            }
+        }
+
+        abstract V call() throws Exception;
+
+    }
+
+    /**
+     * Общий пул потоков для пакетов записей, создается при первом использовании.
+     */
+    private static final class SharedBatchPool {
+
+        static final ForkJoinPool INSTANCE = new ForkJoinPool();
+
+    }
+
+    /**
+     * Создает сериализатор с настройками фабрики. Созданный экземпляр не входит в пул
+     * и может использоваться одним потоком, например, для серии вызовов подряд.
+     *
+     * @return новый сериализатор
+     */
+    public LSerializer newSerializer() {
+        LSerializer serializer = new LSerializer(accessorType);
+        serializer.setVarintNumbers(varintNumbers);
+        serializer.setReferenceTracking(trackReferences);
+        for (Class<?> type : untrackedClasses.keySet()) {
+            serializer.setReferenceTracking(type, false);
+        }
+        serializer.setCycleCheck(cycleCheck);
+        serializer.setClassRegistry(classRegistry);
+        serializer.setCompression(compressor);
+        serializer.setSkippableObjects(skippableObjects);
+        serializer.setListener(listener);
+        return serializer;
+    }
+
+    /**
+     * Создает десериализатор с настройками фабрики. Созданный экземпляр не входит в пул
+     * и может использоваться одним потоком.
+     *
+     * @return новый десериализатор
+     */
+    public LDesirializer newDeserializer() {
+        LDesirializer deserializer = new LDesirializer(accessorType);
+        deserializer.setClassRegistry(classRegistry);
+        deserializer.setCompression(compressor);
+        deserializer.setListener(listener);
+        return deserializer;
+    }
+
+    /**
+     * Настройка {@link LSerializerFactory}. Значения по умолчанию совпадают со значениями
+     * по умолчанию {@link LSerializer}.
+     */
+    public static final class Builder {
+
+        private AccessorType accessorType = AccessorType.REFLECTION;
+        private boolean varintNumbers;
+        private boolean trackReferences = true;
+        private final Map<Class<?>, Boolean> untrackedClasses = new IdentityHashMap<>();
+        private boolean cycleCheck;
+        private BlockCompressor compressor;
+        private boolean skippableObjects;
+        private ClassRegistry classRegistry = ClassRegistry.EMPTY;
+        private SerializationListener listener;
+        private ForkJoinPool batchPool;
+        private int batchChunkSize = 1024;
+        private int poolCapacity = Runtime.getRuntime().availableProcessors() * 2;
+
+        /**
+         * @param accessorType способ доступа к полям объектов
+         * @return эта настройка
+         */
+        public Builder setAccessorType(AccessorType accessorType) {
+            if (accessorType == null) {
+                throw new IllegalArgumentException("Accessor type is null");
+            }
+            this.accessorType = accessorType;
+            return this;
+        }
+
+        /**
+         * @param varintNumbers см. {@link LSerializer#setVarintNumbers(boolean)}
+         * @return эта настройка
+         */
+        public Builder setVarintNumbers(boolean varintNumbers) {
+            this.varintNumbers = varintNumbers;
+            return this;
+        }
+
+        /**
+         * @param trackReferences см. {@link LSerializer#setReferenceTracking(boolean)}
+         * @return эта настройка
+         */
+        public Builder setReferenceTracking(boolean trackReferences) {
+            this.trackReferences = trackReferences;
+            return this;
+        }
+
+        /**
+         * @param type класс объектов
+         * @param trackReferences см. {@link LSerializer#setReferenceTracking(Class, boolean)}
+         * @return эта настройка
+         */
+        public Builder setReferenceTracking(Class<?> type, boolean trackReferences) {
+            LSerializer.checkTrackingConfigurable(type);
+            if (trackReferences) {
+                untrackedClasses.remove(type);
+            } else {
+                untrackedClasses.put(type, Boolean.TRUE);
+            }
+            return this;
+        }
+
+        /**
+         * @param cycleCheck см. {@link LSerializer#setCycleCheck(boolean)}
+         * @return эта настройка
+         */
+        public Builder setCycleCheck(boolean cycleCheck) {
+            this.cycleCheck = cycleCheck;
+            return this;
+        }
+
+        /**
+         * @param compressor алгоритм сжатия для обеих сторон, см. {@link LSerializer#setCompression(BlockCompressor)}
+         * @return эта настройка
+         */
+        public Builder setCompression(BlockCompressor compressor) {
+            this.compressor = compressor;
+            return this;
+        }
+
+        /**
+         * @param skippableObjects см. {@link LSerializer#setSkippableObjects(boolean)}
+         * @return эта настройка
+         */
+        public Builder setSkippableObjects(boolean skippableObjects) {
+            this.skippableObjects = skippableObjects;
+            return this;
+        }
+
+        /**
+         * @param classRegistry реестр классов для обеих сторон, см. {@link ClassRegistry}
+         * @return эта настройка
+         */
+        public Builder setClassRegistry(ClassRegistry classRegistry) {
+            if (classRegistry == null) {
+                throw new IllegalArgumentException("Class registry is null");
+            }
+            this.classRegistry = classRegistry;
+            return this;
+        }
+
+        /**
+         * @param listener потокобезопасный получатель сведений для обеих сторон,
+         *            см. {@link SerializationListener}, или {@code null}
+         * @return эта настройка
+         */
+        public Builder setListener(SerializationListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Задает наибольшее число свободных экземпляров, хранимых в каждом пуле. При большем числе
+         * одновременных вызовов недостающие экземпляры создаются и после вызова отбрасываются.
+         * По умолчанию равно удвоенному числу процессоров.
+         *
+         * @param poolCapacity емкость пула
+         * @return эта настройка
+         */
+        public Builder setPoolCapacity(int poolCapacity) {
+            if (poolCapacity < 0) {
+                throw new IllegalArgumentException("Negative pool capacity: " + poolCapacity);
+            }
+            this.poolCapacity = poolCapacity;
+            return this;
+        }
+
+        /**
+         * Задает пул потоков для параллельной обработки пакетов записей. По умолчанию используется
+         * общий для всех фабрик пул с параллелизмом по числу процессоров.
+         *
+         * @param batchPool пул потоков или {@code null} для общего пула
+         * @return эта настройка
+         */
+        public Builder setBatchPool(ForkJoinPool batchPool) {
+            this.batchPool = batchPool;
+            return this;
+        }
+
+        /**
+         * Задает число записей в части пакета, см. {@link LSerializerFactory#serializeBatch(OutputStream, List)}.
+         * Большие части лучше сжимаются и дешевле в учете, меньшие равномернее распределяются
+         * между потоками. По умолчанию 1024.
+         *
+         * @param batchChunkSize число записей в части
+         * @return эта настройка
+         */
+        public Builder setBatchChunkSize(int batchChunkSize) {
+            if (batchChunkSize <= 0) {
+                throw new IllegalArgumentException("Batch chunk size must be positive: " + batchChunkSize);
+            }
+            this.batchChunkSize = batchChunkSize;
+            return this;
+        }
+
+        /**
+         * Создает фабрику с текущими настройками. Последующие изменения настройки
+         * на созданную фабрику не влияют.
+         *
+         * @return новая фабрика
+         */
+        public LSerializerFactory build() {
+            return new LSerializerFactory(this);
+        }
+
+    }
+
+}
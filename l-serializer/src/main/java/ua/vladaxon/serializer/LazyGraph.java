@@ -0,0 +1,407 @@
+package ua.vladaxon.serializer;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+
+/**
+ * Состояние частичного чтения графа, записанного с кадрами содержимого объектов, общее для всех
+ * описателей {@link LazyObject} графа.
+ * <p>
+ * Ссылки просматриваются без создания объектов: строки, значения и элементы перечислений
+ * считываются сразу, а для объектов с содержимым создаются описатели, содержимое которых
+ * пропускается по кадру. Объекты создаются отдельными десериализаторами в общей куче по своим
+ * идентификаторам. Ссылка на объект внутри пропущенного кадра разрешается просмотром
+ * содержимого кадров, вложенных друг в друга, пока не будет найдена ссылка, создающая объект.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+final class LazyGraph {
+
+    /** Данные объекта. */
+    final byte[] bytes;
+    /** Способ доступа к полям объектов. */
+    final AccessorType accessorType;
+    /** Классы потока по идентификаторам классов. */
+    final Class<?>[] classHeap;
+    /** Отслеживаются ли ссылки на объекты классов. */
+    final boolean[] classTracked;
+    /** Пользовательские представления классов. */
+    final Codec<?>[] classCodecs;
+    /** Записаны ли поля int и long varint-числами. */
+    final boolean varintNumbers;
+    /** Отслеживаются ли в потоке повторные ссылки на объекты. */
+    final boolean trackReferences;
+    /** Созданные объекты и просмотренные значения по идентификаторам. */
+    final Object[] heap;
+    /** Смещения ссылок, создающих объекты, по идентификаторам или -1, если ссылка не просмотрена. */
+    private final int[] offsets;
+    /** Описатели объектов по идентификаторам. */
+    private final LazyObject[] handles;
+    /** Создается ли объект с идентификатором в данный момент. */
+    private final boolean[] pending;
+    /** Пропущенные кадры по три числа: смещение ссылки, первый и следующий за последним идентификаторы. */
+    private int[] skipped = new int[48];
+    /** Число чисел в {@link #skipped}. */
+    private int skippedLength;
+    /** Декодировщик просмотра ссылок. */
+    private final Decoder scanner = new Decoder();
+    /** Смещение корневой ссылки. */
+    private final int rootOffset;
+    /** Позиция после последней просмотренной ссылки или поля. */
+    private int scanEnd;
+    /** Счетчик идентификаторов после последней просмотренной ссылки. */
+    private int scanNextID;
+
+    LazyGraph(byte[] bytes, int rootOffset, int objectCount, AccessorType accessorType, Class<?>[] classHeap,
+            boolean[] classTracked, Codec<?>[] classCodecs, boolean varintNumbers, boolean trackReferences) {
+        this.bytes = bytes;
+        this.rootOffset = rootOffset;
+        this.accessorType = accessorType;
+        this.classHeap = classHeap;
+        this.classTracked = classTracked;
+        this.classCodecs = classCodecs;
+        this.varintNumbers = varintNumbers;
+        this.trackReferences = trackReferences;
+        this.heap = new Object[objectCount];
+        this.offsets = new int[objectCount];
+        Arrays.fill(offsets, -1);
+        this.handles = new LazyObject[objectCount];
+        this.pending = new boolean[objectCount];
+        scanner.setVarintNumbers(varintNumbers);
+    }
+
+    /**
+     * Возвращает описатель корневого объекта.
+     *
+     * @return описатель, {@code null} или значение, если корневой объект не имеет содержимого
+     * @throws Exception при ошибке считывания
+     */
+    LazyObject getRoot() throws Exception {
+        Object root = scan(rootOffset, 0);
+        if (root == null || root instanceof LazyObject) {
+            return (LazyObject) root;
+        }
+        if (root instanceof Reference) {
+            throw new StreamCorruptedException("Root object is a back reference");
+        }
+        return new LazyObject(this, root);
+    }
+
+    /**
+     * @return позиция после последней просмотренной ссылки или поля
+     */
+    int getScanEnd() {
+        return scanEnd;
+    }
+
+    /**
+     * @return счетчик идентификаторов после последней просмотренной ссылки
+     */
+    int getScanNextID() {
+        return scanNextID;
+    }
+
+    /**
+     * Просматривает ссылку без создания объектов с содержимым.
+     *
+     * @param position смещение ссылки
+     * @param nextID счетчик идентификаторов перед ссылкой
+     * @return {@code null}, значение, {@link Reference} или описатель объекта
+     * @throws Exception при ошибке считывания
+     */
+    Object scan(int position, int nextID) throws Exception {
+        Decoder in = scanner;
+        in.begin(bytes, position, bytes.length - position);
+        try {
+            scanNextID = nextID;
+            Object slot = scanReference(in, position);
+            scanEnd = in.position();
+            return slot;
+        } finally {
+            in.detach();
+        }
+    }
+
+    /**
+     * Считывает значение примитивного поля.
+     *
+     * @param position смещение поля
+     * @param typeCode код типа поля
+     * @return значение поля
+     * @throws IOException при ошибке считывания
+     */
+    Object readPrimitive(int position, int typeCode) throws IOException {
+        Decoder in = scanner;
+        in.begin(bytes, position, bytes.length - position);
+        try {
+            Object value;
+            switch (typeCode) {
+            case TypeCode.BYTE:
+                value = in.readByte();
+                break;
+            case TypeCode.SHORT:
+                value = in.readShort();
+                break;
+            case TypeCode.INT:
+                value = in.readNumberInt();
+                break;
+            case TypeCode.LONG:
+                value = in.readNumberLong();
+                break;
+            case TypeCode.FLOAT:
+                value = in.readFloat();
+                break;
+            case TypeCode.DOUBLE:
+                value = in.readDouble();
+                break;
+            case TypeCode.BOOLEAN:
+                value = in.readBoolean();
+                break;
+            case TypeCode.CHAR:
+                value = in.readChar();
+                break;
+            default:
+                throw new IllegalArgumentException("Not a primitive type code: " + typeCode);
+            }
+            scanEnd = in.position();
+            return value;
+        } finally {
+            in.detach();
+        }
+    }
+
+    /**
+     * Возвращает объект по идентификатору, создавая его при необходимости. Объект, который
+     * создается в данный момент, но еще не помещен в кучу, возвращается как {@code null},
+     * как и при полном чтении.
+     *
+     * @param id идентификатор объекта
+     * @return объект
+     * @throws Exception при ошибке считывания
+     */
+    Object resolve(int id) throws Exception {
+        Object value = heap[id];
+        if (value != null || pending[id]) {
+            return value;
+        }
+        Object slot = locate(id);
+        return slot instanceof LazyObject ? ((LazyObject) slot).materialize() : slot;
+    }
+
+    /**
+     * Находит ссылку, создающую объект с идентификатором, и возвращает результат ее просмотра.
+     *
+     * @param id идентификатор объекта
+     * @return описатель объекта или значение
+     * @throws Exception при ошибке считывания
+     */
+    Object locate(int id) throws Exception {
+        if (id < 0 || id >= heap.length) {
+            throw new StreamCorruptedException("Unknown object reference: " + id);
+        }
+        while (offsets[id] < 0) {
+            int region = findSkipped(id);
+            if (region < 0) {
+                throw new StreamCorruptedException("Unknown object reference: " + id);
+            }
+            Object owner = scan(skipped[region], skipped[region + 1]);
+            if (!(owner instanceof LazyObject)) {
+                throw new StreamCorruptedException("Invalid object frame at " + skipped[region]);
+            }
+            removeSkipped(region);
+            ((LazyObject) owner).scanAll();
+        }
+        return handles[id] != null ? handles[id] : heap[id];
+    }
+
+    /**
+     * Создает объект, ссылка на который находится по смещению, вместе с его содержимым.
+     *
+     * @param offset смещение ссылки
+     * @param firstID счетчик идентификаторов перед ссылкой
+     * @param id идентификатор объекта или -1, если ссылки на него не отслеживаются
+     * @return созданный объект
+     * @throws Exception при ошибке считывания
+     */
+    Object materialize(int offset, int firstID, int id) throws Exception {
+        if (id >= 0) {
+            pending[id] = true;
+        }
+        try {
+            return new LDesirializer(this).readLazy(offset, firstID);
+        } finally {
+            if (id >= 0) {
+                pending[id] = false;
+            }
+        }
+    }
+
+    /**
+     * Просматривает ссылку с текущей позиции декодировщика.
+     */
+    private Object scanReference(Decoder in, int position) throws Exception {
+        long reference = in.readVarint();
+        if (reference == WireFormat.NULL) {
+            return null;
+        }
+        if ((reference & 1) != 0) {
+            long objID = reference >>> 1;
+            if (objID >= scanNextID) {
+                throw new StreamCorruptedException("Unknown object reference: " + objID);
+            }
+            return new Reference((int) objID);
+        }
+        long typeID = reference >>> 1;
+        if (typeID == WireFormat.TYPE_STRING) {
+            String value = in.readString();
+            return trackReferences ? store(value, position) : value;
+        }
+        ValueCodec valueCodec = ValueCodec.forTag(typeID);
+        if (valueCodec != null) {
+            return valueCodec.read(in);
+        }
+        CollectionCodec collectionCodec = CollectionCodec.forTag(typeID);
+        if (collectionCodec != null) {
+            int count = in.readLength();
+            int length = collectionCodec.lengthOf(count);
+            return handle(in, position, collectionCodec.getType(), trackReferences, length > 0,
+                    collectionCodec.sizeOf(count), length, null,
+                    collectionCodec);
+        }
+        long classID = typeID - WireFormat.FIRST_CLASS_ID;
+        if (classID < 0 || classID >= classHeap.length) {
+            throw new StreamCorruptedException("Unknown class reference: " + typeID);
+        }
+        Class<?> type = classHeap[(int) classID];
+        boolean tracked = trackReferences && classTracked[(int) classID];
+        if (classCodecs[(int) classID] != null) {
+            return handle(in, position, type, tracked, true, -1, 0, null, null);
+        }
+        if (type.isArray()) {
+            int length = in.readLength();
+            int typeCode = TypeCode.of(type.getComponentType());
+            if (typeCode == TypeCode.OBJECT) {
+                return handle(in, position, type, tracked, length > 0, length, length, null, null);
+            }
+            in.skipBytes((long) length * TypeCode.sizeOf(typeCode));
+            return handle(in, position, type, tracked, false, length, 0, null, null);
+        }
+        if (type.isEnum()) {
+            Object value = readEnum(type, in.readString());
+            return tracked ? store(value, position) : value;
+        }
+        FieldDescriptor[] fields = ClassDescriptor.forClass(type, accessorType).getFields();
+        return handle(in, position, type, tracked, fields.length > 0, -1, fields.length, fields, null);
+    }
+
+    /**
+     * Помещает в кучу значение, считанное при просмотре. Если объект с тем же идентификатором
+     * уже создан, возвращается он.
+     */
+    private Object store(Object value, int position) throws StreamCorruptedException {
+        int id = nextID();
+        offsets[id] = position;
+        if (heap[id] == null) {
+            heap[id] = value;
+        }
+        return heap[id];
+    }
+
+    /**
+     * Создает описатель объекта с содержимым и пропускает его кадр.
+     */
+    private LazyObject handle(Decoder in, int position, Class<?> type, boolean tracked, boolean framed, int length,
+            int elementCount, FieldDescriptor[] fields, CollectionCodec codec) throws IOException {
+        int firstID = scanNextID;
+        int id = -1;
+        if (tracked) {
+            id = nextID();
+            offsets[id] = position;
+        }
+        int bodyStart = in.position();
+        int bodyLength = 0;
+        int childCount = 0;
+        if (framed) {
+            bodyLength = in.readInt();
+            childCount = in.readInt();
+            bodyStart = in.position();
+            if (bodyLength < 0 || bodyLength > bytes.length - bodyStart || childCount < 0
+                    || childCount > heap.length - scanNextID) {
+                throw new StreamCorruptedException("Invalid object frame: " + bodyLength + "/" + childCount);
+            }
+            in.skipBytes(bodyLength);
+            if (childCount > 0) {
+                addSkipped(position, firstID, scanNextID + childCount);
+            }
+        }
+        int childID = scanNextID;
+        scanNextID += childCount;
+        if (id >= 0 && handles[id] != null) {
+            return handles[id];
+        }
+        LazyObject handle = new LazyObject(this, type, position, firstID, id, bodyStart, bodyStart + bodyLength,
+                childID, childCount, length, elementCount, fields, codec);
+        if (id >= 0) {
+            handles[id] = handle;
+        }
+        return handle;
+    }
+
+    private int nextID() throws StreamCorruptedException {
+        if (scanNextID >= heap.length) {
+            throw new StreamCorruptedException("Object count exceeds the header value");
+        }
+        return scanNextID++;
+    }
+
+    /**
+     * Возвращает индекс наименьшего пропущенного кадра, содержащего идентификатор, или -1.
+     */
+    private int findSkipped(int id) {
+        int result = -1;
+        int span = Integer.MAX_VALUE;
+        for (int i = 0; i < skippedLength; i += 3) {
+            if (skipped[i + 1] <= id && id < skipped[i + 2] && skipped[i + 2] - skipped[i + 1] < span) {
+                result = i;
+                span = skipped[i + 2] - skipped[i + 1];
+            }
+        }
+        return result;
+    }
+
+    private void addSkipped(int position, int firstID, int endID) {
+        if (skippedLength == skipped.length) {
+            skipped = Arrays.copyOf(skipped, skippedLength * 2);
+        }
+        skipped[skippedLength++] = position;
+        skipped[skippedLength++] = firstID;
+        skipped[skippedLength++] = endID;
+    }
+
+    private void removeSkipped(int region) {
+        skippedLength -= 3;
+        System.arraycopy(skipped, skippedLength, skipped, region, 3);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object readEnum(Class<?> enumClass, String name) {
+        return Enum.valueOf((Class<Enum>) enumClass, name);
+    }
+
+    /**
+     * Повторная ссылка на объект, найденная при просмотре.
+     */
+    static final class Reference {
+
+        /** Идентификатор объекта. */
+        final int id;
+
+        Reference(int id) {
+            this.id = id;
+        }
+
+    }
+
+}
@@ -0,0 +1,273 @@
+package ua.vladaxon.serializer;
+
+import java.io.StreamCorruptedException;
+
+/**
+ * Описатель объекта при частичном чтении графа, см. {@link LDesirializer#deserializeLazy(byte[])}.
+ * <p>
+ * Описатель создается без разбора содержимого объекта. Поля объекта и элементы массива ссылок,
+ * списка или множества просматриваются по порядку при первом обращении, при этом содержимое
+ * вложенных объектов пропускается по кадрам, а вложенные объекты получают свои описатели.
+ * Объект создается только при обращении к его значению, вместе со своими вложенными объектами.
+ * Созданные объекты общие для всех описателей графа: объект, на который ссылаются из разных
+ * частей графа, создается один раз, в том числе при последующем создании объемлющего объекта.
+ * <p>
+ * Путь к значению состоит из имен полей и индексов элементов, разделенных точкой, например
+ * {@code "header.routes.0.target"}. Записи отображений по индексу не адресуются, такие
+ * коллекции, как и объекты с пользовательским представлением и массивы примитивов, создаются
+ * целиком. Описатели одного графа не могут использоваться несколькими потоками одновременно.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public final class LazyObject {
+
+    /** Граф, которому принадлежит объект. */
+    private final LazyGraph graph;
+    /** Класс объекта. */
+    private final Class<?> type;
+    /** Смещение ссылки, создающей объект. */
+    private final int offset;
+    /** Счетчик идентификаторов перед ссылкой. */
+    private final int firstID;
+    /** Идентификатор объекта или -1, если ссылки на него не отслеживаются. */
+    private final int id;
+    /** Конец содержимого объекта. */
+    private final int bodyEnd;
+    /** Первый идентификатор внутри содержимого. */
+    private final int childID;
+    /** Число идентификаторов внутри содержимого. */
+    private final int childCount;
+    /** Длина массива или число записей коллекции, для остальных объектов -1. */
+    private final int length;
+    /** Число полей или элементов содержимого. */
+    private final int elementCount;
+    /** Поля объекта или {@code null}. */
+    private final FieldDescriptor[] fields;
+    /** Представление коллекции или {@code null}. */
+    private final CollectionCodec codec;
+    /** Адресуются ли элементы содержимого индексами. */
+    private final boolean indexed;
+    /** Просмотренные поля и элементы: значения, повторные ссылки и описатели. */
+    private Object[] slots;
+    /** Число просмотренных полей и элементов. */
+    private int scanned;
+    /** Позиция следующего поля или элемента. */
+    private int scanPosition;
+    /** Счетчик идентификаторов перед следующим полем или элементом. */
+    private int scanNextID;
+    /** Созданный объект, если ссылки на него не отслеживаются. */
+    private Object instance;
+
+    LazyObject(LazyGraph graph, Class<?> type, int offset, int firstID, int id, int bodyStart, int bodyEnd,
+            int childID, int childCount, int length, int elementCount, FieldDescriptor[] fields,
+            CollectionCodec codec) {
+        this.graph = graph;
+        this.type = type;
+        this.offset = offset;
+        this.firstID = firstID;
+        this.id = id;
+        this.bodyEnd = bodyEnd;
+        this.childID = childID;
+        this.childCount = childCount;
+        this.length = length;
+        this.elementCount = elementCount;
+        this.fields = fields;
+        this.codec = codec;
+        this.indexed = codec != null || type.isArray() && !type.getComponentType().isPrimitive();
+        this.scanPosition = bodyStart;
+        this.scanNextID = childID;
+    }
+
+    /**
+     * Создает описатель уже считанного значения.
+     *
+     * @param graph граф
+     * @param value значение
+     */
+    LazyObject(LazyGraph graph, Object value) {
+        this(graph, value.getClass(), -1, 0, -1, 0, 0, 0, 0, -1, 0, null, null);
+        this.instance = value;
+    }
+
+    /**
+     * @return класс объекта, для коллекций со встроенным представлением - один из классов
+     *         коллекций с тем же представлением
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return длина массива или число записей коллекции, для остальных объектов -1
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return создан ли уже объект
+     */
+    public boolean isMaterialized() {
+        return id >= 0 ? graph.heap[id] != null : instance != null;
+    }
+
+    /**
+     * Возвращает объект, создавая его вместе с вложенными объектами при первом обращении.
+     *
+     * @return объект
+     * @throws Exception при ошибке считывания
+     */
+    public Object materialize() throws Exception {
+        if (id >= 0) {
+            Object value = graph.heap[id];
+            return value != null ? value : graph.materialize(offset, firstID, id);
+        }
+        if (instance == null) {
+            instance = graph.materialize(offset, firstID, -1);
+        }
+        return instance;
+    }
+
+    /**
+     * Возвращает значение по пути. Примитивные поля возвращаются в обертках, а объект в конце
+     * пути создается вместе с вложенными объектами. Поля и объекты, не лежащие на пути,
+     * не создаются.
+     *
+     * @param path путь к значению
+     * @return значение или {@code null}, если значение или одна из ссылок на пути равны {@code null}
+     * @throws Exception при ошибке считывания
+     * @throws IllegalArgumentException если путь не соответствует объектам графа
+     * @throws IndexOutOfBoundsException если индекс на пути выходит за длину массива или коллекции
+     */
+    public Object get(String path) throws Exception {
+        Object slot = slotAt(path);
+        if (slot instanceof LazyGraph.Reference) {
+            return graph.resolve(((LazyGraph.Reference) slot).id);
+        }
+        if (slot instanceof LazyObject) {
+            return ((LazyObject) slot).materialize();
+        }
+        return slot;
+    }
+
+    /**
+     * Возвращает описатель объекта по пути, не создавая сам объект.
+     *
+     * @param path путь к объекту
+     * @return описатель или {@code null}, если одна из ссылок на пути равна {@code null}
+     * @throws Exception при ошибке считывания
+     * @throws IllegalArgumentException если путь не соответствует объектам графа или значение
+     *             по пути не имеет содержимого, например строка
+     * @throws IndexOutOfBoundsException если индекс на пути выходит за длину массива или коллекции
+     */
+    public LazyObject getObject(String path) throws Exception {
+        return toHandle(slotAt(path), path);
+    }
+
+    /**
+     * Просматривает все поля или элементы объекта.
+     *
+     * @throws Exception при ошибке считывания
+     */
+    void scanAll() throws Exception {
+        while (scanned < elementCount) {
+            scanNext();
+        }
+    }
+
+    /**
+     * Проходит по пути и возвращает результат просмотра последнего поля или элемента.
+     */
+    private Object slotAt(String path) throws Exception {
+        if (path.isEmpty()) {
+            throw new IllegalArgumentException("Empty path");
+        }
+        LazyObject current = this;
+        int start = 0;
+        while (true) {
+            int end = path.indexOf('.', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            Object slot = current.child(path.substring(start, end));
+            if (end == path.length() || slot == null) {
+                return slot;
+            }
+            current = toHandle(slot, path.substring(0, end));
+            start = end + 1;
+        }
+    }
+
+    private LazyObject toHandle(Object slot, String path) throws Exception {
+        if (slot instanceof LazyGraph.Reference) {
+            slot = graph.locate(((LazyGraph.Reference) slot).id);
+        }
+        if (slot == null || slot instanceof LazyObject) {
+            return (LazyObject) slot;
+        }
+        throw new IllegalArgumentException("Value at " + path + " is " + slot.getClass().getName()
+                + " without content");
+    }
+
+    /**
+     * Возвращает результат просмотра поля или элемента по имени или индексу.
+     */
+    private Object child(String segment) throws Exception {
+        int index;
+        if (fields != null) {
+            index = fieldIndex(segment);
+        } else if (indexed) {
+            if (codec != null && !codec.isSequence()) {
+                throw new IllegalArgumentException("Entries of " + type.getName() + " cannot be addressed by index");
+            }
+            try {
+                index = Integer.parseInt(segment);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid index " + segment + " in " + type.getName());
+            }
+            if (index < 0 || index >= elementCount) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of " + elementCount + " in "
+                        + type.getName());
+            }
+        } else {
+            throw new IllegalArgumentException(type.getName() + " can only be materialized");
+        }
+        while (scanned <= index) {
+            scanNext();
+        }
+        return slots[index];
+    }
+
+    private int fieldIndex(String name) {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].getName().equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No field " + name + " in " + type.getName());
+    }
+
+    /**
+     * Просматривает следующее поле или элемент. После последнего проверяет, что содержимое
+     * совпадает с кадром.
+     */
+    private void scanNext() throws Exception {
+        if (slots == null) {
+            slots = new Object[elementCount];
+        }
+        FieldDescriptor field = fields != null ? fields[scanned] : null;
+        if (field != null && field.getTypeCode() != TypeCode.OBJECT) {
+            slots[scanned] = graph.readPrimitive(scanPosition, field.getTypeCode());
+        } else {
+            slots[scanned] = graph.scan(scanPosition, scanNextID);
+            scanNextID = graph.getScanNextID();
+        }
+        scanPosition = graph.getScanEnd();
+        scanned++;
+        if (scanned == elementCount && (scanPosition != bodyEnd || scanNextID != childID + childCount)) {
+            throw new StreamCorruptedException("Object frame does not match content of " + type.getName());
+        }
+    }
+
+}
@@ -0,0 +1,270 @@
+package ua.vladaxon.serializer;
+
+import java.io.DataInputStream;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Чтение потоков в исходном формате без заголовка: ссылки записаны восьмибайтными идентификаторами,
+ * идентификаторы классов и длины массивов - четырехбайтными числами, строки - массивами символов.
+ * Используется {@link LDesirializer} для обратной совместимости, новые потоки в этом формате
+ * не записываются.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+final class LegacyFormatReader {
+
+    /** Куча десериализируемых объектов. */
+    private final Map<Long, Object> heap = new HashMap<Long, Object>();
+    /** Кэш классов. */
+    private final Map<Integer, Class<?>> classHeap = new HashMap<>();
+    /** Буфер для блочного считывания массивов примитивов. */
+    private final byte[] blockBuffer = new byte[TypeCode.BLOCK_SIZE];
+    /** Способ доступа к полям объектов. */
+    private final AccessorType accessorType;
+
+    /**
+     * Создает средство чтения с указанным способом доступа к полям.
+     *
+     * @param accessorType способ доступа к полям объектов
+     */
+    LegacyFormatReader(AccessorType accessorType) {
+        this.accessorType = accessorType;
+    }
+
+    /**
+     * Производит десериализацию объекта из потока.
+     *
+     * @param din входящий поток для получения данных
+     * @param rootClass класс требуемого объекта
+     * @return десериализованный объект
+     * @throws Exception при ошибке считывания
+     */
+    Object read(DataInputStream din, Class<?> rootClass) throws Exception {
+        heap.clear();
+        classHeap.clear();
+        if (rootClass.isArray()) {
+            return readArray(din, rootClass.getComponentType(), 0);
+        } else if (rootClass.isEnum()) {
+            return readEnum(din, rootClass);
+        } else {
+            return readObject(din, rootClass, 0);
+        }
+    }
+
+    /**
+     * Производит считывание объекта.
+     *
+     * @param din входящий поток
+     * @param objClass класс объекта
+     * @param objID идентификатор объекта или 0 для корневого объекта
+     * @return считанный и инициализированный объект
+     * @throws Exception при ошибке считывания объекта
+     */
+    private Object readObject(DataInputStream din, Class<?> objClass, long objID) throws Exception {
+        ClassDescriptor descriptor = ClassDescriptor.forClass(objClass, accessorType);
+        Object objInstance = descriptor.newInstance();
+        register(objID, objInstance);
+        FieldDescriptor[] fields = descriptor.getFields();
+        for (int i = 0; i < fields.length; i++) {
+            readField(din, fields[i], objInstance);
+        }
+        return objInstance;
+    }
+
+    /**
+     * Производит считывание поля объекта.
+     *
+     * @param din входящий поток
+     * @param fieldDesc описание считываемого поля
+     * @param parent родительский объект, содержащий поле
+     * @throws Exception при ошибке считывания
+     */
+    private void readField(DataInputStream din, FieldDescriptor fieldDesc, Object parent) throws Exception {
+        FieldAccessor accessor = fieldDesc.getAccessor();
+        switch (fieldDesc.getTypeCode()) {
+        case TypeCode.BYTE:
+            accessor.setByte(parent, din.readByte());
+            break;
+        case TypeCode.SHORT:
+            accessor.setShort(parent, din.readShort());
+            break;
+        case TypeCode.INT:
+            accessor.setInt(parent, din.readInt());
+            break;
+        case TypeCode.LONG:
+            accessor.setLong(parent, din.readLong());
+            break;
+        case TypeCode.FLOAT:
+            accessor.setFloat(parent, din.readFloat());
+            break;
+        case TypeCode.DOUBLE:
+            accessor.setDouble(parent, din.readDouble());
+            break;
+        case TypeCode.BOOLEAN:
+            accessor.setBoolean(parent, din.readBoolean());
+            break;
+        case TypeCode.CHAR:
+            accessor.setChar(parent, din.readChar());
+            break;
+        default:
+            accessor.setObject(parent, readReference(din));
+        }
+    }
+
+    /**
+     * Производит считывание ссылки на объект. Объект, встреченный впервые, считывается целиком,
+     * для уже считанного объекта возвращается экземпляр из кучи.
+     *
+     * @param din входящий поток
+     * @return объект по ссылке или {@code null}
+     * @throws Exception при ошибке считывания
+     */
+    private Object readReference(DataInputStream din) throws Exception {
+        long objID = din.readLong();
+        if (objID <= 0) {
+            return null;
+        }
+        Object known = heap.get(objID);
+        if (known != null) {
+            return known;
+        }
+        Class<?> objType = readClass(din);
+        if (objType.isArray()) {
+            return readArray(din, objType.getComponentType(), objID);
+        } else if (objType.isEnum()) {
+            Object enumObj = readEnum(din, objType);
+            register(objID, enumObj);
+            return enumObj;
+        } else {
+            return readObject(din, objType, objID);
+        }
+    }
+
+    /**
+     * Помещает объект в кучу считанных объектов до считывания его содержимого, чтобы на него
+     * можно было сослаться из вложенных объектов.
+     *
+     * @param objID идентификатор объекта или 0 для корневого объекта
+     * @param obj считываемый объект
+     */
+    private void register(long objID, Object obj) {
+        if (objID > 0) {
+            heap.put(objID, obj);
+        }
+    }
+
+    /**
+     * Производит считывание массива из потока.
+     *
+     * @param din входящий поток
+     * @param compType тип элементов массива
+     * @param objID идентификатор массива или 0 для корневого объекта
+     * @return считанный массив
+     * @throws Exception при ошибке считывания
+     */
+    private Object readArray(DataInputStream din, Class<?> compType, long objID) throws Exception {
+        int length = din.readInt();
+        Object array = Array.newInstance(compType, length);
+        register(objID, array);
+        int typeCode = TypeCode.of(compType);
+        if (typeCode == TypeCode.OBJECT) {
+            Object[] elements = (Object[]) array;
+            for (int i = 0; i < length; i++) {
+                elements[i] = readReference(din);
+            }
+        } else if (typeCode == TypeCode.BYTE) {
+            din.readFully((byte[]) array);
+        } else {
+            readPrimitiveArray(din, typeCode, array, length);
+        }
+        return array;
+    }
+
+    /**
+     * Производит блочное считывание массива примитивов. Блок байт считывается из потока
+     * одним вызовом и переносится в массив через представление {@link ByteBuffer}.
+     *
+     * @param din входящий поток
+     * @param typeCode код типа элементов массива
+     * @param array массив для заполнения
+     * @param length длина массива
+     * @throws Exception при ошибке считывания
+     */
+    private void readPrimitiveArray(DataInputStream din, int typeCode, Object array, int length) throws Exception {
+        byte[] block = blockBuffer;
+        ByteBuffer buffer = ByteBuffer.wrap(block);
+        int elementSize = TypeCode.sizeOf(typeCode);
+        int blockLength = block.length / elementSize;
+        for (int offset = 0; offset < length; offset += blockLength) {
+            int count = Math.min(blockLength, length - offset);
+            din.readFully(block, 0, count * elementSize);
+            switch (typeCode) {
+            case TypeCode.SHORT:
+                buffer.asShortBuffer().get((short[]) array, offset, count);
+                break;
+            case TypeCode.INT:
+                buffer.asIntBuffer().get((int[]) array, offset, count);
+                break;
+            case TypeCode.LONG:
+                buffer.asLongBuffer().get((long[]) array, offset, count);
+                break;
+            case TypeCode.FLOAT:
+                buffer.asFloatBuffer().get((float[]) array, offset, count);
+                break;
+            case TypeCode.DOUBLE:
+                buffer.asDoubleBuffer().get((double[]) array, offset, count);
+                break;
+            case TypeCode.CHAR:
+                buffer.asCharBuffer().get((char[]) array, offset, count);
+                break;
+            default:
+                boolean[] booleans = (boolean[]) array;
+                for (int i = 0; i < count; i++) {
+                    booleans[offset + i] = block[i] != 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Производит считывание экземпляра перечисления.
+     *
+     * @param din входящий поток
+     * @param enumClass класс перечисления
+     * @return считанный объект перечисления
+     * @throws Exception при ошибке считывания
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Object readEnum(DataInputStream din, Class<?> enumClass) throws Exception {
+        char[] enumName = (char[]) readArray(din, char.class, 0);
+        if (enumName != null) {
+            return Enum.valueOf((Class<Enum>) enumClass, new String(enumName));
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Производит считывание класса из потока.
+     *
+     * @param din входящий поток
+     * @return класс объекта
+     * @throws Exception при ошибке считывания класса
+     */
+    private Class<?> readClass(DataInputStream din) throws Exception {
+        int classID = din.readInt();
+        if (classHeap.containsKey(classID)) {
+            return classHeap.get(classID);
+        } else {
+            char[] nameChars = (char[]) readArray(din, char.class, 0);
+            Class<?> newClass = Class.forName(new String(nameChars));
+            classHeap.put(classID, newClass);
+            return newClass;
+        }
+    }
+
+}
@@ -0,0 +1,185 @@
+package ua.vladaxon.serializer;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+
+/**
+ * Быстрое сжатие блоков семейства LZ77 без сторонних библиотек. Повторы ищутся по хеш-таблице
+ * четырехбайтных последовательностей и кодируются смещением назад до 64 КБ и длиной. Сжимает
+ * слабее {@link DeflateCompressor}, но в несколько раз быстрее в обе стороны.
+ * <p>
+ * Сжатый блок состоит из последовательностей: байт-метка, в старших четырех битах которого
+ * число литералов, а в младших - длина повтора за вычетом четырех; продолжение длин
+ * байтами по 255; литералы; смещение повтора двумя байтами, младший первым; продолжение длины
+ * повтора. Последняя последовательность содержит только литералы.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public final class LzCompressor implements BlockCompressor {
+
+    /** Идентификатор алгоритма в заголовке потока. */
+    public static final int ID = 2;
+
+    /** Наименьшая длина повтора. */
+    private static final int MIN_MATCH = 4;
+    /** Число байт в конце блока, которые всегда записываются литералами. */
+    private static final int LAST_LITERALS = 5;
+    /** Наибольшее смещение повтора. */
+    private static final int MAX_OFFSET = 0xFFFF;
+    /** Двоичный логарифм размера хеш-таблицы. */
+    private static final int HASH_LOG = 13;
+    /** Число неудачных попыток подряд, после которого шаг поиска увеличивается на единицу. */
+    private static final int SKIP_TRIGGER = 6;
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    @Override
+    public int compress(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset) {
+        int end = srcOffset + length;
+        int matchLimit = end - LAST_LITERALS;
+        int anchor = srcOffset;
+        int out = dstOffset;
+        if (length > LAST_LITERALS + MIN_MATCH) {
+            int[] table = new int[1 << HASH_LOG];
+            Arrays.fill(table, -1);
+            int p = srcOffset;
+            int misses = 0;
+            while (p + MIN_MATCH <= matchLimit) {
+                int sequence = readInt(src, p);
+                int hash = hash(sequence);
+                int ref = table[hash];
+                table[hash] = p;
+                if (ref < 0 || p - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                    p += 1 + (misses++ >>> SKIP_TRIGGER);
+                    continue;
+                }
+                misses = 0;
+                while (p > anchor && ref > srcOffset && src[p - 1] == src[ref - 1]) {
+                    p--;
+                    ref--;
+                }
+                int matchLength = MIN_MATCH;
+                while (p + matchLength < matchLimit && src[ref + matchLength] == src[p + matchLength]) {
+                    matchLength++;
+                }
+                int token = out;
+                out = writeLiterals(src, anchor, p - anchor, dst, out);
+                dst[out++] = (byte) (p - ref);
+                dst[out++] = (byte) ((p - ref) >>> 8);
+                int extra = matchLength - MIN_MATCH;
+                if (extra >= 0x0F) {
+                    dst[token] |= 0x0F;
+                    out = writeExtension(dst, out, extra - 0x0F);
+                } else {
+                    dst[token] |= extra;
+                }
+                p += matchLength;
+                anchor = p;
+            }
+        }
+        out = writeLiterals(src, anchor, end - anchor, dst, out);
+        return out - dstOffset;
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset, int originalLength)
+            throws IOException {
+        int in = srcOffset;
+        int inEnd = srcOffset + length;
+        int out = dstOffset;
+        int outEnd = dstOffset + originalLength;
+        try {
+            while (true) {
+                int token = src[in++] & 0xFF;
+                int literals = token >>> 4;
+                if (literals == 0x0F) {
+                    int next;
+                    do {
+                        next = src[in++] & 0xFF;
+                        literals += next;
+                    } while (next == 0xFF);
+                }
+                if (literals > inEnd - in || literals > outEnd - out) {
+                    throw new StreamCorruptedException("Corrupted LZ block: literals out of range");
+                }
+                System.arraycopy(src, in, dst, out, literals);
+                in += literals;
+                out += literals;
+                if (in == inEnd) {
+                    break;
+                }
+                int offset = (src[in] & 0xFF) | (src[in + 1] & 0xFF) << 8;
+                in += 2;
+                int matchLength = token & 0x0F;
+                if (matchLength == 0x0F) {
+                    int next;
+                    do {
+                        next = src[in++] & 0xFF;
+                        matchLength += next;
+                    } while (next == 0xFF);
+                }
+                matchLength += MIN_MATCH;
+                int ref = out - offset;
+                if (offset == 0 || ref < dstOffset || matchLength > outEnd - out) {
+                    throw new StreamCorruptedException("Corrupted LZ block: match out of range");
+                }
+                if (offset >= matchLength) {
+                    System.arraycopy(dst, ref, dst, out, matchLength);
+                    out += matchLength;
+                } else {
+                    for (int i = 0; i < matchLength; i++) {
+                        dst[out++] = dst[ref++];
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new StreamCorruptedException("Truncated LZ block");
+        }
+        if (out != outEnd || in != inEnd) {
+            throw new StreamCorruptedException("Corrupted LZ block: length mismatch");
+        }
+    }
+
+    /**
+     * Записывает байт-метку с числом литералов, продолжение длины и сами литералы. Длина повтора
+     * дописывается в младшие биты метки после записи смещения.
+     */
+    private static int writeLiterals(byte[] src, int from, int literals, byte[] dst, int out) {
+        if (literals >= 0x0F) {
+            dst[out++] = (byte) 0xF0;
+            out = writeExtension(dst, out, literals - 0x0F);
+        } else {
+            dst[out++] = (byte) (literals << 4);
+        }
+        System.arraycopy(src, from, dst, out, literals);
+        return out + literals;
+    }
+
+    private static int writeExtension(byte[] dst, int out, int value) {
+        while (value >= 0xFF) {
+            dst[out++] = (byte) 0xFF;
+            value -= 0xFF;
+        }
+        dst[out++] = (byte) value;
+        return out;
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static int readInt(byte[] b, int p) {
+        return b[p] << 24 | (b[p + 1] & 0xFF) << 16 | (b[p + 2] & 0xFF) << 8 | b[p + 3] & 0xFF;
+    }
+
+}
@@ -0,0 +1,93 @@
+package ua.vladaxon.serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+
+/**
+ * Создает средства доступа к полям {@link AccessorType#METHOD_HANDLE}. Для каждого поля
+ * из байт-кода шаблона {@link MethodHandleFieldAccessor} определяется скрытый класс, данными
+ * которого служат дескрипторы чтения и записи поля. Скрытые классы не привязаны к загрузчику
+ * и выгружаются вместе с описанием класса, которому принадлежит поле.
+ * <p>
+ * Скрытые классы появились в Java 16. На более ранних платформах, а также если байт-код шаблона
+ * недоступен, средства доступа не создаются и используется {@link ReflectiveFieldAccessor}.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+final class MethodHandleAccessors {
+
+    /** Имя данных скрытого класса, см. {@link MethodHandles#classDataAt}. */
+    static final String CLASS_DATA_NAME = "_";
+
+    /** Байт-код шаблона или {@code null}, если скрытые классы недоступны. */
+    private static final byte[] TEMPLATE = loadTemplate();
+
+    private MethodHandleAccessors() {
+    }
+
+    /**
+     * Создает средство доступа к полю.
+     *
+     * @param field поле, уже открытое для доступа
+     * @return средство доступа или {@code null}, если скрытые классы недоступны или для поля
+     *         нельзя получить дескрипторы методов
+     */
+    static FieldAccessor create(Field field) {
+        if (TEMPLATE == null) {
+            return null;
+        }
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        Class<?> valueType = field.getType().isPrimitive() ? field.getType() : Object.class;
+        MethodHandle getter;
+        MethodHandle setter;
+        try {
+            getter = lookup.unreflectGetter(field).asType(MethodType.methodType(valueType, Object.class));
+            setter = lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, valueType));
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup hidden = lookup.defineHiddenClassWithClassData(TEMPLATE,
+                    Arrays.asList(getter, setter), true);
+            Class<?> accessorClass = hidden.lookupClass();
+            return (FieldAccessor) accessorClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot define accessor of field " + field, e);
+        }
+    }
+
+    /**
+     * Считывает байт-код шаблона, не загружая его класс.
+     *
+     * @return байт-код или {@code null}, если скрытые классы недоступны
+     */
+    private static byte[] loadTemplate() {
+        try {
+            MethodHandles.class.getMethod("classDataAt", MethodHandles.Lookup.class, String.class, Class.class,
+                    int.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+        try (InputStream in = MethodHandleAccessors.class.getResourceAsStream("MethodHandleFieldAccessor.class")) {
+            if (in == null) {
+                return null;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,213 @@
+package ua.vladaxon.serializer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * Шаблон доступа к полю через дескрипторы методов. Сам класс не загружается: для каждого поля
+ * {@link MethodHandleAccessors} определяет из его байт-кода скрытый класс и передает ему
+ * дескрипторы чтения и записи поля данными класса. В скрытом классе дескрипторы становятся
+ * статическими константами, поэтому JIT встраивает обращение к полю в место вызова. Дескрипторы
+ * приведены к точному типу поля с получателем {@code Object} и вызываются через
+ * {@code invokeExact}, поэтому примитивы не упаковываются.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+final class MethodHandleFieldAccessor extends FieldAccessor {
+
+    /** Дескриптор чтения поля вида {@code (Object)T}. */
+    private static final MethodHandle GETTER;
+    /** Дескриптор записи поля вида {@code (Object,T)void}. */
+    private static final MethodHandle SETTER;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            GETTER = MethodHandles.classDataAt(lookup, MethodHandleAccessors.CLASS_DATA_NAME, MethodHandle.class, 0);
+            SETTER = MethodHandles.classDataAt(lookup, MethodHandleAccessors.CLASS_DATA_NAME, MethodHandle.class, 1);
+        } catch (IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Override
+    byte getByte(Object obj) throws Exception {
+        try {
+            return (byte) GETTER.invokeExact(obj);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    short getShort(Object obj) throws Exception {
+        try {
+            return (short) GETTER.invokeExact(obj);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    int getInt(Object obj) throws Exception {
+        try {
+            return (int) GETTER.invokeExact(obj);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    long getLong(Object obj) throws Exception {
+        try {
+            return (long) GETTER.invokeExact(obj);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    float getFloat(Object obj) throws Exception {
+        try {
+            return (float) GETTER.invokeExact(obj);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    double getDouble(Object obj) throws Exception {
+        try {
+            return (double) GETTER.invokeExact(obj);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    boolean getBoolean(Object obj) throws Exception {
+        try {
+            return (boolean) GETTER.invokeExact(obj);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    char getChar(Object obj) throws Exception {
+        try {
+            return (char) GETTER.invokeExact(obj);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    Object getObject(Object obj) throws Exception {
+        try {
+            return (Object) GETTER.invokeExact(obj);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    void setByte(Object obj, byte value) throws Exception {
+        try {
+            SETTER.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    void setShort(Object obj, short value) throws Exception {
+        try {
+            SETTER.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    void setInt(Object obj, int value) throws Exception {
+        try {
+            SETTER.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    void setLong(Object obj, long value) throws Exception {
+        try {
+            SETTER.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    void setFloat(Object obj, float value) throws Exception {
+        try {
+            SETTER.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    void setDouble(Object obj, double value) throws Exception {
+        try {
+            SETTER.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    void setBoolean(Object obj, boolean value) throws Exception {
+        try {
+            SETTER.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    void setChar(Object obj, char value) throws Exception {
+        try {
+            SETTER.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    void setObject(Object obj, Object value) throws Exception {
+        try {
+            SETTER.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Приводит исключение дескриптора метода к проверяемому исключению.
+     *
+     * @param e исключение, выброшенное дескриптором
+     * @return исключение для повторного выброса
+     */
+    private static Exception rethrow(Throwable e) {
+        if (e instanceof Exception) {
+            return (Exception) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new UndeclaredThrowableException(e);
+    }
+
+}
@@ -0,0 +1,95 @@
+package ua.vladaxon.serializer;
+
+import java.util.Arrays;
+
+/**
+ * Кэш строк по их байтовому представлению в потоке для {@link Decoder#readString(NameCache)}.
+ * Позволяет считывать повторяющиеся строки, например имена классов, без декодирования
+ * и без выделения памяти. Число строк ограничено, сверх него строки не запоминаются.
+ * Открытая адресация с линейным пробированием.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+final class NameCache {
+
+    /** Наибольшее число строк в кэше. */
+    private static final int MAX_SIZE = 512;
+
+    /** Байты строк, {@code null} означает свободную ячейку. */
+    private final byte[][] keys = new byte[MAX_SIZE * 2][];
+    /** Кодировки строк. */
+    private final int[] encodings = new int[MAX_SIZE * 2];
+    /** Строки. */
+    private final String[] values = new String[MAX_SIZE * 2];
+    /** Число строк в кэше. */
+    private int size;
+
+    /**
+     * Ищет строку по ее байтам.
+     *
+     * @param bytes массив с байтами строки
+     * @param offset начало байт строки
+     * @param length число байт строки
+     * @param encoding кодировка строки в потоке
+     * @return строка или {@code null}, если ее нет в кэше
+     */
+    String get(byte[] bytes, int offset, int length, int encoding) {
+        int mask = keys.length - 1;
+        int index = hash(bytes, offset, length, encoding) & mask;
+        byte[] key;
+        while ((key = keys[index]) != null) {
+            if (encodings[index] == encoding && matches(key, bytes, offset, length)) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Запоминает строку, если в кэше есть место.
+     *
+     * @param bytes массив с байтами строки
+     * @param offset начало байт строки
+     * @param length число байт строки
+     * @param encoding кодировка строки в потоке
+     * @param value строка
+     */
+    void put(byte[] bytes, int offset, int length, int encoding, String value) {
+        if (size == MAX_SIZE) {
+            return;
+        }
+        int mask = keys.length - 1;
+        int index = hash(bytes, offset, length, encoding) & mask;
+        while (keys[index] != null) {
+            index = (index + 1) & mask;
+        }
+        keys[index] = Arrays.copyOfRange(bytes, offset, offset + length);
+        encodings[index] = encoding;
+        values[index] = value;
+        size++;
+    }
+
+    private static int hash(byte[] bytes, int offset, int length, int encoding) {
+        int h = encoding;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            h = 31 * h + bytes[i];
+        }
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean matches(byte[] key, byte[] bytes, int offset, int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != bytes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
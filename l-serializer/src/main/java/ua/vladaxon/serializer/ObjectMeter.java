@@ -0,0 +1,156 @@
+package ua.vladaxon.serializer;
+
+import java.util.Arrays;
+
+/**
+ * Учет байт и времени объектов при обходе графа для {@link SerializationListener}. Байты
+ * и время с последней отметки относятся к объекту, на котором находится обход: к кадру стека
+ * обхода или к объекту без содержимого, записанному или считанному целиком.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+final class ObjectMeter {
+
+    /** Получатель сведений. */
+    private final SerializationListener listener;
+    /** Учитывается ли чтение. */
+    private final boolean reading;
+    /** Байты объектов по кадрам стека обхода. */
+    private long[] frameBytes = new long[64];
+    /** Время объектов по кадрам стека обхода. */
+    private long[] frameNanos = new long[64];
+    /** Позиция последней отметки. */
+    private long lastPosition;
+    /** Время последней отметки. */
+    private long lastTime;
+    /** Была ли последняя ссылка повторной. */
+    private boolean reference;
+
+    ObjectMeter(SerializationListener listener, boolean reading) {
+        this.listener = listener;
+        this.reading = reading;
+    }
+
+    /**
+     * @return получатель сведений
+     */
+    SerializationListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Начинает учет графа.
+     *
+     * @param position позиция кодировщика или декодировщика
+     */
+    void start(long position) {
+        lastPosition = position;
+        lastTime = System.nanoTime();
+        reference = false;
+    }
+
+    /**
+     * Относит байты и время с последней отметки к кадру стека обхода.
+     *
+     * @param frame индекс кадра или -1, если обход не находится ни на одном объекте
+     * @param position позиция кодировщика или декодировщика
+     */
+    void charge(int frame, long position) {
+        long time = System.nanoTime();
+        if (frame >= 0) {
+            frameBytes[frame] += position - lastPosition;
+            frameNanos[frame] += time - lastTime;
+        }
+        lastPosition = position;
+        lastTime = time;
+    }
+
+    /**
+     * Начинает учет объекта, помещенного в стек обхода, и относит к нему байты и время
+     * с последней отметки: тип и начало содержимого.
+     *
+     * @param frame индекс кадра объекта
+     * @param position позиция кодировщика или декодировщика
+     */
+    void open(int frame, long position) {
+        if (frame == frameBytes.length) {
+            frameBytes = Arrays.copyOf(frameBytes, frame * 2);
+            frameNanos = Arrays.copyOf(frameNanos, frame * 2);
+        }
+        frameBytes[frame] = 0;
+        frameNanos[frame] = 0;
+        charge(frame, position);
+    }
+
+    /**
+     * Завершает учет объекта из стека обхода и сообщает о нем.
+     *
+     * @param frame индекс кадра объекта
+     * @param type класс объекта
+     * @param position позиция кодировщика или декодировщика
+     */
+    void close(int frame, Class<?> type, long position) {
+        charge(frame, position);
+        report(type, frameBytes[frame], frameNanos[frame]);
+    }
+
+    /**
+     * Сообщает об объекте без содержимого в стеке обхода, записанном или считанном целиком
+     * с последней отметки.
+     *
+     * @param type класс объекта
+     * @param position позиция кодировщика или декодировщика
+     */
+    void inline(Class<?> type, long position) {
+        long time = System.nanoTime();
+        report(type, position - lastPosition, time - lastTime);
+        lastPosition = position;
+        lastTime = time;
+    }
+
+    /**
+     * Сообщает о повторной ссылке и отмечает ее для {@link #takeReference()}.
+     *
+     * @param type класс объекта
+     */
+    void reference(Class<?> type) {
+        reference = true;
+        if (reading) {
+            listener.referenceRead(type);
+        } else {
+            listener.referenceWritten(type);
+        }
+    }
+
+    /**
+     * @return была ли последняя ссылка повторной; отметка при этом снимается
+     */
+    boolean takeReference() {
+        boolean result = reference;
+        reference = false;
+        return result;
+    }
+
+    /**
+     * Сообщает о записи или считывании класса, которого еще нет в таблице классов потока.
+     *
+     * @param type класс
+     */
+    void classEntry(Class<?> type) {
+        if (reading) {
+            listener.classRead(type);
+        } else {
+            listener.classWritten(type);
+        }
+    }
+
+    private void report(Class<?> type, long bytes, long nanos) {
+        if (reading) {
+            listener.objectRead(type, bytes, nanos);
+        } else {
+            listener.objectWritten(type, bytes, nanos);
+        }
+    }
+
+}
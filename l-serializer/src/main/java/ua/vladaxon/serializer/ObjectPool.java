@@ -0,0 +1,35 @@
+package ua.vladaxon.serializer;
+
+/**
+ * Пул объектов, из которого десериализатор берет экземпляры вместо создания новых,
+ * см. {@link LDesirializer#setObjectPool(ObjectPool)}. Из пула берутся только объекты с полями,
+ * все поля взятого объекта перезаписываются.
+ * <p>
+ * При чтении в существующий объект, см. {@link LDesirializer#deserializeInto(java.io.InputStream, Object)},
+ * объекты, вытесненные из графа и не переиспользованные в нем, после успешного чтения
+ * возвращаются в пул. На возвращенные объекты не должно оставаться ссылок у вызывающего.
+ * <p>
+ * Пул используется одним десериализатором и может не быть потокобезопасным. Встроенная
+ * реализация - {@link BoundedObjectPool}.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public interface ObjectPool {
+
+    /**
+     * Выдает свободный объект указанного класса.
+     *
+     * @param type класс объекта
+     * @return объект ровно этого класса или {@code null}, если свободных объектов нет
+     */
+    Object take(Class<?> type);
+
+    /**
+     * Принимает объект, больше не используемый в графе. Пул может отбросить объект.
+     *
+     * @param obj свободный объект
+     */
+    void release(Object obj);
+
+}
@@ -0,0 +1,110 @@
+package ua.vladaxon.serializer;
+
+import java.lang.reflect.Field;
+
+/**
+ * Доступ к полю через {@link Field}.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+final class ReflectiveFieldAccessor extends FieldAccessor {
+
+    /** Поле объекта. */
+    private final Field field;
+
+    ReflectiveFieldAccessor(Field field) {
+        this.field = field;
+    }
+
+    @Override
+    byte getByte(Object obj) throws Exception {
+        return field.getByte(obj);
+    }
+
+    @Override
+    short getShort(Object obj) throws Exception {
+        return field.getShort(obj);
+    }
+
+    @Override
+    int getInt(Object obj) throws Exception {
+        return field.getInt(obj);
+    }
+
+    @Override
+    long getLong(Object obj) throws Exception {
+        return field.getLong(obj);
+    }
+
+    @Override
+    float getFloat(Object obj) throws Exception {
+        return field.getFloat(obj);
+    }
+
+    @Override
+    double getDouble(Object obj) throws Exception {
+        return field.getDouble(obj);
+    }
+
+    @Override
+    boolean getBoolean(Object obj) throws Exception {
+        return field.getBoolean(obj);
+    }
+
+    @Override
+    char getChar(Object obj) throws Exception {
+        return field.getChar(obj);
+    }
+
+    @Override
+    Object getObject(Object obj) throws Exception {
+        return field.get(obj);
+    }
+
+    @Override
+    void setByte(Object obj, byte value) throws Exception {
+        field.setByte(obj, value);
+    }
+
+    @Override
+    void setShort(Object obj, short value) throws Exception {
+        field.setShort(obj, value);
+    }
+
+    @Override
+    void setInt(Object obj, int value) throws Exception {
+        field.setInt(obj, value);
+    }
+
+    @Override
+    void setLong(Object obj, long value) throws Exception {
+        field.setLong(obj, value);
+    }
+
+    @Override
+    void setFloat(Object obj, float value) throws Exception {
+        field.setFloat(obj, value);
+    }
+
+    @Override
+    void setDouble(Object obj, double value) throws Exception {
+        field.setDouble(obj, value);
+    }
+
+    @Override
+    void setBoolean(Object obj, boolean value) throws Exception {
+        field.setBoolean(obj, value);
+    }
+
+    @Override
+    void setChar(Object obj, char value) throws Exception {
+        field.setChar(obj, value);
+    }
+
+    @Override
+    void setObject(Object obj, Object value) throws Exception {
+        field.set(obj, value);
+    }
+
+}
@@ -0,0 +1,92 @@
+package ua.vladaxon.serializer;
+
+/**
+ * Получатель сведений о записи и чтении объектов для учета и мониторинга, задается
+ * {@link LSerializer#setListener(SerializationListener)}, {@link LDesirializer#setListener(SerializationListener)}
+ * или {@link LSerializerFactory.Builder#setListener(SerializationListener)}. Встроенная реализация,
+ * собирающая сведения по классам, - {@link SerializationMetrics}.
+ * <p>
+ * Байты и время объекта учитываются без вложенных объектов: к объекту относится все, что
+ * записано или считано, пока обход находился на нем, - тип, поля, элементы, ссылки
+ * на уже встреченные объекты и {@code null}. Строки, массивы примитивов и объекты
+ * с пользовательским представлением учитываются целиком. Для коллекций со встроенным
+ * представлением при чтении сообщается класс, который создает представление.
+ * Запись и чтение одного представления дают одинаковые числа байт: и по объектам, и в целом
+ * по вызову, куда входит заголовок.
+ * Без получателя сведения не собираются. Пошаговое и частичное чтение, см. {@link LPushDecoder}
+ * и {@link LDesirializer#deserializeLazy(byte[])}, о себе не сообщают.
+ * <p>
+ * Получатель, заданный фабрике, вызывается из всех потоков, использующих фабрику, поэтому
+ * должен быть потокобезопасным. Методы вызываются в ходе обхода и должны выполняться быстро.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public interface SerializationListener {
+
+    /**
+     * Сообщает о записи нового объекта.
+     *
+     * @param type класс объекта
+     * @param bytes число байт объекта без вложенных объектов
+     * @param nanos время записи объекта без вложенных объектов в наносекундах
+     */
+    void objectWritten(Class<?> type, long bytes, long nanos);
+
+    /**
+     * Сообщает о записи повторной ссылки на уже записанный объект вместо самого объекта.
+     *
+     * @param type класс объекта
+     */
+    void referenceWritten(Class<?> type);
+
+    /**
+     * Сообщает о записи класса, которого еще нет в таблице классов потока: его имени
+     * или идентификатора из реестра классов.
+     *
+     * @param type класс
+     */
+    void classWritten(Class<?> type);
+
+    /**
+     * Сообщает о завершении вызова сериализации.
+     *
+     * @param rootType класс корневого объекта или {@code null}
+     * @param bytes число записанных байт, для сжатых данных - до сжатия
+     * @param nanos время вызова в наносекундах
+     */
+    void serialized(Class<?> rootType, long bytes, long nanos);
+
+    /**
+     * Сообщает о считывании нового объекта.
+     *
+     * @param type класс объекта
+     * @param bytes число байт объекта без вложенных объектов
+     * @param nanos время считывания объекта без вложенных объектов в наносекундах
+     */
+    void objectRead(Class<?> type, long bytes, long nanos);
+
+    /**
+     * Сообщает о считывании повторной ссылки на уже считанный объект.
+     *
+     * @param type класс объекта
+     */
+    void referenceRead(Class<?> type);
+
+    /**
+     * Сообщает о считывании класса, которого еще нет в кэше классов потока.
+     *
+     * @param type класс
+     */
+    void classRead(Class<?> type);
+
+    /**
+     * Сообщает о завершении вызова десериализации.
+     *
+     * @param rootType класс корневого объекта или {@code null}
+     * @param bytes число считанных байт, для сжатых данных - после распаковки
+     * @param nanos время вызова в наносекундах
+     */
+    void deserialized(Class<?> rootType, long bytes, long nanos);
+
+}
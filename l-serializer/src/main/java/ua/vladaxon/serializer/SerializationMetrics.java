@@ -0,0 +1,224 @@
+package ua.vladaxon.serializer;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сбор сведений о записи и чтении по классам: число объектов, байты, время, повторные ссылки
+ * и записи классов в таблицу потока, а также итоги вызовов. Сведения о записи и чтении
+ * собираются раздельно, см. {@link #getWritten()} и {@link #getRead()}.
+ * <p>
+ * Экземпляр потокобезопасен и может быть задан фабрике. Счетчики обновляются атомарно,
+ * поэтому при частых вызовах из многих потоков учет заметно замедляет обход.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+public class SerializationMetrics implements SerializationListener {
+
+    /** Сведения о записи. */
+    private final Summary written = new Summary();
+    /** Сведения о чтении. */
+    private final Summary read = new Summary();
+
+    /**
+     * @return сведения о записи
+     */
+    public Summary getWritten() {
+        return written;
+    }
+
+    /**
+     * @return сведения о чтении
+     */
+    public Summary getRead() {
+        return read;
+    }
+
+    /**
+     * Сбрасывает все собранные сведения.
+     */
+    public void reset() {
+        written.reset();
+        read.reset();
+    }
+
+    @Override
+    public void objectWritten(Class<?> type, long bytes, long nanos) {
+        written.of(type).addObject(bytes, nanos);
+    }
+
+    @Override
+    public void referenceWritten(Class<?> type) {
+        written.of(type).references.incrementAndGet();
+    }
+
+    @Override
+    public void classWritten(Class<?> type) {
+        written.of(type).classEntries.incrementAndGet();
+    }
+
+    @Override
+    public void serialized(Class<?> rootType, long bytes, long nanos) {
+        written.addCall(bytes, nanos);
+    }
+
+    @Override
+    public void objectRead(Class<?> type, long bytes, long nanos) {
+        read.of(type).addObject(bytes, nanos);
+    }
+
+    @Override
+    public void referenceRead(Class<?> type) {
+        read.of(type).references.incrementAndGet();
+    }
+
+    @Override
+    public void classRead(Class<?> type) {
+        read.of(type).classEntries.incrementAndGet();
+    }
+
+    @Override
+    public void deserialized(Class<?> rootType, long bytes, long nanos) {
+        read.addCall(bytes, nanos);
+    }
+
+    @Override
+    public String toString() {
+        return "written " + written + ", read " + read;
+    }
+
+    /**
+     * Сведения об одном направлении: итоги вызовов и сведения по классам.
+     */
+    public static final class Summary {
+
+        private final ConcurrentMap<Class<?>, ClassMetrics> classes = new ConcurrentHashMap<>();
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+
+        /**
+         * @return сведения по классам, обновляемые по мере вызовов
+         */
+        public Map<Class<?>, ClassMetrics> getClasses() {
+            return Collections.unmodifiableMap(classes);
+        }
+
+        /**
+         * @return число вызовов
+         */
+        public long getCalls() {
+            return calls.get();
+        }
+
+        /**
+         * @return число байт всех вызовов
+         */
+        public long getBytes() {
+            return bytes.get();
+        }
+
+        /**
+         * @return время всех вызовов в наносекундах
+         */
+        public long getNanos() {
+            return nanos.get();
+        }
+
+        private ClassMetrics of(Class<?> type) {
+            ClassMetrics metrics = classes.get(type);
+            if (metrics == null) {
+                ClassMetrics created = new ClassMetrics();
+                metrics = classes.putIfAbsent(type, created);
+                if (metrics == null) {
+                    metrics = created;
+                }
+            }
+            return metrics;
+        }
+
+        private void addCall(long callBytes, long callNanos) {
+            calls.incrementAndGet();
+            bytes.addAndGet(callBytes);
+            nanos.addAndGet(callNanos);
+        }
+
+        private void reset() {
+            classes.clear();
+            calls.set(0);
+            bytes.set(0);
+            nanos.set(0);
+        }
+
+        @Override
+        public String toString() {
+            return "calls=" + calls + ", bytes=" + bytes + ", nanos=" + nanos + ", classes=" + classes;
+        }
+
+    }
+
+    /**
+     * Сведения о классе.
+     */
+    public static final class ClassMetrics {
+
+        private final AtomicLong objects = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+        private final AtomicLong references = new AtomicLong();
+        private final AtomicLong classEntries = new AtomicLong();
+
+        /**
+         * @return число новых объектов
+         */
+        public long getObjects() {
+            return objects.get();
+        }
+
+        /**
+         * @return число байт объектов без вложенных объектов
+         */
+        public long getBytes() {
+            return bytes.get();
+        }
+
+        /**
+         * @return время обработки объектов без вложенных объектов в наносекундах
+         */
+        public long getNanos() {
+            return nanos.get();
+        }
+
+        /**
+         * @return число повторных ссылок на уже встреченные объекты
+         */
+        public long getReferences() {
+            return references.get();
+        }
+
+        /**
+         * @return число записей класса в таблицу классов потока, то есть промахов кэша классов
+         */
+        public long getClassEntries() {
+            return classEntries.get();
+        }
+
+        private void addObject(long objectBytes, long objectNanos) {
+            objects.incrementAndGet();
+            bytes.addAndGet(objectBytes);
+            nanos.addAndGet(objectNanos);
+        }
+
+        @Override
+        public String toString() {
+            return "{objects=" + objects + ", bytes=" + bytes + ", nanos=" + nanos + ", references=" + references
+                    + ", classEntries=" + classEntries + "}";
+        }
+
+    }
+
+}
@@ -0,0 +1,99 @@
+package ua.vladaxon.serializer;
+
+/**
+ * Коды типов полей и элементов массивов. Вычисляются один раз при построении описания класса,
+ * чтобы при записи и чтении выбор ветки выполнялся одним оператором switch.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+final class TypeCode {
+
+    /** Тип byte. */
+    static final int BYTE = 0;
+    /** Тип short. */
+    static final int SHORT = 1;
+    /** Тип int. */
+    static final int INT = 2;
+    /** Тип long. */
+    static final int LONG = 3;
+    /** Тип float. */
+    static final int FLOAT = 4;
+    /** Тип double. */
+    static final int DOUBLE = 5;
+    /** Тип boolean. */
+    static final int BOOLEAN = 6;
+    /** Тип char. */
+    static final int CHAR = 7;
+    /** Ссылочный тип. */
+    static final int OBJECT = 8;
+
+    /** Размер блока в байтах при блочной записи и чтении массивов примитивов. */
+    static final int BLOCK_SIZE = 8192;
+
+    private TypeCode() {
+    }
+
+    /**
+     * Возвращает код для указанного типа.
+     *
+     * @param type тип поля или элемента массива
+     * @return код типа
+     */
+    static int of(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return OBJECT;
+        }
+        if (type == byte.class) {
+            return BYTE;
+        }
+        if (type == short.class) {
+            return SHORT;
+        }
+        if (type == int.class) {
+            return INT;
+        }
+        if (type == long.class) {
+            return LONG;
+        }
+        if (type == float.class) {
+            return FLOAT;
+        }
+        if (type == double.class) {
+            return DOUBLE;
+        }
+        if (type == boolean.class) {
+            return BOOLEAN;
+        }
+        if (type == char.class) {
+            return CHAR;
+        }
+        throw new IllegalArgumentException("Unsupported type: " + type);
+    }
+
+    /**
+     * Возвращает размер значения примитивного типа в потоке.
+     *
+     * @param typeCode код примитивного типа
+     * @return размер значения в байтах
+     */
+    static int sizeOf(int typeCode) {
+        switch (typeCode) {
+        case BYTE:
+        case BOOLEAN:
+            return 1;
+        case SHORT:
+        case CHAR:
+            return 2;
+        case INT:
+        case FLOAT:
+            return 4;
+        case LONG:
+        case DOUBLE:
+            return 8;
+        default:
+            throw new IllegalArgumentException("Not a primitive type code: " + typeCode);
+        }
+    }
+
+}
@@ -0,0 +1,292 @@
+package ua.vladaxon.serializer;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Встроенное представление неизменяемых типов-значений: оберток примитивов, {@link UUID},
+ * {@link BigDecimal} и, если они есть в текущей версии Java, {@code java.time.Instant}
+ * и {@code java.time.LocalDateTime}. Значение записывается встроенным типом и компактным
+ * содержимым вместо имени класса и полей. Ссылки на значения не отслеживаются: повторно
+ * встреченное значение записывается заново, поэтому значения не получают идентификаторов.
+ * <p>
+ * Целые числа, кроме {@link Short} и {@link Byte}, записываются zigzag varint-числами
+ * независимо от настроек. При чтении значения создаются фабричными методами, например
+ * {@link Integer#valueOf(int)}, и используют их кэши.
+ * <p>
+ * Представление применяется только к перечисленным классам, но не к их наследникам.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+abstract class ValueCodec {
+
+    /** Представления по классам значений. */
+    private static final Map<Class<?>, ValueCodec> BY_CLASS = new IdentityHashMap<>();
+    /** Представления по встроенным типам, индекс равен типу. */
+    private static final ValueCodec[] BY_TAG = new ValueCodec[WireFormat.FIRST_CLASS_ID];
+
+    /** Представления по классам значений с кэшированием поиска. */
+    private static final ClassValue<ValueCodec> CACHE = new ClassValue<ValueCodec>() {
+        @Override
+        protected ValueCodec computeValue(Class<?> type) {
+            return BY_CLASS.get(type);
+        }
+    };
+
+    static {
+        register(Integer.class, new ValueCodec(WireFormat.TYPE_INTEGER) {
+            @Override
+            void write(Object value, Encoder out) throws IOException {
+                writeSigned(out, (Integer) value);
+            }
+
+            @Override
+            Object read(Decoder in) throws IOException {
+                return Integer.valueOf((int) readSigned(in));
+            }
+        });
+        register(Long.class, new ValueCodec(WireFormat.TYPE_LONG) {
+            @Override
+            void write(Object value, Encoder out) throws IOException {
+                writeSigned(out, (Long) value);
+            }
+
+            @Override
+            Object read(Decoder in) throws IOException {
+                return Long.valueOf(readSigned(in));
+            }
+        });
+        register(Double.class, new ValueCodec(WireFormat.TYPE_DOUBLE) {
+            @Override
+            void write(Object value, Encoder out) throws IOException {
+                out.writeDouble((Double) value);
+            }
+
+            @Override
+            Object read(Decoder in) throws IOException {
+                return Double.valueOf(in.readDouble());
+            }
+        });
+        register(Float.class, new ValueCodec(WireFormat.TYPE_FLOAT) {
+            @Override
+            void write(Object value, Encoder out) throws IOException {
+                out.writeFloat((Float) value);
+            }
+
+            @Override
+            Object read(Decoder in) throws IOException {
+                return Float.valueOf(in.readFloat());
+            }
+        });
+        register(Short.class, new ValueCodec(WireFormat.TYPE_SHORT) {
+            @Override
+            void write(Object value, Encoder out) throws IOException {
+                out.writeShort((Short) value);
+            }
+
+            @Override
+            Object read(Decoder in) throws IOException {
+                return Short.valueOf(in.readShort());
+            }
+        });
+        register(Byte.class, new ValueCodec(WireFormat.TYPE_BYTE) {
+            @Override
+            void write(Object value, Encoder out) throws IOException {
+                out.writeByte((Byte) value);
+            }
+
+            @Override
+            Object read(Decoder in) throws IOException {
+                return Byte.valueOf(in.readByte());
+            }
+        });
+        register(Character.class, new ValueCodec(WireFormat.TYPE_CHARACTER) {
+            @Override
+            void write(Object value, Encoder out) throws IOException {
+                out.writeChar((Character) value);
+            }
+
+            @Override
+            Object read(Decoder in) throws IOException {
+                return Character.valueOf(in.readChar());
+            }
+        });
+        register(Boolean.class, new ValueCodec(WireFormat.TYPE_BOOLEAN) {
+            @Override
+            void write(Object value, Encoder out) throws IOException {
+                out.writeBoolean((Boolean) value);
+            }
+
+            @Override
+            Object read(Decoder in) throws IOException {
+                return Boolean.valueOf(in.readBoolean());
+            }
+        });
+        register(UUID.class, new ValueCodec(WireFormat.TYPE_UUID) {
+            @Override
+            void write(Object value, Encoder out) throws IOException {
+                UUID uuid = (UUID) value;
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+            }
+
+            @Override
+            Object read(Decoder in) throws IOException {
+                return new UUID(in.readLong(), in.readLong());
+            }
+        });
+        register(BigDecimal.class, new ValueCodec(WireFormat.TYPE_BIG_DECIMAL) {
+            @Override
+            void write(Object value, Encoder out) throws IOException {
+                BigDecimal decimal = (BigDecimal) value;
+                writeSigned(out, decimal.scale());
+                BigInteger unscaled = decimal.unscaledValue();
+                if (unscaled.bitLength() < 64) {
+                    out.writeVarint(0);
+                    writeSigned(out, unscaled.longValue());
+                } else {
+                    byte[] bytes = unscaled.toByteArray();
+                    out.writeVarint(bytes.length);
+                    out.writeBytes(bytes, 0, bytes.length);
+                }
+            }
+
+            @Override
+            Object read(Decoder in) throws IOException {
+                int scale = (int) readSigned(in);
+                int length = in.readLength();
+                if (length == 0) {
+                    return BigDecimal.valueOf(readSigned(in), scale);
+                }
+                byte[] bytes = new byte[length];
+                in.readBytes(bytes, 0, length);
+                return new BigDecimal(new BigInteger(bytes), scale);
+            }
+        });
+        try {
+            Class.forName("java.time.Instant");
+            registerTime();
+        } catch (ClassNotFoundException e) {
+            // типы даты и времени отсутствуют в текущей версии Java
+        }
+    }
+
+    /** Встроенный тип значения. */
+    private final int tag;
+
+    private ValueCodec(int tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * Возвращает представление для класса значения.
+     *
+     * @param type класс объекта
+     * @return представление или {@code null}, если класс не имеет встроенного представления
+     */
+    static ValueCodec forClass(Class<?> type) {
+        return CACHE.get(type);
+    }
+
+    /**
+     * Возвращает представление для встроенного типа.
+     *
+     * @param tag встроенный тип из потока
+     * @return представление или {@code null}, если тип не является значением
+     */
+    static ValueCodec forTag(long tag) {
+        return tag >= 0 && tag < BY_TAG.length ? BY_TAG[(int) tag] : null;
+    }
+
+    /**
+     * @return встроенный тип значения
+     */
+    int getTag() {
+        return tag;
+    }
+
+    /**
+     * Записывает содержимое значения.
+     *
+     * @param value значение
+     * @param out кодировщик
+     * @throws IOException при ошибке записи
+     */
+    abstract void write(Object value, Encoder out) throws IOException;
+
+    /**
+     * Считывает значение.
+     *
+     * @param in декодировщик
+     * @return значение
+     * @throws IOException при ошибке чтения
+     */
+    abstract Object read(Decoder in) throws IOException;
+
+    private static void writeSigned(Encoder out, long value) throws IOException {
+        out.writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    private static long readSigned(Decoder in) throws IOException {
+        long value = in.readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void register(Class<?> type, ValueCodec codec) {
+        BY_CLASS.put(type, codec);
+        BY_TAG[codec.tag] = codec;
+    }
+
+    /**
+     * Регистрирует представления типов даты и времени. Вызывается только при их наличии,
+     * поэтому классы представлений не загружаются в более ранних версиях Java.
+     */
+    private static void registerTime() {
+        register(java.time.Instant.class, new ValueCodec(WireFormat.TYPE_INSTANT) {
+            @Override
+            void write(Object value, Encoder out) throws IOException {
+                java.time.Instant instant = (java.time.Instant) value;
+                writeSigned(out, instant.getEpochSecond());
+                out.writeVarint(instant.getNano());
+            }
+
+            @Override
+            Object read(Decoder in) throws IOException {
+                long seconds = readSigned(in);
+                long nanos = in.readVarint();
+                try {
+                    return java.time.Instant.ofEpochSecond(seconds, nanos);
+                } catch (java.time.DateTimeException e) {
+                    throw new StreamCorruptedException("Invalid instant: " + e.getMessage());
+                }
+            }
+        });
+        register(java.time.LocalDateTime.class, new ValueCodec(WireFormat.TYPE_LOCAL_DATE_TIME) {
+            @Override
+            void write(Object value, Encoder out) throws IOException {
+                java.time.LocalDateTime dateTime = (java.time.LocalDateTime) value;
+                writeSigned(out, dateTime.toLocalDate().toEpochDay());
+                out.writeVarint(dateTime.toLocalTime().toNanoOfDay());
+            }
+
+            @Override
+            Object read(Decoder in) throws IOException {
+                long epochDay = readSigned(in);
+                long nanoOfDay = in.readVarint();
+                try {
+                    return java.time.LocalDateTime.of(java.time.LocalDate.ofEpochDay(epochDay),
+                            java.time.LocalTime.ofNanoOfDay(nanoOfDay));
+                } catch (java.time.DateTimeException e) {
+                    throw new StreamCorruptedException("Invalid date-time: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+}
@@ -0,0 +1,230 @@
+package ua.vladaxon.serializer;
+
+/**
+ * Константы формата потока.
+ * <p>
+ * Поток начинается с заголовка: два байта сигнатуры, версия формата и байт флагов. Потоки без
+ * заголовка считаются записанными в исходном формате и читаются {@link LegacyFormatReader}.
+ * Поток исходного формата начинается сразу с полей корневого объекта, поэтому заголовком
+ * считаются только сигнатура, за которой следуют версия {@link #VERSION} и допустимое сочетание
+ * флагов, см. {@link #isValidFlags(int)}; то же для сигнатуры потока блоков с версией
+ * {@link #FRAMED_VERSION} и известным алгоритмом сжатия. Неоднозначность остается: поток
+ * исходного формата, первые четыре байта которого совпадают с таким заголовком, например
+ * корневой объект с первым полем {@code short 0x4C53}, за которым следует поле {@code short 0x0200},
+ * читается как поток текущего формата. Поток текущего формата с неподдерживаемой версией
+ * читается как поток исходного формата и отклоняется при разборе.
+ * <p>
+ * Каждая ссылка, включая корневой объект, записывается беззнаковым varint-числом:
+ * <ul>
+ * <li>{@code 0} - {@code null};</li>
+ * <li>нечетное значение - ссылка на уже записанный объект с идентификатором {@code value >>> 1};</li>
+ * <li>четное значение - новый объект, {@code value >>> 1} задает его тип: {@link #CLASS_NEW} или
+ * {@link #CLASS_NEW_UNTRACKED} (далее следует имя класса), {@link #TYPE_REGISTERED} или
+ * {@link #TYPE_REGISTERED_UNTRACKED} (далее следует varint {@code id << 1 | codec}: идентификатор класса
+ * в реестре и признак пользовательского представления {@link Codec}), встроенный тип,
+ * например {@link #TYPE_STRING},
+ * или идентификатор уже записанного класса, начиная с {@link #FIRST_CLASS_ID}. Далее следует
+ * содержимое объекта.</li>
+ * </ul>
+ * Идентификаторы объектов и классов не записываются, а назначаются по порядку появления
+ * одинаково на обеих сторонах, в том числе классам из реестра. Идентификатор получает каждый
+ * новый объект, кроме объектов классов, записанных через {@link #CLASS_NEW_UNTRACKED}
+ * или {@link #TYPE_REGISTERED_UNTRACKED}, и всех объектов потока с флагом
+ * {@link #FLAG_NO_REFERENCES}. На такие объекты нельзя сослаться повторно. Длины массивов записываются varint-числами.
+ * <p>
+ * Встроенные типы коллекций, см. {@link CollectionCodec}, записываются varint-числом записей
+ * и ссылками на элементы, для отображений - на ключи и значения поочередно. Для
+ * {@link #TYPE_LINKED_HASH_MAP} вместо числа записей {@code n} записывается {@code n << 1 | accessOrder}.
+ * Встроенные типы значений, см. {@link ValueCodec}, записываются компактным содержимым
+ * и не получают идентификаторов объектов.
+ * Содержимое объекта класса с пользовательским представлением {@link Codec} записывается
+ * самим представлением.
+ * <p>
+ * Поток сеанса с флагом {@link #FLAG_SESSION} содержит после заголовка последовательность
+ * объектов. Идентификаторы объектов назначаются заново для каждого объекта, а классы и, с флагом
+ * {@link #FLAG_SHARED_STRINGS}, строки сохраняют идентификаторы до конца сеанса или до отметки
+ * {@link #SESSION_RESET} перед очередным объектом.
+ * <p>
+ * Поток с флагом {@link #FLAG_SKIPPABLE_OBJECTS} позволяет пропускать содержимое объектов
+ * без его разбора, см. {@link LazyObject}. После заголовка записываются varint-число объектов
+ * графа, получивших идентификаторы, и таблица классов: varint-число классов и для каждого класса
+ * его тип с именем или идентификатором в реестре, как при первой встрече класса. В самом графе
+ * классы записываются только идентификаторами. Содержимое объекта с полями, непустого массива
+ * ссылок, непустой коллекции и объекта с пользовательским представлением предваряется кадром:
+ * длиной содержимого в байтах и числом идентификаторов объектов, назначенных внутри него,
+ * по четыре байта.
+ * <p>
+ * Поток разности с флагом {@link #FLAG_DELTA}, см. {@link DeltaBaseline}, после заголовка содержит
+ * varint-число объектов базы, которые занимают первые идентификаторы объектов, записи изменений
+ * объектов базы, ссылку на корень и список объектов, удаляемых из базы. Запись изменений начинается
+ * с varint-идентификатора объекта, увеличенного на единицу, и завершается нулем вместо него.
+ * Для коллекции далее следует varint-вид правки: {@link #DELTA_WHOLE} - число записей и ссылки
+ * на все элементы, как при записи коллекции; {@link #DELTA_SPLICE} - varint-число участков списка
+ * и для каждого varint-число элементов, пропускаемых после предыдущего участка, число удаляемых
+ * и число вставляемых элементов и ссылки на вставляемые элементы; {@link #DELTA_ENTRIES} -
+ * varint-число удаляемых записей множества или отображения и ссылки на их ключи, затем
+ * varint-число добавляемых или измененных записей и ссылки на их элементы (для отображений -
+ * на ключ и значение). Для объекта с полями и массива далее следуют varint-число изменений
+ * и для каждого из них varint-разность индекса поля или элемента с индексом предыдущего
+ * изменения минус один и новое значение.
+ * Список удаляемых объектов состоит из varint-числа и возрастающих идентификаторов, записанных
+ * такими же разностями. Оставшиеся объекты базы и новые объекты, кроме строк, значений
+ * и элементов перечислений, получают идентификаторы следующей разности подряд в прежнем порядке.
+ * <p>
+ * Строки, имена классов и элементов перечислений записываются varint-заголовком
+ * {@code length << 2 | encoding} и байтами строки в кодировке {@link #STRING_LATIN1},
+ * {@link #STRING_UTF8} или {@link #STRING_UTF16}. Для первых двух длина задана в байтах,
+ * для последней - в символах.
+ *
+ * @author Vladislav Babushkin
+ *
+ */
+final class WireFormat {
+
+    /** Первый байт сигнатуры. */
+    static final int MAGIC_0 = 'L';
+    /** Второй байт сигнатуры. */
+    static final int MAGIC_1 = 'S';
+    /** Текущая версия формата. Исходный формат без заголовка считается версией 1. */
+    static final int VERSION = 2;
+
+    /** Флаг: поля int и long записываются zigzag varint-числами. */
+    static final int FLAG_VARINT_NUMBERS = 1;
+    /** Флаг: ссылки не отслеживаются, повторно встреченные объекты записываются заново. */
+    static final int FLAG_NO_REFERENCES = 2;
+    /** Флаг: поток сеанса, за заголовком следует последовательность объектов, см. {@link LObjectWriter}. */
+    static final int FLAG_SESSION = 4;
+    /** Флаг: строки записываются через общую таблицу строк сеанса. */
+    static final int FLAG_SHARED_STRINGS = 8;
+    /** Флаг: содержимое объектов предваряется кадром с длиной, классы записаны таблицей после заголовка. */
+    static final int FLAG_SKIPPABLE_OBJECTS = 16;
+    /** Флаг: разность графа относительно базы стороны чтения, см. {@link DeltaBaseline}. */
+    static final int FLAG_DELTA = 32;
+    /** Все известные флаги. */
+    private static final int KNOWN_FLAGS = FLAG_VARINT_NUMBERS | FLAG_NO_REFERENCES | FLAG_SESSION
+            | FLAG_SHARED_STRINGS | FLAG_SKIPPABLE_OBJECTS | FLAG_DELTA;
+    /** Размер кадра содержимого объекта: длина и число идентификаторов. */
+    static final int OBJECT_FRAME_SIZE = 8;
+
+    /** Первый байт сигнатуры потока блоков, см. {@link FramedOutputStream}. */
+    static final int FRAMED_MAGIC_0 = 'L';
+    /** Второй байт сигнатуры потока блоков. */
+    static final int FRAMED_MAGIC_1 = 'F';
+    /** Версия формата потока блоков. */
+    static final int FRAMED_VERSION = 1;
+
+    /** Первый байт сигнатуры пакета записей, см. {@link LSerializerFactory#serializeBatch(java.io.OutputStream, java.util.List)}. */
+    static final int BATCH_MAGIC_0 = 'L';
+    /** Второй байт сигнатуры пакета записей. */
+    static final int BATCH_MAGIC_1 = 'B';
+    /** Версия формата пакета записей. */
+    static final int BATCH_VERSION = 1;
+
+    /** Значение ссылки для {@code null}. */
+    static final int NULL = 0;
+    /** Тип нового объекта, класс которого ранее не записывался. */
+    static final int CLASS_NEW = 1;
+    /** Встроенный тип {@link String}. */
+    static final int TYPE_STRING = 2;
+    /** Тип нового объекта, класс которого ранее не записывался, без отслеживания ссылок на его объекты. */
+    static final int CLASS_NEW_UNTRACKED = 3;
+    /** Встроенный тип строки, добавляемой в общую таблицу строк сеанса. */
+    static final int TYPE_SHARED_STRING = 4;
+    /** Встроенный тип строки из общей таблицы строк сеанса, далее следует ее идентификатор. */
+    static final int TYPE_SHARED_STRING_REF = 5;
+    /** Отметка сброса таблиц классов и строк сеанса перед очередным объектом. */
+    static final int SESSION_RESET = 6;
+    /**
+     * Тип нового объекта класса из {@link ClassRegistry}, далее следует идентификатор класса в реестре
+     * с признаком пользовательского представления.
+     */
+    static final int TYPE_REGISTERED = 7;
+    /** То же, что {@link #TYPE_REGISTERED}, без отслеживания ссылок на объекты класса. */
+    static final int TYPE_REGISTERED_UNTRACKED = 8;
+    /** Встроенный тип {@link java.util.ArrayList}, см. {@link CollectionCodec}. */
+    static final int TYPE_ARRAY_LIST = 9;
+    /** Встроенный тип {@link java.util.LinkedList}. */
+    static final int TYPE_LINKED_LIST = 10;
+    /** Встроенный тип {@link java.util.ArrayDeque}. */
+    static final int TYPE_ARRAY_DEQUE = 11;
+    /** Встроенный тип {@link java.util.HashSet}. */
+    static final int TYPE_HASH_SET = 12;
+    /** Встроенный тип {@link java.util.HashMap}. */
+    static final int TYPE_HASH_MAP = 13;
+    /** Встроенный тип {@link java.util.LinkedHashMap}, младший бит числа записей задает порядок доступа. */
+    static final int TYPE_LINKED_HASH_MAP = 14;
+    /** Встроенный тип {@link java.util.concurrent.ConcurrentHashMap}. */
+    static final int TYPE_CONCURRENT_HASH_MAP = 15;
+    /** Встроенный тип {@link java.util.TreeMap}, первым элементом записывается компаратор. */
+    static final int TYPE_TREE_MAP = 16;
+    /** Встроенный тип неизменяемого списка {@code List.of}. */
+    static final int TYPE_IMMUTABLE_LIST = 17;
+    /** Встроенный тип неизменяемого множества {@code Set.of}. */
+    static final int TYPE_IMMUTABLE_SET = 18;
+    /** Встроенный тип неизменяемого отображения {@code Map.of}. */
+    static final int TYPE_IMMUTABLE_MAP = 19;
+    /** Встроенный тип {@link Integer}, см. {@link ValueCodec}. */
+    static final int TYPE_INTEGER = 20;
+    /** Встроенный тип {@link Long}. */
+    static final int TYPE_LONG = 21;
+    /** Встроенный тип {@link Double}. */
+    static final int TYPE_DOUBLE = 22;
+    /** Встроенный тип {@link Float}. */
+    static final int TYPE_FLOAT = 23;
+    /** Встроенный тип {@link Short}. */
+    static final int TYPE_SHORT = 24;
+    /** Встроенный тип {@link Byte}. */
+    static final int TYPE_BYTE = 25;
+    /** Встроенный тип {@link Character}. */
+    static final int TYPE_CHARACTER = 26;
+    /** Встроенный тип {@link Boolean}. */
+    static final int TYPE_BOOLEAN = 27;
+    /** Встроенный тип {@link java.util.UUID}. */
+    static final int TYPE_UUID = 28;
+    /** Встроенный тип {@link java.math.BigDecimal}. */
+    static final int TYPE_BIG_DECIMAL = 29;
+    /** Встроенный тип {@code java.time.Instant}. */
+    static final int TYPE_INSTANT = 30;
+    /** Встроенный тип {@code java.time.LocalDateTime}. */
+    static final int TYPE_LOCAL_DATE_TIME = 31;
+    /** Первый идентификатор записанного класса. Меньшие значения зарезервированы под встроенные типы. */
+    static final int FIRST_CLASS_ID = 32;
+
+    /** Правка коллекции в разности: содержимое передается целиком, см. {@link #FLAG_DELTA}. */
+    static final int DELTA_WHOLE = 0;
+    /** Правка списка в разности: участки с удаляемыми и вставляемыми элементами. */
+    static final int DELTA_SPLICE = 1;
+    /** Правка множества или отображения в разности: удаляемые ключи и добавляемые записи. */
+    static final int DELTA_ENTRIES = 2;
+
+    /** Строка в кодировке ISO-8859-1, по байту на символ. */
+    static final int STRING_LATIN1 = 0;
+    /** Строка в кодировке UTF-8. */
+    static final int STRING_UTF8 = 1;
+    /** Строка из символов UTF-16 по два байта, используется для строк с непарными суррогатами. */
+    static final int STRING_UTF16 = 2;
+
+    /**
+     * Проверяет, может ли байт флагов быть записан сериализатором: известны ли все флаги
+     * и совместимы ли они друг с другом.
+     *
+     * @param flags байт флагов или -1 в конце потока
+     * @return {@code true} для допустимого сочетания флагов
+     */
+    static boolean isValidFlags(int flags) {
+        if (flags < 0 || (flags & ~KNOWN_FLAGS) != 0) {
+            return false;
+        }
+        if ((flags & FLAG_SESSION) != 0) {
+            return (flags & (FLAG_SKIPPABLE_OBJECTS | FLAG_DELTA)) == 0;
+        }
+        if ((flags & FLAG_SHARED_STRINGS) != 0) {
+            return false;
+        }
+        return (flags & FLAG_DELTA) == 0 || (flags & (FLAG_SKIPPABLE_OBJECTS | FLAG_NO_REFERENCES)) == 0;
+    }
+
+    private WireFormat() {
+    }
+
+}
@@ -0,0 +1,173 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Параллельная запись и чтение пакетов записей {@link LSerializerFactory#serializeBatch(java.io.OutputStream, List)}.
+ */
+public class BatchTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(3);
+    private final LSerializerFactory factory = new LSerializerFactory.Builder().setBatchPool(pool).setBatchChunkSize(7)
+            .build();
+
+    @After
+    public void shutDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void keepsRecordOrderAcrossChunks() throws Exception {
+        List<Record> records = records(100);
+        byte[] bytes = write(records);
+        assertRecords(records, factory.deserializeBatch(bytes, Record.class));
+        assertRecords(records, factory.deserializeBatch(new ByteArrayInputStream(bytes), Record.class));
+    }
+
+    @Test
+    public void leavesStreamAtEndOfBatch() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        factory.serializeBatch(out, records(20));
+        out.write(42);
+        InputStream in = new ByteArrayInputStream(out.toByteArray());
+        assertEquals(20, factory.deserializeBatch(in, Record.class).size());
+        assertEquals(42, in.read());
+    }
+
+    @Test
+    public void readsEmptyBatch() throws Exception {
+        assertEquals(0, factory.deserializeBatch(write(Collections.<Record> emptyList()), Record.class).size());
+    }
+
+    @Test
+    public void sharesObjectsOnlyWithinChunk() throws Exception {
+        Record shared = new Record(-1);
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < 14; i++) {
+            Record record = new Record(i);
+            record.next = shared;
+            records.add(record);
+        }
+        List<Record> read = factory.deserializeBatch(write(records), Record.class);
+        assertSame(read.get(0).next, read.get(6).next);
+        assertNotSame(read.get(6).next, read.get(7).next);
+        assertEquals(-1, read.get(13).next.id);
+    }
+
+    @Test
+    public void runsNestedBatchInsidePool() throws Exception {
+        final List<Record> records = records(50);
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            final LSerializerFactory nested = new LSerializerFactory.Builder().setBatchPool(single).setBatchChunkSize(5)
+                    .build();
+            List<Record> read = single.invoke(new RecursiveTask<List<Record>>() {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected List<Record> compute() {
+                    try {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        nested.serializeBatch(out, records);
+                        return nested.deserializeBatch(out.toByteArray(), Record.class);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+
+            });
+            assertRecords(records, read);
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    @Test
+    public void rejectsChunkLongerThanStream() throws Exception {
+        // Оглавление объявляет часть длиной Integer.MAX_VALUE, за которой следует несколько байт
+        byte[] bytes = { WireFormat.BATCH_MAGIC_0, WireFormat.BATCH_MAGIC_1, WireFormat.BATCH_VERSION, 1, 1,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 1, 2, 3 };
+        try {
+            factory.deserializeBatch(new ByteArrayInputStream(bytes), Record.class);
+            fail("Chunk length beyond the data was accepted");
+        } catch (StreamCorruptedException e) {
+            // ожидаемо
+        }
+        try {
+            factory.deserializeBatch(bytes, Record.class);
+            fail("Chunk length beyond the data was accepted");
+        } catch (StreamCorruptedException e) {
+            // ожидаемо
+        }
+    }
+
+    @Test
+    public void rejectsChunkNotMatchingIndex() throws Exception {
+        byte[] bytes = write(records(3));
+        // Число записей в единственной части
+        bytes[4]++;
+        try {
+            factory.deserializeBatch(bytes, Record.class);
+            fail("Chunk with a different record count was accepted");
+        } catch (StreamCorruptedException e) {
+            // ожидаемо
+        }
+    }
+
+    private byte[] write(List<Record> records) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        factory.serializeBatch(out, records);
+        return out.toByteArray();
+    }
+
+    private static List<Record> records(int count) {
+        List<Record> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(new Record(i));
+        }
+        return records;
+    }
+
+    private static void assertRecords(List<Record> expected, List<Record> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).id, actual.get(i).id);
+            assertEquals(expected.get(i).name, actual.get(i).name);
+            assertEquals(Arrays.toString(expected.get(i).scores), Arrays.toString(actual.get(i).scores));
+        }
+    }
+
+    static class Record {
+
+        int id;
+        String name;
+        int[] scores;
+        Record next;
+
+        Record(int id) {
+            this.id = id;
+            this.name = "record-" + id;
+            this.scores = new int[] { id, id + 1 };
+        }
+
+    }
+
+}
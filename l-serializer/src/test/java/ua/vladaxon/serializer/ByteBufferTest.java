@@ -0,0 +1,189 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Запись в {@link ByteBuffer} и чтение из него, см. {@link LSerializer#serialize(ByteBuffer, Object)}
+ * и {@link LDesirializer#deserialize(ByteBuffer, Class)}.
+ */
+public class ByteBufferTest {
+
+    @Test
+    public void writesSameBytesToHeapAndDirectBuffers() throws Exception {
+        for (Payload payload : new Payload[] { Payload.small(), Payload.large() }) {
+            byte[] expected = new LSerializer().serializeToBytes(payload);
+            for (ByteBuffer buffer : buffers(expected.length + 16)) {
+                new LSerializer().serialize(buffer, payload);
+                assertEquals(expected.length, buffer.position());
+                buffer.flip();
+                assertArrayEquals(expected, content(buffer));
+                Payload read = (Payload) new LDesirializer().deserialize(buffer, Payload.class);
+                assertEquals(expected.length, buffer.position());
+                read.assertContent(payload);
+            }
+        }
+    }
+
+    @Test
+    public void writesFromPositionUpToLimit() throws Exception {
+        Payload payload = Payload.small();
+        byte[] expected = new LSerializer().serializeToBytes(payload);
+        for (ByteBuffer buffer : buffers(expected.length + 64)) {
+            fill(buffer, (byte) 0x7F);
+            buffer.position(10).limit(10 + expected.length);
+            new LSerializer().serialize(buffer, payload);
+            assertEquals(10 + expected.length, buffer.position());
+            buffer.clear();
+            byte[] all = content(buffer);
+            assertEquals(0x7F, all[9]);
+            assertArrayEquals(expected, Arrays.copyOfRange(all, 10, 10 + expected.length));
+            assertEquals(0x7F, all[10 + expected.length]);
+        }
+    }
+
+    @Test
+    public void writesToSlicesWithArrayOffset() throws Exception {
+        Payload payload = Payload.large();
+        byte[] expected = new LSerializer().serializeToBytes(payload);
+        byte[] array = new byte[expected.length + 20];
+        ByteBuffer slice = ByteBuffer.wrap(array, 7, expected.length + 5).slice();
+        slice.position(3);
+        new LSerializer().serialize(slice, payload);
+        assertEquals(3 + expected.length, slice.position());
+        assertArrayEquals(expected, Arrays.copyOfRange(array, 10, 10 + expected.length));
+
+        slice.position(3);
+        Payload read = (Payload) new LDesirializer().deserialize(slice, Payload.class);
+        assertEquals(3 + expected.length, slice.position());
+        read.assertContent(payload);
+    }
+
+    @Test
+    public void readsFromPositionOfReadOnlyAndDirectBuffers() throws Exception {
+        Payload first = Payload.small();
+        Payload second = Payload.large();
+        LSerializer serializer = new LSerializer();
+        byte[] firstBytes = serializer.serializeToBytes(first);
+        byte[] secondBytes = serializer.serializeToBytes(second);
+        ByteBuffer heap = ByteBuffer.allocate(5 + firstBytes.length + secondBytes.length + 5);
+        heap.position(5);
+        heap.put(firstBytes).put(secondBytes);
+        heap.flip().position(5);
+        ByteBuffer direct = ByteBuffer.allocateDirect(heap.capacity());
+        direct.put(heap.array(), 0, heap.limit()).flip().position(5);
+        for (ByteBuffer buffer : new ByteBuffer[] { heap, heap.asReadOnlyBuffer(), direct }) {
+            ByteBuffer in = buffer.duplicate();
+            LDesirializer deserializer = new LDesirializer();
+            ((Payload) deserializer.deserialize(in, Payload.class)).assertContent(first);
+            assertEquals(5 + firstBytes.length, in.position());
+            ((Payload) deserializer.deserialize(in, Payload.class)).assertContent(second);
+            assertEquals(in.limit(), in.position());
+        }
+    }
+
+    @Test
+    public void keepsPositionWhenBufferIsTooSmall() throws Exception {
+        Payload payload = Payload.large();
+        int size = new LSerializer().serializeToBytes(payload).length;
+        LSerializer plain = new LSerializer();
+        LSerializer compressed = new LSerializer();
+        compressed.setCompression(new DeflateCompressor());
+        for (LSerializer serializer : new LSerializer[] { plain, compressed }) {
+            for (ByteBuffer buffer : buffers(size)) {
+                buffer.position(4).limit(size / 4);
+                try {
+                    serializer.serialize(buffer, payload);
+                    fail("Buffer is too small");
+                } catch (BufferOverflowException e) {
+                    assertEquals(4, buffer.position());
+                    assertEquals(size / 4, buffer.limit());
+                }
+                // Сериализатор остается пригодным для записи
+                buffer.clear();
+                serializer.serialize(buffer, payload);
+                buffer.flip();
+                LDesirializer deserializer = new LDesirializer();
+                if (serializer == compressed) {
+                    deserializer.setCompression(new DeflateCompressor());
+                }
+                ((Payload) deserializer.deserialize(buffer, Payload.class)).assertContent(payload);
+            }
+        }
+    }
+
+    @Test
+    public void writesThroughFactory() throws Exception {
+        LSerializerFactory factory = new LSerializerFactory();
+        Payload payload = Payload.large();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(factory.serializeToBytes(payload).length);
+        factory.serialize(buffer, payload);
+        buffer.flip();
+        factory.deserialize(buffer, Payload.class).assertContent(payload);
+    }
+
+    private static ByteBuffer[] buffers(int capacity) {
+        return new ByteBuffer[] { ByteBuffer.allocate(capacity), ByteBuffer.allocateDirect(capacity) };
+    }
+
+    private static void fill(ByteBuffer buffer, byte value) {
+        while (buffer.hasRemaining()) {
+            buffer.put(value);
+        }
+        buffer.clear();
+    }
+
+    private static byte[] content(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    static class Payload {
+
+        String name;
+        long[] values;
+        Payload next;
+
+        static Payload small() {
+            Payload payload = new Payload();
+            payload.name = "small";
+            payload.values = new long[] { 1, -1 };
+            return payload;
+        }
+
+        /**
+         * @return граф, который больше собственного буфера кодировщика
+         */
+        static Payload large() {
+            Payload payload = small();
+            payload.name = "large";
+            payload.values = new long[5000];
+            for (int i = 0; i < payload.values.length; i++) {
+                payload.values[i] = i * 31L;
+            }
+            payload.next = small();
+            return payload;
+        }
+
+        void assertContent(Payload expected) {
+            assertEquals(expected.name, name);
+            assertArrayEquals(expected.values, values);
+            if (expected.next == null) {
+                assertNull(next);
+            } else {
+                next.assertContent(expected.next);
+            }
+        }
+
+    }
+
+}
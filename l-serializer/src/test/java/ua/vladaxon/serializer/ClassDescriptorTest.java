@@ -0,0 +1,147 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Кэш описаний классов, общий для всех сериализаторов, см. {@link ClassDescriptor}.
+ */
+public class ClassDescriptorTest {
+
+    @Test
+    public void cachesDescriptorPerClassAndAccessorType() {
+        ClassDescriptor descriptor = ClassDescriptor.forClass(Child.class, AccessorType.REFLECTION);
+        assertSame(descriptor, ClassDescriptor.forClass(Child.class, AccessorType.REFLECTION));
+        assertSame(descriptor.getFields(), ClassDescriptor.forClass(Child.class, AccessorType.REFLECTION).getFields());
+        assertSame(Child.class, descriptor.getType());
+        ClassDescriptor handles = ClassDescriptor.forClass(Child.class, AccessorType.METHOD_HANDLE);
+        assertNotSame(descriptor, handles);
+        assertSame(handles, ClassDescriptor.forClass(Child.class, AccessorType.METHOD_HANDLE));
+        assertNotSame(descriptor, ClassDescriptor.forClass(Parent.class, AccessorType.REFLECTION));
+    }
+
+    @Test
+    public void keepsDescriptorsAcrossSerializerInstances() throws Exception {
+        ClassDescriptor before = ClassDescriptor.forClass(Child.class, AccessorType.REFLECTION);
+        Child child = new Child();
+        child.name = "child";
+        child.count = 3;
+        for (int i = 0; i < 3; i++) {
+            Child read = (Child) new LDesirializer().deserialize(new LSerializer().serializeToBytes(child),
+                    Child.class);
+            assertEquals("child", read.name);
+            assertEquals(3, read.count);
+        }
+        LSerializerFactory factory = new LSerializerFactory();
+        factory.deserialize(factory.serializeToBytes(child), Child.class);
+        assertSame(before, ClassDescriptor.forClass(Child.class, AccessorType.REFLECTION));
+    }
+
+    @Test
+    public void describesInheritedFieldsFirstWithoutStatics() {
+        ClassDescriptor descriptor = ClassDescriptor.forClass(Child.class, AccessorType.REFLECTION);
+        List<String> names = new ArrayList<>();
+        for (FieldDescriptor field : descriptor.getFields()) {
+            names.add(field.getName());
+        }
+        assertEquals(Arrays.asList("id", "name", "count", "flag"), names);
+        // Наименьший размер: int по 4 байта, ссылка и boolean по байту
+        assertEquals(4 + 1 + 4 + 1, descriptor.minFieldBytes(false));
+        assertEquals(1 + 1 + 1 + 1, descriptor.minFieldBytes(true));
+    }
+
+    @Test
+    public void createsInstancesWithoutCallingConstructor() throws Exception {
+        ClassDescriptor descriptor = ClassDescriptor.forClass(Child.class, AccessorType.REFLECTION);
+        int instances = Parent.instances;
+        Child first = (Child) descriptor.newInstance();
+        Child second = (Child) descriptor.newInstance();
+        assertNotSame(first, second);
+        assertEquals(null, first.name);
+        // Конструктор класса не вызывается, а конструктор без параметров родителя вызывается
+        assertEquals(0, first.count);
+        assertEquals(instances + 2, Parent.instances);
+    }
+
+    @Test
+    public void returnsSameDescriptorToConcurrentCallers() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ClassDescriptor>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                futures.add(executor.submit(new Callable<ClassDescriptor>() {
+                    @Override
+                    public ClassDescriptor call() {
+                        return ClassDescriptor.forClass(Concurrent.class, AccessorType.REFLECTION);
+                    }
+                }));
+            }
+            ClassDescriptor expected = ClassDescriptor.forClass(Concurrent.class, AccessorType.REFLECTION);
+            for (Future<ClassDescriptor> future : futures) {
+                assertSame(expected, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void separatesClassesOfDifferentLoaders() throws Exception {
+        URL classes = Parent.class.getProtectionDomain().getCodeSource().getLocation();
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { classes }, null)) {
+            Class<?> other = loader.loadClass(Parent.class.getName());
+            assertNotSame(Parent.class, other);
+            ClassDescriptor descriptor = ClassDescriptor.forClass(other, AccessorType.REFLECTION);
+            assertNotSame(ClassDescriptor.forClass(Parent.class, AccessorType.REFLECTION), descriptor);
+            assertSame(other, descriptor.getType());
+            assertEquals(ClassDescriptor.forClass(Parent.class, AccessorType.REFLECTION).getFields().length,
+                    descriptor.getFields().length);
+        }
+    }
+
+    static class Parent {
+
+        static int instances;
+
+        int id;
+        String name;
+
+        Parent() {
+            instances++;
+        }
+
+    }
+
+    static class Child extends Parent {
+
+        static final String CONSTANT = "static";
+
+        int count;
+        boolean flag;
+
+        Child() {
+            count = -1;
+        }
+
+    }
+
+    static class Concurrent {
+
+        long value;
+
+    }
+
+}
@@ -0,0 +1,227 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.InvalidClassException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Реестр классов с постоянными идентификаторами и строгий режим, см. {@link ClassRegistry}.
+ */
+public class ClassRegistryTest {
+
+    @Test
+    public void writesRegisteredClassesWithoutNames() throws Exception {
+        ClassRegistry registry = new ClassRegistry.Builder().register(Holder.class, 1).register(Item.class, 2)
+                .register(Item[].class, 3).build();
+        Holder holder = holder();
+        byte[] registered = serializer(registry).serializeToBytes(holder);
+        assertFalse(contains(registered, Holder.class.getName()));
+        assertFalse(contains(registered, Item.class.getName()));
+        assertTrue(registered.length < new LSerializer().serializeToBytes(holder).length);
+        assertHolder(deserializer(registry).deserialize(registered, Holder.class));
+    }
+
+    @Test
+    public void writesUnregisteredClassesByName() throws Exception {
+        ClassRegistry registry = new ClassRegistry.Builder().register(Holder.class, 1).build();
+        byte[] bytes = serializer(registry).serializeToBytes(holder());
+        assertFalse(contains(bytes, Holder.class.getName()));
+        assertTrue(contains(bytes, Item.class.getName()));
+        assertHolder(deserializer(registry).deserialize(bytes, Holder.class));
+        // Реестр читателя может не содержать классы, записанные по имени
+        assertHolder(deserializer(new ClassRegistry.Builder().register(Holder.class, 1).register(Item.class, 9)
+                .build()).deserialize(bytes, Holder.class));
+    }
+
+    @Test
+    public void rejectsUnknownRegisteredId() throws Exception {
+        ClassRegistry writer = new ClassRegistry.Builder().register(Holder.class, 1).register(Item.class, 2).build();
+        ClassRegistry reader = new ClassRegistry.Builder().register(Holder.class, 1).build();
+        try {
+            deserializer(reader).deserialize(serializer(writer).serializeToBytes(holder()), Holder.class);
+            fail("Unknown registered id");
+        } catch (InvalidClassException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("2"));
+        }
+    }
+
+    @Test
+    public void strictModeRejectsUnregisteredClassOnWrite() throws Exception {
+        ClassRegistry strict = new ClassRegistry.Builder().register(Holder.class, 1).register(Item.class, 2)
+                .setStrict(true).build();
+        try {
+            serializer(strict).serializeToBytes(holder());
+            fail("Item[] is not registered");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(Item[].class.getName()));
+        }
+    }
+
+    @Test
+    public void strictModeRejectsNameOnReadBeforeLoadingClass() throws Exception {
+        byte[] bytes = new LSerializer().serializeToBytes(holder());
+        ClassRegistry strict = new ClassRegistry.Builder().register(Holder.class, 1).setStrict(true).build();
+        try {
+            deserializer(strict).deserialize(bytes, Holder.class);
+            fail("Holder is written by name");
+        } catch (InvalidClassException e) {
+            assertEquals(Holder.class.getName(), e.classname);
+        }
+        // Имя отсутствующего класса той же длины отклоняется без попытки загрузки
+        byte[] missing = replace(bytes, Holder.class.getName(), Holder.class.getName().replace("Holder", "Absent"));
+        try {
+            deserializer(strict).deserialize(missing, Holder.class);
+            fail("Absent class is written by name");
+        } catch (InvalidClassException e) {
+            assertTrue(e.classname.endsWith("Absent"));
+        }
+        try {
+            new LDesirializer().deserialize(missing, Holder.class);
+            fail("Absent class is loaded by name");
+        } catch (ClassNotFoundException e) {
+            // без строгого режима класс ищется по имени
+        }
+    }
+
+    @Test
+    public void strictModeWritesPrimitiveArraysByName() throws Exception {
+        ClassRegistry strict = new ClassRegistry.Builder().register(PrimitiveArrays.class, 1).setStrict(true).build();
+        PrimitiveArrays arrays = new PrimitiveArrays();
+        arrays.bytes = new byte[] { 1, 2, 3 };
+        arrays.matrix = new long[][] { { 1 }, { Long.MIN_VALUE, Long.MAX_VALUE } };
+        byte[] bytes = serializer(strict).serializeToBytes(arrays);
+        PrimitiveArrays read = (PrimitiveArrays) deserializer(strict).deserialize(bytes, PrimitiveArrays.class);
+        assertArrayEquals(arrays.bytes, read.bytes);
+        assertArrayEquals(arrays.matrix, read.matrix);
+
+        arrays.names = new String[] { "a" };
+        try {
+            serializer(strict).serializeToBytes(arrays);
+            fail("String[] is not registered");
+        } catch (IllegalArgumentException e) {
+            // массивы объектов регистрируются как обычные классы
+        }
+    }
+
+    @Test
+    public void allowsOnlyPrimitiveArrayNamesInStrictMode() {
+        ClassRegistry strict = new ClassRegistry.Builder().setStrict(true).build();
+        assertTrue(strict.allowsName(int[].class));
+        assertTrue(strict.allowsName(boolean[][].class));
+        assertFalse(strict.allowsName(Object.class));
+        assertFalse(strict.allowsName(String[].class));
+        assertFalse(strict.allowsName(Item[][].class));
+        for (String name : new String[] { "[Z", "[B", "[C", "[S", "[I", "[J", "[F", "[[D" }) {
+            assertTrue(name, strict.allowsName(name));
+        }
+        for (String name : new String[] { "", "[", "[[", "I", "int", "[V", "[II", "[Ljava.lang.String;",
+                Item.class.getName() }) {
+            assertFalse(name, strict.allowsName(name));
+        }
+        assertTrue(ClassRegistry.EMPTY.allowsName(Item.class));
+        assertTrue(ClassRegistry.EMPTY.allowsName(Item.class.getName()));
+    }
+
+    @Test
+    public void rejectsInvalidRegistrations() {
+        Class<?>[] builtIn = { String.class, int.class, Integer.class, java.util.UUID.class };
+        for (Class<?> type : builtIn) {
+            try {
+                new ClassRegistry.Builder().register(type, 1);
+                fail(type.getName());
+            } catch (IllegalArgumentException e) {
+                // встроенные типы не регистрируются
+            }
+        }
+        ClassRegistry.Builder builder = new ClassRegistry.Builder().register(Holder.class, 1);
+        try {
+            builder.register(Item.class, 1);
+            fail("Duplicate id");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(Holder.class.getName()));
+        }
+        try {
+            builder.register(Holder.class, 2);
+            fail("Duplicate class");
+        } catch (IllegalArgumentException e) {
+            // ожидаемо
+        }
+        try {
+            builder.register(Item.class, -1);
+            fail("Negative id");
+        } catch (IllegalArgumentException e) {
+            // ожидаемо
+        }
+    }
+
+    private static Holder holder() {
+        Holder holder = new Holder();
+        holder.items = new Item[] { new Item(1), new Item(2) };
+        holder.first = holder.items[0];
+        return holder;
+    }
+
+    private static void assertHolder(Object obj) {
+        Holder holder = (Holder) obj;
+        assertEquals(2, holder.items.length);
+        assertEquals(1, holder.items[0].value);
+        assertEquals(2, holder.items[1].value);
+        assertSame(holder.items[0], holder.first);
+    }
+
+    private static boolean contains(byte[] bytes, String text) {
+        return new String(bytes, StandardCharsets.ISO_8859_1).contains(text);
+    }
+
+    private static byte[] replace(byte[] bytes, String text, String replacement) {
+        String content = new String(bytes, StandardCharsets.ISO_8859_1);
+        assertTrue(content.contains(text));
+        return content.replace(text, replacement).getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static LSerializer serializer(ClassRegistry registry) {
+        LSerializer serializer = new LSerializer();
+        serializer.setClassRegistry(registry);
+        return serializer;
+    }
+
+    private static LDesirializer deserializer(ClassRegistry registry) {
+        LDesirializer deserializer = new LDesirializer();
+        deserializer.setClassRegistry(registry);
+        return deserializer;
+    }
+
+    static class Holder {
+
+        Item first;
+        Item[] items;
+
+    }
+
+    static class Item {
+
+        int value;
+
+        Item(int value) {
+            this.value = value;
+        }
+
+    }
+
+    static class PrimitiveArrays {
+
+        byte[] bytes;
+        long[][] matrix;
+        String[] names;
+
+    }
+
+}
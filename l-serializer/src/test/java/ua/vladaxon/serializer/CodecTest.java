@@ -0,0 +1,227 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Пользовательские представления классов, см. {@link Codec}.
+ */
+public class CodecTest {
+
+    @Test
+    public void roundTripsThroughCodec() throws Exception {
+        PointCodec codec = new PointCodec();
+        ClassRegistry registry = registry(codec);
+        Holder holder = new Holder();
+        holder.first = new Point(-3, 1 << 20, "origin");
+        Holder read = roundTrip(holder, registry, registry);
+        assertEquals(holder.first, read.first);
+        assertNull(read.second);
+        assertEquals(1, codec.writes.get());
+        assertEquals(1, codec.reads.get());
+    }
+
+    @Test
+    public void writesCodecContentInsteadOfFields() throws Exception {
+        ClassRegistry plain = new ClassRegistry.Builder().register(Holder.class, 1).register(Point.class, 2).build();
+        Holder holder = new Holder();
+        holder.first = new Point(1, 2, null);
+        byte[] codecBytes = serializer(registry(new PointCodec())).serializeToBytes(holder);
+        byte[] fieldBytes = serializer(plain).serializeToBytes(holder);
+        // Два varint-числа и пустая строка вместо двух int и ссылки на null
+        assertTrue(codecBytes.length < fieldBytes.length);
+    }
+
+    @Test
+    public void keepsBackReferencesToCodecObjects() throws Exception {
+        PointCodec codec = new PointCodec();
+        ClassRegistry registry = registry(codec);
+        Holder holder = new Holder();
+        holder.first = new Point(5, 6, "shared");
+        holder.second = holder.first;
+        holder.points = new Point[] { holder.first, new Point(5, 6, "shared"), holder.first };
+        Holder read = roundTrip(holder, registry, registry);
+        assertSame(read.first, read.second);
+        assertSame(read.first, read.points[0]);
+        assertSame(read.first, read.points[2]);
+        assertNotSame(read.first, read.points[1]);
+        assertEquals(read.first, read.points[1]);
+        assertEquals(2, codec.writes.get());
+        assertEquals(2, codec.reads.get());
+    }
+
+    @Test
+    public void writesEachObjectWhenReferencesAreNotTracked() throws Exception {
+        PointCodec codec = new PointCodec();
+        ClassRegistry registry = registry(codec);
+        Holder holder = new Holder();
+        holder.first = new Point(5, 6, "shared");
+        holder.second = holder.first;
+        LSerializer serializer = serializer(registry);
+        serializer.setReferenceTracking(Point.class, false);
+        Holder read = (Holder) deserializer(registry).deserialize(serializer.serializeToBytes(holder), Holder.class);
+        assertEquals(read.first, read.second);
+        assertNotSame(read.first, read.second);
+        assertEquals(2, codec.writes.get());
+    }
+
+    @Test
+    public void roundTripsCodecInSkippableStream() throws Exception {
+        ClassRegistry registry = registry(new PointCodec());
+        LSerializerFactory factory = new LSerializerFactory.Builder().setClassRegistry(registry)
+                .setSkippableObjects(true).build();
+        Holder holder = new Holder();
+        holder.first = new Point(7, 8, "framed");
+        holder.second = holder.first;
+        Holder read = factory.deserialize(factory.serializeToBytes(holder), Holder.class);
+        assertEquals(holder.first, read.first);
+        assertSame(read.first, read.second);
+    }
+
+    @Test
+    public void rejectsCodecRegisteredOnlyByWriter() throws Exception {
+        ClassRegistry plain = new ClassRegistry.Builder().register(Holder.class, 1).register(Point.class, 2).build();
+        Holder holder = new Holder();
+        holder.first = new Point(1, 2, "point");
+        try {
+            roundTrip(holder, registry(new PointCodec()), plain);
+            fail("Codec registered only by the writer");
+        } catch (InvalidClassException e) {
+            assertEquals(Point.class.getName(), e.classname);
+            assertTrue(e.getMessage(), e.getMessage().contains("codec"));
+        }
+    }
+
+    @Test
+    public void rejectsCodecRegisteredOnlyByReader() throws Exception {
+        ClassRegistry plain = new ClassRegistry.Builder().register(Holder.class, 1).register(Point.class, 2).build();
+        Holder holder = new Holder();
+        holder.first = new Point(1, 2, "point");
+        try {
+            roundTrip(holder, plain, registry(new PointCodec()));
+            fail("Codec registered only by the reader");
+        } catch (InvalidClassException e) {
+            assertEquals(Point.class.getName(), e.classname);
+            assertTrue(e.getMessage(), e.getMessage().contains("codec"));
+        }
+    }
+
+    @Test
+    public void rejectsCodecReturningOtherType() throws Exception {
+        ClassRegistry writer = registry(new PointCodec());
+        ClassRegistry reader = new ClassRegistry.Builder().register(Holder.class, 1)
+                .register(Point.class, 2, new PointCodec() {
+                    @Override
+                    public Point read(Decoder in) throws IOException {
+                        super.read(in);
+                        return null;
+                    }
+                }).build();
+        Holder holder = new Holder();
+        holder.first = new Point(1, 2, "point");
+        try {
+            roundTrip(holder, writer, reader);
+            fail("Codec returned null");
+        } catch (InvalidObjectException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(Point.class.getName()));
+        }
+    }
+
+    private static Holder roundTrip(Holder holder, ClassRegistry writer, ClassRegistry reader) throws Exception {
+        byte[] bytes = serializer(writer).serializeToBytes(holder);
+        return (Holder) deserializer(reader).deserialize(bytes, Holder.class);
+    }
+
+    private static LSerializer serializer(ClassRegistry registry) {
+        LSerializer serializer = new LSerializer();
+        serializer.setClassRegistry(registry);
+        return serializer;
+    }
+
+    private static LDesirializer deserializer(ClassRegistry registry) {
+        LDesirializer deserializer = new LDesirializer();
+        deserializer.setClassRegistry(registry);
+        return deserializer;
+    }
+
+    private static ClassRegistry registry(PointCodec codec) {
+        return new ClassRegistry.Builder().register(Holder.class, 1).register(Point.class, 2, codec).build();
+    }
+
+    static class Holder {
+
+        Point first;
+        Point second;
+        Point[] points;
+
+    }
+
+    static final class Point {
+
+        final int x;
+        final int y;
+        final String label;
+
+        Point(int x, int y, String label) {
+            this.x = x;
+            this.y = y;
+            this.label = label;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Point)) {
+                return false;
+            }
+            Point other = (Point) obj;
+            return x == other.x && y == other.y
+                    && (label == null ? other.label == null : label.equals(other.label));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * x + y;
+        }
+
+    }
+
+    /**
+     * Записывает координаты zigzag varint-числами, а метку - строкой, пустой для {@code null}.
+     */
+    static class PointCodec implements Codec<Point> {
+
+        final AtomicInteger writes = new AtomicInteger();
+        final AtomicInteger reads = new AtomicInteger();
+
+        @Override
+        public void write(Point value, Encoder out) throws IOException {
+            writes.incrementAndGet();
+            out.writeVarint((value.x << 1) ^ (value.x >> 31));
+            out.writeVarint((value.y << 1) ^ (value.y >> 31));
+            out.writeString(value.label == null ? "" : value.label);
+        }
+
+        @Override
+        public Point read(Decoder in) throws IOException {
+            reads.incrementAndGet();
+            long x = in.readVarint();
+            long y = in.readVarint();
+            String label = in.readString();
+            return new Point((int) (x >>> 1) ^ -(int) (x & 1), (int) (y >>> 1) ^ -(int) (y & 1),
+                    label.isEmpty() ? null : label);
+        }
+
+    }
+
+}
@@ -0,0 +1,201 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.InvalidObjectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Встроенное представление стандартных коллекций, см. {@link CollectionCodec}.
+ */
+public class CollectionCodecTest {
+
+    @Test
+    public void keepsInsertionOrderOfLinkedHashMap() throws Exception {
+        Map<String, String> read = roundTrip(map(false));
+        read.get("a");
+        assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<>(read.keySet()));
+    }
+
+    @Test
+    public void keepsAccessOrderOfLinkedHashMap() throws Exception {
+        LinkedHashMap<String, String> map = map(true);
+        map.get("a");
+        Map<String, String> read = roundTrip(map);
+        assertEquals(Arrays.asList("b", "c", "a"), new ArrayList<>(read.keySet()));
+        read.get("b");
+        assertEquals(Arrays.asList("c", "a", "b"), new ArrayList<>(read.keySet()));
+        // Запись не меняет порядок исходного отображения
+        assertEquals(Arrays.asList("b", "c", "a"), new ArrayList<>(map.keySet()));
+    }
+
+    @Test
+    public void keepsAccessOrderOfEmptyLinkedHashMap() throws Exception {
+        Map<String, String> read = roundTrip(new LinkedHashMap<String, String>(16, 0.75f, true));
+        read.put("a", "1");
+        read.put("b", "2");
+        read.get("a");
+        assertEquals(Arrays.asList("b", "a"), new ArrayList<>(read.keySet()));
+    }
+
+    @Test
+    public void replacesLinkedHashMapOfOtherOrderWhenReadingInto() throws Exception {
+        MapHolder holder = new MapHolder();
+        holder.map = map(true);
+        MapHolder target = new MapHolder();
+        LinkedHashMap<String, String> insertionOrdered = map(false);
+        target.map = insertionOrdered;
+        new LDesirializer().deserializeInto(new LSerializer().serializeToBytes(holder), target);
+        target.map.get("a");
+        assertEquals(Arrays.asList("b", "c", "a"), new ArrayList<>(target.map.keySet()));
+
+        LinkedHashMap<String, String> accessOrdered = map(true);
+        target.map = accessOrdered;
+        new LDesirializer().deserializeInto(new LSerializer().serializeToBytes(holder), target);
+        assertSame(accessOrdered, target.map);
+    }
+
+    @Test
+    public void resolvesTreeMapReferencedFromItsEntries() throws Exception {
+        TreeMap<String, Object> map = new TreeMap<>(new ByLength());
+        Holder owner = new Holder();
+        owner.value = map;
+        map.put("self", map);
+        map.put("owner", owner);
+        map.put("z", "last");
+        TreeMap<String, Object> read = roundTrip(map);
+        assertSame(read, read.get("self"));
+        assertSame(read, ((Holder) read.get("owner")).value);
+        assertEquals(Arrays.asList("z", "self", "owner"), new ArrayList<>(read.keySet()));
+        assertTrue(read.comparator() instanceof ByLength);
+
+        // Отображение внутри цикла объектов, созданных раньше него
+        Holder root = new Holder();
+        TreeMap<String, Object> inner = new TreeMap<>();
+        inner.put("root", root);
+        inner.put("inner", inner);
+        root.value = inner;
+        Holder readRoot = roundTrip(root);
+        TreeMap<?, ?> readInner = (TreeMap<?, ?>) readRoot.value;
+        assertSame(readRoot, readInner.get("root"));
+        assertSame(readInner, readInner.get("inner"));
+    }
+
+    @Test
+    public void rejectsTreeMapReferencedFromItsComparator() throws Exception {
+        ByLength comparator = new ByLength();
+        TreeMap<String, Object> map = new TreeMap<>(comparator);
+        comparator.owner = map;
+        map.put("a", "b");
+        assertRejected(map);
+    }
+
+    @Test
+    public void readsImmutableCollectionsInsideCycle() throws Exception {
+        Holder root = new Holder();
+        Holder child = new Holder();
+        child.value = root;
+        List<Object> list = listOf(child, "x");
+        Map<Object, Object> map = mapOf("key", root, child, list);
+        root.value = new Object[] { list, map };
+        Holder read = roundTrip(root);
+        Object[] values = (Object[]) read.value;
+        List<?> readList = (List<?>) values[0];
+        Map<?, ?> readMap = (Map<?, ?>) values[1];
+        assertEquals(2, readList.size());
+        assertSame(read, ((Holder) readList.get(0)).value);
+        assertSame(read, readMap.get("key"));
+        assertSame(readList, readMap.get(readList.get(0)));
+        assertEquals(list.getClass(), readList.getClass());
+    }
+
+    @Test
+    public void rejectsImmutableCollectionsReferencedFromTheirElements() throws Exception {
+        Holder listElement = new Holder();
+        List<Object> list = listOf(listElement);
+        listElement.value = list;
+        assertRejected(list);
+
+        Holder mapValue = new Holder();
+        Map<Object, Object> map = mapOf("value", mapValue);
+        mapValue.value = map;
+        assertRejected(map);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T value) throws Exception {
+        return (T) new LDesirializer().deserialize(new LSerializer().serializeToBytes(value), Object.class);
+    }
+
+    private static void assertRejected(Object value) throws Exception {
+        byte[] bytes = new LSerializer().serializeToBytes(value);
+        try {
+            new LDesirializer().deserialize(bytes, Object.class);
+            fail("Collection referenced before it was created");
+        } catch (InvalidObjectException e) {
+            // ожидаемо
+        }
+    }
+
+    private static LinkedHashMap<String, String> map(boolean accessOrder) {
+        LinkedHashMap<String, String> map = new LinkedHashMap<>(16, 0.75f, accessOrder);
+        List<String> keys = Arrays.asList("a", "b", "c");
+        for (int i = 0; i < keys.size(); i++) {
+            map.put(keys.get(i), "value-" + i);
+        }
+        return map;
+    }
+
+    /**
+     * Вызывает {@code List.of}, недоступный при сборке под Java 7.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Object> listOf(Object... elements) throws Exception {
+        return (List<Object>) List.class.getMethod("of", Object[].class).invoke(null, (Object) elements);
+    }
+
+    /**
+     * Вызывает {@code Map.of} для двух пар ключей и значений.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> mapOf(Object... keysAndValues) throws Exception {
+        Class<?>[] types = new Class<?>[keysAndValues.length];
+        Arrays.fill(types, Object.class);
+        return (Map<Object, Object>) Map.class.getMethod("of", types).invoke(null, keysAndValues);
+    }
+
+    static class Holder {
+
+        Object value;
+
+    }
+
+    static class MapHolder {
+
+        LinkedHashMap<String, String> map;
+
+    }
+
+    static class ByLength implements Comparator<String> {
+
+        Object owner;
+
+        @Override
+        public int compare(String left, String right) {
+            return left.length() != right.length() ? left.length() - right.length() : left.compareTo(right);
+        }
+
+    }
+
+}
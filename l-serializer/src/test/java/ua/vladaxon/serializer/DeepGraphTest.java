@@ -0,0 +1,202 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Запись и чтение графов, глубина которых превышает глубину стека потока.
+ */
+public class DeepGraphTest {
+
+    private static final int DEPTH = 100000;
+    /** Размер стека потока теста, на котором рекурсивный обход не прошел бы и тысячи уровней. */
+    private static final long STACK_SIZE = 256 * 1024;
+
+    @Test
+    public void roundTripsLongChainOfFields() throws Exception {
+        for (final LSerializerFactory factory : factories()) {
+            Link chain = onSmallStack(new Callable<Link>() {
+
+                @Override
+                public Link call() throws Exception {
+                    return factory.deserialize(factory.serializeToBytes(chain(DEPTH)), Link.class);
+                }
+
+            });
+            Link link = chain;
+            for (int i = 0; i < DEPTH - 1; i++) {
+                assertEquals(i, link.value);
+                assertEquals("link-" + i % 10, link.name);
+                link = link.next;
+            }
+            assertEquals(DEPTH - 1, link.value);
+            assertSame(chain, link.next);
+        }
+    }
+
+    @Test
+    public void roundTripsNestedArraysAndCollections() throws Exception {
+        final Object[] array = new Object[] { "bottom" };
+        final List<Object> list = new ArrayList<Object>();
+        final Map<String, Object> map = new HashMap<String, Object>();
+        Object[] arrays = array;
+        List<Object> lists = list;
+        Map<String, Object> maps = map;
+        for (int i = 0; i < DEPTH; i++) {
+            arrays = new Object[] { i, arrays };
+            List<Object> outer = new ArrayList<Object>();
+            outer.add(lists);
+            lists = outer;
+            Map<String, Object> outerMap = new HashMap<String, Object>();
+            outerMap.put("inner", maps);
+            maps = outerMap;
+        }
+        final Object[] root = new Object[] { arrays, lists, maps };
+        final LSerializer serializer = new LSerializer();
+        final LDesirializer deserializer = new LDesirializer();
+        Object[] read = onSmallStack(new Callable<Object[]>() {
+
+            @Override
+            public Object[] call() throws Exception {
+                return (Object[]) deserializer.deserialize(serializer.serializeToBytes(root), Object[].class);
+            }
+
+        });
+        arrays = (Object[]) read[0];
+        for (int i = DEPTH - 1; i >= 0; i--) {
+            assertEquals(i, arrays[0]);
+            arrays = (Object[]) arrays[1];
+        }
+        assertEquals("bottom", arrays[0]);
+        lists = depth(read[1], DEPTH);
+        assertEquals(0, lists.size());
+        assertEquals(0, depthOfMaps(read[2]));
+    }
+
+    @Test
+    public void sendsDeltasOfLongChain() throws Exception {
+        final Link chain = chain(DEPTH);
+        final LSerializer serializer = new LSerializer();
+        final LDesirializer deserializer = new LDesirializer();
+        final DeltaBaseline sent = new DeltaBaseline();
+        final DeltaBaseline received = new DeltaBaseline();
+        Link copy = onSmallStack(new Callable<Link>() {
+
+            @Override
+            public Link call() throws Exception {
+                Link copy = (Link) deserializer.deserializeDelta(serializer.serializeDeltaToBytes(chain, sent),
+                        Link.class, received);
+                last(chain).value = -1;
+                deserializer.deserializeDelta(serializer.serializeDeltaToBytes(chain, sent), Link.class, received);
+                return copy;
+            }
+
+        });
+        assertEquals(-1, last(copy).value);
+        assertSame(copy, last(copy).next);
+    }
+
+    private static List<LSerializerFactory> factories() {
+        List<LSerializerFactory> factories = new ArrayList<LSerializerFactory>();
+        factories.add(new LSerializerFactory.Builder().build());
+        factories.add(new LSerializerFactory.Builder().setVarintNumbers(true).build());
+        factories.add(new LSerializerFactory.Builder().setSkippableObjects(true).build());
+        return factories;
+    }
+
+    private static Link chain(int length) {
+        Link first = new Link(0);
+        Link link = first;
+        for (int i = 1; i < length; i++) {
+            link.next = new Link(i);
+            link = link.next;
+        }
+        link.next = first;
+        return first;
+    }
+
+    private static Link last(Link chain) {
+        Link link = chain;
+        while (link.next != chain) {
+            link = link.next;
+        }
+        return link;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> depth(Object list, int depth) {
+        List<Object> current = (List<Object>) list;
+        for (int i = 0; i < depth; i++) {
+            assertEquals(1, current.size());
+            current = (List<Object>) current.get(0);
+        }
+        return current;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int depthOfMaps(Object map) {
+        Map<String, Object> current = (Map<String, Object>) map;
+        for (int i = 0; i < DEPTH; i++) {
+            assertEquals(1, current.size());
+            current = (Map<String, Object>) current.get("inner");
+        }
+        assertNull(current.get("inner"));
+        return current.size();
+    }
+
+    /**
+     * Выполняет действие в потоке с малым стеком и возвращает результат или пробрасывает ошибку.
+     */
+    private static <T> T onSmallStack(final Callable<T> action) throws Exception {
+        final AtomicReference<T> result = new AtomicReference<T>();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread thread = new Thread(null, new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    result.set(action.call());
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+
+        }, "small-stack", STACK_SIZE);
+        thread.start();
+        thread.join();
+        if (failure.get() instanceof Exception) {
+            throw (Exception) failure.get();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        return result.get();
+    }
+
+    static class Link {
+
+        int value;
+        String name;
+        Link next;
+
+        Link() {
+        }
+
+        Link(int value) {
+            this.value = value;
+            this.name = "link-" + value % 10;
+        }
+
+    }
+
+}
@@ -0,0 +1,347 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StreamCorruptedException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Разностная запись {@link LSerializer#serializeDelta(java.io.OutputStream, Object, DeltaBaseline)}
+ * и ее применение к базе стороны чтения.
+ */
+public class DeltaTest {
+
+    private final LSerializer serializer = new LSerializer();
+    private final LDesirializer deserializer = new LDesirializer();
+    private final DeltaBaseline sent = new DeltaBaseline();
+    private final DeltaBaseline received = new DeltaBaseline();
+
+    @Test
+    public void appliesManyMutationRounds() throws Exception {
+        Random random = new Random(7);
+        Book book = book(200);
+        Book copy = apply(book);
+        List<Order> orders = copy.orders;
+        Map<String, Order> byId = copy.byId;
+        for (int round = 0; round < 500; round++) {
+            for (int i = random.nextInt(4); i >= 0; i--) {
+                mutate(book, random);
+            }
+            assertSame(copy, apply(book));
+            assertEquals("Round " + round, describe(book), describe(copy));
+            assertSame(orders, copy.orders);
+            assertSame(byId, copy.byId);
+            assertSharedOrders(copy);
+            assertEquals(sent.size(), received.size());
+        }
+    }
+
+    @Test
+    public void sendsChangedEntriesOfMap() throws Exception {
+        Book book = book(200);
+        apply(book);
+        int full = serializer.serializeToBytes(book).length;
+
+        book.byId.put("id-5", book.orders.get(6));
+        assertTrue(applied(book) < 30);
+        book.byId.remove("id-7");
+        assertTrue(applied(book) < 30);
+        book.tags.add("fresh");
+        assertTrue(applied(book) < 30);
+        book.levels.put("level-3", -1);
+        assertTrue(applied(book) < 30);
+        book.sorted.put(1000, "last");
+        int size = applied(book);
+        assertTrue(size + " of " + full, size < full / 100);
+    }
+
+    @Test
+    public void sendsSplicesOfList() throws Exception {
+        Book book = book(200);
+        apply(book);
+        book.orders.remove(50);
+        assertTrue(applied(book) < 30);
+        book.orders.add(10, book.orders.get(100));
+        assertTrue(applied(book) < 30);
+        Collections.swap(book.orders, 3, 150);
+        assertTrue(applied(book) < 30);
+        book.history.removeFirst();
+        book.history.addLast(null);
+        assertTrue(applied(book) < 30);
+    }
+
+    @Test
+    public void keepsOrderOfLinkedHashMap() throws Exception {
+        Book book = book(20);
+        Book copy = apply(book);
+        // Перестановка прежней записи в конец передается отображением целиком
+        book.levels.put("level-0", book.levels.remove("level-0"));
+        book.recent.get("recent-0");
+        apply(book);
+        assertEquals(new ArrayList<>(book.levels.keySet()), new ArrayList<>(copy.levels.keySet()));
+        assertEquals(new ArrayList<>(book.recent.keySet()), new ArrayList<>(copy.recent.keySet()));
+        copy.recent.get("recent-1");
+        assertEquals("recent-1", last(copy.recent.keySet()));
+    }
+
+    @Test
+    public void rejectsSpliceBeyondList() throws Exception {
+        Book book = book(3);
+        apply(book);
+        book.orders.remove(1);
+        byte[] message = serializer.serializeDeltaToBytes(book, sent);
+        // Первая правка списка: идентификатор, вид, число участков, пропуск, удаление, вставка
+        int splice = indexOf(message, new byte[] { WireFormat.DELTA_SPLICE, 1, 1, 1, 0 });
+        message[splice + 3] = 5;
+        try {
+            deserializer.deserializeDelta(message, Book.class, received);
+            fail("Splice beyond the list was accepted");
+        } catch (StreamCorruptedException e) {
+            // ожидаемо
+        }
+    }
+
+    private Book apply(Book book) throws Exception {
+        return (Book) deserializer.deserializeDelta(serializer.serializeDeltaToBytes(book, sent), Book.class, received);
+    }
+
+    private int applied(Book book) throws Exception {
+        byte[] message = serializer.serializeDeltaToBytes(book, sent);
+        deserializer.deserializeDelta(message, Book.class, received);
+        return message.length;
+    }
+
+    private static void mutate(Book book, Random random) {
+        List<Order> orders = book.orders;
+        Order some = orders.isEmpty() ? null : orders.get(random.nextInt(orders.size()));
+        switch (random.nextInt(14)) {
+        case 0:
+            if (some != null) {
+                some.price += 0.25;
+                some.quantity = random.nextInt(1000);
+            }
+            break;
+        case 1:
+            Order order = new Order(book.nextId++);
+            orders.add(random.nextInt(orders.size() + 1), order);
+            book.byId.put("id-" + order.id, order);
+            break;
+        case 2:
+            if (some != null) {
+                orders.remove(some);
+                book.byId.remove("id-" + some.id);
+            }
+            break;
+        case 3:
+            if (orders.size() > 1) {
+                Collections.swap(orders, random.nextInt(orders.size()), random.nextInt(orders.size()));
+            }
+            break;
+        case 4:
+            if (random.nextBoolean() && !book.history.isEmpty()) {
+                book.history.remove(random.nextInt(book.history.size()));
+            } else {
+                book.history.add(random.nextInt(book.history.size() + 1), random.nextInt(5) == 0 ? null : some);
+            }
+            break;
+        case 5:
+            String level = "level-" + random.nextInt(30);
+            if (random.nextBoolean()) {
+                book.levels.remove(level);
+            } else {
+                book.levels.put(level, random.nextInt(5) == 0 ? null : random.nextInt(100));
+            }
+            break;
+        case 6:
+            String recent = "recent-" + random.nextInt(30);
+            if (random.nextBoolean()) {
+                book.recent.get(recent);
+            } else {
+                book.recent.put(recent, random.nextInt(100));
+            }
+            break;
+        case 7:
+            int key = random.nextInt(50);
+            if (random.nextBoolean()) {
+                book.sorted.remove(key);
+            } else {
+                book.sorted.put(key, "value-" + random.nextInt(10));
+            }
+            break;
+        case 8:
+            String tag = "tag-" + random.nextInt(40);
+            if (!book.tags.remove(tag)) {
+                book.tags.add(tag);
+            }
+            break;
+        case 9:
+            if (random.nextBoolean()) {
+                book.queue.poll();
+            } else {
+                book.queue.offer(random.nextInt(100));
+            }
+            break;
+        case 10:
+            book.top[random.nextInt(book.top.length)] = some;
+            break;
+        case 11:
+            book.counts[random.nextInt(book.counts.length)]++;
+            break;
+        case 12:
+            if (random.nextInt(10) == 0) {
+                book.tags.clear();
+                book.history.clear();
+            } else if (random.nextInt(5) == 0) {
+                // Перестановка длиннее предела поиска правки списка
+                Collections.shuffle(orders, random);
+                for (int i = orders.size() / 10; i > 0; i--) {
+                    book.byId.remove("id-" + orders.remove(0).id);
+                }
+            }
+            break;
+        default:
+            book.sequence++;
+            if (some != null) {
+                book.byId.put("id-" + some.id, some);
+            }
+            break;
+        }
+    }
+
+    private static Book book(int count) {
+        Book book = new Book();
+        for (int i = 0; i < count; i++) {
+            Order order = new Order(book.nextId++);
+            book.orders.add(order);
+            book.byId.put("id-" + order.id, order);
+            if (i % 3 == 0) {
+                book.history.add(order);
+            }
+            if (i < 30) {
+                book.levels.put("level-" + i, i);
+                book.recent.put("recent-" + i, i);
+                book.sorted.put(i, "value-" + i);
+                book.tags.add("tag-" + i);
+                book.queue.add(i);
+            }
+        }
+        for (int i = 0; i < book.top.length && i < count; i++) {
+            book.top[i] = book.orders.get(i);
+        }
+        return book;
+    }
+
+    /**
+     * Описание графа, не зависящее от порядка обхода хеш-таблиц.
+     */
+    private static String describe(Book book) {
+        StringBuilder result = new StringBuilder();
+        result.append(book.symbol).append(' ').append(book.sequence).append('\n');
+        for (Order order : book.orders) {
+            result.append(describe(order)).append(' ');
+        }
+        result.append('\n');
+        for (Order order : book.history) {
+            result.append(order == null ? "null" : order.id).append(' ');
+        }
+        result.append('\n');
+        for (Map.Entry<String, Order> entry : new TreeMap<>(book.byId).entrySet()) {
+            result.append(entry.getKey()).append('=').append(describe(entry.getValue())).append(' ');
+        }
+        result.append('\n').append(book.levels).append('\n').append(book.recent).append('\n').append(book.sorted);
+        result.append('\n').append(new TreeSet<>(book.tags)).append('\n').append(book.queue).append('\n');
+        for (Order order : book.top) {
+            result.append(order == null ? "null" : order.id).append(' ');
+        }
+        return result.append('\n').append(Arrays.toString(book.counts)).toString();
+    }
+
+    private static String describe(Order order) {
+        return order.id + ":" + order.price + ":" + order.quantity;
+    }
+
+    /**
+     * Проверяет, что заявки отображения и массива - те же объекты, что и в списке.
+     */
+    private static void assertSharedOrders(Book book) {
+        Map<Order, Boolean> listed = new IdentityHashMap<>();
+        for (Order order : book.orders) {
+            listed.put(order, Boolean.TRUE);
+        }
+        for (Order order : book.byId.values()) {
+            assertTrue(listed.containsKey(order));
+        }
+    }
+
+    private static String last(Set<String> keys) {
+        String last = null;
+        for (String key : keys) {
+            last = key;
+        }
+        return last;
+    }
+
+    private static int indexOf(byte[] bytes, byte[] part) {
+        search: for (int i = 0; i + part.length <= bytes.length; i++) {
+            for (int j = 0; j < part.length; j++) {
+                if (bytes[i + j] != part[j]) {
+                    continue search;
+                }
+            }
+            return i;
+        }
+        throw new AssertionError("Not found: " + Arrays.toString(part));
+    }
+
+    static class Book {
+
+        String symbol = "ABC";
+        long sequence;
+        long nextId;
+        List<Order> orders = new ArrayList<>();
+        LinkedList<Order> history = new LinkedList<>();
+        Map<String, Order> byId = new HashMap<>();
+        LinkedHashMap<String, Integer> levels = new LinkedHashMap<>();
+        LinkedHashMap<String, Integer> recent = new LinkedHashMap<>(16, 0.75f, true);
+        TreeMap<Integer, String> sorted = new TreeMap<>();
+        Set<String> tags = new HashSet<>();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        Order[] top = new Order[10];
+        int[] counts = new int[8];
+
+    }
+
+    static class Order {
+
+        long id;
+        double price;
+        int quantity;
+
+        Order(long id) {
+            this.id = id;
+            this.price = 100 + id * 0.25;
+            this.quantity = (int) (id % 100);
+        }
+
+    }
+
+}
@@ -0,0 +1,174 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.InvalidObjectException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Чтение в существующий объект {@link LDesirializer#deserializeInto(byte[], Object)} и возврат
+ * вытесненных объектов в пул.
+ */
+public class DeserializeIntoTest {
+
+    private final LSerializer serializer = new LSerializer();
+    private final LDesirializer deserializer = new LDesirializer();
+    private final BoundedObjectPool pool = new BoundedObjectPool(100);
+
+    @Test
+    public void reusesObjectsCollectionsAndArraysInPlace() throws Exception {
+        Book target = book(3);
+        Order first = target.orders.get(0);
+        List<Order> orders = target.orders;
+        Order[] top = target.top;
+        Map<String, Order> byId = target.byId;
+
+        Book source = book(3);
+        source.orders.get(0).price = 42;
+        source.name = "changed";
+        assertSame(target, deserializer.deserializeInto(serializer.serializeToBytes(source), target));
+
+        assertEquals("changed", target.name);
+        assertSame(orders, target.orders);
+        assertSame(first, target.orders.get(0));
+        assertEquals(42, first.price);
+        assertSame(top, target.top);
+        assertSame(byId, target.byId);
+        assertEquals(3, target.byId.size());
+    }
+
+    @Test
+    public void rejectsObjectOfOtherClass() throws Exception {
+        try {
+            deserializer.deserializeInto(serializer.serializeToBytes(new Order(1)), new Book());
+            fail("Object of other class was read into the target");
+        } catch (InvalidObjectException e) {
+            // ожидаемо
+        }
+    }
+
+    @Test
+    public void releasesReplacedFieldsToPool() throws Exception {
+        deserializer.setObjectPool(pool);
+        Book target = book(1);
+        Book source = book(1);
+        source.best = null;
+        deserializer.deserializeInto(serializer.serializeToBytes(source), target);
+        assertEquals(1, pool.size(Order.class));
+    }
+
+    @Test
+    public void releasesElementsDroppedFromReusedList() throws Exception {
+        deserializer.setObjectPool(pool);
+        Book target = book(20);
+        List<Order> orders = target.orders;
+        Order kept = orders.get(0);
+        deserializer.deserializeInto(serializer.serializeToBytes(book(5)), target);
+
+        assertSame(orders, target.orders);
+        assertSame(kept, target.orders.get(0));
+        assertEquals(5, target.orders.size());
+        assertEquals(15, pool.size(Order.class));
+        for (Order order : target.orders) {
+            assertNotReleased(order);
+        }
+    }
+
+    @Test
+    public void releasesElementsOfReplacedContainers() throws Exception {
+        deserializer.setObjectPool(pool);
+        Book target = book(4);
+        Book source = book(4);
+        // Массив другой длины и отображение другого класса не переиспользуются
+        source.top = new Order[] { source.orders.get(0) };
+        source.byId = new LinkedHashMap<>(source.byId);
+        deserializer.deserializeInto(serializer.serializeToBytes(source), target);
+
+        assertEquals(1, target.top.length);
+        assertEquals(4, target.byId.size());
+        assertEquals(0, pool.size(Order.class));
+
+        source.orders.clear();
+        source.top = new Order[0];
+        source.byId.clear();
+        deserializer.deserializeInto(serializer.serializeToBytes(source), target);
+        assertEquals(4, pool.size(Order.class));
+    }
+
+    @Test
+    public void takesNewObjectsFromPool() throws Exception {
+        deserializer.setObjectPool(pool);
+        Book target = book(5);
+        Book empty = book(0);
+        empty.best = null;
+        deserializer.deserializeInto(serializer.serializeToBytes(empty), target);
+        assertEquals(6, pool.size(Order.class));
+
+        deserializer.deserializeInto(serializer.serializeToBytes(book(3)), target);
+        assertEquals(2, pool.size(Order.class));
+        assertEquals(3, target.orders.size());
+        assertEquals(-1, target.best.price);
+        assertEquals(2, target.orders.get(2).price);
+    }
+
+    private void assertNotReleased(Order order) {
+        List<Object> free = new ArrayList<>();
+        for (Object obj; (obj = pool.take(Order.class)) != null;) {
+            assertNotSame(order, obj);
+            free.add(obj);
+        }
+        for (Object obj : free) {
+            pool.release(obj);
+        }
+    }
+
+    private static Book book(int count) {
+        Book book = new Book();
+        book.name = "book";
+        book.orders = new ArrayList<>();
+        book.byId = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            Order order = new Order(i);
+            book.orders.add(order);
+            book.byId.put("id-" + i, order);
+        }
+        book.top = book.orders.toArray(new Order[count]);
+        book.best = new Order(-1);
+        return book;
+    }
+
+    static class Book {
+
+        String name;
+        List<Order> orders;
+        Order[] top;
+        Map<String, Order> byId;
+        Order best;
+
+    }
+
+    static class Order {
+
+        int price;
+        String item;
+
+        Order() {
+        }
+
+        Order(int price) {
+            this.price = price;
+            this.item = "item-" + price;
+        }
+
+    }
+
+}
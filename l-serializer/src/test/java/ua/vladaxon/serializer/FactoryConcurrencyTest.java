@@ -0,0 +1,244 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Одновременные вызовы одной {@link LSerializerFactory} из нескольких потоков и пул экземпляров
+ * {@link InstancePool}.
+ */
+public class FactoryConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int CALLS = 300;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @After
+    public void shutDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentCallsMatchSingleThreadedOutput() throws Exception {
+        assertConcurrentCalls(new LSerializerFactory.Builder().build());
+        // Экземпляров меньше, чем потоков: вызовы чередуют пулированные и временные экземпляры
+        assertConcurrentCalls(new LSerializerFactory.Builder().setPoolCapacity(1).setVarintNumbers(true).build());
+        assertConcurrentCalls(new LSerializerFactory.Builder().setPoolCapacity(0).setSkippableObjects(true).build());
+    }
+
+    @Test
+    public void reusesInstanceAfterFailedCall() throws Exception {
+        LSerializerFactory factory = new LSerializerFactory.Builder().setPoolCapacity(1).build();
+        Node graph = graph(3, 40);
+        byte[] expected = factory.newSerializer().serializeToBytes(graph);
+        try {
+            factory.serialize(new FailingStream(10), graph);
+            fail("Write to a failing stream succeeded");
+        } catch (IOException e) {
+            // ожидаемо
+        }
+        assertArrayEquals(expected, factory.serializeToBytes(graph));
+
+        try {
+            factory.deserialize(Arrays.copyOf(expected, expected.length / 2), Node.class);
+            fail("Truncated data was read");
+        } catch (IOException e) {
+            // ожидаемо
+        }
+        assertArrayEquals(expected, factory.serializeToBytes(factory.deserialize(expected, Node.class)));
+    }
+
+    @Test
+    public void lendsInstanceToOneThreadAtATime() throws Exception {
+        final InstancePool<Lease> pool = new InstancePool<Lease>(2) {
+            @Override
+            protected Lease create() {
+                return new Lease();
+            }
+        };
+        final AtomicInteger overlaps = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(new Callable<Void>() {
+
+                @Override
+                public Void call() {
+                    for (int i = 0; i < 10000; i++) {
+                        Lease lease = pool.acquire();
+                        if (!lease.held.compareAndSet(false, true)) {
+                            overlaps.incrementAndGet();
+                        }
+                        Thread.yield();
+                        lease.held.set(false);
+                        pool.release(lease);
+                    }
+                    return null;
+                }
+
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        assertEquals(0, overlaps.get());
+    }
+
+    @Test
+    public void keepsNoMoreThanCapacity() {
+        final AtomicInteger created = new AtomicInteger();
+        InstancePool<Lease> pool = new InstancePool<Lease>(2) {
+            @Override
+            protected Lease create() {
+                created.incrementAndGet();
+                return new Lease();
+            }
+        };
+        Lease first = pool.acquire();
+        Lease second = pool.acquire();
+        Lease third = pool.acquire();
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+        assertEquals(3, created.get());
+
+        assertSame(first, pool.acquire());
+        assertSame(second, pool.acquire());
+        assertNotSame(third, pool.acquire());
+        assertEquals(4, created.get());
+    }
+
+    private void assertConcurrentCalls(final LSerializerFactory factory) throws Exception {
+        final List<Node> graphs = new ArrayList<>();
+        final List<byte[]> expected = new ArrayList<>();
+        LSerializer single = factory.newSerializer();
+        for (int i = 0; i < 16; i++) {
+            Node graph = graph(i % 4 + 1, i * 7);
+            graphs.add(graph);
+            expected.add(single.serializeToBytes(graph));
+        }
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            futures.add(executor.submit(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    for (int i = 0; i < CALLS; i++) {
+                        int index = (thread * 5 + i) % graphs.size();
+                        byte[] bytes = factory.serializeToBytes(graphs.get(index));
+                        assertArrayEquals(expected.get(index), bytes);
+                        Node read = factory.deserialize(bytes, Node.class);
+                        assertArrayEquals(expected.get(index), factory.serializeToBytes(read));
+                    }
+                    return null;
+                }
+
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    /**
+     * Дерево узлов, в котором каждый узел ссылается на родителя, а узлы одного уровня - на общую строку.
+     */
+    private static Node graph(int depth, int seed) {
+        Node root = new Node("root-" + seed, null);
+        List<Node> level = new ArrayList<>();
+        level.add(root);
+        for (int d = 0; d < depth; d++) {
+            String shared = "level-" + d;
+            List<Node> next = new ArrayList<>();
+            for (Node parent : level) {
+                parent.children = new Node[3];
+                for (int i = 0; i < 3; i++) {
+                    Node child = new Node(shared, parent);
+                    child.values = new int[] { seed, d, i };
+                    child.weight = seed * 0.5 + i;
+                    parent.children[i] = child;
+                    next.add(child);
+                }
+            }
+            level = next;
+        }
+        assertTrue(level.size() > 1);
+        return root;
+    }
+
+    static class Node {
+
+        String name;
+        Node parent;
+        Node[] children;
+        int[] values;
+        double weight;
+
+        Node() {
+        }
+
+        Node(String name, Node parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+    }
+
+    static class Lease {
+
+        final AtomicBoolean held = new AtomicBoolean();
+
+    }
+
+    /**
+     * Поток, выбрасывающий исключение после заданного числа байт.
+     */
+    static class FailingStream extends OutputStream {
+
+        private int remaining;
+
+        FailingStream(int remaining) {
+            this.remaining = remaining;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (--remaining < 0) {
+                throw new IOException("Stream is broken");
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            for (int i = 0; i < len; i++) {
+                write(b[off + i]);
+            }
+        }
+
+    }
+
+}
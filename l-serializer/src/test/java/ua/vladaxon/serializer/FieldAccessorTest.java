@@ -0,0 +1,113 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+
+import org.junit.Test;
+
+/**
+ * Доступ к полям {@link AccessorType#METHOD_HANDLE} через скрытые классы, см. {@link MethodHandleAccessors}.
+ */
+public class FieldAccessorTest {
+
+    @Test
+    public void definesHiddenClassPerField() throws Exception {
+        FieldAccessor count = FieldAccessor.create(field(Primitives.class, "i"), AccessorType.METHOD_HANDLE);
+        FieldAccessor name = FieldAccessor.create(field(Base.class, "name"), AccessorType.METHOD_HANDLE);
+        assertTrue(count.getClass().isHidden());
+        assertNotSame(count.getClass(), name.getClass());
+
+        Primitives primitives = new Primitives();
+        count.setInt(primitives, Integer.MIN_VALUE);
+        assertEquals(Integer.MIN_VALUE, count.getInt(primitives));
+        name.setObject(primitives, "set");
+        assertEquals("set", name.getObject(primitives));
+    }
+
+    @Test
+    public void writesSameBytesAsReflection() throws Exception {
+        Primitives primitives = Primitives.sample();
+        byte[] reflection = new LSerializer(AccessorType.REFLECTION).serializeToBytes(primitives);
+        byte[] handles = new LSerializer(AccessorType.METHOD_HANDLE).serializeToBytes(primitives);
+        assertArrayEquals(reflection, handles);
+
+        Primitives read = (Primitives) new LDesirializer(AccessorType.METHOD_HANDLE).deserialize(handles,
+                Primitives.class);
+        assertEquals(primitives.b, read.b);
+        assertEquals(primitives.s, read.s);
+        assertEquals(primitives.i, read.i);
+        assertEquals(primitives.l, read.l);
+        assertEquals(primitives.f, read.f, 0);
+        assertEquals(primitives.d, read.d, 0);
+        assertEquals(primitives.z, read.z);
+        assertEquals(primitives.c, read.c);
+        assertEquals(primitives.fixed, read.fixed);
+        assertEquals("sample", ((Base) read).name);
+        assertSame(read, read.self);
+    }
+
+    @Test
+    public void writesThroughFactoryWithAccessorType() throws Exception {
+        LSerializerFactory factory = new LSerializerFactory.Builder().setAccessorType(AccessorType.METHOD_HANDLE)
+                .setVarintNumbers(true).build();
+        Primitives read = factory.deserialize(factory.serializeToBytes(Primitives.sample()), Primitives.class);
+        assertEquals(Long.MIN_VALUE, read.l);
+        assertEquals(7, read.fixed);
+    }
+
+    private static Field field(Class<?> type, String name) throws NoSuchFieldException {
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+
+    static class Base {
+
+        private String name;
+
+    }
+
+    static class Primitives extends Base {
+
+        private byte b;
+        private short s;
+        private int i;
+        private long l;
+        private float f;
+        private double d;
+        private boolean z;
+        private char c;
+        private final int fixed;
+        private Primitives self;
+
+        Primitives() {
+            this.fixed = 0;
+        }
+
+        Primitives(int fixed) {
+            this.fixed = fixed;
+        }
+
+        static Primitives sample() {
+            Primitives primitives = new Primitives(7);
+            primitives.b = -2;
+            primitives.s = Short.MIN_VALUE;
+            primitives.i = Integer.MAX_VALUE;
+            primitives.l = Long.MIN_VALUE;
+            primitives.f = 1.5f;
+            primitives.d = -0.25;
+            primitives.z = true;
+            primitives.c = 'Ж';
+            primitives.self = primitives;
+            ((Base) primitives).name = "sample";
+            return primitives;
+        }
+
+    }
+
+}
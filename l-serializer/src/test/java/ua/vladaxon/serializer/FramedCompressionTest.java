@@ -0,0 +1,261 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Поток сжатых блоков {@link FramedOutputStream} и {@link FramedInputStream}, алгоритмы
+ * {@link LzCompressor} и {@link DeflateCompressor} и сжатие при сериализации.
+ */
+public class FramedCompressionTest {
+
+    private static final BlockCompressor[] COMPRESSORS = { new LzCompressor(), new DeflateCompressor(),
+            new DeflateCompressor(1) };
+
+    /** Данные после потока блоков, которые не должны быть считаны им. */
+    private static final byte[] TAIL = { 42, 43 };
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+    private final Random random = new Random(11);
+
+    @After
+    public void shutDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void compressorsRestoreBlocks() throws Exception {
+        List<byte[]> blocks = new ArrayList<>();
+        for (int length = 0; length < 24; length++) {
+            blocks.add(text(length));
+        }
+        blocks.add(new byte[100000]);
+        blocks.add(text(100000));
+        blocks.add(noise(70000));
+        // Повтор дальше наибольшего смещения LZ
+        byte[] far = noise(140000);
+        System.arraycopy(far, 0, far, 70000, 70000);
+        blocks.add(far);
+        for (BlockCompressor compressor : COMPRESSORS) {
+            for (byte[] block : blocks) {
+                byte[] packed = new byte[compressor.maxCompressedLength(block.length) + 3];
+                int length = compressor.compress(block, 0, block.length, packed, 3);
+                assertTrue(length <= compressor.maxCompressedLength(block.length));
+                byte[] restored = new byte[block.length + 2];
+                compressor.decompress(packed, 3, length, restored, 2, block.length);
+                assertArrayEquals(block, Arrays.copyOfRange(restored, 2, restored.length));
+            }
+        }
+    }
+
+    @Test
+    public void roundTripsFramesSequentiallyAndInParallel() throws Exception {
+        int[] frameSizes = { 1, 7, 4096, FramedOutputStream.DEFAULT_FRAME_SIZE };
+        for (BlockCompressor compressor : COMPRESSORS) {
+            for (int frameSize : frameSizes) {
+                for (int length : new int[] { 0, 1, frameSize - 1, frameSize, 300000 }) {
+                    if (frameSize == 1 && length > 1000) {
+                        continue;
+                    }
+                    byte[] data = length % 2 == 0 ? text(length) : noise(length);
+                    byte[] framed = frame(compressor, frameSize, data);
+                    assertRead(data, framed, null);
+                    assertRead(data, framed, executor);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void storesIncompressibleFramesAsIs() throws Exception {
+        byte[] data = noise(10000);
+        byte[] framed = frame(new LzCompressor(), 4096, data);
+        assertTrue(framed.length < data.length + 64);
+        byte[] text = text(100000);
+        assertTrue(frame(new LzCompressor(), 4096, text).length < text.length / 2);
+    }
+
+    @Test
+    public void selectsCompressorById() throws Exception {
+        BlockCompressor custom = new StoringCompressor();
+        byte[] data = text(5000);
+        byte[] framed = frame(custom, 1000, data);
+        assertRead(data, framed, null, custom);
+        assertRead(data, framed, executor, custom);
+        assertRejected(framed, StreamCorruptedException.class);
+    }
+
+    @Test
+    public void rejectsCorruptFrames() throws Exception {
+        byte[] data = text(50000);
+        for (BlockCompressor compressor : COMPRESSORS) {
+            byte[] framed = frame(compressor, 4096, data);
+            for (int offset : new int[] { framed.length / 3, framed.length / 2, framed.length - 10 }) {
+                byte[] broken = framed.clone();
+                broken[offset] ^= 0x5A;
+                assertRejected(broken, StreamCorruptedException.class);
+            }
+            // Без завершающего блока и с оборванным блоком
+            assertRejected(Arrays.copyOf(framed, framed.length - TAIL.length - 1), EOFException.class);
+            assertRejected(Arrays.copyOf(framed, framed.length / 2), EOFException.class);
+            byte[] version = framed.clone();
+            version[2]++;
+            assertRejected(version, StreamCorruptedException.class);
+        }
+        assertRejected(new byte[] { 'L', 'F', WireFormat.FRAMED_VERSION, 99, 1 }, StreamCorruptedException.class);
+        assertRejected(new byte[] { 'L', 'S', WireFormat.FRAMED_VERSION, LzCompressor.ID, 1 },
+                StreamCorruptedException.class);
+    }
+
+    @Test
+    public void serializesWithCompression() throws Exception {
+        List<String> graph = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            graph.add("record-" + i % 100);
+        }
+        byte[] plain = new LSerializer().serializeToBytes(graph);
+        for (BlockCompressor compressor : COMPRESSORS) {
+            LSerializer serializer = new LSerializer();
+            serializer.setCompression(compressor);
+            byte[] packed = serializer.serializeToBytes(graph);
+            assertTrue(packed.length < plain.length / 2);
+            assertEquals(graph, new LDesirializer().deserialize(packed, List.class));
+
+            // Сообщения подряд в одном потоке: чтение не выходит за конец потока блоков
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            serializer.serialize(out, graph);
+            serializer.serialize(out, "next");
+            InputStream in = new ByteArrayInputStream(out.toByteArray());
+            LDesirializer deserializer = new LDesirializer();
+            assertEquals(graph, deserializer.deserialize(in, List.class));
+            assertEquals("next", deserializer.deserialize(in, String.class));
+            assertEquals(-1, in.read());
+        }
+    }
+
+    private static byte[] frame(BlockCompressor compressor, int frameSize, byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FramedOutputStream framed = new FramedOutputStream(out, compressor, frameSize);
+        // Запись частями разной длины, включая побайтовую
+        int position = 0;
+        for (int step = 1; position < data.length; step = step * 3 % 9973 + 1) {
+            int length = Math.min(step, data.length - position);
+            if (length == 1) {
+                framed.write(data[position]);
+            } else {
+                framed.write(data, position, length);
+            }
+            position += length;
+        }
+        framed.finish();
+        out.write(TAIL);
+        return out.toByteArray();
+    }
+
+    /**
+     * Считывает поток блоков побайтно и частями и проверяет, что данные после него не считаны.
+     */
+    private static void assertRead(byte[] expected, byte[] framed, ExecutorService executor,
+            BlockCompressor... compressors) throws IOException {
+        ByteArrayInputStream source = new ByteArrayInputStream(framed);
+        FramedInputStream in = executor == null ? new FramedInputStream(source, compressors)
+                : new FramedInputStream(source, executor, 3, compressors);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b = in.read();
+        if (b >= 0) {
+            out.write(b);
+            byte[] chunk = new byte[777];
+            int count;
+            while ((count = in.read(chunk, 0, chunk.length)) > 0) {
+                out.write(chunk, 0, count);
+            }
+        }
+        assertEquals(-1, in.read());
+        assertArrayEquals(expected, out.toByteArray());
+        assertEquals(TAIL[0], source.read());
+    }
+
+    private void assertRejected(byte[] framed, Class<? extends IOException> expected) throws Exception {
+        for (int readAhead = 0; readAhead <= 2; readAhead += 2) {
+            InputStream source = new ByteArrayInputStream(framed);
+            FramedInputStream in = readAhead == 0 ? new FramedInputStream(source)
+                    : new FramedInputStream(source, executor, readAhead);
+            try {
+                byte[] chunk = new byte[4096];
+                while (in.read(chunk, 0, chunk.length) >= 0) {
+                    // читается до конца или ошибки
+                }
+                fail("Corrupt stream was read to the end");
+            } catch (IOException e) {
+                assertTrue(e.toString(), expected.isInstance(e));
+            }
+        }
+    }
+
+    private byte[] text(int length) {
+        StringBuilder text = new StringBuilder(length + 32);
+        while (text.length() < length) {
+            text.append("order ").append(random.nextInt(500)).append(" price ").append(random.nextInt(100)).append('\n');
+        }
+        return Arrays.copyOf(text.toString().getBytes(StandardCharsets.ISO_8859_1), length);
+    }
+
+    private byte[] noise(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Алгоритм с собственным идентификатором, который хранит блоки без сжатия.
+     */
+    static class StoringCompressor implements BlockCompressor {
+
+        @Override
+        public int getId() {
+            return 20;
+        }
+
+        @Override
+        public int maxCompressedLength(int length) {
+            return length + 1;
+        }
+
+        @Override
+        public int compress(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset) {
+            dst[dstOffset] = 1;
+            System.arraycopy(src, srcOffset, dst, dstOffset + 1, length);
+            return length + 1;
+        }
+
+        @Override
+        public void decompress(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset, int originalLength)
+                throws IOException {
+            if (length != originalLength + 1 || src[srcOffset] != 1) {
+                throw new StreamCorruptedException("Corrupted stored block");
+            }
+            System.arraycopy(src, srcOffset + 1, dst, dstOffset, originalLength);
+        }
+
+    }
+
+}
@@ -0,0 +1,204 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ua.vladaxon.serializer.processor.LSerializableProcessor;
+
+/**
+ * Средства доступа к полям, созданные процессором аннотаций для классов с {@link LSerializable}.
+ * Классы компилируются в ходе теста с процессором и без него.
+ */
+public class GeneratedAccessorTest {
+
+    private static final String QUOTE = "package sample;\n"
+            + "import ua.vladaxon.serializer.LSerializable;\n"
+            + "public class Quote extends Base {\n"
+            + "    @LSerializable\n"
+            + "    public static class Tick extends Base {\n"
+            + "        String symbol;\n"
+            + "        double price;\n"
+            + "        long time;\n"
+            + "        int[] sizes;\n"
+            + "        Tick next;\n"
+            + "        boolean last;\n"
+            + "    }\n"
+            + "}\n";
+    private static final String BASE = "package sample;\n"
+            + "public class Base {\n"
+            + "    int id;\n"
+            + "    char side;\n"
+            + "}\n";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void createsAccessorFoundByBinaryName() throws Exception {
+        ClassLoader loader = compile(true);
+        Class<?> tick = loader.loadClass("sample.Quote$Tick");
+        Class<?> accessor = loader.loadClass("sample.Quote$Tick" + GeneratedAccessor.CLASS_SUFFIX);
+        assertTrue(GeneratedAccessor.class.isAssignableFrom(accessor));
+
+        GeneratedAccessor<Object> generated = ClassDescriptor.forClass(tick, AccessorType.REFLECTION).getGenerated();
+        assertNotNull(generated);
+        assertSame(accessor, generated.getClass());
+        assertEquals(Arrays.asList("id", "side", "symbol", "price", "time", "sizes", "next", "last"),
+                Arrays.asList(generated.getNames()));
+        assertNull(ClassDescriptor.forClass(loader.loadClass("sample.Quote"), AccessorType.REFLECTION).getGenerated());
+    }
+
+    @Test
+    public void usesReflectionWithoutProcessor() throws Exception {
+        Class<?> tick = compile(false).loadClass("sample.Quote$Tick");
+        assertTrue(tick.isAnnotationPresent(LSerializable.class));
+        assertNull(ClassDescriptor.forClass(tick, AccessorType.REFLECTION).getGenerated());
+    }
+
+    @Test
+    public void roundTripsInReflectionFormat() throws Exception {
+        Class<?> generatedTick = compile(true).loadClass("sample.Quote$Tick");
+        Class<?> reflectiveTick = compile(false).loadClass("sample.Quote$Tick");
+        for (boolean varintNumbers : new boolean[] { false, true }) {
+            // Классы загружены отдельными загрузчиками, поэтому передаются реестром, а не по имени
+            LSerializerFactory factory = factory(generatedTick, varintNumbers);
+            byte[] bytes = factory.serializeToBytes(ticks(generatedTick));
+            assertArrayEquals(factory(reflectiveTick, varintNumbers).serializeToBytes(ticks(reflectiveTick)), bytes);
+
+            Object read = factory.deserialize(bytes, generatedTick);
+            assertEquals(generatedTick, read.getClass());
+            assertEquals(-7, get(read, "id"));
+            assertEquals('B', get(read, "side"));
+            assertEquals("EURUSD", get(read, "symbol"));
+            assertEquals(1.0845d, get(read, "price"));
+            assertEquals(Long.MAX_VALUE, get(read, "time"));
+            assertArrayEquals(new int[] { 100, 250 }, (int[]) get(read, "sizes"));
+            assertEquals(true, get(read, "last"));
+            Object next = get(read, "next");
+            assertEquals(Integer.MIN_VALUE, get(next, "id"));
+            assertSame(read, get(next, "next"));
+            assertEquals(false, get(next, "last"));
+        }
+    }
+
+    @Test
+    public void rejectsPrivateField() throws Exception {
+        write("sample/Hidden.java", "package sample;\n"
+                + "@ua.vladaxon.serializer.LSerializable\n"
+                + "public class Hidden {\n"
+                + "    private int value;\n"
+                + "}\n");
+        StringWriter errors = new StringWriter();
+        assertFalse(compile(new File(folder.getRoot(), "hidden"), true, errors, "sample/Hidden.java"));
+        assertTrue(errors.toString(), errors.toString().contains("Field sample.Hidden.value must not be private"));
+    }
+
+    private static LSerializerFactory factory(Class<?> tick, boolean varintNumbers) {
+        ClassRegistry registry = new ClassRegistry.Builder().register(tick, 1).build();
+        return new LSerializerFactory.Builder().setClassRegistry(registry).setVarintNumbers(varintNumbers).build();
+    }
+
+    private static Object ticks(Class<?> tick) throws Exception {
+        Object first = tick.getDeclaredConstructor().newInstance();
+        set(first, "id", -7);
+        set(first, "side", 'B');
+        set(first, "symbol", "EURUSD");
+        set(first, "price", 1.0845d);
+        set(first, "time", Long.MAX_VALUE);
+        set(first, "sizes", new int[] { 100, 250 });
+        set(first, "last", true);
+        Object second = tick.getDeclaredConstructor().newInstance();
+        set(second, "id", Integer.MIN_VALUE);
+        set(second, "side", 'S');
+        set(second, "next", first);
+        set(first, "next", second);
+        return first;
+    }
+
+    private ClassLoader compile(boolean process) throws Exception {
+        write("sample/Quote.java", QUOTE);
+        write("sample/Base.java", BASE);
+        File classes = new File(folder.getRoot(), process ? "generated" : "reflective");
+        StringWriter errors = new StringWriter();
+        assertTrue(errors.toString(), compile(classes, process, errors, "sample/Quote.java", "sample/Base.java"));
+        assertEquals(process, new File(classes, "sample/Quote$Tick" + GeneratedAccessor.CLASS_SUFFIX + ".class").isFile());
+        return new URLClassLoader(new URL[] { classes.toURI().toURL() }, getClass().getClassLoader());
+    }
+
+    private boolean compile(File classes, boolean process, StringWriter errors, String... sources) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager files = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            File[] paths = new File[sources.length];
+            for (int i = 0; i < sources.length; i++) {
+                paths[i] = new File(folder.getRoot(), "src/" + sources[i]);
+            }
+            Files.createDirectories(classes.toPath());
+            // Surefire может запускать тесты с classpath из одного jar-файла, поэтому пути берутся по классам
+            String classPath = location(LSerializable.class) + File.pathSeparator + location(LSerializableProcessor.class);
+            List<String> options = new ArrayList<>(Arrays.asList("-classpath", classPath, "-d", classes.getPath()));
+            if (process) {
+                options.addAll(Arrays.asList("-processor", LSerializableProcessor.class.getName()));
+            } else {
+                options.add("-proc:none");
+            }
+            return compiler.getTask(errors, files, null, options, null, files.getJavaFileObjects(paths)).call();
+        }
+    }
+
+    private void write(String name, String source) throws IOException {
+        File file = new File(folder.getRoot(), "src/" + name);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String location(Class<?> type) throws Exception {
+        return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    }
+
+    private static Object get(Object obj, String name) throws Exception {
+        return field(obj.getClass(), name).get(obj);
+    }
+
+    private static void set(Object obj, String name, Object value) throws Exception {
+        field(obj.getClass(), name).set(obj, value);
+    }
+
+    private static Field field(Class<?> type, String name) throws Exception {
+        for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass()) {
+            try {
+                Field field = clazz.getDeclaredField(name);
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException e) {
+                // поле объявлено в предке
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+
+}
@@ -0,0 +1,127 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Отображение объектов на целые числа по ссылочному равенству, см. {@link IdentityIntMap}.
+ */
+public class IdentityIntMapTest {
+
+    @Test
+    public void addsKeyOnlyOnce() {
+        IdentityIntMap map = new IdentityIntMap(4);
+        Object key = new Object();
+        assertEquals(IdentityIntMap.ABSENT, map.get(key));
+        assertEquals(IdentityIntMap.ABSENT, map.putIfAbsent(key, 7));
+        assertEquals(7, map.putIfAbsent(key, 8));
+        assertEquals(7, map.get(key));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void distinguishesEqualButNotIdenticalKeys() {
+        IdentityIntMap map = new IdentityIntMap(4);
+        String first = new String("key");
+        String second = new String("key");
+        Object[] sameHash = { new SameHash(), new SameHash(), new SameHash() };
+        assertEquals(IdentityIntMap.ABSENT, map.putIfAbsent(first, 0));
+        assertEquals(IdentityIntMap.ABSENT, map.putIfAbsent(second, 1));
+        for (int i = 0; i < sameHash.length; i++) {
+            assertEquals(IdentityIntMap.ABSENT, map.putIfAbsent(sameHash[i], 2 + i));
+        }
+        assertEquals(0, map.get(first));
+        assertEquals(1, map.get(second));
+        assertEquals(IdentityIntMap.ABSENT, map.get(new String("key")));
+        for (int i = 0; i < sameHash.length; i++) {
+            assertEquals(2 + i, map.get(sameHash[i]));
+        }
+        assertEquals(IdentityIntMap.ABSENT, map.get(new SameHash()));
+        assertEquals(5, map.size());
+    }
+
+    @Test
+    public void growsAndRehashesKeys() {
+        IdentityIntMap map = new IdentityIntMap(2);
+        List<Object> keys = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            Object key = i % 2 == 0 ? new Object() : Integer.valueOf(i);
+            keys.add(key);
+            assertEquals(IdentityIntMap.ABSENT, map.putIfAbsent(key, i));
+            assertEquals(i + 1, map.size());
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(i, map.get(keys.get(i)));
+            assertEquals(i, map.putIfAbsent(keys.get(i), Integer.MAX_VALUE));
+        }
+        assertEquals(keys.size(), map.size());
+    }
+
+    @Test
+    public void keepsCapacityAfterClear() {
+        IdentityIntMap map = new IdentityIntMap(8);
+        List<Object> keys = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            keys.add(new Object());
+            map.putIfAbsent(keys.get(i), i);
+        }
+        map.clear();
+        assertEquals(0, map.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(IdentityIntMap.ABSENT, map.get(keys.get(i)));
+        }
+        // Повторное заполнение назначает ключам новые значения
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(IdentityIntMap.ABSENT, map.putIfAbsent(keys.get(keys.size() - 1 - i), i));
+        }
+        assertEquals(keys.size() - 1, map.get(keys.get(0)));
+        map.clear();
+        map.clear();
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void sharesEqualStringsOnlyByIdentityInSerializedGraph() throws Exception {
+        Holder holder = new Holder();
+        holder.first = new String("equal");
+        holder.second = new String("equal");
+        holder.third = holder.first;
+        Holder read = (Holder) new LDesirializer().deserialize(new LSerializer().serializeToBytes(holder),
+                Holder.class);
+        assertEquals("equal", read.second);
+        assertSame(read.first, read.third);
+        assertNotSame(read.first, read.second);
+    }
+
+    /**
+     * Ключ, равный всем ключам своего класса и с одинаковым хэш-кодом.
+     */
+    static final class SameHash {
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof SameHash;
+        }
+
+        @Override
+        public int hashCode() {
+            return 1;
+        }
+
+    }
+
+    static class Holder {
+
+        String first;
+        String second;
+        String third;
+
+    }
+
+}
@@ -0,0 +1,200 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Кадры содержимого объектов {@link LSerializer#setSkippableObjects(boolean)} и частичное чтение
+ * {@link LDesirializer#deserializeLazy(byte[])}.
+ */
+public class LazyGraphTest {
+
+    private final LSerializerFactory factory = new LSerializerFactory.Builder().setSkippableObjects(true).build();
+
+    @Test
+    public void readsEnvelopeWithoutPayload() throws Exception {
+        LazyObject root = factory.deserializeLazy(factory.serializeToBytes(envelope(50)));
+        assertEquals(Envelope.class, root.getType());
+        assertEquals("orders/eu", root.get("header.route"));
+        assertEquals(7, root.get("header.priority"));
+        assertEquals(Arrays.asList("a", "b"), root.get("header.tags"));
+
+        LazyObject payload = root.getObject("payload");
+        assertEquals(Payload.class, payload.getType());
+        assertFalse(payload.isMaterialized());
+        assertFalse(root.isMaterialized());
+        assertNull(root.get("missing"));
+    }
+
+    @Test
+    public void followsPathsIntoArraysAndLists() throws Exception {
+        LazyObject root = factory.deserializeLazy(factory.serializeToBytes(envelope(50)));
+        assertEquals(50, root.getObject("payload.orders").getLength());
+        assertEquals(13.5, root.get("payload.orders.27.price"));
+        assertEquals(27L, root.get("payload.list.27.id"));
+        assertNull(root.get("payload.orders.49"));
+        assertNull(root.get("payload.orders.49.price"));
+        assertArrayEquals(new int[] { 1, 2, 3 }, (int[]) root.get("payload.values"));
+
+        LazyObject order = root.getObject("payload.list.3");
+        assertFalse(order.isMaterialized());
+        Order materialized = (Order) order.materialize();
+        assertTrue(order.isMaterialized());
+        assertSame(materialized, root.get("payload.orders.3"));
+    }
+
+    @Test
+    public void sharesObjectsBetweenHandles() throws Exception {
+        Envelope envelope = envelope(20);
+        byte[] bytes = factory.serializeToBytes(envelope);
+
+        // Заголовок создается раньше полезной нагрузки, которая ссылается на него
+        LazyObject root = factory.deserializeLazy(bytes);
+        Header header = (Header) root.get("header");
+        Payload payload = (Payload) root.get("payload");
+        assertSame(header, payload.header);
+        assertSame(payload.orders[5], payload.byId.get("order-5"));
+        assertSame(payload.orders[5], payload.list.get(5));
+
+        // Полезная нагрузка создается первой, ссылка на заголовок ведет в пропущенный кадр
+        root = factory.deserializeLazy(bytes);
+        payload = (Payload) root.get("payload");
+        assertSame(payload.header, root.get("header"));
+        Envelope whole = (Envelope) root.materialize();
+        assertSame(payload, whole.payload);
+        assertSame(whole, payload.header.owner);
+    }
+
+    @Test
+    public void materializesSameGraphAsFullRead() throws Exception {
+        for (LSerializerFactory factory : new LSerializerFactory[] { this.factory,
+                new LSerializerFactory.Builder().setSkippableObjects(true).setVarintNumbers(true).build(),
+                new LSerializerFactory.Builder().setSkippableObjects(true).setCompression(new LzCompressor()).build() }) {
+            byte[] bytes = factory.serializeToBytes(envelope(30));
+            byte[] plain = new LSerializer().serializeToBytes(envelope(30));
+            Object lazy = factory.deserializeLazy(bytes).materialize();
+            Object full = factory.deserialize(bytes, Envelope.class);
+            assertArrayEquals(plain, new LSerializer().serializeToBytes(lazy));
+            assertArrayEquals(plain, new LSerializer().serializeToBytes(full));
+        }
+    }
+
+    @Test
+    public void rejectsPathsOutsideGraph() throws Exception {
+        LazyObject root = factory.deserializeLazy(factory.serializeToBytes(envelope(5)));
+        for (String path : new String[] { "nothing", "header.route.length", "payload.orders.x", "payload.byId.0",
+                "" }) {
+            try {
+                root.get(path);
+                fail("Path was accepted: " + path);
+            } catch (IllegalArgumentException e) {
+                // ожидаемо
+            }
+        }
+        try {
+            root.getObject("header.route");
+            fail("String has no handle");
+        } catch (IllegalArgumentException e) {
+            // ожидаемо
+        }
+        try {
+            root.get("payload.orders.5");
+            fail("Index beyond the array was accepted");
+        } catch (IndexOutOfBoundsException e) {
+            // ожидаемо
+        }
+    }
+
+    @Test
+    public void rejectsDataWithoutFrames() throws Exception {
+        try {
+            factory.deserializeLazy(new LSerializer().serializeToBytes(envelope(5)));
+            fail("Data without frames was read lazily");
+        } catch (StreamCorruptedException e) {
+            // ожидаемо
+        }
+        byte[] bytes = factory.serializeToBytes(envelope(5));
+        try {
+            factory.deserialize(Arrays.copyOf(bytes, bytes.length - 3), Envelope.class);
+            fail("Truncated data was read");
+        } catch (IOException e) {
+            // ожидаемо
+        }
+    }
+
+    private static Envelope envelope(int count) {
+        Envelope envelope = new Envelope();
+        Header header = new Header();
+        header.route = "orders/eu";
+        header.priority = 7;
+        header.tags = new ArrayList<>(Arrays.asList("a", "b"));
+        header.owner = envelope;
+        Payload payload = new Payload();
+        payload.header = header;
+        payload.orders = new Order[count];
+        payload.list = new ArrayList<>();
+        payload.byId = new HashMap<>();
+        for (int i = 0; i < count - 1; i++) {
+            Order order = new Order();
+            order.id = i;
+            order.price = i * 0.5;
+            payload.orders[i] = order;
+            payload.list.add(order);
+            payload.byId.put("order-" + i, order);
+        }
+        payload.values = new int[] { 1, 2, 3 };
+        envelope.header = header;
+        envelope.payload = payload;
+        return envelope;
+    }
+
+    static class Envelope {
+
+        Header header;
+        Payload payload;
+        Object missing;
+
+    }
+
+    static class Header {
+
+        String route;
+        int priority;
+        List<String> tags;
+        Envelope owner;
+
+    }
+
+    static class Payload {
+
+        Header header;
+        Order[] orders;
+        List<Order> list;
+        Map<String, Order> byId;
+        int[] values;
+
+    }
+
+    static class Order {
+
+        long id;
+        double price;
+
+    }
+
+}
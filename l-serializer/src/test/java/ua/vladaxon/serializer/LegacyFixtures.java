@@ -0,0 +1,142 @@
+package ua.vladaxon.serializer;
+
+/**
+ * Классы и образцы объектов, байты которых записаны исходной версией сериализатора в ресурсы
+ * {@code legacy-*.bin}, см. {@link LegacyFormatTest}. Классы не должны меняться: порядок
+ * и типы их полей зафиксированы в записанных байтах. Строки в образцах не используются,
+ * так как исходная версия записывает внутренние поля {@link String}, зависящие от JDK.
+ */
+final class LegacyFixtures {
+
+    enum Color {
+        RED, GREEN, BLUE
+    }
+
+    static class Base {
+
+        long baseId;
+
+    }
+
+    static class Primitives extends Base {
+
+        byte b;
+        short s;
+        int i;
+        long l;
+        float f;
+        double d;
+        boolean z;
+        char c;
+
+    }
+
+    static class Node {
+
+        int value;
+        Node next;
+        Color color;
+        Node[] children;
+
+    }
+
+    static class Sample {
+
+        Primitives primitives;
+        Node first;
+        Node second;
+        Node shared;
+        int[] ints;
+        double[] doubles;
+        boolean[] flags;
+        char[] chars;
+        byte[] bytes;
+        Object[] mixed;
+        Color color;
+        Node missing;
+        transient int cached;
+
+    }
+
+    /** Корневой объект, первые байты которого совпадают с сигнатурой текущего формата. */
+    static class SignatureLike {
+
+        short tag;
+        int version;
+        long payload;
+
+    }
+
+    /** Корневой объект, первые байты которого совпадают с сигнатурой потока сжатых блоков. */
+    static class FramedLike {
+
+        int tag;
+        long payload;
+
+    }
+
+    private LegacyFixtures() {
+    }
+
+    static Sample sample() {
+        Primitives primitives = new Primitives();
+        primitives.baseId = -7;
+        primitives.b = -2;
+        primitives.s = 300;
+        primitives.i = Integer.MIN_VALUE;
+        primitives.l = Long.MAX_VALUE;
+        primitives.f = 1.5f;
+        primitives.d = Math.PI;
+        primitives.z = true;
+        primitives.c = '\u0416';
+        Node shared = new Node();
+        shared.value = 99;
+        shared.color = Color.BLUE;
+        Node first = new Node();
+        first.value = 1;
+        first.color = Color.RED;
+        Node second = new Node();
+        second.value = 2;
+        second.color = Color.GREEN;
+        // Цикл между объектами и общий объект, на который ссылаются из нескольких мест
+        first.next = second;
+        second.next = first;
+        first.children = new Node[] { shared, null, shared };
+        Sample sample = new Sample();
+        sample.primitives = primitives;
+        sample.first = first;
+        sample.second = second;
+        sample.shared = shared;
+        sample.ints = new int[] { 1, -1, Integer.MAX_VALUE, 0 };
+        sample.doubles = new double[] { 0.25, -0.0, Double.NaN };
+        sample.flags = new boolean[] { true, false, true };
+        sample.chars = new char[] { 'a', '\u044F' };
+        sample.bytes = new byte[] { 1, 2, (byte) 0xFF };
+        sample.mixed = new Object[] { shared, new int[] { 5 }, Color.GREEN, null };
+        sample.color = Color.GREEN;
+        sample.cached = 42;
+        return sample;
+    }
+
+    static SignatureLike signatureLike() {
+        SignatureLike value = new SignatureLike();
+        value.tag = 0x4C53;
+        value.payload = 0x0102030405060708L;
+        return value;
+    }
+
+    static SignatureLike signatureLikeFlags() {
+        SignatureLike value = signatureLike();
+        // Байт версии совпадает с текущей версией, но флаги недопустимы
+        value.version = 0x02C00000;
+        return value;
+    }
+
+    static FramedLike framedLike() {
+        FramedLike value = new FramedLike();
+        value.tag = 0x4C460100;
+        value.payload = -1;
+        return value;
+    }
+
+}
@@ -0,0 +1,153 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+import ua.vladaxon.serializer.LegacyFixtures.Color;
+import ua.vladaxon.serializer.LegacyFixtures.FramedLike;
+import ua.vladaxon.serializer.LegacyFixtures.Node;
+import ua.vladaxon.serializer.LegacyFixtures.Sample;
+import ua.vladaxon.serializer.LegacyFixtures.SignatureLike;
+
+/**
+ * Чтение байт, записанных исходной версией сериализатора. Ресурсы {@code legacy-*.bin}
+ * записаны ею из образцов {@link LegacyFixtures} и не перезаписываются.
+ */
+public class LegacyFormatTest {
+
+    @Test
+    public void readsSampleWithEveryAccessorType() throws Exception {
+        byte[] bytes = resource("legacy-sample.bin");
+        for (AccessorType type : AccessorType.values()) {
+            assertSample((Sample) new LDesirializer(type).deserialize(bytes, Sample.class));
+        }
+    }
+
+    @Test
+    public void readsSampleFromStreamWithoutMark() throws Exception {
+        byte[] bytes = resource("legacy-sample.bin");
+        InputStream in = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+
+        };
+        assertSample((Sample) new LDesirializer().deserialize(in, Sample.class));
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void readsRootStartingWithSignature() throws Exception {
+        SignatureLike value = (SignatureLike) new LDesirializer().deserialize(resource("legacy-signature.bin"),
+                SignatureLike.class);
+        SignatureLike expected = LegacyFixtures.signatureLike();
+        assertEquals(expected.tag, value.tag);
+        assertEquals(expected.version, value.version);
+        assertEquals(expected.payload, value.payload);
+    }
+
+    @Test
+    public void readsRootStartingWithSignatureAndVersion() throws Exception {
+        SignatureLike value = (SignatureLike) new LDesirializer().deserialize(resource("legacy-signature-flags.bin"),
+                SignatureLike.class);
+        SignatureLike expected = LegacyFixtures.signatureLikeFlags();
+        assertEquals(expected.tag, value.tag);
+        assertEquals(expected.version, value.version);
+        assertEquals(expected.payload, value.payload);
+    }
+
+    @Test
+    public void readsRootStartingWithFramedSignature() throws Exception {
+        FramedLike value = (FramedLike) new LDesirializer().deserialize(resource("legacy-framed.bin"), FramedLike.class);
+        FramedLike expected = LegacyFixtures.framedLike();
+        assertEquals(expected.tag, value.tag);
+        assertEquals(expected.payload, value.payload);
+    }
+
+    @Test
+    public void currentFormatOfSameObjectsStillReadsAsCurrent() throws Exception {
+        byte[] bytes = new LSerializer().serializeToBytes(LegacyFixtures.signatureLike());
+        assertEquals(WireFormat.MAGIC_0, bytes[0]);
+        SignatureLike value = (SignatureLike) new LDesirializer().deserialize(bytes, SignatureLike.class);
+        assertEquals(0x4C53, value.tag);
+        assertSample((Sample) new LDesirializer().deserialize(new LSerializer().serializeToBytes(LegacyFixtures.sample()),
+                Sample.class));
+    }
+
+    private static void assertSample(Sample sample) {
+        Sample expected = LegacyFixtures.sample();
+        assertEquals(expected.primitives.baseId, sample.primitives.baseId);
+        assertEquals(expected.primitives.b, sample.primitives.b);
+        assertEquals(expected.primitives.s, sample.primitives.s);
+        assertEquals(expected.primitives.i, sample.primitives.i);
+        assertEquals(expected.primitives.l, sample.primitives.l);
+        assertEquals(expected.primitives.f, sample.primitives.f, 0);
+        assertEquals(expected.primitives.d, sample.primitives.d, 0);
+        assertEquals(expected.primitives.z, sample.primitives.z);
+        assertEquals(expected.primitives.c, sample.primitives.c);
+        assertEquals(1, sample.first.value);
+        assertEquals(2, sample.second.value);
+        assertEquals(Color.RED, sample.first.color);
+        assertEquals(Color.GREEN, sample.second.color);
+        assertSame(sample.second, sample.first.next);
+        assertSame(sample.first, sample.second.next);
+        assertNull(sample.second.children);
+        Node shared = sample.shared;
+        assertEquals(99, shared.value);
+        assertEquals(Color.BLUE, shared.color);
+        assertEquals(3, sample.first.children.length);
+        assertSame(shared, sample.first.children[0]);
+        assertNull(sample.first.children[1]);
+        assertSame(shared, sample.first.children[2]);
+        assertArrayEquals(expected.ints, sample.ints);
+        assertArrayEquals(expected.doubles, sample.doubles, 0);
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(sample.doubles[1]));
+        assertTrue(Double.isNaN(sample.doubles[2]));
+        assertEquals(expected.flags.length, sample.flags.length);
+        for (int i = 0; i < expected.flags.length; i++) {
+            assertEquals(expected.flags[i], sample.flags[i]);
+        }
+        assertArrayEquals(expected.chars, sample.chars);
+        assertArrayEquals(expected.bytes, sample.bytes);
+        assertEquals(4, sample.mixed.length);
+        assertSame(shared, sample.mixed[0]);
+        assertArrayEquals(new int[] { 5 }, (int[]) sample.mixed[1]);
+        assertEquals(Color.GREEN, sample.mixed[2]);
+        assertNull(sample.mixed[3]);
+        assertEquals(Color.GREEN, sample.color);
+        assertNull(sample.missing);
+        assertEquals(expected.cached, sample.cached);
+    }
+
+    private static byte[] resource(String name) throws IOException {
+        InputStream in = LegacyFormatTest.class.getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("Missing test resource " + name);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            int count;
+            while ((count = in.read(chunk)) > 0) {
+                out.write(chunk, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Запись массивов примитивов блоками, см. {@link Encoder#writePrimitiveArray(int, Object, int)}.
+ */
+public class PrimitiveArrayTest {
+
+    /** Число элементов, при котором массив любого типа больше буферов кодировщика и декодировщика. */
+    private static final int LARGE = TypeCode.BLOCK_SIZE + 1001;
+
+    @Test
+    public void roundTripsEdgeValuesOfEveryType() throws Exception {
+        AllTypes arrays = new AllTypes();
+        arrays.booleans = new boolean[] { true, false, true };
+        arrays.bytes = new byte[] { Byte.MIN_VALUE, -1, 0, Byte.MAX_VALUE };
+        arrays.shorts = new short[] { Short.MIN_VALUE, -1, 0, Short.MAX_VALUE };
+        arrays.chars = new char[] { 0, 'a', 'Ж', '\ud800', Character.MAX_VALUE };
+        arrays.ints = new int[] { Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE };
+        arrays.longs = new long[] { Long.MIN_VALUE, -1, 0, Long.MAX_VALUE };
+        arrays.floats = new float[] { Float.NEGATIVE_INFINITY, -0.0f, Float.MIN_VALUE, Float.MAX_VALUE,
+                Float.intBitsToFloat(0x7FC00001) };
+        arrays.doubles = new double[] { Double.NEGATIVE_INFINITY, -0.0, Double.MIN_VALUE, Double.MAX_VALUE,
+                Double.longBitsToDouble(0x7FF8000000000001L) };
+        assertArrays(arrays, roundTrip(arrays));
+    }
+
+    @Test
+    public void roundTripsEmptyArrays() throws Exception {
+        AllTypes arrays = AllTypes.filled(0);
+        AllTypes read = roundTrip(arrays);
+        assertArrays(arrays, read);
+        assertEquals(0, read.longs.length);
+    }
+
+    @Test
+    public void writesElementsWithoutPerElementOverhead() throws Exception {
+        for (Class<?> type : AllTypes.TYPES) {
+            int empty = new LSerializer().serializeToBytes(Array.newInstance(type, 0)).length;
+            int large = new LSerializer().serializeToBytes(Array.newInstance(type, LARGE)).length;
+            // Длина массива занимает два байта вместо одного
+            assertEquals(type.getName(), LARGE * TypeCode.sizeOf(TypeCode.of(type)) + 1, large - empty);
+        }
+    }
+
+    @Test
+    public void roundTripsArraysLargerThanBuffer() throws Exception {
+        AllTypes arrays = AllTypes.filled(LARGE);
+        assertArrays(arrays, roundTrip(arrays));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new LSerializer().serialize(out, arrays);
+        byte[] bytes = out.toByteArray();
+        assertArrayEquals(new LSerializer().serializeToBytes(arrays), bytes);
+        for (int chunk : new int[] { 1, 7, 4093 }) {
+            InputStream in = new ChunkedInputStream(new ByteArrayInputStream(bytes), chunk);
+            assertArrays(arrays, (AllTypes) new LDesirializer().deserialize(in, AllTypes.class));
+        }
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        new LSerializer().serialize(direct, arrays);
+        direct.flip();
+        assertArrays(arrays, (AllTypes) new LDesirializer().deserialize(direct, AllTypes.class));
+    }
+
+    @Test
+    public void roundTripsNestedPrimitiveArrays() throws Exception {
+        int[][] matrix = { {}, { 1 }, null, new int[LARGE] };
+        matrix[3][LARGE - 1] = -7;
+        int[][] read = roundTrip(matrix);
+        assertEquals(matrix.length, read.length);
+        for (int i = 0; i < matrix.length; i++) {
+            assertArrayEquals(matrix[i], read[i]);
+        }
+        Object[] mixed = { new double[] { 1.5 }, new char[] { 'x' }, new boolean[0] };
+        Object[] mixedRead = roundTrip(mixed);
+        assertTrue(mixedRead[0] instanceof double[]);
+        assertArrayEquals((char[]) mixed[1], (char[]) mixedRead[1]);
+        assertEquals(0, ((boolean[]) mixedRead[2]).length);
+    }
+
+    private static void assertArrays(AllTypes expected, AllTypes actual) {
+        assertTrue(Arrays.equals(expected.booleans, actual.booleans));
+        assertArrayEquals(expected.bytes, actual.bytes);
+        assertArrayEquals(expected.shorts, actual.shorts);
+        assertArrayEquals(expected.chars, actual.chars);
+        assertArrayEquals(expected.ints, actual.ints);
+        assertArrayEquals(expected.longs, actual.longs);
+        assertEquals(expected.floats.length, actual.floats.length);
+        for (int i = 0; i < expected.floats.length; i++) {
+            assertEquals(Float.floatToRawIntBits(expected.floats[i]), Float.floatToRawIntBits(actual.floats[i]));
+        }
+        assertEquals(expected.doubles.length, actual.doubles.length);
+        for (int i = 0; i < expected.doubles.length; i++) {
+            assertEquals(Double.doubleToRawLongBits(expected.doubles[i]),
+                    Double.doubleToRawLongBits(actual.doubles[i]));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T value) throws Exception {
+        return (T) new LDesirializer().deserialize(new LSerializer().serializeToBytes(value), Object.class);
+    }
+
+    static class AllTypes {
+
+        static final Class<?>[] TYPES = { boolean.class, byte.class, short.class, char.class, int.class, long.class,
+                float.class, double.class };
+
+        boolean[] booleans;
+        byte[] bytes;
+        short[] shorts;
+        char[] chars;
+        int[] ints;
+        long[] longs;
+        float[] floats;
+        double[] doubles;
+
+        static AllTypes filled(int length) {
+            AllTypes arrays = new AllTypes();
+            arrays.booleans = new boolean[length];
+            arrays.bytes = new byte[length];
+            arrays.shorts = new short[length];
+            arrays.chars = new char[length];
+            arrays.ints = new int[length];
+            arrays.longs = new long[length];
+            arrays.floats = new float[length];
+            arrays.doubles = new double[length];
+            for (int i = 0; i < length; i++) {
+                arrays.booleans[i] = i % 3 == 0;
+                arrays.bytes[i] = (byte) i;
+                arrays.shorts[i] = (short) (i * 7);
+                arrays.chars[i] = (char) (i * 13);
+                arrays.ints[i] = i * 100003;
+                arrays.longs[i] = i * 1000000007L;
+                arrays.floats[i] = i / 3f;
+                arrays.doubles[i] = -i / 7.0;
+            }
+            return arrays;
+        }
+
+    }
+
+    /**
+     * Поток, отдающий данные частями не больше заданного размера.
+     */
+    static class ChunkedInputStream extends FilterInputStream {
+
+        private final int chunk;
+
+        ChunkedInputStream(InputStream in, int chunk) {
+            super(in);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            return super.read(bytes, offset, Math.min(length, chunk));
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+    }
+
+}
@@ -0,0 +1,257 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Пошаговое чтение {@link LPushDecoder} последовательности объектов, поступающих частями.
+ */
+public class PushDecoderTest {
+
+    /** Фабрика без отслеживания ссылок, для нее граф записывается без циклов. */
+    private static final LSerializerFactory UNTRACKED = new LSerializerFactory.Builder().setReferenceTracking(false)
+            .build();
+
+    private final Random random = new Random(5);
+
+    @Test
+    public void readsOneByteFragments() throws Exception {
+        for (LSerializerFactory factory : factories()) {
+            List<Object> messages = messages(factory != UNTRACKED);
+            byte[] stream = write(factory, messages);
+            LPushDecoder<Object> decoder = new LPushDecoder<>(Object.class, factory);
+            List<Object> read = new ArrayList<>();
+            ByteBuffer fragment = ByteBuffer.allocate(1);
+            for (byte b : stream) {
+                fragment.clear();
+                fragment.put(b).flip();
+                decoder.feed(fragment, read);
+                assertEquals(0, fragment.remaining());
+            }
+            assertEquals(0, decoder.getPendingBytes());
+            assertMessages(factory, messages, read);
+        }
+    }
+
+    @Test
+    public void readsRandomFragmentsOfReusedBuffers() throws Exception {
+        for (LSerializerFactory factory : factories()) {
+            List<Object> messages = messages(factory != UNTRACKED);
+            byte[] stream = write(factory, messages);
+            for (boolean direct : new boolean[] { false, true }) {
+                LPushDecoder<Object> decoder = new LPushDecoder<>(Object.class, factory);
+                List<Object> read = new ArrayList<>();
+                ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(64) : ByteBuffer.allocate(64);
+                for (int position = 0; position < stream.length;) {
+                    int length = Math.min(1 + random.nextInt(64), stream.length - position);
+                    buffer.clear();
+                    buffer.put(stream, position, length).flip();
+                    decoder.feed(direct || random.nextBoolean() ? buffer : buffer.asReadOnlyBuffer(), read);
+                    position += length;
+                    // Часть можно изменять после возврата: прерванное поле сохранено экземпляром
+                    buffer.clear();
+                    while (buffer.hasRemaining()) {
+                        buffer.put((byte) 0x7F);
+                    }
+                }
+                assertMessages(factory, messages, read);
+            }
+        }
+    }
+
+    @Test
+    public void completesObjectOnItsLastByte() throws Exception {
+        LSerializer serializer = new LSerializer();
+        byte[] first = serializer.serializeToBytes(node("first", 3));
+        byte[] second = serializer.serializeToBytes("second");
+        LPushDecoder<Object> decoder = new LPushDecoder<>(Object.class);
+        List<Object> read = new ArrayList<>();
+
+        assertEquals(0, decoder.feed(ByteBuffer.wrap(first, 0, first.length - 1), read));
+        assertTrue(decoder.getPendingBytes() < first.length);
+        byte[] rest = Arrays.copyOf(Arrays.copyOfRange(first, first.length - 1, first.length), 2);
+        rest[1] = second[0];
+        assertEquals(1, decoder.feed(ByteBuffer.wrap(rest), read));
+        assertEquals("first", ((Node) read.get(0)).name);
+        assertEquals(1, decoder.feed(ByteBuffer.wrap(second, 1, second.length - 1), read));
+        assertEquals("second", read.get(1));
+        assertEquals(0, decoder.feed(ByteBuffer.allocate(0), read));
+    }
+
+    @Test
+    public void keepsOnlyInterruptedFieldBetweenFragments() throws Exception {
+        Node root = node("root", 0);
+        char[] text = new char[10000];
+        Arrays.fill(text, 'x');
+        List<Node> children = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Node child = node(new String(text) + i, i);
+            child.parent = root;
+            children.add(child);
+        }
+        root.children = children;
+        byte[] bytes = new LSerializer().serializeToBytes(root);
+        assertTrue(bytes.length > 200000);
+
+        LPushDecoder<Node> decoder = new LPushDecoder<>(Node.class);
+        List<Node> read = new ArrayList<>();
+        int maxPending = 0;
+        for (int position = 0; position < bytes.length; position += 100) {
+            decoder.feed(ByteBuffer.wrap(bytes, position, Math.min(100, bytes.length - position)), read);
+            maxPending = Math.max(maxPending, decoder.getPendingBytes());
+        }
+        assertEquals(1, read.size());
+        assertTrue(String.valueOf(maxPending), maxPending < 10100);
+        Node readRoot = read.get(0);
+        assertEquals(20, readRoot.children.size());
+        assertSame(readRoot, readRoot.children.get(19).parent);
+        assertEquals(new String(text) + 19, readRoot.children.get(19).name);
+    }
+
+    @Test
+    public void closesWhenPendingBytesExceedLimit() throws Exception {
+        char[] text = new char[5000];
+        Arrays.fill(text, 'y');
+        byte[] bytes = new LSerializer().serializeToBytes(new String(text));
+        LPushDecoder<String> decoder = new LPushDecoder<>(String.class);
+        decoder.setMaxPendingBytes(1000);
+        List<String> read = new ArrayList<>();
+        try {
+            for (int position = 0; position < bytes.length; position += 500) {
+                decoder.feed(ByteBuffer.wrap(bytes, position, Math.min(500, bytes.length - position)), read);
+            }
+            fail("Pending bytes exceeded the limit");
+        } catch (StreamCorruptedException e) {
+            // ожидаемо
+        }
+        assertEquals(0, decoder.getPendingBytes());
+        assertClosed(decoder);
+    }
+
+    @Test
+    public void closesOnCorruptData() throws Exception {
+        byte[] bytes = new LSerializer().serializeToBytes(node("node", 2));
+        bytes[0] = 'X';
+        LPushDecoder<Object> decoder = new LPushDecoder<>(Object.class);
+        try {
+            for (byte b : bytes) {
+                decoder.feed(ByteBuffer.wrap(new byte[] { b }), new ArrayList<>());
+            }
+            fail("Corrupt data was read");
+        } catch (StreamCorruptedException e) {
+            // ожидаемо
+        }
+        assertClosed(decoder);
+    }
+
+    private static void assertClosed(LPushDecoder<?> decoder) throws Exception {
+        try {
+            decoder.feed(ByteBuffer.allocate(1), new ArrayList<>());
+            fail("Closed decoder accepted data");
+        } catch (IllegalStateException e) {
+            // ожидаемо
+        }
+    }
+
+    private static List<LSerializerFactory> factories() {
+        List<LSerializerFactory> factories = new ArrayList<>();
+        factories.add(new LSerializerFactory());
+        factories.add(new LSerializerFactory.Builder().setVarintNumbers(true).build());
+        factories.add(new LSerializerFactory.Builder().setSkippableObjects(true).build());
+        factories.add(UNTRACKED);
+        return factories;
+    }
+
+    private static List<Object> messages(boolean cycles) {
+        List<Object> messages = new ArrayList<>();
+        Node cyclic = node("cyclic", 5);
+        for (Node child : cyclic.children) {
+            child.parent = cycles ? cyclic : null;
+        }
+        messages.add(node("plain", 3));
+        messages.add(null);
+        messages.add("строка ∑ 𝄞 " + Long.MAX_VALUE);
+        messages.add(new long[] { Long.MIN_VALUE, -1, 0, 1, Long.MAX_VALUE });
+        messages.add(new ArrayList<>(Arrays.asList(1, "two", 3.0, null)));
+        messages.add(cyclic);
+        messages.add(node("", 0));
+        return messages;
+    }
+
+    private static Node node(String name, int children) {
+        Node node = new Node();
+        node.name = name;
+        node.count = -children;
+        node.total = Long.MIN_VALUE + children;
+        node.ratio = children / 3.0;
+        node.values = new int[children];
+        node.byName = new HashMap<>();
+        node.children = new ArrayList<>();
+        for (int i = 0; i < children; i++) {
+            node.values[i] = i * 1000;
+            Node child = node(name + "-" + i, 0);
+            node.children.add(child);
+            node.byName.put(child.name, child);
+        }
+        return node;
+    }
+
+    private static byte[] write(LSerializerFactory factory, List<Object> messages) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Object message : messages) {
+            factory.serialize(out, message);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Сравнивает объекты, считанные по частям, с объектами, считанными из сообщений целиком.
+     */
+    private static void assertMessages(LSerializerFactory factory, List<Object> expected, List<Object> read)
+            throws Exception {
+        assertEquals(expected.size(), read.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Object whole = factory.deserialize(factory.serializeToBytes(expected.get(i)), Object.class);
+            if (whole == null) {
+                assertNull(read.get(i));
+                continue;
+            }
+            assertArrayEquals(factory.serializeToBytes(whole), factory.serializeToBytes(read.get(i)));
+        }
+        Node cyclic = (Node) read.get(5);
+        if (cyclic.children.get(0).parent != null) {
+            assertSame(cyclic, cyclic.children.get(4).parent);
+            assertSame(cyclic.children.get(2), cyclic.byName.get("cyclic-2"));
+        }
+    }
+
+    static class Node {
+
+        String name;
+        int count;
+        long total;
+        double ratio;
+        int[] values;
+        Node parent;
+        List<Node> children;
+        Map<String, Node> byName;
+
+    }
+
+}
@@ -0,0 +1,211 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Отключение отслеживания ссылок для графа и отдельных классов и проверка циклов,
+ * см. {@link LSerializer#setReferenceTracking(boolean)} и {@link LSerializer#setCycleCheck(boolean)}.
+ */
+public class ReferenceTrackingTest {
+
+    @Test
+    public void keepsSharedObjectsAndCyclesByDefault() throws Exception {
+        Holder holder = diamond();
+        holder.self = holder;
+        Holder read = roundTrip(new LSerializer(), holder);
+        assertSame(read.left.next, read.right.next);
+        assertSame(read, read.self);
+    }
+
+    @Test
+    public void duplicatesSharedObjectsWithoutTracking() throws Exception {
+        Holder holder = diamond();
+        LSerializer serializer = new LSerializer();
+        serializer.setReferenceTracking(false);
+        Holder read = roundTrip(serializer, holder);
+        assertNotSame(read.left.next, read.right.next);
+        assertEquals(read.left.next.value, read.right.next.value);
+        assertTrue(serializer.serializeToBytes(holder).length > new LSerializer().serializeToBytes(holder).length);
+
+        LSerializerFactory factory = new LSerializerFactory.Builder().setReferenceTracking(false).build();
+        Holder fromFactory = factory.deserialize(factory.serializeToBytes(holder), Holder.class);
+        assertNotSame(fromFactory.left.next, fromFactory.right.next);
+    }
+
+    @Test
+    public void duplicatesSharedStringsAndCollectionsWithoutTracking() throws Exception {
+        Holder holder = new Holder();
+        holder.name = new String("shared name");
+        holder.alias = holder.name;
+        holder.nodes = new ArrayList<>();
+        holder.others = holder.nodes;
+        LSerializer serializer = new LSerializer();
+        serializer.setReferenceTracking(false);
+        Holder read = roundTrip(serializer, holder);
+        assertEquals(read.name, read.alias);
+        assertNotSame(read.name, read.alias);
+        assertNotSame(read.nodes, read.others);
+
+        Holder tracked = roundTrip(new LSerializer(), holder);
+        assertSame(tracked.name, tracked.alias);
+        assertSame(tracked.nodes, tracked.others);
+    }
+
+    @Test
+    public void cycleCheckRejectsCycleWithoutTracking() throws Exception {
+        Node first = new Node(1);
+        first.next = new Node(2);
+        first.next.next = first;
+        assertCycleRejected(untracked(true), first);
+
+        Holder holder = new Holder();
+        holder.nodes = new ArrayList<>();
+        Node node = new Node(3);
+        node.owner = holder;
+        holder.nodes.add(node);
+        assertCycleRejected(untracked(true), holder);
+
+        Holder self = new Holder();
+        self.self = self;
+        assertCycleRejected(untracked(true), self);
+    }
+
+    @Test
+    public void cycleCheckAllowsSharedObjectsWithoutCycle() throws Exception {
+        Holder read = roundTrip(untracked(true), diamond());
+        assertEquals(7, read.left.next.value);
+        assertEquals(7, read.right.next.value);
+    }
+
+    @Test
+    public void cycleCheckHandlesLongChains() throws Exception {
+        Node head = new Node(0);
+        Node tail = head;
+        for (int i = 1; i < 100000; i++) {
+            tail.next = new Node(i);
+            tail = tail.next;
+        }
+        Node read = roundTrip(untracked(true), head);
+        int count = 0;
+        for (Node node = read; node != null; node = node.next) {
+            assertEquals(count++, node.value);
+        }
+        assertEquals(100000, count);
+
+        tail.next = head;
+        assertCycleRejected(untracked(true), head);
+    }
+
+    @Test
+    public void tracksOtherClassesWhenOneClassOptsOut() throws Exception {
+        Holder holder = diamond();
+        holder.self = holder;
+        holder.left.owner = holder;
+        holder.alias = new String("tracked string");
+        holder.name = holder.alias;
+        LSerializer serializer = new LSerializer();
+        serializer.setReferenceTracking(Node.class, false);
+        serializer.setCycleCheck(true);
+        Holder read = roundTrip(serializer, holder);
+        // Узлы дублируются, а ссылки на держатель и строки сохраняются, в том числе через узел
+        assertNotSame(read.left.next, read.right.next);
+        assertSame(read, read.self);
+        assertSame(read, read.left.owner);
+        assertSame(read.name, read.alias);
+
+        serializer.setReferenceTracking(Node.class, true);
+        read = roundTrip(serializer, holder);
+        assertSame(read.left.next, read.right.next);
+    }
+
+    @Test
+    public void cycleCheckRejectsCycleOfUntrackedClass() throws Exception {
+        Node node = new Node(1);
+        node.next = node;
+        LSerializer serializer = new LSerializer();
+        serializer.setReferenceTracking(Node.class, false);
+        serializer.setCycleCheck(true);
+        assertCycleRejected(serializer, node);
+    }
+
+    @Test
+    public void rejectsTrackingOfBuiltInTypes() {
+        LSerializer serializer = new LSerializer();
+        for (Class<?> type : new Class<?>[] { String.class, ArrayList.class, Integer.class }) {
+            try {
+                serializer.setReferenceTracking(type, false);
+                fail(type.getName());
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(type.getName()));
+            }
+        }
+    }
+
+    private static LSerializer untracked(boolean cycleCheck) {
+        LSerializer serializer = new LSerializer();
+        serializer.setReferenceTracking(false);
+        serializer.setCycleCheck(cycleCheck);
+        return serializer;
+    }
+
+    private static void assertCycleRejected(LSerializer serializer, Object obj) throws Exception {
+        try {
+            serializer.serializeToBytes(obj);
+            fail("Cycle is not detected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Cycle"));
+        }
+    }
+
+    /**
+     * @return держатель с двумя узлами, ссылающимися на общий узел
+     */
+    private static Holder diamond() {
+        Node shared = new Node(7);
+        Holder holder = new Holder();
+        holder.left = new Node(1);
+        holder.right = new Node(2);
+        holder.left.next = shared;
+        holder.right.next = shared;
+        return holder;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(LSerializer serializer, T obj) throws Exception {
+        return (T) new LDesirializer().deserialize(serializer.serializeToBytes(obj), obj.getClass());
+    }
+
+    static class Holder {
+
+        Node left;
+        Node right;
+        Holder self;
+        String name;
+        String alias;
+        List<Node> nodes;
+        List<Node> others;
+
+    }
+
+    static class Node {
+
+        int value;
+        Node next;
+        Holder owner;
+
+        Node(int value) {
+            this.value = value;
+        }
+
+    }
+
+}
@@ -0,0 +1,151 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Сведения о записи и чтении, передаваемые {@link SerializationListener}.
+ */
+public class SerializationListenerTest {
+
+    @Test
+    public void reportsObjectsReferencesAndClasses() throws Exception {
+        Recorder recorder = new Recorder();
+        LSerializerFactory factory = new LSerializerFactory.Builder().setListener(recorder).build();
+        factory.deserialize(factory.serializeToBytes(graph()), Node.class);
+
+        assertEquals(Arrays.asList("Node", "Node"), recorder.written);
+        assertEquals(recorder.written, recorder.read);
+        assertEquals(Arrays.asList("Node"), recorder.referencesWritten);
+        assertEquals(recorder.referencesWritten, recorder.referencesRead);
+        assertTrue(recorder.classesWritten.contains("Node"));
+        assertEquals(recorder.classesWritten, recorder.classesRead);
+        assertEquals(1, recorder.calls);
+    }
+
+    @Test
+    public void countsSameBytesOnWriteAndRead() throws Exception {
+        assertSameBytes(new LSerializerFactory.Builder());
+        assertSameBytes(new LSerializerFactory.Builder().setSkippableObjects(true));
+        assertSameBytes(new LSerializerFactory.Builder().setCompression(new LzCompressor()));
+        assertSameBytes(new LSerializerFactory.Builder().setCompression(new DeflateCompressor()));
+    }
+
+    private static void assertSameBytes(LSerializerFactory.Builder builder) throws Exception {
+        Recorder recorder = new Recorder();
+        LSerializerFactory factory = builder.setListener(recorder).build();
+        for (Object root : new Object[] { null, "text", 42, new int[] { 1, 2, 3 }, graph() }) {
+            recorder.clear();
+            byte[] bytes = factory.serializeToBytes(root);
+            factory.deserialize(bytes, Object.class);
+            assertEquals(recorder.objectBytesWritten, recorder.objectBytesRead);
+            assertEquals(recorder.bytesWritten, recorder.bytesRead);
+            assertTrue(recorder.objectBytesWritten < recorder.bytesWritten);
+
+            recorder.clear();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            factory.serialize(out, root);
+            factory.deserialize(new ByteArrayInputStream(out.toByteArray()), Object.class);
+            assertEquals(recorder.objectBytesWritten, recorder.objectBytesRead);
+            assertEquals(recorder.bytesWritten, recorder.bytesRead);
+        }
+    }
+
+    private static Node graph() {
+        Node first = new Node();
+        first.name = "first";
+        first.values = new ArrayList<>(Arrays.asList(1, 2, 3));
+        Node second = new Node();
+        second.name = "second";
+        first.next = second;
+        second.next = first;
+        return first;
+    }
+
+    static class Node {
+
+        String name;
+        Node next;
+        List<Integer> values;
+
+    }
+
+    static class Recorder implements SerializationListener {
+
+        final List<String> written = new ArrayList<>();
+        final List<String> read = new ArrayList<>();
+        final List<String> referencesWritten = new ArrayList<>();
+        final List<String> referencesRead = new ArrayList<>();
+        final List<String> classesWritten = new ArrayList<>();
+        final List<String> classesRead = new ArrayList<>();
+        long objectBytesWritten;
+        long objectBytesRead;
+        long bytesWritten;
+        long bytesRead;
+        int calls;
+
+        void clear() {
+            objectBytesWritten = 0;
+            objectBytesRead = 0;
+            bytesWritten = 0;
+            bytesRead = 0;
+        }
+
+        @Override
+        public void objectWritten(Class<?> type, long bytes, long nanos) {
+            if (type == Node.class) {
+                written.add(type.getSimpleName());
+            }
+            objectBytesWritten += bytes;
+        }
+
+        @Override
+        public void referenceWritten(Class<?> type) {
+            referencesWritten.add(type.getSimpleName());
+        }
+
+        @Override
+        public void classWritten(Class<?> type) {
+            classesWritten.add(type.getSimpleName());
+        }
+
+        @Override
+        public void serialized(Class<?> rootType, long bytes, long nanos) {
+            bytesWritten += bytes;
+        }
+
+        @Override
+        public void objectRead(Class<?> type, long bytes, long nanos) {
+            if (type == Node.class) {
+                read.add(type.getSimpleName());
+            }
+            objectBytesRead += bytes;
+        }
+
+        @Override
+        public void referenceRead(Class<?> type) {
+            referencesRead.add(type.getSimpleName());
+        }
+
+        @Override
+        public void classRead(Class<?> type) {
+            classesRead.add(type.getSimpleName());
+        }
+
+        @Override
+        public void deserialized(Class<?> rootType, long bytes, long nanos) {
+            bytesRead += bytes;
+            calls++;
+        }
+
+    }
+
+}
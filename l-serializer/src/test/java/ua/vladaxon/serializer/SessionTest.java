@@ -0,0 +1,195 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Сеансы записи и чтения последовательности объектов, см. {@link LObjectWriter} и {@link LObjectReader}.
+ */
+public class SessionTest {
+
+    @Test
+    public void writesClassOnlyWithFirstMessage() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<Integer> sizes = new ArrayList<>();
+        try (LObjectWriter writer = new LObjectWriter(out)) {
+            int position = out.size();
+            for (int i = 0; i < 3; i++) {
+                writer.writeObject(new Message(i, "text"));
+                sizes.add(out.size() - position);
+                position = out.size();
+            }
+        }
+        // Заголовок сеанса передается вместе с первым сообщением. Вместо типа и имени класса следующие
+        // сообщения записывают однобайтовый идентификатор класса
+        String name = Message.class.getName();
+        int nameCost = sizes.get(0) - headerSize() - sizes.get(1);
+        assertTrue(sizes.toString(), nameCost > name.length() && nameCost <= name.length() + 2);
+        assertEquals(sizes.get(1), sizes.get(2));
+        assertEquals(sizes.get(0).intValue(), new LSerializer().serializeToBytes(new Message(0, "text")).length);
+
+        try (LObjectReader reader = new LObjectReader(new ByteArrayInputStream(out.toByteArray()))) {
+            for (int i = 0; i < 3; i++) {
+                Message message = reader.readObject(Message.class);
+                assertEquals(i, message.id);
+                assertEquals("text", message.text);
+            }
+            try {
+                reader.readObject(Message.class);
+                fail("Session has three messages");
+            } catch (EOFException e) {
+                // ожидаемо
+            }
+        }
+    }
+
+    @Test
+    public void sharesStringsBetweenMessages() throws Exception {
+        String text = "a string repeated in every message";
+        byte[] shared = writeSession(true, new Message(1, text), new Message(2, text));
+        byte[] plain = writeSession(false, new Message(1, text), new Message(2, text));
+        assertTrue(shared.length + text.length() - 2 <= plain.length);
+
+        try (LObjectReader reader = new LObjectReader(new ByteArrayInputStream(shared))) {
+            Message first = reader.readObject(Message.class);
+            Message second = reader.readObject(Message.class);
+            assertEquals(text, first.text);
+            assertSame(first.text, second.text);
+        }
+        try (LObjectReader reader = new LObjectReader(new ByteArrayInputStream(plain))) {
+            assertNotSame(reader.readObject(Message.class).text, reader.readObject(Message.class).text);
+        }
+    }
+
+    @Test
+    public void resetsClassesAndStringsOnBothSides() throws Exception {
+        String text = "shared until reset";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int first;
+        int afterReset;
+        try (LObjectWriter writer = new LObjectWriter(out, new LSerializerFactory(), true)) {
+            int position = out.size();
+            writer.writeObject(new Message(1, text));
+            first = out.size() - position;
+            writer.writeObject(new Message(2, text));
+            writer.reset();
+            position = out.size();
+            writer.writeObject(new Message(3, text));
+            // После отметки сброса класс и строка снова передаются целиком
+            afterReset = out.size() - position;
+            writer.writeObject(new Message(4, text));
+        }
+        assertEquals(first, headerSize() + afterReset);
+
+        try (LObjectReader reader = new LObjectReader(new ByteArrayInputStream(out.toByteArray()))) {
+            Message one = reader.readObject(Message.class);
+            Message two = reader.readObject(Message.class);
+            Message three = reader.readObject(Message.class);
+            Message four = reader.readObject(Message.class);
+            assertEquals(1, one.id);
+            assertEquals(4, four.id);
+            assertSame(one.text, two.text);
+            assertNotSame(two.text, three.text);
+            assertSame(three.text, four.text);
+        }
+    }
+
+    @Test
+    public void readsResetBeforeFirstMessage() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (LObjectWriter writer = new LObjectWriter(out)) {
+            writer.reset();
+            writer.reset();
+            writer.writeObject(new Message(1, "after resets"));
+            writer.reset();
+        }
+        try (LObjectReader reader = new LObjectReader(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals("after resets", reader.readObject(Message.class).text);
+            try {
+                reader.readObject(Message.class);
+                fail("Only a reset follows the message");
+            } catch (EOFException e) {
+                // ожидаемо
+            }
+        }
+    }
+
+    @Test
+    public void doesNotShareReferencesBetweenMessages() throws Exception {
+        Message message = new Message(1, "same");
+        Message other = new Message(2, "other");
+        other.next = message;
+        byte[] bytes = writeSession(false, message, other);
+        try (LObjectReader reader = new LObjectReader(new ByteArrayInputStream(bytes))) {
+            Message first = reader.readObject(Message.class);
+            Message second = reader.readObject(Message.class);
+            assertNotSame(first, second.next);
+            assertEquals(1, second.next.id);
+        }
+    }
+
+    @Test
+    public void rejectsPlainStreamAndClosedSessions() throws Exception {
+        byte[] plain = new LSerializer().serializeToBytes(new Message(1, "plain"));
+        try {
+            new LObjectReader(new ByteArrayInputStream(plain));
+            fail("Not a session stream");
+        } catch (StreamCorruptedException e) {
+            // ожидаемо
+        }
+        LObjectWriter writer = new LObjectWriter(new ByteArrayOutputStream());
+        writer.close();
+        writer.close();
+        try {
+            writer.writeObject(new Message(1, "closed"));
+            fail("Session is closed");
+        } catch (IllegalStateException e) {
+            // ожидаемо
+        }
+    }
+
+    private static byte[] writeSession(boolean sharedStrings, Message... messages) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (LObjectWriter writer = new LObjectWriter(out, new LSerializerFactory(), sharedStrings)) {
+            for (Message message : messages) {
+                writer.writeObject(message);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return длина заголовка потока без объектов
+     */
+    private static int headerSize() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new LObjectWriter(out).close();
+        return out.size();
+    }
+
+    static class Message {
+
+        int id;
+        String text;
+        Message next;
+
+        Message(int id, String text) {
+            this.id = id;
+            this.text = text;
+        }
+
+    }
+
+}
@@ -0,0 +1,174 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+/**
+ * Запись строк по байту на символ, в UTF-8 и в UTF-16 для строк с непарными суррогатами,
+ * см. {@link Encoder#writeString(String)}.
+ */
+public class StringEncodingTest {
+
+    @Test
+    public void writesLatin1StringsByteForChar() throws Exception {
+        for (String value : new String[] { "plain ascii", "café crème", "\u0000\u007f\u0080ÿ" }) {
+            assertEncodedLength(value, value.length(), value.length());
+            assertEquals(value, roundTrip(value));
+        }
+    }
+
+    @Test
+    public void writesOtherStringsInUtf8() throws Exception {
+        String[] values = { "Привет, мир", "数据序列化", "mixed ascii и кириллица", "Ā", "\u07ff\u0800\uffff",
+                "emoji 😀 and 𝄞", "\udbff\udfff" };
+        for (String value : values) {
+            assertEncodedLength(value, utf8Length(value), utf8Length(value));
+            assertEquals(value, roundTrip(value));
+        }
+    }
+
+    @Test
+    public void writesUnpairedSurrogatesInUtf16() throws Exception {
+        String[] values = { "\ud800", "\udc00", "a\ud800b", "ab\udc00", "\udc00\ud800", "😀\ud83d",
+                "текст\ud800" };
+        for (String value : values) {
+            // UTF-8 заменил бы непарный суррогат знаком вопроса, поэтому символы записываются по два байта
+            assertEncodedLength(value, value.length(), value.length() * 2);
+            assertEquals(value, roundTrip(value));
+        }
+    }
+
+    @Test
+    public void roundTripsEmptyAndNullStrings() throws Exception {
+        assertEquals("", roundTrip(""));
+        Holder holder = new Holder();
+        holder.first = "";
+        holder.values = new String[] { "", null, "x" };
+        Holder read = roundTrip(holder);
+        assertEquals("", read.first);
+        assertEquals(null, read.second);
+        assertArrayEquals(holder.values, read.values);
+    }
+
+    @Test
+    public void roundTripsLongStrings() throws Exception {
+        String[] values = { repeat("latin-1 é ", 100000), repeat("кириллица ", 100000),
+                repeat("😀", 100000), repeat("utf-16 \ud800", 100000) };
+        for (String value : values) {
+            assertEquals(value, roundTrip(value));
+            Holder holder = new Holder();
+            holder.first = value;
+            holder.second = value.substring(1);
+            holder.values = new String[] { value, "after" };
+            Holder read = roundTrip(holder);
+            assertEquals(value, read.first);
+            assertEquals(holder.second, read.second);
+            assertArrayEquals(holder.values, read.values);
+        }
+    }
+
+    @Test
+    public void readsStringsSplitAcrossStreamReads() throws Exception {
+        Holder holder = new Holder();
+        holder.first = repeat("é", 5000);
+        holder.second = repeat("Ж😀", 5000);
+        holder.values = new String[] { repeat("\udc00a", 5000), "short" };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new LSerializer().serialize(out, holder);
+        InputStream in = new OneByteInputStream(new ByteArrayInputStream(out.toByteArray()));
+        Holder read = (Holder) new LDesirializer().deserialize(in, Holder.class);
+        assertEquals(holder.first, read.first);
+        assertEquals(holder.second, read.second);
+        assertArrayEquals(holder.values, read.values);
+    }
+
+    /**
+     * Проверяет число байт, которое строка занимает в потоке.
+     *
+     * @param value строка
+     * @param length длина, записываемая перед содержимым: число символов или байт UTF-8
+     * @param content число байт содержимого
+     */
+    private static void assertEncodedLength(String value, int length, int content) throws Exception {
+        int written = new LSerializer().serializeToBytes(value).length - new LSerializer().serializeToBytes("").length;
+        // Пустая строка занимает один байт длины
+        assertEquals(value, varintSize((long) length << 2) - 1 + content, written);
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static String repeat(String value, int count) {
+        char[] chars = new char[value.length() * count];
+        for (int i = 0; i < count; i++) {
+            value.getChars(0, value.length(), chars, i * value.length());
+        }
+        return new String(chars);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T value) throws Exception {
+        return (T) new LDesirializer().deserialize(new LSerializer().serializeToBytes(value), Object.class);
+    }
+
+    static class Holder {
+
+        String first;
+        String second;
+        String[] values;
+
+    }
+
+    /**
+     * Поток, отдающий данные по одному байту за вызов.
+     */
+    static class OneByteInputStream extends FilterInputStream {
+
+        OneByteInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            return super.read(bytes, offset, Math.min(length, 1));
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+    }
+
+}
@@ -0,0 +1,156 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.junit.Test;
+
+/**
+ * Встроенное представление типов-значений, см. {@link ValueCodec}.
+ */
+public class ValueCodecTest {
+
+    private static final Object[] VALUES = { Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE, Long.MIN_VALUE, 1L,
+            Long.MAX_VALUE, -0.0d, Double.NaN, Double.MAX_VALUE, Float.MIN_VALUE, Float.NEGATIVE_INFINITY,
+            Short.MIN_VALUE, Short.MAX_VALUE, Byte.MIN_VALUE, Byte.MAX_VALUE, 'a', '\uffff', true, false };
+
+    @Test
+    public void registersEveryInlineTag() throws Exception {
+        for (int tag = WireFormat.TYPE_INTEGER; tag < WireFormat.FIRST_CLASS_ID; tag++) {
+            ValueCodec codec = ValueCodec.forTag(tag);
+            assertNotNull("tag " + tag, codec);
+            assertEquals(tag, codec.getTag());
+        }
+        assertEquals(null, ValueCodec.forTag(WireFormat.TYPE_STRING));
+        assertEquals(null, ValueCodec.forTag(WireFormat.FIRST_CLASS_ID));
+        assertEquals(null, ValueCodec.forClass(Number.class));
+    }
+
+    @Test
+    public void roundTripsBoxedPrimitivesWithoutClassNames() throws Exception {
+        for (Object value : VALUES) {
+            byte[] bytes = write(value);
+            assertFalse(value.getClass().getName(), contains(bytes, value.getClass().getName()));
+            assertValue(value, read(bytes));
+        }
+    }
+
+    @Test
+    public void writesSmallIntegersAsVarints() throws Exception {
+        assertEquals(write(0).length, write(-64).length);
+        assertEquals(write(0).length + 4, write(Integer.MIN_VALUE).length);
+        assertEquals(write(0L).length + 9, write(Long.MIN_VALUE).length);
+    }
+
+    @Test
+    public void roundTripsUuid() throws Exception {
+        for (UUID uuid : new UUID[] { UUID.randomUUID(), new UUID(0, 0), new UUID(-1, Long.MIN_VALUE) }) {
+            assertValue(uuid, roundTrip(uuid));
+        }
+    }
+
+    @Test
+    public void roundTripsBigDecimal() throws Exception {
+        BigDecimal[] decimals = { BigDecimal.ZERO, new BigDecimal("-123.4500"), BigDecimal.valueOf(Long.MAX_VALUE, 3),
+                BigDecimal.valueOf(Long.MIN_VALUE, 2), new BigDecimal("123456789012345678901234567890.123"),
+                new BigDecimal(BigInteger.ONE.shiftLeft(64).negate(), 5), new BigDecimal("1E+10"),
+                new BigDecimal(BigInteger.valueOf(-7), -300) };
+        for (BigDecimal decimal : decimals) {
+            BigDecimal read = roundTrip(decimal);
+            // equals учитывает масштаб, поэтому 1.0 и 1.00 различаются
+            assertEquals(decimal, read);
+            assertEquals(decimal.scale(), read.scale());
+        }
+        // Немасштабированное значение длиннее 64 бит записывается байтами BigInteger
+        assertTrue(write(decimals[4]).length > write(decimals[1]).length + 8);
+    }
+
+    @Test
+    public void roundTripsDateAndTime() throws Exception {
+        Object[] values = { Instant.EPOCH, Instant.ofEpochSecond(-1, 999999999), Instant.MAX, Instant.MIN,
+                LocalDateTime.of(2024, 2, 29, 23, 59, 59, 123456789), LocalDateTime.MIN, LocalDateTime.MAX };
+        for (Object value : values) {
+            assertValue(value, roundTrip(value));
+        }
+    }
+
+    @Test
+    public void keepsExactTypeOfValuesInObjectArray() throws Exception {
+        Object[] array = { (byte) 1, (short) 1, 1, 1L, 1f, 1d, '1', true, new BigDecimal("1"),
+                Instant.ofEpochSecond(1), null };
+        Object[] read = roundTrip(array);
+        assertEquals(array.length, read.length);
+        for (int i = 0; i < array.length - 1; i++) {
+            assertValue(array[i], read[i]);
+        }
+        assertEquals(null, read[array.length - 1]);
+    }
+
+    @Test
+    public void readsCachedBoxesAndDoesNotShareValues() throws Exception {
+        Holder holder = new Holder();
+        holder.first = 1000000;
+        holder.second = holder.first;
+        Holder read = roundTrip(holder);
+        assertEquals(holder.first, read.first);
+        assertEquals(holder.second, read.second);
+        // Значения не получают идентификаторов и читаются заново, малые - из кэша valueOf
+        assertSame(Integer.valueOf(5), roundTrip(5));
+        assertSame(Boolean.TRUE, roundTrip(true));
+    }
+
+    @Test
+    public void keepsFieldsOfBoxedTypes() throws Exception {
+        Holder holder = new Holder();
+        holder.first = Long.MIN_VALUE;
+        holder.second = UUID.nameUUIDFromBytes(new byte[] { 1 });
+        holder.values = new Object[] { holder.first, holder.second };
+        Holder read = roundTrip(holder);
+        assertValue(holder.first, read.first);
+        assertValue(holder.second, read.second);
+        assertArrayEquals(holder.values, read.values);
+    }
+
+    private static void assertValue(Object expected, Object actual) {
+        assertEquals(expected, actual);
+        assertSame(expected.getClass(), actual.getClass());
+    }
+
+    private static boolean contains(byte[] bytes, String text) {
+        String content = new String(bytes, StandardCharsets.ISO_8859_1);
+        return content.contains(text);
+    }
+
+    private static byte[] write(Object value) throws Exception {
+        return new LSerializer().serializeToBytes(value);
+    }
+
+    private static Object read(byte[] bytes) throws Exception {
+        return new LDesirializer().deserialize(bytes, Object.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T value) throws Exception {
+        return (T) read(write(value));
+    }
+
+    static class Holder {
+
+        Object first;
+        Object second;
+        Object[] values;
+
+    }
+
+}
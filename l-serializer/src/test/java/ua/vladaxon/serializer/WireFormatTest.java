@@ -0,0 +1,86 @@
+package ua.vladaxon.serializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+
+/**
+ * Числовые поля в формате с заголовком: запись фиксированной длины и zigzag varint-числами
+ * {@link LSerializer#setVarintNumbers(boolean)}.
+ */
+public class WireFormatTest {
+
+    private static final int[] INTS = { 0, 1, -1, 63, -64, 64, -65, (1 << 30) - 1, 1 << 30, -(1 << 30),
+            -(1 << 30) - 1, Integer.MAX_VALUE, Integer.MIN_VALUE };
+    private static final long[] LONGS = { 0, 1, -1, 1L << 31, -(1L << 31), 1L << 62, -(1L << 62), Long.MAX_VALUE,
+            Long.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE };
+
+    @Test
+    public void roundTripsEdgeValuesOfIntFields() throws Exception {
+        for (boolean varint : new boolean[] { false, true }) {
+            for (int value : INTS) {
+                Numbers numbers = new Numbers();
+                numbers.i = value;
+                numbers.l = value;
+                Numbers read = roundTrip(numbers, varint);
+                assertEquals(value, read.i);
+                assertEquals(value, read.l);
+            }
+        }
+    }
+
+    @Test
+    public void roundTripsEdgeValuesOfLongFields() throws Exception {
+        for (boolean varint : new boolean[] { false, true }) {
+            for (long value : LONGS) {
+                Numbers numbers = new Numbers();
+                numbers.l = value;
+                numbers.i = (int) value;
+                Numbers read = roundTrip(numbers, varint);
+                assertEquals(value, read.l);
+                assertEquals((int) value, read.i);
+            }
+        }
+    }
+
+    @Test
+    public void writesSmallNumbersInFewerBytes() throws Exception {
+        Numbers small = new Numbers();
+        small.i = -64;
+        small.l = 63;
+        Numbers large = new Numbers();
+        large.i = Integer.MIN_VALUE;
+        large.l = Long.MIN_VALUE;
+        int fixed = write(small, false).length;
+        assertEquals(fixed, write(large, false).length);
+        // int и long по одному байту вместо 4 и 8, крайние значения - 5 и 10 байт
+        assertEquals(fixed - 10, write(small, true).length);
+        assertEquals(fixed + 3, write(large, true).length);
+        assertTrue(write(large, true).length > write(small, true).length);
+    }
+
+    private static Numbers roundTrip(Numbers numbers, boolean varint) throws Exception {
+        byte[] bytes = write(numbers, varint);
+        return (Numbers) new LDesirializer().deserialize(new ByteArrayInputStream(bytes), Numbers.class);
+    }
+
+    private static byte[] write(Object obj, boolean varint) throws Exception {
+        LSerializer serializer = new LSerializer();
+        serializer.setVarintNumbers(varint);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize(out, obj);
+        return out.toByteArray();
+    }
+
+    static class Numbers {
+
+        int i;
+        long l;
+
+    }
+
+}